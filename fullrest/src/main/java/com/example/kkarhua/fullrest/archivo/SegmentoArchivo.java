@@ -0,0 +1,146 @@
+package com.example.kkarhua.fullrest.archivo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Segmento de archivo de solo anexado: un par de archivos <nombre>.seg y <nombre>.idx.
+// Cada agregar() escribe un bloque de líneas comprimido con gzip al final del .seg y después
+// una línea "primerId ultimoId offset largo" en el .idx, así que el índice es disperso (una
+// entrada por bloque, no por fila). Los dos archivos se fuerzan a disco antes de volver: un bloque
+// sin su línea de índice (caída a mitad) queda como basura al final del .seg y nunca se lee.
+// Un id puede aparecer en más de un bloque si se reintentó un lote; manda el bloque más nuevo.
+// El índice se lee de disco una vez y queda en memoria; agregar() lo extiende bajo el mismo
+// monitor con el que escribe, así que bloques() nunca devuelve un índice sin el último bloque.
+public class SegmentoArchivo {
+
+    public record Bloque(long primerId, long ultimoId, long offset, int largo) {
+
+        public boolean contiene(long id) {
+            return id >= primerId && id <= ultimoId;
+        }
+    }
+
+    private static final String EXTENSION_DATOS = ".seg";
+    private static final String EXTENSION_INDICE = ".idx";
+
+    private final Path datos;
+    private final Path indice;
+
+    // Copia inmutable del índice; null hasta la primera lectura
+    private volatile List<Bloque> cacheBloques;
+
+    public SegmentoArchivo(Path directorio, String nombre) throws IOException {
+        Files.createDirectories(directorio);
+        this.datos = directorio.resolve(nombre + EXTENSION_DATOS);
+        this.indice = directorio.resolve(nombre + EXTENSION_INDICE);
+    }
+
+    // Anexa un bloque con las líneas (sin saltos de línea internos) de los ids [primerId, ultimoId]
+    public synchronized Bloque agregar(long primerId, long ultimoId, List<String> lineas) throws IOException {
+        ByteArrayOutputStream comprimido = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(comprimido)) {
+            gzip.write(String.join("\n", lineas).getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] bytes = comprimido.toByteArray();
+
+        Bloque bloque;
+        try (FileChannel canal = FileChannel.open(datos, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = canal.size();
+            escribir(canal, ByteBuffer.wrap(bytes), offset);
+            canal.force(true);
+            bloque = new Bloque(primerId, ultimoId, offset, bytes.length);
+        }
+
+        try (FileChannel canal = FileChannel.open(indice, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fin = canal.size();
+            // Una línea cortada por una caída anterior se termina antes de escribir la nueva
+            String prefijo = fin > 0 && ultimoByte(canal, fin) != '\n' ? "\n" : "";
+            String linea = prefijo + primerId + " " + ultimoId + " " + bloque.offset() + " " + bloque.largo() + "\n";
+            escribir(canal, ByteBuffer.wrap(linea.getBytes(StandardCharsets.US_ASCII)), fin);
+            canal.force(true);
+        }
+
+        if (cacheBloques != null) {
+            List<Bloque> bloques = new ArrayList<>(cacheBloques);
+            bloques.add(bloque);
+            cacheBloques = List.copyOf(bloques);
+        }
+        return bloque;
+    }
+
+    // Entradas del índice en orden de escritura; se ignoran las líneas incompletas y los bloques que no llegaron al .seg
+    public List<Bloque> bloques() throws IOException {
+        List<Bloque> bloques = cacheBloques;
+        if (bloques != null) {
+            return bloques;
+        }
+        synchronized (this) {
+            if (cacheBloques == null) {
+                cacheBloques = List.copyOf(leerIndice());
+            }
+            return cacheBloques;
+        }
+    }
+
+    private List<Bloque> leerIndice() throws IOException {
+        if (!Files.exists(indice)) {
+            return List.of();
+        }
+        long tamanoDatos = Files.exists(datos) ? Files.size(datos) : 0;
+        List<Bloque> bloques = new ArrayList<>();
+        for (String linea : Files.readAllLines(indice, StandardCharsets.US_ASCII)) {
+            String[] campos = linea.trim().split(" ");
+            if (campos.length != 4) {
+                continue;
+            }
+            try {
+                Bloque bloque = new Bloque(Long.parseLong(campos[0]), Long.parseLong(campos[1]),
+                    Long.parseLong(campos[2]), Integer.parseInt(campos[3]));
+                if (bloque.offset() + bloque.largo() <= tamanoDatos) {
+                    bloques.add(bloque);
+                }
+            } catch (NumberFormatException e) {
+                // línea cortada: se descarta
+            }
+        }
+        return bloques;
+    }
+
+    public List<String> leer(Bloque bloque) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bloque.largo());
+        try (FileChannel canal = FileChannel.open(datos, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (canal.read(buffer, bloque.offset() + buffer.position()) < 0) {
+                    throw new IOException("Bloque fuera del segmento " + datos + ": " + bloque);
+                }
+            }
+        }
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(buffer.array()))) {
+            String texto = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+            return texto.isEmpty() ? List.of() : List.of(texto.split("\n"));
+        }
+    }
+
+    private static void escribir(FileChannel canal, ByteBuffer buffer, long posicion) throws IOException {
+        while (buffer.hasRemaining()) {
+            posicion += canal.write(buffer, posicion);
+        }
+    }
+
+    private static byte ultimoByte(FileChannel canal, long fin) throws IOException {
+        ByteBuffer uno = ByteBuffer.allocate(1);
+        canal.read(uno, fin - 1);
+        return uno.get(0);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.kkarhua.fullrest.busqueda;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Índice invertido en memoria con ranking BM25.
+// Cada documento tiene tres campos con distinto peso (nombre > categoría > descripción);
+// la frecuencia de cada término se pondera por el peso del campo donde aparece.
+// Los textos se pasan a minúsculas y se les quitan los acentos (ej: "Cámara" -> "camara").
+public class IndiceInvertido {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final int PESO_NOMBRE = 3;
+    private static final int PESO_CATEGORIA = 2;
+    private static final int PESO_DESCRIPCION = 1;
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+        "de", "la", "el", "los", "las", "y", "o", "en", "con", "para", "por",
+        "un", "una", "unos", "unas", "del", "al", "a", "se", "su", "sus");
+
+    // término -> (id documento -> frecuencia ponderada)
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    // id documento -> frecuencias ponderadas de sus términos
+    private final Map<Long, Map<String, Integer>> documentos = new HashMap<>();
+    // id documento -> longitud ponderada (suma de sus frecuencias)
+    private final Map<Long, Integer> longitudes = new HashMap<>();
+    private long longitudTotal;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public record Resultado(long id, double puntaje) {
+    }
+
+    // Agrega o reemplaza un documento
+    public void actualizar(long id, String nombre, String descripcion, String categoria) {
+        Map<String, Integer> frecuencias = new HashMap<>();
+        acumular(frecuencias, nombre, PESO_NOMBRE);
+        acumular(frecuencias, categoria, PESO_CATEGORIA);
+        acumular(frecuencias, descripcion, PESO_DESCRIPCION);
+
+        lock.writeLock().lock();
+        try {
+            quitar(id);
+            int longitud = 0;
+            for (Map.Entry<String, Integer> termino : frecuencias.entrySet()) {
+                postings.computeIfAbsent(termino.getKey(), t -> new HashMap<>()).put(id, termino.getValue());
+                longitud += termino.getValue();
+            }
+            documentos.put(id, frecuencias);
+            longitudes.put(id, longitud);
+            longitudTotal += longitud;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(long id) {
+        lock.writeLock().lock();
+        try {
+            quitar(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void limpiar() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documentos.clear();
+            longitudes.clear();
+            longitudTotal = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Devuelve los mejores resultados ordenados por puntaje descendente
+    public List<Resultado> buscar(String consulta, int limite) {
+        Set<String> terminos = new HashSet<>(tokenizar(consulta));
+        if (terminos.isEmpty() || limite <= 0) {
+            return List.of();
+        }
+
+        Map<Long, Double> puntajes = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int n = documentos.size();
+            if (n == 0) {
+                return List.of();
+            }
+            double longitudPromedio = (double) longitudTotal / n;
+
+            for (String termino : terminos) {
+                Map<Long, Integer> lista = postings.get(termino);
+                if (lista == null) {
+                    continue;
+                }
+                int df = lista.size();
+                double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                for (Map.Entry<Long, Integer> posting : lista.entrySet()) {
+                    int tf = posting.getValue();
+                    int longitudDoc = longitudes.get(posting.getKey());
+                    double norma = K1 * (1 - B + B * longitudDoc / longitudPromedio);
+                    double puntaje = idf * (tf * (K1 + 1)) / (tf + norma);
+                    puntajes.merge(posting.getKey(), puntaje, Double::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Top-k con un heap de tamaño acotado
+        Comparator<Resultado> orden = Comparator.comparingDouble(Resultado::puntaje)
+                .thenComparing(Resultado::id, Comparator.reverseOrder());
+        PriorityQueue<Resultado> heap = new PriorityQueue<>(limite + 1, orden);
+        for (Map.Entry<Long, Double> entrada : puntajes.entrySet()) {
+            heap.add(new Resultado(entrada.getKey(), entrada.getValue()));
+            if (heap.size() > limite) {
+                heap.poll();
+            }
+        }
+        List<Resultado> resultados = new ArrayList<>(heap);
+        resultados.sort(orden.reversed());
+        return resultados;
+    }
+
+    // Minúsculas, sin acentos, separado en palabras y sin palabras vacías
+    public static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        if (texto == null || texto.isBlank()) {
+            return tokens;
+        }
+        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        for (String token : normalizado.split("[^\\p{L}\\p{Nd}]+")) {
+            if (!token.isEmpty() && !PALABRAS_VACIAS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void acumular(Map<String, Integer> frecuencias, String texto, int peso) {
+        for (String token : tokenizar(texto)) {
+            frecuencias.merge(token, peso, Integer::sum);
+        }
+    }
+
+    // Debe llamarse con el lock de escritura tomado
+    private void quitar(long id) {
+        Map<String, Integer> anterior = documentos.remove(id);
+        if (anterior == null) {
+            return;
+        }
+        for (Map.Entry<String, Integer> termino : anterior.entrySet()) {
+            Map<Long, Integer> lista = postings.get(termino.getKey());
+            if (lista != null) {
+                lista.remove(id);
+                if (lista.isEmpty()) {
+                    postings.remove(termino.getKey());
+                }
+            }
+        }
+        longitudTotal -= longitudes.remove(id);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.kkarhua.fullrest.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+// Caché en memoria acotada por tamaño (LRU) y por tiempo de vida (TTL).
+// Cada entrada puede tener su propio vencimiento; si no se indica se usa el TTL por defecto.
+// Una carga que coincide con una invalidación de su misma clave se descarta para no volver a guardar
+// datos viejos; invalidar una clave no afecta las cargas en curso de las demás.
+public class CacheLocal<K, V> {
+
+    private final int maxEntradas;
+    private final long ttlMillis;
+    private final LongSupplier reloj;
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+
+    // Cargas en curso por clave, protegidas por el monitor de entradas. Solo existen mientras hay
+    // alguna carga de esa clave, así que el mapa no crece con el número de claves
+    private final Map<K, Carga> cargando = new HashMap<>();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+
+    private record Entrada<V>(V valor, long expiraEn) {
+    }
+
+    // generacion aumenta con cada invalidación de la clave: una carga solo se guarda si no cambió
+    // mientras se leía
+    private static final class Carga {
+        int pendientes;
+        long generacion;
+    }
+
+    public CacheLocal(int maxEntradas, long ttlMillis) {
+        this(maxEntradas, ttlMillis, System::currentTimeMillis);
+    }
+
+    public CacheLocal(int maxEntradas, long ttlMillis, LongSupplier reloj) {
+        if (maxEntradas <= 0) {
+            throw new IllegalArgumentException("maxEntradas debe ser mayor a 0");
+        }
+        this.maxEntradas = maxEntradas;
+        this.ttlMillis = ttlMillis;
+        this.reloj = reloj;
+        // accessOrder = true: el orden de iteración es de menos a más recientemente usado
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public V get(K clave) {
+        synchronized (entradas) {
+            Entrada<V> entrada = entradas.get(clave);
+            if (entrada != null) {
+                if (entrada.expiraEn() > reloj.getAsLong()) {
+                    aciertos.increment();
+                    return entrada.valor();
+                }
+                entradas.remove(clave);
+                desalojos.increment();
+            }
+        }
+        fallos.increment();
+        return null;
+    }
+
+    // Busca en caché y, si no está, carga con la función (fuera del lock) y guarda el resultado.
+    // Los valores null no se guardan.
+    public V getOrLoad(K clave, Function<K, V> cargador) {
+        V valor = get(clave);
+        if (valor != null) {
+            return valor;
+        }
+        Carga carga;
+        long generacionInicial;
+        synchronized (entradas) {
+            carga = cargando.computeIfAbsent(clave, k -> new Carga());
+            carga.pendientes++;
+            generacionInicial = carga.generacion;
+        }
+        try {
+            valor = cargador.apply(clave);
+        } finally {
+            synchronized (entradas) {
+                if (--carga.pendientes == 0) {
+                    cargando.remove(clave);
+                }
+                if (valor != null && carga.generacion == generacionInicial) {
+                    guardar(clave, valor, reloj.getAsLong() + ttlMillis);
+                }
+            }
+        }
+        return valor;
+    }
+
+    public void put(K clave, V valor) {
+        put(clave, valor, reloj.getAsLong() + ttlMillis);
+    }
+
+    // Guarda con un vencimiento absoluto (epoch en milisegundos)
+    public void put(K clave, V valor, long expiraEn) {
+        synchronized (entradas) {
+            guardar(clave, valor, expiraEn);
+        }
+    }
+
+    public void invalidate(K clave) {
+        synchronized (entradas) {
+            Carga carga = cargando.get(clave);
+            if (carga != null) {
+                carga.generacion++;
+            }
+            entradas.remove(clave);
+        }
+    }
+
+    public void clear() {
+        synchronized (entradas) {
+            cargando.values().forEach(carga -> carga.generacion++);
+            entradas.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getDesalojos() {
+        return desalojos.sum();
+    }
+
+    // Se llama con el monitor de entradas tomado
+    private void guardar(K clave, V valor, long expiraEn) {
+        entradas.put(clave, new Entrada<>(valor, expiraEn));
+        if (entradas.size() > maxEntradas) {
+            Iterator<Map.Entry<K, Entrada<V>>> it = entradas.entrySet().iterator();
+            it.next();
+            it.remove();
+            desalojos.increment();
+        }
+    }
+}
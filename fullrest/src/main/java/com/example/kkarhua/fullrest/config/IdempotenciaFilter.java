@@ -0,0 +1,239 @@
+package com.example.kkarhua.fullrest.config;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.example.kkarhua.fullrest.services.IdempotenciaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Idempotency-Key para las escrituras de compras y stock. Si el header viene, la petición se
+// identifica por (usuario, clave) y se ejecuta una sola vez: los reintentos reciben la respuesta
+// original con el header Idempotent-Replayed. Las respuestas 5xx no se guardan, así que un
+// reintento después de un error del servidor vuelve a ejecutarse. Guardar la respuesta ocurre
+// después del commit de la escritura: si falla, el cliente igual recibe la respuesta original.
+// Corre después de la cadena de seguridad, con el userId del token ya disponible.
+@Component
+public class IdempotenciaFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaFilter.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_LARGO_CLAVE = 255;
+    // Límite de la columna mediumblob
+    private static final int MAX_CUERPO_GUARDADO = (1 << 24) - 1;
+
+    // Método y ruta de los endpoints que aceptan la clave
+    private static final List<String[]> RUTAS = List.of(
+        new String[] {"POST", "/api/compras"},
+        new String[] {"POST", "/api/compras/checkout"},
+        new String[] {"POST", "/api/stock/batch"},
+        new String[] {"POST", "/api/stock/reservas"},
+        new String[] {"PATCH", "/api/stock/*/*"}
+    );
+
+    private final AntPathMatcher matcher = new AntPathMatcher();
+
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(HEADER) == null) {
+            return true;
+        }
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        for (String[] metodoRuta : RUTAS) {
+            if (metodoRuta[0].equals(request.getMethod()) && matcher.match(metodoRuta[1], ruta)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String header = request.getHeader(HEADER);
+        if (header.isBlank() || header.length() > MAX_LARGO_CLAVE) {
+            error(response, HttpStatus.BAD_REQUEST, HEADER + " debe tener entre 1 y " + MAX_LARGO_CLAVE + " caracteres");
+            return;
+        }
+
+        // El cuerpo se lee una vez para la huella y se vuelve a entregar al controlador
+        byte[] cuerpo = request.getInputStream().readAllBytes();
+        Object userId = request.getAttribute("userId");
+        byte[] clave = sha256(String.valueOf(userId).getBytes(StandardCharsets.UTF_8), header.getBytes(StandardCharsets.UTF_8));
+        byte[] huella = sha256(
+            (request.getMethod() + " " + request.getRequestURI() + "?" + request.getQueryString()).getBytes(StandardCharsets.UTF_8),
+            cuerpo);
+
+        IdempotenciaService.ResultadoReclamo reclamo = idempotenciaService.reclamar(clave, huella);
+        switch (reclamo.tipo()) {
+            case REPETIDA -> {
+                IdempotenciaService.Respuesta guardada = reclamo.respuesta();
+                response.setStatus(guardada.estado());
+                response.setHeader("Idempotent-Replayed", "true");
+                if (guardada.tipoContenido() != null) {
+                    response.setContentType(guardada.tipoContenido());
+                }
+                if (guardada.cuerpo() != null) {
+                    response.setContentLength(guardada.cuerpo().length);
+                    response.getOutputStream().write(guardada.cuerpo());
+                }
+            }
+            case EN_CURSO -> error(response, HttpStatus.CONFLICT,
+                "Una petición con el mismo " + HEADER + " todavía se está procesando");
+            case CONFLICTO -> error(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                HEADER + " ya se usó con una petición distinta");
+            case NUEVA -> ejecutar(new CuerpoRepetible(request, cuerpo), response, filterChain, clave, huella);
+        }
+    }
+
+    private void ejecutar(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+                          byte[] clave, byte[] huella) throws ServletException, IOException {
+        ContentCachingResponseWrapper respuesta = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, respuesta);
+        } catch (ServletException | IOException | RuntimeException e) {
+            idempotenciaService.liberar(clave);
+            throw e;
+        }
+
+        // La escritura ya se confirmó: pase lo que pase al guardar, el cliente recibe su respuesta
+        try {
+            if (respuesta.getStatus() >= 500) {
+                idempotenciaService.liberar(clave);
+            } else {
+                guardar(clave, huella, respuesta);
+            }
+        } finally {
+            respuesta.copyBodyToResponse();
+        }
+    }
+
+    // Si la respuesta completa no se puede guardar (cuerpo demasiado grande, error de la base), se
+    // guarda al menos el estado: un reintento recibe ese estado sin cuerpo en lugar de ejecutar de nuevo
+    private void guardar(byte[] clave, byte[] huella, ContentCachingResponseWrapper respuesta) {
+        byte[] cuerpo = respuesta.getContentAsByteArray();
+        try {
+            if (cuerpo.length <= MAX_CUERPO_GUARDADO) {
+                idempotenciaService.completar(clave, new IdempotenciaService.Respuesta(
+                    huella, respuesta.getStatus(), respuesta.getContentType(), cuerpo));
+                return;
+            }
+            log.warn("Respuesta de {} bytes demasiado grande para guardarla con su {}; se guarda solo el estado", cuerpo.length, HEADER);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo guardar la respuesta con su {}; se intenta guardar solo el estado", HEADER, e);
+        }
+        try {
+            idempotenciaService.completar(clave, new IdempotenciaService.Respuesta(huella, respuesta.getStatus(), null, null));
+        } catch (RuntimeException e) {
+            log.error("No se pudo guardar el estado de una petición con {}; la clave queda en curso", HEADER, e);
+        }
+    }
+
+    private void error(HttpServletResponse response, HttpStatus estado, String mensaje) throws IOException {
+        response.setStatus(estado.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", mensaje));
+    }
+
+    private static byte[] sha256(byte[] primero, byte[] segundo) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(primero);
+            digest.update((byte) 0);
+            digest.update(segundo);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Petición cuyo cuerpo ya se leyó: lo entrega de nuevo desde memoria
+    private static final class CuerpoRepetible extends HttpServletRequestWrapper {
+
+        private final byte[] cuerpo;
+
+        CuerpoRepetible(HttpServletRequest request, byte[] cuerpo) {
+            super(request);
+            this.cuerpo = cuerpo;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream entrada = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return entrada.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return entrada.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return entrada.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // El cuerpo ya está completo en memoria: todo está disponible de inmediato
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String charset = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(charset)));
+        }
+    }
+}
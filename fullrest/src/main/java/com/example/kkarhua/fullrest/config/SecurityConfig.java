@@ -45,6 +45,10 @@ public class SecurityConfig {
                 // Imágenes públicas
                 .requestMatchers("/uploads/**", "/api/imagenes/**").permitAll()
                 
+                // Exportación completa del catálogo - solo vendedores y admin
+                .requestMatchers(HttpMethod.GET, "/api/productos/export").hasAnyRole("VENDEDOR", "SUPER-ADMIN")
+                .requestMatchers(HttpMethod.GET, "/api/productos/import/**").hasAnyRole("VENDEDOR", "SUPER-ADMIN")
+
                 // Productos - lectura pública
                 .requestMatchers(HttpMethod.GET, "/api/productos/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/categorias/**").permitAll()
@@ -59,6 +63,19 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.PUT, "/api/categorias/**").hasAnyRole("VENDEDOR", "SUPER-ADMIN")
                 .requestMatchers(HttpMethod.DELETE, "/api/categorias/**").hasAnyRole("VENDEDOR", "SUPER-ADMIN")
                 
+                // Reservas de stock del checkout - cualquier usuario autenticado
+                .requestMatchers("/api/stock/reservas/**").authenticated()
+
+                // Compras - el POST heredado acepta totales del cliente: solo super-admin (el resto usa /checkout)
+                .requestMatchers(HttpMethod.POST, "/api/compras").hasRole("SUPER-ADMIN")
+
+                // Compras - ventas por producto, acumulados y backfill de líneas
+                .requestMatchers("/api/compras/ventas/**").hasAnyRole("VENDEDOR", "SUPER-ADMIN")
+                .requestMatchers("/api/compras/items/**").hasRole("SUPER-ADMIN")
+                .requestMatchers("/api/compras/archivo").hasRole("SUPER-ADMIN")
+                .requestMatchers("/api/compras/stats/ventas").hasAnyRole("VENDEDOR", "SUPER-ADMIN")
+                .requestMatchers("/api/compras/stats/reconstruir").hasRole("SUPER-ADMIN")
+
                 // Stock - solo para vendedores y admin
                 .requestMatchers("/api/stock/**").hasAnyRole("VENDEDOR", "SUPER-ADMIN")
                 
@@ -0,0 +1,5 @@
+package com.example.kkarhua.fullrest.dto;
+
+// Línea de un ajuste por lote: delta positivo suma stock, negativo lo descuenta
+public record AjusteStockDTO(Long productoId, Integer delta) {
+}
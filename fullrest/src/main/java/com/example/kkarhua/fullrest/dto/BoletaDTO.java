@@ -0,0 +1,12 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Compra creada por el checkout, con los montos calculados en el servidor
+public record BoletaDTO(Long compraId, LocalDateTime fechaCompra, String estado,
+                        int subtotal, int iva, int total, List<Linea> lineas) {
+
+    public record Linea(Long productoId, String nombre, int precio, int cantidad) {
+    }
+}
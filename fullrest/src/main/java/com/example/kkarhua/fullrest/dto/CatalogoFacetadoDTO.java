@@ -0,0 +1,5 @@
+package com.example.kkarhua.fullrest.dto;
+
+// Respuesta de la navegación facetada: página de productos filtrados más los conteos
+public record CatalogoFacetadoDTO(PaginaCursor<ProductoDTO> productos, FacetasDTO facetas) {
+}
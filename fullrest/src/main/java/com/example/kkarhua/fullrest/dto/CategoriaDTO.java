@@ -0,0 +1,15 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Vista de solo lectura de una categoría, construida directamente desde JPQL.
+// fechaActualizacion se omite cuando la categoría va anidada dentro de un producto.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CategoriaDTO(Long id, String nombre, LocalDateTime fechaActualizacion) {
+
+    public CategoriaDTO(Long id, String nombre) {
+        this(id, nombre, null);
+    }
+}
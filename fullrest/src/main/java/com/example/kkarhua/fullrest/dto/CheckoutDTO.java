@@ -0,0 +1,11 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.util.List;
+
+// Pedido de checkout: el cliente solo envía qué productos y cuántos; precios, IVA y totales
+// se calculan en el servidor. Las reservas indicadas se suman al carrito.
+public record CheckoutDTO(Long envioId, List<Item> items, List<Long> reservas) {
+
+    public record Item(Long productoId, Integer cantidad) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.time.LocalDateTime;
+
+// Cabecera de una compra para los listados: sin detalleProductos ni usuario/envío completos.
+// El detalle se obtiene con GET /api/compras/{id}.
+public record CompraResumenDTO(Long id, Long usuarioId, Long envioId, Integer subtotal, Integer iva,
+                               Integer total, LocalDateTime fechaCompra, String estado) {
+}
@@ -0,0 +1,11 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Resultado de comparar el libro de movimientos con producto.stock
+public record ConciliacionStockDTO(LocalDateTime fecha, List<Diferencia> diferencias) {
+
+    public record Diferencia(Long productoId, int stockProducto, long stockLibro) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Progreso de una importación masiva de productos. Lo actualiza el hilo que importa
+// y se consulta mientras tanto desde GET /api/productos/import/{id}.
+// También informa el backfill de líneas de compra (GET /api/compras/items/backfill).
+public class EstadoImportacion {
+
+    private static final int MAX_ERRORES = 1000;
+
+    public record ErrorFila(long linea, String error) {
+    }
+
+    private final String id;
+    private final String archivo;
+    private final LocalDateTime inicio = LocalDateTime.now();
+    private volatile LocalDateTime fin;
+    private volatile String estado = "pendiente";    // pendiente, en_proceso, completada, fallida
+    private volatile String mensaje;
+
+    private final AtomicLong procesadas = new AtomicLong();
+    private final AtomicLong guardadas = new AtomicLong();
+    private final AtomicLong conError = new AtomicLong();
+    private final List<ErrorFila> errores = Collections.synchronizedList(new ArrayList<>());
+
+    public EstadoImportacion(String id, String archivo) {
+        this.id = id;
+        this.archivo = archivo;
+    }
+
+    public void iniciar() {
+        estado = "en_proceso";
+    }
+
+    public void terminar(String estadoFinal, String mensajeFinal) {
+        mensaje = mensajeFinal;
+        fin = LocalDateTime.now();
+        estado = estadoFinal;
+    }
+
+    public void sumarProcesadas(long cantidad) {
+        procesadas.addAndGet(cantidad);
+    }
+
+    public void sumarGuardadas(long cantidad) {
+        guardadas.addAndGet(cantidad);
+    }
+
+    // Solo se conservan los primeros errores para acotar la memoria; el total se cuenta igual
+    public void agregarError(long linea, String error) {
+        conError.incrementAndGet();
+        if (errores.size() < MAX_ERRORES) {
+            errores.add(new ErrorFila(linea, error));
+        }
+    }
+
+    public boolean isTerminada() {
+        return fin != null;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getArchivo() {
+        return archivo;
+    }
+
+    public LocalDateTime getInicio() {
+        return inicio;
+    }
+
+    public LocalDateTime getFin() {
+        return fin;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public long getProcesadas() {
+        return procesadas.get();
+    }
+
+    public long getGuardadas() {
+        return guardadas.get();
+    }
+
+    public long getConError() {
+        return conError.get();
+    }
+
+    public List<ErrorFila> getErrores() {
+        synchronized (errores) {
+            return new ArrayList<>(errores);
+        }
+    }
+}
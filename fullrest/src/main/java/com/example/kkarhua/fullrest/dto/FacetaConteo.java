@@ -0,0 +1,5 @@
+package com.example.kkarhua.fullrest.dto;
+
+// Cantidad de productos para un valor de faceta (categoría, rango de precio o estado)
+public record FacetaConteo(String valor, String etiqueta, long cantidad) {
+}
@@ -0,0 +1,9 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.util.List;
+
+// Conteos por faceta. Cada faceta se cuenta aplicando los filtros de las otras dos,
+// así el cliente sabe cuántos productos obtendría al cambiar solo ese filtro.
+public record FacetasDTO(List<FacetaConteo> categorias, List<FacetaConteo> rangosPrecio,
+                         List<FacetaConteo> estados, long total) {
+}
@@ -0,0 +1,8 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.util.List;
+
+// Página de resultados paginada por cursor (keyset).
+// siguienteCursor es null cuando no quedan más elementos.
+public record PaginaCursor<T>(List<T> items, String siguienteCursor, int size) {
+}
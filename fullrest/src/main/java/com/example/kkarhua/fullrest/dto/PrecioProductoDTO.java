@@ -0,0 +1,5 @@
+package com.example.kkarhua.fullrest.dto;
+
+// Columnas que el checkout necesita para valorizar una línea
+public record PrecioProductoDTO(Long id, String nombre, int precio) {
+}
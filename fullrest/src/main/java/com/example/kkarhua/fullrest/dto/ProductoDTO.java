@@ -0,0 +1,31 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+// Vista de solo lectura de un producto para listados y detalle.
+// Mantiene la misma forma JSON que la entidad Producto (categoria anidada).
+// categoriaActualizacion no se serializa: solo entra en la validación de caché HTTP.
+public record ProductoDTO(Long id, String nombre, String descripcion, int precio, int stock,
+                          CategoriaDTO categoria, String imagen, String estado,
+                          LocalDateTime fechaCreacion, LocalDateTime fechaActualizacion,
+                          @JsonIgnore LocalDateTime categoriaActualizacion) {
+
+    // Constructor usado por las consultas "select new" con la categoría en columnas planas
+    public ProductoDTO(Long id, String nombre, String descripcion, int precio, int stock,
+                       Long categoriaId, String categoriaNombre, String imagen, String estado,
+                       LocalDateTime fechaCreacion, LocalDateTime fechaActualizacion,
+                       LocalDateTime categoriaActualizacion) {
+        this(id, nombre, descripcion, precio, stock,
+             categoriaId != null ? new CategoriaDTO(categoriaId, categoriaNombre) : null,
+             imagen, estado, fechaCreacion, fechaActualizacion, categoriaActualizacion);
+    }
+
+    // Fecha usada para validar caché HTTP (filas antiguas pueden no tener fechaActualizacion).
+    // Renombrar la categoría cambia el JSON del producto, así que también cuenta su fecha
+    public LocalDateTime ultimaModificacion() {
+        return VersionCatalogoDTO.masReciente(fechaActualizacion != null ? fechaActualizacion : fechaCreacion,
+                                              categoriaActualizacion);
+    }
+}
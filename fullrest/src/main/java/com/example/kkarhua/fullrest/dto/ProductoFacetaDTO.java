@@ -0,0 +1,5 @@
+package com.example.kkarhua.fullrest.dto;
+
+// Columnas mínimas de un producto para mantener los conteos de facetas
+public record ProductoFacetaDTO(Long id, Long categoriaId, int precio, String estado) {
+}
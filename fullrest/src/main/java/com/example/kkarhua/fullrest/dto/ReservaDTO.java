@@ -0,0 +1,6 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.time.Instant;
+
+public record ReservaDTO(Long id, Long productoId, int cantidad, Instant expiraEn) {
+}
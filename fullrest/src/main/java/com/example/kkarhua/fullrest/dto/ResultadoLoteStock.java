@@ -0,0 +1,14 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Resultado de un ajuste por lote. Si aplicado es false no se guardó ninguna línea;
+// las líneas que sí podían aplicarse se informan como REVERTIDO.
+public record ResultadoLoteStock(boolean aplicado, List<Linea> lineas) {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Linea(Long productoId, int delta, ResultadoStock.Tipo resultado, Integer stockActual, String estado) {
+    }
+}
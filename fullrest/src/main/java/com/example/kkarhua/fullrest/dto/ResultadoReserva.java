@@ -0,0 +1,9 @@
+package com.example.kkarhua.fullrest.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Resultado de pedir una reserva. disponible es el stock libre (stock menos reservas activas)
+// al momento de la operación; reserva es null si no se pudo reservar.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ResultadoReserva(ResultadoStock.Tipo tipo, ReservaDTO reserva, Integer disponible) {
+}
@@ -0,0 +1,26 @@
+package com.example.kkarhua.fullrest.dto;
+
+// Resultado de una operación de stock. stock es el estado después de la operación
+// (o el actual si no se pudo aplicar) y es null cuando el producto no existe.
+public record ResultadoStock(Tipo tipo, int stockAnterior, StockDTO stock) {
+
+    public enum Tipo {
+        OK,
+        NO_ENCONTRADO,
+        STOCK_INSUFICIENTE,
+        REVERTIDO,
+        LIMITE_EXCEDIDO     // solo reservas: el usuario superó sus topes de reservas o unidades
+    }
+
+    public static ResultadoStock ok(int stockAnterior, StockDTO stock) {
+        return new ResultadoStock(Tipo.OK, stockAnterior, stock);
+    }
+
+    public static ResultadoStock noEncontrado() {
+        return new ResultadoStock(Tipo.NO_ENCONTRADO, 0, null);
+    }
+
+    public static ResultadoStock stockInsuficiente(StockDTO stock) {
+        return new ResultadoStock(Tipo.STOCK_INSUFICIENTE, stock.stock(), stock);
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.kkarhua.fullrest.dto;
+
+// Columnas de stock de un producto, leídas con una proyección angosta
+public record StockDTO(Long productoId, String nombre, int stock, String estado) {
+}
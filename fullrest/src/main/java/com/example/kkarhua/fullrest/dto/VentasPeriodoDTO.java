@@ -0,0 +1,15 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Ventas de un día (hora null) o de una hora de un día, para un estado
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record VentasPeriodoDTO(LocalDate fecha, Integer hora, String estado,
+                               long compras, long subtotal, long iva, long total) {
+
+    public VentasPeriodoDTO(LocalDate fecha, String estado, long compras, long subtotal, long iva, long total) {
+        this(fecha, null, estado, compras, subtotal, iva, total);
+    }
+}
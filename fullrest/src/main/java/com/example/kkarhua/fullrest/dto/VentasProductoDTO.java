@@ -0,0 +1,5 @@
+package com.example.kkarhua.fullrest.dto;
+
+// Unidades vendidas, monto (con IVA) y número de compras de un producto en un rango
+public record VentasProductoDTO(long unidades, long monto, long compras) {
+}
@@ -0,0 +1,43 @@
+package com.example.kkarhua.fullrest.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.springframework.util.DigestUtils;
+
+// Versión de una colección calculada con una consulta agregada barata (count + max fecha).
+// Si no cambió, el listado completo tampoco cambió y se puede responder 304.
+public record VersionCatalogoDTO(long total, LocalDateTime ultimaModificacion) {
+
+    // Versión de una colección que además muestra datos de otra tabla (productos con el nombre
+    // de su categoría): vale la modificación más reciente de las dos
+    public VersionCatalogoDTO(long total, LocalDateTime ultimaModificacion, LocalDateTime ultimaModificacionRelacionada) {
+        this(total, masReciente(ultimaModificacion, ultimaModificacionRelacionada));
+    }
+
+    public long ultimaModificacionMillis() {
+        return ultimaModificacion == null ? -1 : ultimaModificacion.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // ETag fuerte: mismo recurso, mismos parámetros y misma versión => misma representación
+    public String etag(String recurso, Object... parametros) {
+        StringBuilder base = new StringBuilder(recurso).append('|').append(total).append('|').append(ultimaModificacion);
+        for (Object parametro : parametros) {
+            base.append('|').append(parametro);
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(base.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // Versión de un único elemento
+    public static VersionCatalogoDTO deElemento(LocalDateTime ultimaModificacion) {
+        return new VersionCatalogoDTO(1, ultimaModificacion);
+    }
+
+    public static LocalDateTime masReciente(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b == null) {
+            return a != null ? a : b;
+        }
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -3,6 +3,7 @@ package com.example.kkarhua.fullrest.entities;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "categorias")
@@ -17,6 +18,8 @@ public class Categoria {
     @Column(nullable = false, unique = true, length = 50)
     private String nombre;
 
+    private LocalDateTime fechaActualizacion;
+
     public Categoria() {
     }
 
@@ -25,6 +28,12 @@ public class Categoria {
         this.nombre = nombre;
     }
 
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.fechaActualizacion = LocalDateTime.now();
+    }
+
     // Getters y Setters
     public Long getId() {
         return id;
@@ -42,6 +51,14 @@ public class Categoria {
         this.nombre = nombre;
     }
 
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) {
+        this.fechaActualizacion = fechaActualizacion;
+    }
+
     @Override
     public String toString() {
         return "Categoria [id=" + id + ", nombre=" + nombre + "]";
@@ -0,0 +1,32 @@
+package com.example.kkarhua.fullrest.entities;
+
+import jakarta.persistence.*;
+
+// Última secuencia del registro de inventario caliente ya aplicada a producto.stock.
+// Se actualiza en la misma transacción que el volcado, así la recuperación no aplica dos veces un movimiento.
+@Entity
+@Table(name = "inventario_checkpoint")
+public class CheckpointInventario {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private long secuencia;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    public void setSecuencia(long secuencia) {
+        this.secuencia = secuencia;
+    }
+}
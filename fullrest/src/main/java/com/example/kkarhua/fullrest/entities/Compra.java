@@ -5,7 +5,10 @@ import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Entity
-@Table(name = "compras")
+@Table(name = "compras", indexes = {
+    @Index(name = "idx_compras_usuario_fecha", columnList = "usuario_id, fechaCompra"),
+    @Index(name = "idx_compras_fecha", columnList = "fechaCompra, id")
+})
 public class Compra {
 
     @Id
@@ -0,0 +1,78 @@
+package com.example.kkarhua.fullrest.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Cabecera de una compra movida a los segmentos de archivo (CompraArchivoService). La fila completa,
+// con el detalle de productos, vive en el segmento del mes (segmento = "AAAA-MM"); aquí queda solo
+// lo necesario para listar el historial y ubicar el segmento, sin el LONGTEXT del detalle.
+@Entity
+@Table(name = "compra_archivada", indexes = {
+    @Index(name = "idx_compra_archivada_usuario_fecha", columnList = "usuarioId, fechaCompra"),
+    @Index(name = "idx_compra_archivada_fecha", columnList = "fechaCompra, id")
+})
+public class CompraArchivada {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long usuarioId;
+
+    @Column(nullable = false)
+    private Long envioId;
+
+    @Column(nullable = false)
+    private Integer subtotal;
+
+    @Column(nullable = false)
+    private Integer iva;
+
+    @Column(nullable = false)
+    private Integer total;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaCompra;
+
+    @Column(nullable = false)
+    private String estado;
+
+    @Column(nullable = false, length = 7)
+    private String segmento;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUsuarioId() {
+        return usuarioId;
+    }
+
+    public Long getEnvioId() {
+        return envioId;
+    }
+
+    public Integer getSubtotal() {
+        return subtotal;
+    }
+
+    public Integer getIva() {
+        return iva;
+    }
+
+    public Integer getTotal() {
+        return total;
+    }
+
+    public LocalDateTime getFechaCompra() {
+        return fechaCompra;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public String getSegmento() {
+        return segmento;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.kkarhua.fullrest.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Línea de una compra, normalizada desde Compra.detalleProductos para consultar ventas por producto
+// sin leer ni parsear los blobs. Se escribe por JDBC al guardar la compra; fechaCompra se copia de
+// la cabecera para que las consultas por producto y rango de fechas se resuelvan con el índice.
+@Entity
+@Table(name = "compra_item", indexes = {
+    @Index(name = "idx_compra_item_compra", columnList = "compraId"),
+    @Index(name = "idx_compra_item_producto_fecha", columnList = "productoId, fechaCompra")
+})
+public class CompraItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long compraId;
+
+    @Column(nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false)
+    private int cantidad;
+
+    @Column(nullable = false)
+    private int precioUnitario;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaCompra;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getCompraId() {
+        return compraId;
+    }
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public int getPrecioUnitario() {
+        return precioUnitario;
+    }
+
+    public LocalDateTime getFechaCompra() {
+        return fechaCompra;
+    }
+}
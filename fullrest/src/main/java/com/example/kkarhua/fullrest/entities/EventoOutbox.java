@@ -0,0 +1,65 @@
+package com.example.kkarhua.fullrest.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Trabajo pendiente posterior a una compra (outbox transaccional). La fila se inserta en la misma
+// transacción que la compra y la borra el worker cuando su manejador termina; disponibleEn marca
+// cuándo puede tomarse (al reclamarla se corre como arriendo, al fallar como espera del reintento).
+// muerto marca los eventos que agotaron sus intentos: quedan en la tabla pero ya no se reclaman.
+@Entity
+@Table(name = "outbox_evento", indexes = {
+    @Index(name = "idx_outbox_pendiente", columnList = "muerto, disponibleEn, id")
+})
+public class EventoOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 40)
+    private String tipo;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(nullable = false)
+    private int intentos;
+
+    @Column(nullable = false)
+    private LocalDateTime disponibleEn;
+
+    @Column(nullable = false)
+    private boolean muerto;
+
+    @Column(nullable = false)
+    private LocalDateTime creado;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public int getIntentos() {
+        return intentos;
+    }
+
+    public LocalDateTime getDisponibleEn() {
+        return disponibleEn;
+    }
+
+    public boolean isMuerto() {
+        return muerto;
+    }
+
+    public LocalDateTime getCreado() {
+        return creado;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.kkarhua.fullrest.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Respuesta guardada de una petición con Idempotency-Key. La clave es el SHA-256 de (usuario, header)
+// y la huella el SHA-256 de método, ruta y cuerpo; ambas en BINARY(32) para que la tabla sea compacta.
+// estado 0 = la petición original sigue en curso. Se lee y escribe por JDBC en IdempotenciaService.
+@Entity
+@Table(name = "idempotencia", indexes = {
+    @Index(name = "idx_idempotencia_expira", columnList = "expira")
+})
+public class Idempotencia {
+
+    @Id
+    @Column(columnDefinition = "binary(32)")
+    private byte[] clave;
+
+    @Column(nullable = false, columnDefinition = "binary(32)")
+    private byte[] huella;
+
+    @Column(nullable = false)
+    private int estado;
+
+    @Column(length = 100)
+    private String tipoContenido;
+
+    @Column(columnDefinition = "mediumblob")
+    private byte[] cuerpo;
+
+    @Column(nullable = false)
+    private LocalDateTime creada;
+
+    @Column(nullable = false)
+    private LocalDateTime expira;
+
+    public byte[] getClave() {
+        return clave;
+    }
+
+    public byte[] getHuella() {
+        return huella;
+    }
+
+    public int getEstado() {
+        return estado;
+    }
+
+    public String getTipoContenido() {
+        return tipoContenido;
+    }
+
+    public byte[] getCuerpo() {
+        return cuerpo;
+    }
+
+    public LocalDateTime getCreada() {
+        return creada;
+    }
+
+    public LocalDateTime getExpira() {
+        return expira;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.kkarhua.fullrest.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Libro de movimientos de stock, de solo anexado: las filas nunca se modifican ni se borran.
+// delta es el cambio con signo, salvo en ESTABLECIDO, donde guarda el stock absoluto que quedó:
+// ese movimiento reinicia la suma, así que un ajuste absoluto no necesita leer el stock anterior.
+@Entity
+@Table(name = "movimiento_stock", indexes = {
+    @Index(name = "idx_movimiento_producto_id", columnList = "productoId, id"),
+    @Index(name = "idx_movimiento_producto_fecha", columnList = "productoId, fecha")
+})
+public class MovimientoStock {
+
+    public enum Tipo {
+        APERTURA,       // stock inicial al crear el producto
+        AUMENTO,
+        DESCUENTO,
+        AJUSTE,         // diferencia de un ajuste absoluto con el stock anterior (inventario caliente y filas previas a ESTABLECIDO)
+        ESTABLECIDO,    // stock establecido a un valor absoluto: delta es el valor nuevo
+        VOLCADO         // corrección del volcado del inventario caliente: deriva o compensación de un lote anterior
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long productoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Tipo tipo;
+
+    @Column(nullable = false)
+    private int delta;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+}
@@ -4,6 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_producto_precio_id", columnList = "precio, id"),
+    @Index(name = "idx_producto_fecha_actualizacion", columnList = "fechaActualizacion")
+})
 public class Producto {
 
     @Id
@@ -22,6 +26,12 @@ public class Producto {
     private String imagen;
     private String estado;
     private LocalDateTime fechaCreacion;
+    private LocalDateTime fechaActualizacion;
+
+    // Bloqueo optimista: un UPDATE con una versión vieja falla en vez de pisar el cambio de otro
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
 
     public Producto() {
     }
@@ -41,11 +51,17 @@ public class Producto {
     @PrePersist
     protected void onCreate() {
         this.fechaCreacion = LocalDateTime.now();
+        this.fechaActualizacion = this.fechaCreacion;
         if (this.estado == null || this.estado.isEmpty()) {
             this.estado = "activo";
         }
     }
 
+    @PreUpdate
+    protected void onUpdate() {
+        this.fechaActualizacion = LocalDateTime.now();
+    }
+
     // Getters y Setters
     public Long getId() {
         return id;
@@ -119,6 +135,14 @@ public class Producto {
         this.fechaCreacion = fechaCreacion;
     }
 
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) {
+        this.fechaActualizacion = fechaActualizacion;
+    }
+
     @Override
     public String toString() {
         return "Producto [id=" + id + ", nombre=" + nombre + ", descripcion=" + descripcion + 
@@ -126,4 +150,12 @@ public class Producto {
                ", categoria=" + (categoria != null ? categoria.getNombre() : "Sin categoría") + 
                ", imagen=" + imagen + ", estado=" + estado + ", fechaCreacion=" + fechaCreacion + "]";
     }
-}
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.kkarhua.fullrest.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Foto del stock de un producto que resume el libro de movimientos hasta ultimoMovimientoId.
+// El stock en una fecha es la última foto anterior más los deltas posteriores a ella.
+@Entity
+@Table(name = "snapshot_stock", indexes = {
+    @Index(name = "idx_snapshot_producto_fecha", columnList = "productoId, fecha")
+})
+public class SnapshotStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false)
+    private int stock;
+
+    @Column(nullable = false)
+    private long ultimoMovimientoId;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public long getUltimoMovimientoId() {
+        return ultimoMovimientoId;
+    }
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.kkarhua.fullrest.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+// Acumulado de compras por día y estado, mantenido desde el outbox (evento RESUMEN_VENTAS) después de cada compra.
+// Cada (fecha, estado) se reparte en franjas para que compras simultáneas no esperen por la
+// misma fila; las consultas suman las franjas.
+@Entity
+@Table(name = "venta_diaria", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_venta_diaria", columnNames = {"fecha", "estado", "franja"})
+})
+public class VentaDiaria {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Column(nullable = false, length = 20)
+    private String estado;
+
+    @Column(nullable = false)
+    private int franja;
+
+    @Column(nullable = false)
+    private long compras;
+
+    @Column(nullable = false)
+    private long subtotal;
+
+    @Column(nullable = false)
+    private long iva;
+
+    @Column(nullable = false)
+    private long total;
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public int getFranja() {
+        return franja;
+    }
+
+    public long getCompras() {
+        return compras;
+    }
+
+    public long getSubtotal() {
+        return subtotal;
+    }
+
+    public long getIva() {
+        return iva;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
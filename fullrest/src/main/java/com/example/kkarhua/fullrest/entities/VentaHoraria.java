@@ -0,0 +1,76 @@
+package com.example.kkarhua.fullrest.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+// Acumulado de compras por hora (0-23) y estado; misma estructura que VentaDiaria
+@Entity
+@Table(name = "venta_horaria", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_venta_horaria", columnNames = {"fecha", "hora", "estado", "franja"})
+})
+public class VentaHoraria {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Column(nullable = false)
+    private int hora;
+
+    @Column(nullable = false, length = 20)
+    private String estado;
+
+    @Column(nullable = false)
+    private int franja;
+
+    @Column(nullable = false)
+    private long compras;
+
+    @Column(nullable = false)
+    private long subtotal;
+
+    @Column(nullable = false)
+    private long iva;
+
+    @Column(nullable = false)
+    private long total;
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public int getHora() {
+        return hora;
+    }
+
+    public String getEstado() {
+        return estado;
+    }
+
+    public int getFranja() {
+        return franja;
+    }
+
+    public long getCompras() {
+        return compras;
+    }
+
+    public long getSubtotal() {
+        return subtotal;
+    }
+
+    public long getIva() {
+        return iva;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
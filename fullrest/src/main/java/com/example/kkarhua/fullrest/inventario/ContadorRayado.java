@@ -0,0 +1,144 @@
+package com.example.kkarhua.fullrest.inventario;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Contador de stock repartido en franjas (al estilo de LongAdder) que nunca baja de cero.
+// El stock total se divide entre las franjas y cada hilo descuenta primero de la suya con un
+// CAS, así que los descuentos concurrentes casi nunca compiten por la misma línea de caché.
+// Si su franja no alcanza, junta unidades de las demás bajo un lock (camino lento) y, si aun
+// así no alcanza, las devuelve: ninguna franja queda negativa y el total tampoco.
+public class ContadorRayado {
+
+    // Una franja cada 16 ints (64 bytes) para que dos franjas no compartan línea de caché
+    private static final int SEPARACION = 16;
+
+    private final AtomicIntegerArray celdas;
+    private final int mascara;
+    private final Object lockLento = new Object();
+
+    // Veces que un descuento tuvo que recurrir al camino lento; se modifica bajo lockLento
+    private long restasLentas;
+
+    public ContadorRayado(int franjas, int inicial) {
+        if (franjas <= 0 || Integer.bitCount(franjas) != 1) {
+            throw new IllegalArgumentException("franjas debe ser una potencia de 2");
+        }
+        if (inicial < 0) {
+            throw new IllegalArgumentException("El stock inicial no puede ser negativo");
+        }
+        this.celdas = new AtomicIntegerArray(franjas * SEPARACION);
+        this.mascara = franjas - 1;
+        repartir(inicial);
+    }
+
+    public boolean intentarRestar(int cantidad) {
+        int propia = franjaPropia();
+        int valor = celdas.get(propia);
+        while (valor >= cantidad) {
+            if (celdas.compareAndSet(propia, valor, valor - cantidad)) {
+                return true;
+            }
+            valor = celdas.get(propia);
+        }
+        return restarLento(cantidad);
+    }
+
+    // Resta solo si el total queda en al menos minimo (el stock reservado). Comparar contra el total
+    // obliga a leer todas las franjas, así que con minimo > 0 se va directo al camino lento
+    public boolean intentarRestar(int cantidad, int minimo) {
+        if (minimo <= 0) {
+            return intentarRestar(cantidad);
+        }
+        synchronized (lockLento) {
+            return total() - cantidad >= minimo && restarLento(cantidad);
+        }
+    }
+
+    public void sumar(int cantidad) {
+        celdas.getAndAdd(franjaPropia(), cantidad);
+    }
+
+    public int total() {
+        int total = 0;
+        for (int i = 0; i <= mascara; i++) {
+            total += celdas.get(i * SEPARACION);
+        }
+        return total;
+    }
+
+    // Deja el contador en un valor absoluto y devuelve la diferencia con el valor que tenía
+    public int establecer(int nuevo) {
+        synchronized (lockLento) {
+            return nuevo - repartir(nuevo);
+        }
+    }
+
+    // Baja el total a maximo si lo supera y devuelve lo que restó (0 si ya estaba por debajo).
+    // A diferencia de establecer(), nunca suma: un descuento concurrente por el camino rápido solo
+    // hace que la resta se reintente con el total nuevo
+    public int reducirA(int maximo) {
+        synchronized (lockLento) {
+            while (true) {
+                int exceso = total() - maximo;
+                if (exceso <= 0) {
+                    return 0;
+                }
+                if (restarLento(exceso)) {
+                    return exceso;
+                }
+            }
+        }
+    }
+
+    public long restasLentas() {
+        synchronized (lockLento) {
+            return restasLentas;
+        }
+    }
+
+    // Reparte total en partes iguales entre las franjas (el resto, de a una unidad en las primeras)
+    // para que cada hilo encuentre stock en la suya. Devuelve la suma de lo que había antes
+    private int repartir(int total) {
+        int franjas = mascara + 1;
+        int anterior = 0;
+        for (int i = 0; i < franjas; i++) {
+            int parte = total / franjas + (i < total % franjas ? 1 : 0);
+            anterior += celdas.getAndSet(i * SEPARACION, parte);
+        }
+        return anterior;
+    }
+
+    private boolean restarLento(int cantidad) {
+        synchronized (lockLento) {
+            restasLentas++;
+            int[] tomado = new int[mascara + 1];
+            int restante = cantidad;
+            for (int i = 0; i <= mascara && restante > 0; i++) {
+                int indice = i * SEPARACION;
+                int valor = celdas.get(indice);
+                while (valor > 0) {
+                    int parte = Math.min(valor, restante);
+                    if (celdas.compareAndSet(indice, valor, valor - parte)) {
+                        tomado[i] = parte;
+                        restante -= parte;
+                        break;
+                    }
+                    valor = celdas.get(indice);
+                }
+            }
+            if (restante == 0) {
+                return true;
+            }
+            for (int i = 0; i <= mascara; i++) {
+                if (tomado[i] > 0) {
+                    celdas.getAndAdd(i * SEPARACION, tomado[i]);
+                }
+            }
+            return false;
+        }
+    }
+
+    private int franjaPropia() {
+        return ((int) Thread.currentThread().threadId() & mascara) * SEPARACION;
+    }
+}
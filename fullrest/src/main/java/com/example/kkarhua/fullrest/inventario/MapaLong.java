@@ -0,0 +1,126 @@
+package com.example.kkarhua.fullrest.inventario;
+
+import java.util.Objects;
+
+// Mapa de claves long a objetos con direccionamiento abierto (sondeo lineal).
+// Las claves se guardan en un long[] sin boxing y no se crea un nodo por entrada;
+// get, put y remove son O(1) esperado. No es thread-safe: el llamador sincroniza.
+public class MapaLong<V> {
+
+    private static final int CAPACIDAD_MINIMA = 16;
+
+    private long[] claves;
+    private Object[] valores;
+    private int tamano;
+    private int umbral;
+
+    public MapaLong() {
+        this(CAPACIDAD_MINIMA);
+    }
+
+    public MapaLong(int capacidadEsperada) {
+        int capacidad = CAPACIDAD_MINIMA;
+        while (capacidad < capacidadEsperada * 2) {
+            capacidad <<= 1;
+        }
+        asignar(capacidad);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long clave) {
+        int mascara = claves.length - 1;
+        for (int i = indice(clave, mascara); valores[i] != null; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                return (V) valores[i];
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long clave, V valor) {
+        Objects.requireNonNull(valor, "valor");
+        int mascara = claves.length - 1;
+        int i = indice(clave, mascara);
+        while (valores[i] != null) {
+            if (claves[i] == clave) {
+                V anterior = (V) valores[i];
+                valores[i] = valor;
+                return anterior;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = clave;
+        valores[i] = valor;
+        if (++tamano > umbral) {
+            redimensionar();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long clave) {
+        int mascara = claves.length - 1;
+        for (int i = indice(clave, mascara); valores[i] != null; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                V anterior = (V) valores[i];
+                eliminarEn(i, mascara);
+                tamano--;
+                return anterior;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return tamano;
+    }
+
+    public boolean isEmpty() {
+        return tamano == 0;
+    }
+
+    // Borrado con desplazamiento hacia atrás: en vez de dejar lápidas se adelantan
+    // las entradas siguientes de la cadena cuyo lugar ideal está antes del hueco
+    private void eliminarEn(int hueco, int mascara) {
+        valores[hueco] = null;
+        for (int i = (hueco + 1) & mascara; valores[i] != null; i = (i + 1) & mascara) {
+            int ideal = indice(claves[i], mascara);
+            if (((i - ideal) & mascara) >= ((i - hueco) & mascara)) {
+                claves[hueco] = claves[i];
+                valores[hueco] = valores[i];
+                valores[i] = null;
+                hueco = i;
+            }
+        }
+    }
+
+    private void redimensionar() {
+        long[] clavesAnteriores = claves;
+        Object[] valoresAnteriores = valores;
+        asignar(claves.length * 2);
+        int mascara = claves.length - 1;
+        for (int j = 0; j < valoresAnteriores.length; j++) {
+            if (valoresAnteriores[j] != null) {
+                int i = indice(clavesAnteriores[j], mascara);
+                while (valores[i] != null) {
+                    i = (i + 1) & mascara;
+                }
+                claves[i] = clavesAnteriores[j];
+                valores[i] = valoresAnteriores[j];
+            }
+        }
+    }
+
+    private void asignar(int capacidad) {
+        claves = new long[capacidad];
+        valores = new Object[capacidad];
+        umbral = capacidad / 2;     // factor de carga 0.5: cadenas de sondeo cortas
+    }
+
+    // Mezcla de Fibonacci: ids consecutivos quedan repartidos por toda la tabla
+    private static int indice(long clave, int mascara) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
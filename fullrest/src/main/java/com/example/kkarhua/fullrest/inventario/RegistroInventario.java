@@ -0,0 +1,193 @@
+package com.example.kkarhua.fullrest.inventario;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Registro de solo anexado de los movimientos del inventario caliente.
+// Cada movimiento (secuencia, productoId, delta, fecha, si es un ajuste absoluto y qué secuencia
+// anula, si es compensatorio) se escribe en el segmento abierto y se guarda, junto con el neto por
+// producto, hasta que el segmento se rota para volcarlo a la base de datos. Tras una caída,
+// leer() devuelve los movimientos de todos los segmentos que quedaron en disco; los que tengan
+// secuencia mayor al último checkpoint se vuelven a aplicar.
+// agregar() escribe al page cache del sistema operativo (sobrevive a la caída del proceso, no a la
+// del equipo); sincronizar() fuerza a disco hasta una secuencia, y los hilos que esperan mientras
+// otro fuerza quedan cubiertos por ese mismo force (commit en grupo). Al rotar también se fuerza.
+public class RegistroInventario implements Closeable {
+
+    // fecha en milisegundos desde epoch; anula es la secuencia del movimiento que este compensa (0 si no compensa)
+    public record Movimiento(long secuencia, long productoId, int delta, long fecha, boolean ajuste, long anula) {
+    }
+
+    // Segmento cerrado: sus movimientos en orden, los deltas netos por producto y la última secuencia que contiene
+    public record Segmento(Path archivo, long ultimaSecuencia, Map<Long, Long> deltas, List<Movimiento> movimientos) {
+    }
+
+    private static final String PREFIJO = "inventario-";
+    private static final String EXTENSION = ".log";
+    // secuencia, productoId, delta, fecha, anula, ajuste, crc
+    private static final int TAMANO_REGISTRO = 8 + 8 + 4 + 8 + 8 + 1 + 4;
+
+    private final Path directorio;
+    private final ByteBuffer buffer = ByteBuffer.allocate(TAMANO_REGISTRO);
+    private final CRC32 crc = new CRC32();
+    private final Object lockForzado = new Object();
+
+    private FileChannel canal;
+    private Path archivoActual;
+    private long siguienteSecuencia;
+    private long ultimaSecuencia;
+    private Map<Long, Long> deltas = new LinkedHashMap<>();
+    private List<Movimiento> movimientos = new ArrayList<>();
+    private long forzadaHasta;      // protegida por lockForzado
+
+    public RegistroInventario(Path directorio, long siguienteSecuencia) throws IOException {
+        Files.createDirectories(directorio);
+        this.directorio = directorio;
+        this.siguienteSecuencia = siguienteSecuencia;
+        abrirSegmento();
+    }
+
+    public long agregar(long productoId, int delta) {
+        return agregar(productoId, delta, false);
+    }
+
+    // ajuste: el delta viene de fijar el stock a un valor absoluto y no de una venta o reposición
+    public long agregar(long productoId, int delta, boolean ajuste) {
+        return escribir(productoId, delta, ajuste, 0);
+    }
+
+    // Anula un movimiento anotado cuya transacción se revirtió
+    public long compensar(long secuencia, long productoId, int delta) {
+        return escribir(productoId, -delta, false, secuencia);
+    }
+
+    private synchronized long escribir(long productoId, int delta, boolean ajuste, long anula) {
+        long secuencia = siguienteSecuencia;
+        long fecha = System.currentTimeMillis();
+        buffer.clear();
+        buffer.putLong(secuencia).putLong(productoId).putInt(delta).putLong(fecha).putLong(anula).put((byte) (ajuste ? 1 : 0));
+        crc.reset();
+        crc.update(buffer.array(), 0, TAMANO_REGISTRO - 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el registro de inventario", e);
+        }
+        siguienteSecuencia++;
+        ultimaSecuencia = secuencia;
+        deltas.merge(productoId, (long) delta, Long::sum);
+        movimientos.add(new Movimiento(secuencia, productoId, delta, fecha, ajuste, anula));
+        return secuencia;
+    }
+
+    // Garantiza que los movimientos hasta la secuencia indicada estén en disco. Mientras un hilo
+    // fuerza, los demás esperan en lockForzado y al entrar suelen encontrar su secuencia ya cubierta.
+    public void sincronizar(long secuencia) {
+        synchronized (lockForzado) {
+            if (secuencia <= forzadaHasta) {
+                return;
+            }
+            long hasta;
+            synchronized (this) {
+                hasta = ultimaSecuencia;
+                try {
+                    canal.force(false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("No se pudo forzar a disco el registro de inventario", e);
+                }
+            }
+            forzadaHasta = hasta;
+        }
+    }
+
+    // Cierra el segmento actual (forzándolo a disco) y abre uno nuevo.
+    // Devuelve null si el segmento no tenía movimientos.
+    public synchronized Segmento rotar() throws IOException {
+        if (deltas.isEmpty()) {
+            return null;
+        }
+        canal.force(false);
+        canal.close();
+        Segmento cerrado = new Segmento(archivoActual, ultimaSecuencia, deltas, movimientos);
+        deltas = new LinkedHashMap<>();
+        movimientos = new ArrayList<>();
+        abrirSegmento();
+        return cerrado;
+    }
+
+    // Un segmento ya volcado a la base de datos deja de ser necesario para la recuperación
+    public void descartar(Segmento segmento) throws IOException {
+        Files.deleteIfExists(segmento.archivo());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        canal.force(false);
+        canal.close();
+        if (deltas.isEmpty()) {
+            Files.deleteIfExists(archivoActual);
+        }
+    }
+
+    // Lee los movimientos de todos los segmentos del directorio, en orden de secuencia.
+    // Un registro incompleto o con CRC inválido marca el final útil de su segmento
+    // (una escritura cortada por la caída).
+    public static List<Movimiento> leer(Path directorio) throws IOException {
+        List<Movimiento> movimientos = new ArrayList<>();
+        for (Path archivo : segmentos(directorio)) {
+            ByteBuffer contenido = ByteBuffer.wrap(Files.readAllBytes(archivo));
+            CRC32 crc = new CRC32();
+            while (contenido.remaining() >= TAMANO_REGISTRO) {
+                int inicio = contenido.position();
+                long secuencia = contenido.getLong();
+                long productoId = contenido.getLong();
+                int delta = contenido.getInt();
+                long fecha = contenido.getLong();
+                long anula = contenido.getLong();
+                boolean ajuste = contenido.get() != 0;
+                int esperado = contenido.getInt();
+                crc.reset();
+                crc.update(contenido.array(), inicio, TAMANO_REGISTRO - 4);
+                if ((int) crc.getValue() != esperado) {
+                    break;
+                }
+                movimientos.add(new Movimiento(secuencia, productoId, delta, fecha, ajuste, anula));
+            }
+        }
+        return movimientos;
+    }
+
+    public static List<Path> segmentos(Path directorio) throws IOException {
+        if (!Files.isDirectory(directorio)) {
+            return List.of();
+        }
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos
+                .filter(p -> p.getFileName().toString().startsWith(PREFIJO) && p.getFileName().toString().endsWith(EXTENSION))
+                .sorted()
+                .toList();
+        }
+    }
+
+    private void abrirSegmento() throws IOException {
+        // El nombre lleva la primera secuencia con ceros a la izquierda: el orden alfabético es el de escritura
+        archivoActual = directorio.resolve(String.format("%s%020d%s", PREFIJO, siguienteSecuencia, EXTENSION));
+        canal = FileChannel.open(archivoActual, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.kkarhua.fullrest.inventario;
+
+import java.util.function.LongConsumer;
+
+// Rueda de tiempo con hash (hashed wheel timer) para vencimientos.
+// Cada ranura cubre tickMillis y guarda una lista doblemente enlazada de entradas;
+// las que vencen más allá de una vuelta llevan la cuenta de vueltas pendientes.
+// Programar y cancelar son O(1); avanzar solo recorre las ranuras cuyo tiempo ya pasó.
+// No es thread-safe: el llamador sincroniza.
+public class RuedaExpiracion {
+
+    public static final class Entrada {
+        private final long id;
+        private long vueltas;
+        private int ranura = -1;
+        private Entrada anterior;
+        private Entrada siguiente;
+
+        private Entrada(long id) {
+            this.id = id;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public boolean isProgramada() {
+            return ranura >= 0;
+        }
+    }
+
+    private final Entrada[] ranuras;
+    private final int mascara;
+    private final long tickMillis;
+    private final long inicio;
+    private long tickActual;        // próximo tick a procesar
+    private int tamano;
+
+    public RuedaExpiracion(int cantidadRanuras, long tickMillis, long ahoraMillis) {
+        if (cantidadRanuras <= 0 || Integer.bitCount(cantidadRanuras) != 1) {
+            throw new IllegalArgumentException("cantidadRanuras debe ser una potencia de 2");
+        }
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis debe ser mayor a 0");
+        }
+        this.ranuras = new Entrada[cantidadRanuras];
+        this.mascara = cantidadRanuras - 1;
+        this.tickMillis = tickMillis;
+        this.inicio = ahoraMillis;
+    }
+
+    // La entrada vence en el primer tick cuyo instante es igual o posterior a expiraEnMillis
+    public Entrada programar(long id, long expiraEnMillis) {
+        long tick = Math.max(tickActual, Math.ceilDiv(expiraEnMillis - inicio, tickMillis));
+        Entrada entrada = new Entrada(id);
+        entrada.vueltas = (tick - tickActual) / ranuras.length;
+        entrada.ranura = (int) (tick & mascara);
+        entrada.siguiente = ranuras[entrada.ranura];
+        if (entrada.siguiente != null) {
+            entrada.siguiente.anterior = entrada;
+        }
+        ranuras[entrada.ranura] = entrada;
+        tamano++;
+        return entrada;
+    }
+
+    public boolean cancelar(Entrada entrada) {
+        if (!entrada.isProgramada()) {
+            return false;
+        }
+        desenlazar(entrada);
+        return true;
+    }
+
+    // Procesa los ticks vencidos hasta ahoraMillis y entrega el id de cada entrada que expira.
+    // El callback no debe programar ni cancelar entradas de esta rueda.
+    public void avanzar(long ahoraMillis, LongConsumer alExpirar) {
+        long objetivo = Math.floorDiv(ahoraMillis - inicio, tickMillis);
+        while (tickActual <= objetivo) {
+            Entrada entrada = ranuras[(int) (tickActual & mascara)];
+            while (entrada != null) {
+                Entrada siguiente = entrada.siguiente;
+                if (entrada.vueltas <= 0) {
+                    desenlazar(entrada);
+                    alExpirar.accept(entrada.id);
+                } else {
+                    entrada.vueltas--;
+                }
+                entrada = siguiente;
+            }
+            tickActual++;
+        }
+    }
+
+    public int size() {
+        return tamano;
+    }
+
+    private void desenlazar(Entrada entrada) {
+        if (entrada.anterior != null) {
+            entrada.anterior.siguiente = entrada.siguiente;
+        } else {
+            ranuras[entrada.ranura] = entrada.siguiente;
+        }
+        if (entrada.siguiente != null) {
+            entrada.siguiente.anterior = entrada.anterior;
+        }
+        entrada.anterior = null;
+        entrada.siguiente = null;
+        entrada.ranura = -1;
+        tamano--;
+    }
+}
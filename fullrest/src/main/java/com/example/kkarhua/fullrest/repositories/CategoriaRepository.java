@@ -1,9 +1,26 @@
 package com.example.kkarhua.fullrest.repositories;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.example.kkarhua.fullrest.dto.CategoriaDTO;
+import com.example.kkarhua.fullrest.dto.VersionCatalogoDTO;
 import com.example.kkarhua.fullrest.entities.Categoria;
 
 public interface CategoriaRepository extends CrudRepository<Categoria, Long> {
     
     boolean existsByNombre(String nombre);
-}
\ No newline at end of file
+
+    @Query("select new com.example.kkarhua.fullrest.dto.CategoriaDTO(c.id, c.nombre, c.fechaActualizacion) from Categoria c order by c.id asc")
+    List<CategoriaDTO> findAllDto();
+
+    @Query("select new com.example.kkarhua.fullrest.dto.CategoriaDTO(c.id, c.nombre, c.fechaActualizacion) from Categoria c where c.id = :id")
+    Optional<CategoriaDTO> findDtoById(@Param("id") Long id);
+
+    @Query("select new com.example.kkarhua.fullrest.dto.VersionCatalogoDTO(count(c), max(c.fechaActualizacion)) from Categoria c")
+    VersionCatalogoDTO findVersionCatalogo();
+}
@@ -0,0 +1,36 @@
+package com.example.kkarhua.fullrest.repositories;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import com.example.kkarhua.fullrest.dto.CompraResumenDTO;
+import com.example.kkarhua.fullrest.entities.CompraArchivada;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface CompraArchivadaRepository extends CrudRepository<CompraArchivada, Long> {
+    List<CompraArchivada> findByUsuarioId(Long usuarioId);
+
+    // Misma proyección y mismo orden que CompraRepository, para mezclar compras activas y archivadas
+    String SELECT_ARCHIVADA_RESUMEN = "select new com.example.kkarhua.fullrest.dto.CompraResumenDTO(" +
+        "c.id, c.usuarioId, c.envioId, c.subtotal, c.iva, c.total, c.fechaCompra, c.estado) " +
+        "from CompraArchivada c ";
+
+    @Query(SELECT_ARCHIVADA_RESUMEN + "where " + CompraRepository.WHERE_PAGINA_COMPRAS)
+    List<CompraResumenDTO> findPaginaResumen(@Param("desde") LocalDateTime desde,
+                                             @Param("hasta") LocalDateTime hasta,
+                                             @Param("estado") String estado,
+                                             @Param("fecha") LocalDateTime fecha,
+                                             @Param("id") Long id,
+                                             Limit limit);
+
+    @Query(SELECT_ARCHIVADA_RESUMEN + "where c.usuarioId = :usuarioId and " + CompraRepository.WHERE_PAGINA_COMPRAS)
+    List<CompraResumenDTO> findPaginaResumenByUsuarioId(@Param("usuarioId") Long usuarioId,
+                                                        @Param("desde") LocalDateTime desde,
+                                                        @Param("hasta") LocalDateTime hasta,
+                                                        @Param("estado") String estado,
+                                                        @Param("fecha") LocalDateTime fecha,
+                                                        @Param("id") Long id,
+                                                        Limit limit);
+}
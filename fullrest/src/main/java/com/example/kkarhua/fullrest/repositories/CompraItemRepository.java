@@ -0,0 +1,27 @@
+package com.example.kkarhua.fullrest.repositories;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.example.kkarhua.fullrest.dto.VentasProductoDTO;
+import com.example.kkarhua.fullrest.entities.CompraItem;
+
+public interface CompraItemRepository extends CrudRepository<CompraItem, Long> {
+
+    // Ventas de un producto en un rango de fechas: recorre solo el tramo del índice (productoId, fechaCompra)
+    @Query("select new com.example.kkarhua.fullrest.dto.VentasProductoDTO(" +
+           "coalesce(sum(i.cantidad), 0L), coalesce(sum(i.cantidad * i.precioUnitario), 0L), count(distinct i.compraId)) " +
+           "from CompraItem i where i.productoId = :productoId " +
+           "and i.fechaCompra >= :desde and i.fechaCompra < :hasta")
+    VentasProductoDTO findVentas(@Param("productoId") Long productoId,
+                                 @Param("desde") LocalDateTime desde,
+                                 @Param("hasta") LocalDateTime hasta);
+
+    @Modifying
+    @Query("delete from CompraItem i where i.compraId = :compraId")
+    int deleteByCompraId(@Param("compraId") Long compraId);
+}
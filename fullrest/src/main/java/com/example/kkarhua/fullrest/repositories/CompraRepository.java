@@ -1,10 +1,48 @@
 package com.example.kkarhua.fullrest.repositories;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import com.example.kkarhua.fullrest.dto.CompraResumenDTO;
 import com.example.kkarhua.fullrest.entities.Compra;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface CompraRepository extends CrudRepository<Compra, Long> {
     List<Compra> findByUsuarioId(Long usuarioId);
     long countByEstado(String estado);
-}
\ No newline at end of file
+
+    // Proyección de cabecera: lee solo columnas de compras (usuario_id y envio_id sin join),
+    // sin el LONGTEXT del detalle ni los grafos EAGER de usuario y envío
+    String SELECT_COMPRA_RESUMEN = "select new com.example.kkarhua.fullrest.dto.CompraResumenDTO(" +
+        "c.id, c.usuario.id, c.envio.id, c.subtotal, c.iva, c.total, c.fechaCompra, c.estado) " +
+        "from Compra c ";
+
+    // Paginación keyset por (fechaCompra, id) descendente, con rango [desde, hasta) y estado opcional.
+    // La página siguiente empieza después de la última fila de la anterior, así que una página profunda
+    // cuesta lo mismo que la primera: idx_compras_fecha y idx_compras_usuario_fecha (que en InnoDB
+    // terminan en id) entregan las filas ya en orden.
+    String WHERE_PAGINA_COMPRAS =
+        "c.fechaCompra >= :desde and c.fechaCompra < :hasta " +
+        "and (c.fechaCompra < :fecha or (c.fechaCompra = :fecha and c.id < :id)) " +
+        "and (:estado is null or c.estado = :estado) " +
+        "order by c.fechaCompra desc, c.id desc";
+
+    @Query(SELECT_COMPRA_RESUMEN + "where " + WHERE_PAGINA_COMPRAS)
+    List<CompraResumenDTO> findPaginaResumen(@Param("desde") LocalDateTime desde,
+                                             @Param("hasta") LocalDateTime hasta,
+                                             @Param("estado") String estado,
+                                             @Param("fecha") LocalDateTime fecha,
+                                             @Param("id") Long id,
+                                             Limit limit);
+
+    @Query(SELECT_COMPRA_RESUMEN + "where c.usuario.id = :usuarioId and " + WHERE_PAGINA_COMPRAS)
+    List<CompraResumenDTO> findPaginaResumenByUsuarioId(@Param("usuarioId") Long usuarioId,
+                                                        @Param("desde") LocalDateTime desde,
+                                                        @Param("hasta") LocalDateTime hasta,
+                                                        @Param("estado") String estado,
+                                                        @Param("fecha") LocalDateTime fecha,
+                                                        @Param("id") Long id,
+                                                        Limit limit);
+}
@@ -11,4 +11,7 @@ public interface EnvioRepository extends CrudRepository<Envio, Long> {
     
     // Contar envíos de un usuario
     long countByUsuarioId(Long usuarioId);
+
+    // Verificar que un envío pertenece al usuario
+    boolean existsByIdAndUsuarioId(Long id, Long usuarioId);
 }
\ No newline at end of file
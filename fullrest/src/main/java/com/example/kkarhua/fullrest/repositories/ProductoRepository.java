@@ -1,9 +1,139 @@
 package com.example.kkarhua.fullrest.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.example.kkarhua.fullrest.dto.PrecioProductoDTO;
+import com.example.kkarhua.fullrest.dto.ProductoDTO;
+import com.example.kkarhua.fullrest.dto.ProductoFacetaDTO;
+import com.example.kkarhua.fullrest.dto.StockDTO;
+import com.example.kkarhua.fullrest.dto.VersionCatalogoDTO;
 import com.example.kkarhua.fullrest.entities.Producto;
 
+import jakarta.persistence.QueryHint;
+
 public interface ProductoRepository extends CrudRepository<Producto, Long> {
+
+    // Proyección a ProductoDTO en una sola consulta con join a categoría (sin entidades administradas)
+    String SELECT_PRODUCTO_DTO = "select new com.example.kkarhua.fullrest.dto.ProductoDTO(" +
+            "p.id, p.nombre, p.descripcion, p.precio, p.stock, c.id, c.nombre, " +
+            "p.imagen, p.estado, p.fechaCreacion, p.fechaActualizacion, c.fechaActualizacion) " +
+            "from Producto p left join p.categoria c ";
     
     long countByCategoriaId(Long categoriaId);
-}
\ No newline at end of file
+
+    // Versión del catálogo para peticiones condicionales; incluye la fecha de las categorías
+    // usadas, porque el listado muestra su nombre
+    @Query("select new com.example.kkarhua.fullrest.dto.VersionCatalogoDTO(" +
+           "count(p), max(p.fechaActualizacion), max(c.fechaActualizacion)) " +
+           "from Producto p left join p.categoria c")
+    VersionCatalogoDTO findVersionCatalogo();
+
+    @Query(SELECT_PRODUCTO_DTO + "order by p.id asc")
+    List<ProductoDTO> findAllDto();
+
+    @Query(SELECT_PRODUCTO_DTO + "where p.id = :id")
+    Optional<ProductoDTO> findDtoById(@Param("id") Long id);
+
+    // Cursor sobre todo el catálogo: con fetch size Integer.MIN_VALUE el driver de MySQL entrega las filas
+    // una a una sin cargar el resultado en memoria, solo para esta consulta. La conexión queda ocupada
+    // por el resultado hasta cerrarlo: debe consumirse dentro de una transacción y cerrarse al terminar.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query(SELECT_PRODUCTO_DTO + "order by p.id asc")
+    Stream<ProductoDTO> streamAllDto();
+
+    @Query(SELECT_PRODUCTO_DTO + "where p.id in :ids")
+    List<ProductoDTO> findDtoByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(SELECT_PRODUCTO_DTO + "where c.id = :categoriaId and p.id > :id order by p.id asc")
+    List<ProductoDTO> findPaginaPorCategoria(@Param("categoriaId") Long categoriaId, @Param("id") Long id, Limit limit);
+
+    // Paginación keyset: cada página parte desde el último elemento de la anterior,
+    // así el costo no depende de qué tan profunda sea la página (sin OFFSET)
+    @Query(SELECT_PRODUCTO_DTO + "where p.id > :id order by p.id asc")
+    List<ProductoDTO> findPaginaPorIdAsc(@Param("id") Long id, Limit limit);
+
+    @Query(SELECT_PRODUCTO_DTO + "where p.id < :id order by p.id desc")
+    List<ProductoDTO> findPaginaPorIdDesc(@Param("id") Long id, Limit limit);
+
+    @Query(SELECT_PRODUCTO_DTO +
+           "where p.precio > :precio or (p.precio = :precio and p.id > :id) " +
+           "order by p.precio asc, p.id asc")
+    List<ProductoDTO> findPaginaPorPrecioAsc(@Param("precio") int precio, @Param("id") Long id, Limit limit);
+
+    @Query(SELECT_PRODUCTO_DTO +
+           "where p.precio < :precio or (p.precio = :precio and p.id < :id) " +
+           "order by p.precio desc, p.id desc")
+    List<ProductoDTO> findPaginaPorPrecioDesc(@Param("precio") int precio, @Param("id") Long id, Limit limit);
+
+    @Query("select new com.example.kkarhua.fullrest.dto.StockDTO(p.id, p.nombre, p.stock, p.estado) " +
+           "from Producto p where p.id = :id")
+    Optional<StockDTO> findStockById(@Param("id") Long id);
+
+    @Query("select new com.example.kkarhua.fullrest.dto.StockDTO(p.id, p.nombre, p.stock, p.estado) " +
+           "from Producto p where p.id in :ids")
+    List<StockDTO> findStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Precios de todas las líneas de un carrito en una sola consulta
+    @Query("select new com.example.kkarhua.fullrest.dto.PrecioProductoDTO(p.id, p.nombre, p.precio) " +
+           "from Producto p where p.id in :ids")
+    List<PrecioProductoDTO> findPrecioByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Actualizaciones atómicas de stock: una sola sentencia condicional, sin leer la fila antes.
+    // Suben la versión para que una edición optimista en curso del mismo producto se reintente.
+    // El estado se asigna primero porque MySQL evalúa el SET de izquierda a derecha
+    // y así la condición ve el stock anterior. reducirStock no toca las unidades reservadas.
+    @Modifying
+    @Query("update Producto p set " +
+           "p.estado = case when p.stock = :cantidad then 'agotado' else p.estado end, " +
+           "p.stock = p.stock - :cantidad, p.fechaActualizacion = :ahora, p.version = p.version + 1 " +
+           "where p.id = :id and p.stock - :cantidad >= :reservado")
+    int reducirStock(@Param("id") Long id, @Param("cantidad") int cantidad, @Param("reservado") int reservado,
+                     @Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Query("update Producto p set " +
+           "p.estado = case when p.stock = 0 then 'activo' else p.estado end, " +
+           "p.stock = p.stock + :cantidad, p.fechaActualizacion = :ahora, p.version = p.version + 1 " +
+           "where p.id = :id")
+    int agregarStock(@Param("id") Long id, @Param("cantidad") int cantidad, @Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Query("update Producto p set " +
+           "p.estado = case when :stock = 0 then 'agotado' when p.stock = 0 then 'activo' else p.estado end, " +
+           "p.stock = :stock, p.fechaActualizacion = :ahora, p.version = p.version + 1 " +
+           "where p.id = :id")
+    int actualizarStock(@Param("id") Long id, @Param("stock") int stock, @Param("ahora") LocalDateTime ahora);
+
+    // Navegación facetada: filtros opcionales de categoría y estado, rango de precio inclusivo
+    @Query(SELECT_PRODUCTO_DTO +
+           "where (:categoriaId is null or c.id = :categoriaId) " +
+           "and p.precio >= :precioMin and p.precio <= :precioMax " +
+           "and (:estado is null or p.estado = :estado) " +
+           "and p.id > :id order by p.id asc")
+    List<ProductoDTO> findPaginaFiltrada(@Param("categoriaId") Long categoriaId,
+                                         @Param("precioMin") int precioMin,
+                                         @Param("precioMax") int precioMax,
+                                         @Param("estado") String estado,
+                                         @Param("id") Long id, Limit limit);
+
+    @Query("select new com.example.kkarhua.fullrest.dto.ProductoFacetaDTO(p.id, p.categoria.id, p.precio, p.estado) " +
+           "from Producto p where p.id > :id order by p.id asc")
+    List<ProductoFacetaDTO> findFacetasPagina(@Param("id") Long id, Limit limit);
+
+    @Query("select new com.example.kkarhua.fullrest.dto.ProductoFacetaDTO(p.id, p.categoria.id, p.precio, p.estado) " +
+           "from Producto p where p.id = :id")
+    Optional<ProductoFacetaDTO> findFacetaById(@Param("id") Long id);
+}
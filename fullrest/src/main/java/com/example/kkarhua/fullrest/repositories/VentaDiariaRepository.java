@@ -0,0 +1,27 @@
+package com.example.kkarhua.fullrest.repositories;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.example.kkarhua.fullrest.dto.VentasPeriodoDTO;
+import com.example.kkarhua.fullrest.entities.VentaDiaria;
+
+public interface VentaDiariaRepository extends CrudRepository<VentaDiaria, Long> {
+
+    // Una fila por (día, estado) sumando las franjas; el costo depende de los días pedidos, no de las compras
+    @Query("select new com.example.kkarhua.fullrest.dto.VentasPeriodoDTO(" +
+           "v.fecha, v.estado, sum(v.compras), sum(v.subtotal), sum(v.iva), sum(v.total)) " +
+           "from VentaDiaria v where v.fecha >= :desde and v.fecha <= :hasta " +
+           "and (:estado is null or v.estado = :estado) " +
+           "group by v.fecha, v.estado order by v.fecha asc, v.estado asc")
+    List<VentasPeriodoDTO> findVentas(@Param("desde") LocalDate desde,
+                                      @Param("hasta") LocalDate hasta,
+                                      @Param("estado") String estado);
+
+    @Query("select coalesce(sum(v.compras), 0L) from VentaDiaria v where v.estado = :estado")
+    long sumComprasByEstado(@Param("estado") String estado);
+}
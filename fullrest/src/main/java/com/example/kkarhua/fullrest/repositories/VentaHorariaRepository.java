@@ -0,0 +1,23 @@
+package com.example.kkarhua.fullrest.repositories;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import com.example.kkarhua.fullrest.dto.VentasPeriodoDTO;
+import com.example.kkarhua.fullrest.entities.VentaHoraria;
+
+public interface VentaHorariaRepository extends CrudRepository<VentaHoraria, Long> {
+
+    @Query("select new com.example.kkarhua.fullrest.dto.VentasPeriodoDTO(" +
+           "v.fecha, v.hora, v.estado, sum(v.compras), sum(v.subtotal), sum(v.iva), sum(v.total)) " +
+           "from VentaHoraria v where v.fecha >= :desde and v.fecha <= :hasta " +
+           "and (:estado is null or v.estado = :estado) " +
+           "group by v.fecha, v.hora, v.estado order by v.fecha asc, v.hora asc, v.estado asc")
+    List<VentasPeriodoDTO> findVentas(@Param("desde") LocalDate desde,
+                                      @Param("hasta") LocalDate hasta,
+                                      @Param("estado") String estado);
+}
@@ -17,7 +17,10 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.example.kkarhua.fullrest.dto.CategoriaDTO;
+import com.example.kkarhua.fullrest.dto.VersionCatalogoDTO;
 import com.example.kkarhua.fullrest.entities.Categoria;
 import com.example.kkarhua.fullrest.services.CategoriaServices;
 
@@ -36,21 +39,36 @@ public class CategoriaRestController {
     private CategoriaServices categoriaServices;
 
     @Operation(summary = "Obtener todas las categorías", description = "Devuelve la lista completa de categorías disponibles")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lista de categorías"),
+        @ApiResponse(responseCode = "304", description = "Las categorías no cambiaron desde la versión del cliente")
+    })
     @GetMapping
-    public List<Categoria> verCategorias() {
-        return categoriaServices.findByAll();
+    public ResponseEntity<List<CategoriaDTO>> verCategorias(WebRequest webRequest) {
+        VersionCatalogoDTO version = categoriaServices.versionCatalogo();
+        if (webRequest.checkNotModified(version.etag("categorias"), version.ultimaModificacionMillis())) {
+            return null;
+        }
+        return ResponseEntity.ok(categoriaServices.findAllDto());
     }
 
     @Operation(summary = "Obtener categoría por ID", description = "Obtiene el detalle de una categoría específica")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Categoría encontrada"),
+        @ApiResponse(responseCode = "304", description = "La categoría no cambió desde la versión del cliente"),
         @ApiResponse(responseCode = "404", description = "Categoría no encontrada")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<?> verDetalle(@PathVariable Long id) {
-        Optional<Categoria> categoriaOptional = categoriaServices.findById(id);
+    public ResponseEntity<?> verDetalle(@PathVariable Long id, WebRequest webRequest) {
+        Optional<CategoriaDTO> categoriaOptional = categoriaServices.findDtoById(id);
         if (categoriaOptional.isPresent()) {
-            return ResponseEntity.ok(categoriaOptional.orElseThrow());
+            CategoriaDTO categoria = categoriaOptional.get();
+            VersionCatalogoDTO version = VersionCatalogoDTO.deElemento(categoria.fechaActualizacion());
+            if (webRequest.checkNotModified(version.etag("categoria", id, categoria.nombre()), 
+                                            version.ultimaModificacionMillis())) {
+                return null;
+            }
+            return ResponseEntity.ok(categoria);
         }
         return ResponseEntity.notFound().build();
     }
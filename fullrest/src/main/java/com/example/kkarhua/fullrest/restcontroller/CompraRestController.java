@@ -1,21 +1,42 @@
 package com.example.kkarhua.fullrest.restcontroller;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import com.example.kkarhua.fullrest.dto.BoletaDTO;
+import com.example.kkarhua.fullrest.dto.CheckoutDTO;
+import com.example.kkarhua.fullrest.dto.EstadoImportacion;
+import com.example.kkarhua.fullrest.dto.VentasPeriodoDTO;
+import com.example.kkarhua.fullrest.dto.VentasProductoDTO;
 import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.entities.Usuario;
+import com.example.kkarhua.fullrest.services.BoletaService;
+import com.example.kkarhua.fullrest.services.CheckoutServices;
+import com.example.kkarhua.fullrest.services.CompraArchivoService;
+import com.example.kkarhua.fullrest.services.CompraItemsService;
 import com.example.kkarhua.fullrest.services.CompraServices;
+import com.example.kkarhua.fullrest.services.ResumenVentasService;
+import com.example.kkarhua.fullrest.services.StockInsuficienteException;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 @Tag(name = "Compras", description = "Gestión de compras y boletas")
@@ -23,13 +44,39 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 @RequestMapping("api/compras")
 public class CompraRestController {
 
+    // Rangos máximos de /stats/ventas: acotan las filas que se devuelven
+    private static final long MAX_DIAS_POR_DIA = 366;
+    private static final long MAX_DIAS_POR_HORA = 31;
+
     @Autowired
     private CompraServices compraServices;
 
-    @Operation(summary = "Obtener todas las compras")
+    @Autowired
+    private CheckoutServices checkoutServices;
+
+    @Autowired
+    private CompraItemsService compraItemsService;
+
+    @Autowired
+    private ResumenVentasService resumenVentasService;
+
+    @Autowired
+    private BoletaService boletaService;
+
+    @Autowired
+    private CompraArchivoService compraArchivoService;
+
+    @Operation(summary = "Obtener todas las compras",
+               description = "Solo cabeceras; el detalle de productos está en GET /api/compras/{id}. Devuelve una página keyset " +
+                             "(más recientes primero, incluidas las archivadas; 20 por defecto) con siguienteCursor; desde, hasta " +
+                             "y estado filtran")
     @GetMapping
-    public ResponseEntity<List<Compra>> verCompras() {
-        return ResponseEntity.ok(compraServices.findByAll());
+    public ResponseEntity<?> verCompras(@RequestParam(required = false) Integer size,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                        @RequestParam(required = false) String estado) {
+        return pagina(null, size, cursor, desde, hasta, estado);
     }
 
     @Operation(summary = "Obtener compra por ID")
@@ -42,30 +89,118 @@ public class CompraRestController {
         return ResponseEntity.notFound().build();
     }
 
-    @Operation(summary = "Obtener compras de un usuario")
+    @Operation(summary = "Boleta de una compra",
+               description = "Boleta en texto plano, solo para el dueño de la compra, VENDEDOR o SUPER-ADMIN. " +
+                             "Se genera en segundo plano después de la compra: 202 mientras todavía no está lista")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Boleta"),
+        @ApiResponse(responseCode = "202", description = "La boleta todavía se está generando"),
+        @ApiResponse(responseCode = "401", description = "Usuario no autenticado"),
+        @ApiResponse(responseCode = "403", description = "La compra es de otro usuario"),
+        @ApiResponse(responseCode = "404", description = "La compra no existe")
+    })
+    @GetMapping("/{id}/boleta")
+    public ResponseEntity<?> verBoleta(@PathVariable Long id,
+                                       @RequestAttribute(name = "userId", required = false) Long userId,
+                                       @RequestAttribute(name = "userRol", required = false) String userRol) {
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Usuario no autenticado"));
+        }
+        // La compra se lee antes que la boleta para saber de quién es
+        Optional<Compra> compra = compraServices.findById(id);
+        if (compra.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean personal = "VENDEDOR".equalsIgnoreCase(userRol) || "SUPER-ADMIN".equalsIgnoreCase(userRol);
+        Usuario duenio = compra.get().getUsuario();
+        if (!personal && (duenio == null || !userId.equals(duenio.getId()))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", "No tiene acceso a la boleta de esta compra"));
+        }
+
+        Optional<byte[]> boleta = boletaService.leer(id);
+        if (boleta.isPresent()) {
+            return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(boleta.get());
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(Map.of("mensaje", "La boleta todavía se está generando"));
+    }
+
+    @Operation(summary = "Obtener compras de un usuario",
+               description = "Solo cabeceras, de la más reciente a la más antigua, paginadas igual que GET /api/compras")
     @GetMapping("/usuario/{usuarioId}")
-    public ResponseEntity<?> verComprasPorUsuario(@PathVariable Long usuarioId) {
-        List<Compra> compras = compraServices.findByUsuarioId(usuarioId);
-        return ResponseEntity.ok(compras);
+    public ResponseEntity<?> verComprasPorUsuario(@PathVariable Long usuarioId,
+                                                  @RequestParam(required = false) Integer size,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                                  @RequestParam(required = false) String estado) {
+        return pagina(usuarioId, size, cursor, desde, hasta, estado);
     }
 
-    @Operation(summary = "Crear nueva compra (generar boleta)")
+    // Heredado: guarda subtotal, IVA, total y detalle tal como los manda el cliente. Queda solo para
+    // cargas manuales de SUPER-ADMIN (ver SecurityConfig); las compras de la tienda van por /checkout
+    @Deprecated
+    @Operation(summary = "Crear nueva compra (generar boleta)",
+               description = "Obsoleto, solo SUPER-ADMIN: los montos y el detalle se guardan tal como vienen. " +
+                             "Usar POST /api/compras/checkout, que calcula precios y totales en el servidor. " +
+                             "Las reservas de stock indicadas se descuentan del inventario junto con la compra",
+               deprecated = true)
     @PostMapping
-    public ResponseEntity<?> crear(@RequestBody Compra unaCompra) {
+    public ResponseEntity<?> crear(@RequestBody Compra unaCompra,
+                                   @RequestParam(required = false) List<Long> reservas) {
         try {
             if (unaCompra.getUsuario() == null || unaCompra.getEnvio() == null) {
                 return ResponseEntity.badRequest()
                     .body(Map.of("error", "Usuario y Envío son obligatorios"));
             }
 
-            Compra compraGuardada = compraServices.save(unaCompra);
+            Compra compraGuardada = compraServices.save(unaCompra, reservas);
             return ResponseEntity.status(HttpStatus.CREATED).body(compraGuardada);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", "Error al crear compra: " + e.getMessage()));
         }
     }
 
+    @Operation(summary = "Checkout del carrito",
+               description = "Recibe solo productos y cantidades: precios, IVA y totales se calculan en el servidor " +
+                             "y el stock se descuenta en la misma transacción que guarda la compra")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Compra creada"),
+        @ApiResponse(responseCode = "400", description = "Carrito, producto o envío inválido"),
+        @ApiResponse(responseCode = "401", description = "Usuario no autenticado"),
+        @ApiResponse(responseCode = "409", description = "Stock insuficiente o reserva vencida")
+    })
+    @PostMapping("/checkout")
+    public ResponseEntity<?> checkout(@RequestBody CheckoutDTO pedido,
+                                      @RequestAttribute(name = "userId", required = false) Long userId) {
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", "Usuario no autenticado"));
+        }
+        try {
+            BoletaDTO boleta = checkoutServices.checkout(userId, pedido);
+            return ResponseEntity.status(HttpStatus.CREATED).body(boleta);
+        } catch (StockInsuficienteException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            error.put("lineas", e.getResultado().lineas());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @Operation(summary = "Obtener estadísticas de compras")
     @GetMapping("/stats/totales")
     public ResponseEntity<?> getStats() {
@@ -75,4 +210,127 @@ public class CompraRestController {
         stats.put("fecha", java.time.LocalDateTime.now());
         return ResponseEntity.ok(stats);
     }
+
+    @Operation(summary = "Ventas por día u hora",
+               description = "Cantidad de compras, subtotal, IVA y total por período y estado, leídos de los acumulados " +
+                             "venta_diaria / venta_horaria. Rango inclusivo; por defecto los últimos 30 días")
+    @GetMapping("/stats/ventas")
+    public ResponseEntity<?> getVentas(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                       @RequestParam(defaultValue = "dia") String granularidad,
+                                       @RequestParam(required = false) String estado) {
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.minusDays(30);
+        if (inicio.isAfter(fin)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "desde no puede ser posterior a hasta"));
+        }
+        boolean porHora = "hora".equals(granularidad);
+        if (!porHora && !"dia".equals(granularidad)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Granularidad inválida: " + granularidad + ". Valores permitidos: dia, hora"));
+        }
+        long maxDias = porHora ? MAX_DIAS_POR_HORA : MAX_DIAS_POR_DIA;
+        if (ChronoUnit.DAYS.between(inicio, fin) >= maxDias) {
+            return ResponseEntity.badRequest().body(Map.of("error", "El rango no puede superar " + maxDias + " días para granularidad " + granularidad));
+        }
+
+        List<VentasPeriodoDTO> periodos = porHora
+            ? resumenVentasService.porHora(inicio, fin, estado)
+            : resumenVentasService.porDia(inicio, fin, estado);
+        long compras = 0, subtotal = 0, iva = 0, total = 0;
+        for (VentasPeriodoDTO periodo : periodos) {
+            compras += periodo.compras();
+            subtotal += periodo.subtotal();
+            iva += periodo.iva();
+            total += periodo.total();
+        }
+
+        Map<String, Object> respuesta = new HashMap<>();
+        respuesta.put("desde", inicio);
+        respuesta.put("hasta", fin);
+        respuesta.put("granularidad", granularidad);
+        respuesta.put("periodos", periodos);
+        respuesta.put("totales", Map.of("compras", compras, "subtotal", subtotal, "iva", iva, "total", total));
+        return ResponseEntity.ok(respuesta);
+    }
+
+    @Operation(summary = "Reconstruir los acumulados de ventas", description = "Vuelve a calcular venta_diaria y venta_horaria desde compras")
+    @PostMapping("/stats/reconstruir")
+    public ResponseEntity<?> reconstruirVentas() {
+        resumenVentasService.reconstruir();
+        return ResponseEntity.ok(Map.of("mensaje", "Acumulados de ventas reconstruidos"));
+    }
+
+    @Operation(summary = "Ventas de un producto",
+               description = "Unidades, monto y compras de un producto en un rango de fechas [desde, hasta]; por defecto los últimos 30 días")
+    @GetMapping("/ventas/producto/{productoId}")
+    public ResponseEntity<?> ventasPorProducto(@PathVariable Long productoId,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.minusDays(30);
+        if (inicio.isAfter(fin)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "desde no puede ser posterior a hasta"));
+        }
+
+        VentasProductoDTO ventas = compraServices.ventasPorProducto(productoId, inicio.atStartOfDay(), fin.plusDays(1).atStartOfDay());
+        Map<String, Object> respuesta = new HashMap<>();
+        respuesta.put("productoId", productoId);
+        respuesta.put("desde", inicio);
+        respuesta.put("hasta", fin);
+        respuesta.put("unidades", ventas.unidades());
+        respuesta.put("monto", ventas.monto());
+        respuesta.put("compras", ventas.compras());
+        return ResponseEntity.ok(respuesta);
+    }
+
+    @Operation(summary = "Normalizar el detalle de compras antiguas",
+               description = "Carga en segundo plano la tabla compra_item desde detalleProductos de las compras que aún no tienen líneas")
+    @PostMapping("/items/backfill")
+    public ResponseEntity<EstadoImportacion> iniciarBackfillItems() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(compraItemsService.iniciarBackfill());
+    }
+
+    @Operation(summary = "Progreso del backfill de líneas de compra")
+    @GetMapping("/items/backfill")
+    public ResponseEntity<?> estadoBackfillItems() {
+        Optional<EstadoImportacion> estado = compraItemsService.estadoBackfill();
+        if (estado.isPresent()) {
+            return ResponseEntity.ok(estado.get());
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @Operation(summary = "Archivar compras antiguas",
+               description = "Mueve en segundo plano las compras más antiguas que compras.archivo.edad-dias a los segmentos " +
+                             "mensuales de archivo; siguen disponibles en GET /api/compras/{id} y en el historial del usuario")
+    @PostMapping("/archivo")
+    public ResponseEntity<EstadoImportacion> iniciarArchivo() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(compraArchivoService.iniciarArchivo());
+    }
+
+    @Operation(summary = "Progreso del archivo de compras")
+    @GetMapping("/archivo")
+    public ResponseEntity<?> estadoArchivo() {
+        Optional<EstadoImportacion> estado = compraArchivoService.estadoArchivo();
+        if (estado.isPresent()) {
+            return ResponseEntity.ok(estado.get());
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    // Sin parámetros es la primera página de 20. Rango de fechas inclusivo: hasta cubre el día completo
+    private ResponseEntity<?> pagina(Long usuarioId, Integer size, String cursor,
+                                     LocalDate desde, LocalDate hasta, String estado) {
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "desde no puede ser posterior a hasta"));
+        }
+        try {
+            return ResponseEntity.ok(compraServices.findPaginaResumenes(usuarioId,
+                desde != null ? desde.atStartOfDay() : null,
+                hasta != null ? hasta.plusDays(1).atStartOfDay() : null,
+                estado, size != null ? size : 20, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 }
\ No newline at end of file
@@ -44,6 +44,9 @@ public class ImagenController {
     @Autowired
     private ProductoServices productoServices;
 
+    // El límite de multipart es mayor por la importación masiva; las imágenes mantienen su propio máximo
+    private static final long MAX_TAMANO_IMAGEN = 5L * 1024 * 1024;
+
     @Operation(summary = "Subir imagen de producto", description = "Sube una imagen y la asocia a un producto")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Imagen subida correctamente"),
@@ -65,6 +68,12 @@ public class ImagenController {
                 return ResponseEntity.badRequest().body(response);
             }
 
+            if (file.getSize() > MAX_TAMANO_IMAGEN) {
+                Map<String, String> response = new HashMap<>();
+                response.put("error", "La imagen no puede superar los 5MB");
+                return ResponseEntity.badRequest().body(response);
+            }
+
             // Validar tipo de archivo
             String contentType = file.getContentType();
             if (contentType == null || !contentType.startsWith("image/")) {
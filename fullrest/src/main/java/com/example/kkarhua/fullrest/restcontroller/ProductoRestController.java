@@ -1,12 +1,16 @@
 package com.example.kkarhua.fullrest.restcontroller;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Optional;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,13 +19,28 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.kkarhua.fullrest.dto.EstadoImportacion;
+import com.example.kkarhua.fullrest.dto.ProductoDTO;
+import com.example.kkarhua.fullrest.dto.VersionCatalogoDTO;
 import com.example.kkarhua.fullrest.entities.Producto;
 import com.example.kkarhua.fullrest.entities.Categoria;
+import com.example.kkarhua.fullrest.services.BusquedaProductosService;
+import com.example.kkarhua.fullrest.services.FacetasProductosService;
+import com.example.kkarhua.fullrest.services.ImportacionProductosService;
 import com.example.kkarhua.fullrest.services.ProductoServices;
 import com.example.kkarhua.fullrest.services.CategoriaServices;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -40,26 +59,221 @@ public class ProductoRestController {
     @Autowired
     private CategoriaServices categoriaServices;
 
-    @Operation(summary = "Obtener lista de productos", description = "Devuelve todos los productos disponibles")
-    @ApiResponse(responseCode = "200", description = "Lista de productos retornada correctamente",
-                 content = @Content(mediaType = "application/json", 
-                 schema = @Schema(implementation = Producto.class)))
+    @Autowired
+    private BusquedaProductosService busquedaProductosService;
+
+    @Autowired
+    private FacetasProductosService facetasProductosService;
+
+    @Autowired
+    private ImportacionProductosService importacionProductosService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Tiempo máximo de la exportación en streaming; solo esta respuesta se aparta del timeout asíncrono global
+    @Value("${productos.exportacion.timeout-ms:600000}")
+    private long timeoutExportacion = 600000;
+
+    @Operation(summary = "Obtener lista de productos", 
+               description = "Devuelve todos los productos disponibles. Si se indica size, cursor o after, " +
+                             "devuelve una página keyset con siguienteCursor para pedir la página siguiente")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lista de productos retornada correctamente",
+                     content = @Content(mediaType = "application/json", 
+                     schema = @Schema(implementation = ProductoDTO.class))),
+        @ApiResponse(responseCode = "304", description = "El catálogo no cambió desde la versión del cliente"),
+        @ApiResponse(responseCode = "400", description = "Parámetros de paginación inválidos")
+    })
     @GetMapping
-    public List<Producto> verProductos(){
-        return (List<Producto>) productoServices.findByAll();
+    public ResponseEntity<?> verProductos(@RequestParam(required = false) Integer size,
+                                          @RequestParam(defaultValue = "id_asc") String orden,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Long after,
+                                          WebRequest webRequest){
+        // Petición condicional: si el catálogo no cambió se responde 304 sin consultar ni serializar la lista
+        VersionCatalogoDTO version = productoServices.versionCatalogo();
+        if (webRequest.checkNotModified(version.etag("productos", size, orden, cursor, after),
+                                        version.ultimaModificacionMillis())) {
+            return null;
+        }
+
+        // Sin parámetros de paginación se mantiene la lista completa
+        if (size == null && cursor == null && after == null) {
+            return ResponseEntity.ok(productoServices.findAllDto());
+        }
+
+        // "after" es un atajo para el cursor cuando se ordena por id
+        if (cursor == null && after != null) {
+            cursor = String.valueOf(after);
+        }
+
+        try {
+            return ResponseEntity.ok(productoServices.findPagina(size != null ? size : 20, orden, cursor));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @Operation(summary = "Buscar productos", 
+               description = "Búsqueda por texto en nombre, descripción y categoría, sin distinguir acentos ni mayúsculas. " +
+                             "Resultados ordenados por relevancia (BM25)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Resultados de la búsqueda"),
+        @ApiResponse(responseCode = "400", description = "Consulta vacía o límite inválido")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<?> buscar(@RequestParam(required = false) String q,
+                                    @RequestParam(defaultValue = "20") int limit) {
+        if (q == null || q.isBlank()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "El parámetro 'q' es obligatorio");
+            return ResponseEntity.badRequest().body(error);
+        }
+        if (limit < 1 || limit > 100) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "El límite debe estar entre 1 y 100");
+            return ResponseEntity.badRequest().body(error);
+        }
+        return ResponseEntity.ok(busquedaProductosService.buscar(q, limit));
+    }
+
+    @Operation(summary = "Navegación facetada", 
+               description = "Filtra por categoriaId, rango de precio (índice del rango) y estado, y devuelve " +
+                             "una página de productos junto a los conteos por categoría, rango de precio y estado")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Productos filtrados y conteos por faceta"),
+        @ApiResponse(responseCode = "400", description = "Parámetros inválidos")
+    })
+    @GetMapping("/facetas")
+    public ResponseEntity<?> verFacetas(@RequestParam(required = false) Long categoriaId,
+                                        @RequestParam(required = false) Integer rango,
+                                        @RequestParam(required = false) String estado,
+                                        @RequestParam(defaultValue = "20") int size,
+                                        @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(facetasProductosService.buscar(categoriaId, rango, estado, size, cursor));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @Operation(summary = "Exportar catálogo completo", 
+               description = "Escribe todo el catálogo en streaming, como arreglo JSON (formato=json) " +
+                             "o un producto por línea (formato=ndjson). El uso de memoria no depende del tamaño del catálogo")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Catálogo exportado"),
+        @ApiResponse(responseCode = "400", description = "Formato inválido")
+    })
+    @GetMapping("/export")
+    public ResponseEntity<?> exportarCatalogo(@RequestParam(defaultValue = "json") String formato, WebRequest request) {
+        boolean ndjson = "ndjson".equals(formato);
+        if (!ndjson && !"json".equals(formato)) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Formato inválido: " + formato + ". Valores permitidos: json, ndjson");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        AsyncWebRequest asincrona = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asincrona != null) {
+            asincrona.setTimeout(timeoutExportacion);
+        }
+
+        StreamingResponseBody cuerpo = salida -> {
+            try (JsonGenerator generador = objectMapper.createGenerator(salida)) {
+                if (ndjson) {
+                    // Sin separador entre valores raíz: cada producto termina con su propio salto de línea
+                    generador.setRootValueSeparator(null);
+                } else {
+                    generador.writeStartArray();
+                }
+                productoServices.recorrerCatalogo(producto -> {
+                    try {
+                        generador.writeObject(producto);
+                        if (ndjson) {
+                            generador.writeRaw('\n');
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (!ndjson) {
+                    generador.writeEndArray();
+                }
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(cuerpo);
+    }
+
+    @Operation(summary = "Importar productos masivamente", 
+               description = "Recibe un archivo CSV (con cabecera) o JSONL y lo importa en segundo plano por lotes. " +
+                             "Columnas: nombre, precio, stock, descripcion, categoria (nombre) o categoriaId, imagen, estado " +
+                             "e id opcional (si viene, la fila se inserta o actualiza)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Importación iniciada; consultar el progreso con el id devuelto"),
+        @ApiResponse(responseCode = "400", description = "Archivo vacío o formato inválido")
+    })
+    @PostMapping(value = "/import", consumes = "multipart/form-data")
+    public ResponseEntity<?> importarProductos(@RequestParam("file") MultipartFile file,
+                                               @RequestParam(required = false) String formato) {
+        if (file.isEmpty()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "El archivo está vacío");
+            return ResponseEntity.badRequest().body(error);
+        }
+        try {
+            EstadoImportacion estado = importacionProductosService.iniciar(file, formato);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(estado);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (IOException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "No se pudo leer el archivo: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    @Operation(summary = "Consultar importación", description = "Progreso y errores por fila de una importación masiva")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Estado de la importación"),
+        @ApiResponse(responseCode = "404", description = "Importación no encontrada")
+    })
+    @GetMapping("/import/{importacionId}")
+    public ResponseEntity<?> verImportacion(@PathVariable String importacionId) {
+        Optional<EstadoImportacion> estado = importacionProductosService.estado(importacionId);
+        if (estado.isPresent()) {
+            return ResponseEntity.ok(estado.get());
+        }
+        return ResponseEntity.notFound().build();
     }
 
     @Operation(summary = "Obtener producto por ID", description = "Obtiene el detalle de un producto específico")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Producto encontrado",
-                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = Producto.class))),
+                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProductoDTO.class))),
+        @ApiResponse(responseCode = "304", description = "El producto no cambió desde la versión del cliente"),
         @ApiResponse(responseCode = "404", description = "Producto no encontrado")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<?> verDetalle(@PathVariable Long id){
-        Optional<Producto> productoOptional = productoServices.findById(id);
+    public ResponseEntity<?> verDetalle(@PathVariable Long id, WebRequest webRequest){
+        Optional<ProductoDTO> productoOptional = productoServices.findDtoById(id);
         if (productoOptional.isPresent()){
-            return ResponseEntity.ok(productoOptional.orElseThrow());
+            ProductoDTO producto = productoOptional.get();
+            VersionCatalogoDTO version = VersionCatalogoDTO.deElemento(producto.ultimaModificacion());
+            String categoria = producto.categoria() != null ? producto.categoria().nombre() : null;
+            if (webRequest.checkNotModified(version.etag("producto", id, categoria), version.ultimaModificacionMillis())) {
+                return null;
+            }
+            return ResponseEntity.ok(producto);
         }
         return ResponseEntity.notFound().build();
     }
@@ -77,44 +291,21 @@ public class ProductoRestController {
         @ApiResponse(responseCode = "200", description = "Producto actualizado correctamente",
                      content = @Content(mediaType = "application/json", schema = @Schema(implementation = Producto.class))),
         @ApiResponse(responseCode = "404", description = "Producto no encontrado"),
-        @ApiResponse(responseCode = "400", description = "Datos inválidos")
+        @ApiResponse(responseCode = "400", description = "Datos inválidos"),
+        @ApiResponse(responseCode = "409", description = "Conflicto de concurrencia persistente")
     })
     @PutMapping("/{id}")
     public ResponseEntity<?> modificarProducto(@PathVariable Long id, @RequestBody Map<String, Object> productoData){
         try {
-            Optional<Producto> productoOptional = productoServices.findById(id);
-            
-            if (!productoOptional.isPresent()){
-                Map<String, String> error = new HashMap<>();
-                error.put("error", "Producto no encontrado");
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
-            }
-
-            Producto productoExiste = productoOptional.get();
-            
-            // Actualizar nombre
-            if (productoData.containsKey("nombre") && productoData.get("nombre") != null) {
-                productoExiste.setNombre(productoData.get("nombre").toString());
-            }
-            
-            // Actualizar descripción
-            if (productoData.containsKey("descripcion") && productoData.get("descripcion") != null) {
-                productoExiste.setDescripcion(productoData.get("descripcion").toString());
-            }
-            
             // Actualizar precio
+            Integer precio = null;
             if (productoData.containsKey("precio") && productoData.get("precio") != null) {
                 Object precioObj = productoData.get("precio");
-                int precio = (precioObj instanceof Number) ? ((Number) precioObj).intValue() : Integer.parseInt(precioObj.toString());
-                productoExiste.setPrecio(precio);
-            }
-            
-            // Actualizar imagen
-            if (productoData.containsKey("imagen") && productoData.get("imagen") != null) {
-                productoExiste.setImagen(productoData.get("imagen").toString());
+                precio = (precioObj instanceof Number) ? ((Number) precioObj).intValue() : Integer.parseInt(precioObj.toString());
             }
             
             // Actualizar categoría - IMPORTANTE: Manejar correctamente
+            Categoria categoria = null;
             if (productoData.containsKey("categoria") && productoData.get("categoria") != null) {
                 Object categoriaObj = productoData.get("categoria");
                 
@@ -152,13 +343,50 @@ public class ProductoRestController {
                         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
                     }
                     
-                    productoExiste.setCategoria(categoriaOptional.get());
+                    categoria = categoriaOptional.get();
                 }
             }
+
+            // Los cambios se aplican sobre la versión vigente del producto; si otro escritor
+            // lo modifica al mismo tiempo, el servicio vuelve a leerlo y reintenta
+            Integer nuevoPrecio = precio;
+            Categoria nuevaCategoria = categoria;
+            Optional<Producto> productoModificado = productoServices.modificar(id, productoExiste -> {
+                // Actualizar nombre
+                if (productoData.containsKey("nombre") && productoData.get("nombre") != null) {
+                    productoExiste.setNombre(productoData.get("nombre").toString());
+                }
+                
+                // Actualizar descripción
+                if (productoData.containsKey("descripcion") && productoData.get("descripcion") != null) {
+                    productoExiste.setDescripcion(productoData.get("descripcion").toString());
+                }
+                
+                if (nuevoPrecio != null) {
+                    productoExiste.setPrecio(nuevoPrecio);
+                }
+                
+                // Actualizar imagen
+                if (productoData.containsKey("imagen") && productoData.get("imagen") != null) {
+                    productoExiste.setImagen(productoData.get("imagen").toString());
+                }
+                
+                if (nuevaCategoria != null) {
+                    productoExiste.setCategoria(nuevaCategoria);
+                }
+            });
+
+            if (!productoModificado.isPresent()){
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Producto no encontrado");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+            }
+            return ResponseEntity.ok(productoModificado.get());
             
-            Producto productoModificado = productoServices.save(productoExiste);
-            return ResponseEntity.ok(productoModificado);
-            
+        } catch (OptimisticLockingFailureException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "El producto está siendo modificado por otro usuario, intente nuevamente");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Error al actualizar producto: " + e.getMessage());
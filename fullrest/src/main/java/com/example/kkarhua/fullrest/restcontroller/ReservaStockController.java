@@ -0,0 +1,111 @@
+package com.example.kkarhua.fullrest.restcontroller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.kkarhua.fullrest.dto.ResultadoReserva;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.services.ReservaStockService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@Tag(name = "Reservas de stock", description = "Reservas temporales de stock durante el checkout")
+@RestController
+@RequestMapping("api/stock/reservas")
+public class ReservaStockController {
+
+    @Autowired
+    private ReservaStockService reservaStockService;
+
+    @Operation(summary = "Reservar stock", description = "Aparta una cantidad de un producto por un tiempo limitado; se confirma al crear la compra")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Reserva creada"),
+        @ApiResponse(responseCode = "400", description = "Cantidad inválida o stock insuficiente"),
+        @ApiResponse(responseCode = "401", description = "Usuario no autenticado"),
+        @ApiResponse(responseCode = "404", description = "Producto no encontrado"),
+        @ApiResponse(responseCode = "429", description = "El usuario superó su límite de reservas o unidades apartadas")
+    })
+    @PostMapping
+    public ResponseEntity<?> reservar(@RequestBody Map<String, Long> request,
+                                      @RequestAttribute(name = "userId", required = false) Long userId) {
+        // Toda reserva tiene dueño: sin él, cualquiera podría consultarla, liberarla o confirmarla
+        if (userId == null) {
+            return noAutenticado();
+        }
+        Long productoId = request.get("productoId");
+        Long cantidad = request.get("cantidad");
+        if (productoId == null || cantidad == null || cantidad <= 0) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "productoId y una cantidad mayor a 0 son obligatorios");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        ResultadoReserva resultado = reservaStockService.reservar(productoId, (int) Math.min(cantidad, Integer.MAX_VALUE), userId);
+        if (resultado.tipo() == ResultadoStock.Tipo.NO_ENCONTRADO) {
+            return ResponseEntity.notFound().build();
+        }
+        if (resultado.tipo() == ResultadoStock.Tipo.LIMITE_EXCEDIDO) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Se alcanzó el límite de reservas activas o de unidades apartadas para este usuario o producto");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error);
+        }
+        if (resultado.tipo() == ResultadoStock.Tipo.STOCK_INSUFICIENTE) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Stock insuficiente. Disponible: " + resultado.disponible());
+            error.put("disponible", resultado.disponible());
+            return ResponseEntity.badRequest().body(error);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(resultado);
+    }
+
+    @Operation(summary = "Consultar reserva")
+    @GetMapping("/{id}")
+    public ResponseEntity<?> verReserva(@PathVariable Long id,
+                                        @RequestAttribute(name = "userId", required = false) Long userId) {
+        if (userId == null) {
+            return noAutenticado();
+        }
+        return reservaStockService.obtener(id, userId)
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Liberar reserva", description = "Devuelve el stock apartado antes de que venza")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "Reserva liberada"),
+        @ApiResponse(responseCode = "401", description = "Usuario no autenticado"),
+        @ApiResponse(responseCode = "404", description = "Reserva inexistente o vencida")
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> liberar(@PathVariable Long id,
+                                     @RequestAttribute(name = "userId", required = false) Long userId) {
+        if (userId == null) {
+            return noAutenticado();
+        }
+        if (reservaStockService.liberar(id, userId)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    private ResponseEntity<?> noAutenticado() {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Usuario no autenticado");
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+    }
+}
@@ -1,20 +1,31 @@
 package com.example.kkarhua.fullrest.restcontroller;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.kkarhua.fullrest.entities.Producto;
-import com.example.kkarhua.fullrest.services.ProductoServices;
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoLoteStock;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.dto.StockDTO;
+import com.example.kkarhua.fullrest.services.MovimientosStockService;
+import com.example.kkarhua.fullrest.services.StockServices;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -27,7 +38,16 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 public class StockController {
 
     @Autowired
-    private ProductoServices productoServices;
+    private StockServices stockServices;
+
+    @Autowired
+    private MovimientosStockService movimientosStock;
+
+    @Value("${stock.lote.max-lineas:500}")
+    private int maxLineasLote;
+
+    @Value("${stock.consulta.max-ids:500}")
+    private int maxIdsConsulta;
 
     @Operation(summary = "Consultar stock", description = "Obtiene el stock actual de un producto")
     @ApiResponses(value = {
@@ -36,21 +56,64 @@ public class StockController {
     })
     @GetMapping("/{productoId}")
     public ResponseEntity<?> consultarStock(@PathVariable Long productoId) {
-        Optional<Producto> productoOptional = productoServices.findById(productoId);
-        if (!productoOptional.isPresent()) {
+        // Misma lectura que ?ids=: sin la caché de detalle e incluyendo el contador de los productos calientes
+        List<StockDTO> stocks = stockServices.consultar(List.of(productoId));
+        if (stocks.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
 
-        Producto producto = productoOptional.get();
+        StockDTO producto = stocks.get(0);
         Map<String, Object> response = new HashMap<>();
-        response.put("productoId", producto.getId());
-        response.put("nombre", producto.getNombre());
-        response.put("stock", producto.getStock());
-        response.put("estado", producto.getStock() > 0 ? "disponible" : "agotado");
+        response.put("productoId", producto.productoId());
+        response.put("nombre", producto.nombre());
+        response.put("stock", producto.stock());
+        response.put("estado", producto.stock() > 0 ? "disponible" : "agotado");
 
         return ResponseEntity.ok(response);
     }
 
+    @Operation(summary = "Consultar stock de varios productos", description = "Obtiene id, nombre, stock y estado de varios productos en una sola consulta")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stock consultado; los ids inexistentes se omiten"),
+        @ApiResponse(responseCode = "400", description = "Demasiados ids")
+    })
+    @GetMapping
+    public ResponseEntity<?> consultarStockVarios(@RequestParam List<Long> ids) {
+        LinkedHashSet<Long> unicos = new LinkedHashSet<>(ids);
+        unicos.remove(null);
+        if (unicos.isEmpty() || unicos.size() > maxIdsConsulta) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Se deben indicar entre 1 y " + maxIdsConsulta + " ids");
+            return ResponseEntity.badRequest().body(error);
+        }
+        return ResponseEntity.ok(stockServices.consultar(unicos));
+    }
+
+    @Operation(summary = "Stock histórico", description = "Calcula el stock de un producto en una fecha a partir del libro de movimientos")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stock calculado"),
+        @ApiResponse(responseCode = "404", description = "Sin historia para esa fecha")
+    })
+    @GetMapping("/{productoId}/historico")
+    public ResponseEntity<?> stockHistorico(@PathVariable Long productoId,
+                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fecha) {
+        return movimientosStock.stockEn(productoId, fecha)
+            .<ResponseEntity<?>>map(stock -> {
+                Map<String, Object> response = new HashMap<>();
+                response.put("productoId", productoId);
+                response.put("fecha", fecha);
+                response.put("stock", stock);
+                return ResponseEntity.ok(response);
+            })
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Conciliar stock", description = "Compara el libro de movimientos con el stock de cada producto y lista las diferencias")
+    @GetMapping("/conciliacion")
+    public ResponseEntity<?> conciliar() {
+        return ResponseEntity.ok(movimientosStock.conciliar());
+    }
+
     @Operation(summary = "Actualizar stock", description = "Actualiza el stock de un producto (establecer cantidad)")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Stock actualizado correctamente"),
@@ -60,11 +123,6 @@ public class StockController {
     @PatchMapping("/{productoId}/actualizar")
     public ResponseEntity<?> actualizarStock(@PathVariable Long productoId, 
                                             @RequestBody Map<String, Integer> request) {
-        Optional<Producto> productoOptional = productoServices.findById(productoId);
-        if (!productoOptional.isPresent()) {
-            return ResponseEntity.notFound().build();
-        }
-
         Integer nuevoStock = request.get("stock");
         if (nuevoStock == null || nuevoStock < 0) {
             Map<String, String> error = new HashMap<>();
@@ -72,27 +130,12 @@ public class StockController {
             return ResponseEntity.badRequest().body(error);
         }
 
-        Producto producto = productoOptional.get();
-        int stockAnterior = producto.getStock();
-        producto.setStock(nuevoStock);
-        
-        // Solo cambiar estado basado en stock
-        if (nuevoStock == 0) {
-            producto.setEstado("agotado");
-        } else if (stockAnterior == 0 && nuevoStock > 0) {
-            producto.setEstado("activo");
+        ResultadoStock resultado = stockServices.actualizar(productoId, nuevoStock);
+        if (resultado.tipo() == ResultadoStock.Tipo.NO_ENCONTRADO) {
+            return ResponseEntity.notFound().build();
         }
 
-        productoServices.save(producto);
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("productoId", producto.getId());
-        response.put("nombre", producto.getNombre());
-        response.put("stockAnterior", stockAnterior);
-        response.put("stockActual", producto.getStock());
-        response.put("estado", producto.getEstado());
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(respuesta(resultado, null, 0));
     }
 
     @Operation(summary = "Agregar stock", description = "Incrementa el stock de un producto")
@@ -100,11 +143,6 @@ public class StockController {
     @PatchMapping("/{productoId}/agregar")
     public ResponseEntity<?> agregarStock(@PathVariable Long productoId, 
                                          @RequestBody Map<String, Integer> request) {
-        Optional<Producto> productoOptional = productoServices.findById(productoId);
-        if (!productoOptional.isPresent()) {
-            return ResponseEntity.notFound().build();
-        }
-
         Integer cantidad = request.get("cantidad");
         if (cantidad == null || cantidad <= 0) {
             Map<String, String> error = new HashMap<>();
@@ -112,25 +150,12 @@ public class StockController {
             return ResponseEntity.badRequest().body(error);
         }
 
-        Producto producto = productoOptional.get();
-        int stockAnterior = producto.getStock();
-        producto.setStock(stockAnterior + cantidad);
-        
-        if (stockAnterior == 0 && producto.getStock() > 0) {
-            producto.setEstado("activo");
+        ResultadoStock resultado = stockServices.agregar(productoId, cantidad);
+        if (resultado.tipo() == ResultadoStock.Tipo.NO_ENCONTRADO) {
+            return ResponseEntity.notFound().build();
         }
 
-        productoServices.save(producto);
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("productoId", producto.getId());
-        response.put("nombre", producto.getNombre());
-        response.put("stockAnterior", stockAnterior);
-        response.put("cantidadAgregada", cantidad);
-        response.put("stockActual", producto.getStock());
-        response.put("estado", producto.getEstado());
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(respuesta(resultado, "cantidadAgregada", cantidad));
     }
 
     @Operation(summary = "Reducir stock", description = "Disminuye el stock de un producto")
@@ -138,11 +163,6 @@ public class StockController {
     @PatchMapping("/{productoId}/reducir")
     public ResponseEntity<?> reducirStock(@PathVariable Long productoId, 
                                          @RequestBody Map<String, Integer> request) {
-        Optional<Producto> productoOptional = productoServices.findById(productoId);
-        if (!productoOptional.isPresent()) {
-            return ResponseEntity.notFound().build();
-        }
-
         Integer cantidad = request.get("cantidad");
         if (cantidad == null || cantidad <= 0) {
             Map<String, String> error = new HashMap<>();
@@ -150,31 +170,55 @@ public class StockController {
             return ResponseEntity.badRequest().body(error);
         }
 
-        Producto producto = productoOptional.get();
-        int stockAnterior = producto.getStock();
-
-        if (stockAnterior < cantidad) {
+        ResultadoStock resultado = stockServices.reducir(productoId, cantidad);
+        if (resultado.tipo() == ResultadoStock.Tipo.NO_ENCONTRADO) {
+            return ResponseEntity.notFound().build();
+        }
+        if (resultado.tipo() == ResultadoStock.Tipo.STOCK_INSUFICIENTE) {
             Map<String, String> error = new HashMap<>();
-            error.put("error", "Stock insuficiente. Stock actual: " + stockAnterior);
+            error.put("error", "Stock insuficiente. Stock actual: " + resultado.stockAnterior());
             return ResponseEntity.badRequest().body(error);
         }
 
-        producto.setStock(stockAnterior - cantidad);
-        
-        if (producto.getStock() == 0) {
-            producto.setEstado("agotado");
+        return ResponseEntity.ok(respuesta(resultado, "cantidadReducida", cantidad));
+    }
+
+    @Operation(summary = "Ajustar stock por lote", description = "Aplica varios ajustes (productoId, delta) en una sola transacción: se guardan todos o ninguno")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lote aplicado correctamente"),
+        @ApiResponse(responseCode = "400", description = "Lote inválido"),
+        @ApiResponse(responseCode = "409", description = "Alguna línea no pudo aplicarse; no se guardó ningún cambio")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<?> ajustarLote(@RequestBody List<AjusteStockDTO> ajustes) {
+        if (ajustes == null || ajustes.isEmpty() || ajustes.size() > maxLineasLote) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "El lote debe tener entre 1 y " + maxLineasLote + " líneas");
+            return ResponseEntity.badRequest().body(error);
+        }
+        for (AjusteStockDTO ajuste : ajustes) {
+            if (ajuste == null || ajuste.productoId() == null || ajuste.delta() == null || ajuste.delta() == 0) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Cada línea requiere productoId y un delta distinto de 0");
+                return ResponseEntity.badRequest().body(error);
+            }
         }
 
-        productoServices.save(producto);
+        ResultadoLoteStock resultado = stockServices.aplicarLote(ajustes);
+        return ResponseEntity.status(resultado.aplicado() ? HttpStatus.OK : HttpStatus.CONFLICT).body(resultado);
+    }
 
+    private Map<String, Object> respuesta(ResultadoStock resultado, String claveCantidad, int cantidad) {
+        StockDTO stock = resultado.stock();
         Map<String, Object> response = new HashMap<>();
-        response.put("productoId", producto.getId());
-        response.put("nombre", producto.getNombre());
-        response.put("stockAnterior", stockAnterior);
-        response.put("cantidadReducida", cantidad);
-        response.put("stockActual", producto.getStock());
-        response.put("estado", producto.getEstado());
-
-        return ResponseEntity.ok(response);
+        response.put("productoId", stock.productoId());
+        response.put("nombre", stock.nombre());
+        response.put("stockAnterior", resultado.stockAnterior());
+        if (claveCantidad != null) {
+            response.put(claveCantidad, cantidad);
+        }
+        response.put("stockActual", stock.stock());
+        response.put("estado", stock.estado());
+        return response;
     }
-}
\ No newline at end of file
+}
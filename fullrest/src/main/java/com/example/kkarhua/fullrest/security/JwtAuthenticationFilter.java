@@ -1,10 +1,12 @@
 package com.example.kkarhua.fullrest.security;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,8 +14,18 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -21,6 +33,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.cache.max-entradas:10000}")
+    private int cacheMaxEntradas = 10000;
+
+    // Entradas que se revisan para desalojar una cuando la caché está llena
+    private static final int MUESTRA_DESALOJO = 8;
+
+    // Tokens ya verificados, por SHA-256 del token; cada entrada vence con el exp del token.
+    // No se guarda el token en claro ni los rechazos. Se consulta en cada petición autenticada, así
+    // que es un ConcurrentHashMap (lecturas sin lock y sin modificar el mapa) y no un LRU con un solo
+    // monitor: al llenarse se desaloja de forma aproximada, la entrada que vence antes en una muestra
+    private final Map<String, TokenVerificado> verificados = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void iniciarCache() {
+        if (meterRegistry != null) {
+            Gauge.builder("jwt.cache.size", verificados, Map::size).register(meterRegistry);
+        }
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
                                    HttpServletResponse response, 
@@ -30,49 +64,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             // Extraer el header Authorization
             String authHeader = request.getHeader("Authorization");
 
-            String token = null;
-            String email = null;
-
-            // Verificar si el header contiene un Bearer token
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                token = authHeader.substring(7);
-                try {
-                    email = jwtUtil.extractEmail(token);
-                } catch (Exception e) {
-                    logger.error("Error al extraer email del token: " + e.getMessage());
-                }
-            }
+            // Verificar si el header contiene un Bearer token y no hay autenticación previa
+            if (authHeader != null && authHeader.startsWith("Bearer ")
+                    && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Firma, expiración y claims se verifican con un solo parseo, una vez por token
+                TokenVerificado principal = verificar(authHeader.substring(7));
+
+                // Crear authority con el rol
+                SimpleGrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + principal.rol().toUpperCase());
 
-            // Si tenemos email y no hay autenticación previa, validar el token
-            if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Crear token de autenticación
+                UsernamePasswordAuthenticationToken authToken = 
+                    new UsernamePasswordAuthenticationToken(
+                        principal.email(), 
+                        null, 
+                        Collections.singletonList(authority)
+                    );
                 
-                if (jwtUtil.validateToken(token, email)) {
-                    // Extraer rol del token
-                    String rol = jwtUtil.extractRol(token);
-                    Long userId = jwtUtil.extractUserId(token);
-
-                    // Crear authority con el rol
-                    SimpleGrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + rol.toUpperCase());
-
-                    // Crear token de autenticación
-                    UsernamePasswordAuthenticationToken authToken = 
-                        new UsernamePasswordAuthenticationToken(
-                            email, 
-                            null, 
-                            Collections.singletonList(authority)
-                        );
-                    
-                    // Agregar detalles adicionales
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    
-                    // Establecer la autenticación en el contexto de seguridad
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                    
-                    // Agregar userId al request como atributo
-                    request.setAttribute("userId", userId);
-                    request.setAttribute("userEmail", email);
-                    request.setAttribute("userRol", rol);
-                }
+                // Agregar detalles adicionales
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                
+                // Establecer la autenticación en el contexto de seguridad
+                SecurityContextHolder.getContext().setAuthentication(authToken);
+                
+                // Agregar userId al request como atributo
+                request.setAttribute("userId", principal.userId());
+                request.setAttribute("userEmail", principal.email());
+                request.setAttribute("userRol", principal.rol());
             }
 
         } catch (Exception e) {
@@ -83,6 +101,52 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private TokenVerificado verificar(String token) {
+        String clave = sha256(token);
+        TokenVerificado principal = verificados.get(clave);
+        if (principal != null && principal.expiraEn() > System.currentTimeMillis()) {
+            return principal;
+        }
+        if (principal != null) {
+            verificados.remove(clave, principal);
+        }
+        principal = jwtUtil.verificar(token);
+        if (verificados.size() >= cacheMaxEntradas) {
+            desalojar();
+        }
+        verificados.put(clave, principal);
+        return principal;
+    }
+
+    // Recorre unas pocas entradas: borra las vencidas y, si no había ninguna, la que vence antes
+    private void desalojar() {
+        long ahora = System.currentTimeMillis();
+        Map.Entry<String, TokenVerificado> candidata = null;
+        boolean borradas = false;
+        Iterator<Map.Entry<String, TokenVerificado>> it = verificados.entrySet().iterator();
+        for (int i = 0; i < MUESTRA_DESALOJO && it.hasNext(); i++) {
+            Map.Entry<String, TokenVerificado> entrada = it.next();
+            if (entrada.getValue().expiraEn() <= ahora) {
+                it.remove();
+                borradas = true;
+            } else if (candidata == null || entrada.getValue().expiraEn() < candidata.getValue().expiraEn()) {
+                candidata = entrada;
+            }
+        }
+        if (!borradas && candidata != null) {
+            verificados.remove(candidata.getKey(), candidata.getValue());
+        }
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
         String path = request.getRequestURI();
@@ -2,11 +2,13 @@ package com.example.kkarhua.fullrest.security;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -29,10 +31,16 @@ public class JwtUtil {
     @Value("${jwt.refresh.expiration:604800000}") // 7 días en milisegundos
     private Long refreshExpiration;
 
-    // Generar clave segura desde el secret
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    // Clave y parser se construyen una sola vez al arrancar: un secret ausente o demasiado
+    // corto para HS256 hace fallar el arranque en lugar de la primera petición
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    // Generar clave segura desde el secret; el parser es inmutable y se comparte entre hilos
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser().verifyWith(signingKey).build();
     }
 
     // Generar token de acceso
@@ -60,7 +68,7 @@ public class JwtUtil {
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
@@ -92,13 +100,23 @@ public class JwtUtil {
 
     // Extraer todos los claims
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        return parser
                 .parseSignedClaims(token)
                 .getPayload();
     }
 
+    // Verificar un token de acceso con un solo parseo: firma, expiración y claims de una vez.
+    // Lanza JwtException si el token es inválido o expiró, o si es un refresh token.
+    public TokenVerificado verificar(String token) {
+        Claims claims = extractAllClaims(token);
+        String rol = claims.get("rol", String.class);
+        if ("refresh".equals(claims.get("type", String.class)) || claims.getSubject() == null || rol == null) {
+            throw new UnsupportedJwtException("El token no es un token de acceso");
+        }
+        return new TokenVerificado(claims.getSubject(), rol, claims.get("userId", Long.class),
+            claims.getExpiration().getTime());
+    }
+
     // Verificar si el token ha expirado
     public Boolean isTokenExpired(String token) {
         try {
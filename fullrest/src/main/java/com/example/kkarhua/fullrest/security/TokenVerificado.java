@@ -0,0 +1,6 @@
+package com.example.kkarhua.fullrest.security;
+
+// Datos de un token de acceso cuya firma y expiración ya se verificaron (JwtUtil.verificar).
+// expiraEn en milisegundos desde epoch.
+public record TokenVerificado(String email, String rol, Long userId, long expiraEn) {
+}
@@ -0,0 +1,120 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.repositories.CompraRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Boleta en texto de cada compra, generada desde el outbox en el directorio compras.boletas.directorio.
+// El archivo se escribe en un temporal y se mueve a su nombre final, así que una boleta a medio escribir
+// nunca es visible y una entrega repetida solo la reemplaza por la misma.
+@Service
+public class BoletaService implements ManejadorOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(BoletaService.class);
+
+    public static final String EVENTO = "BOLETA";
+
+    @Autowired
+    private CompraRepository compraRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${compras.boletas.directorio:boletas}")
+    private String directorio = "boletas";
+
+    @Override
+    public String tipo() {
+        return EVENTO;
+    }
+
+    // Payload: id de la compra. Si la compra se eliminó antes de generar la boleta no hay nada que hacer
+    @Override
+    public void manejar(String payload) {
+        long compraId;
+        try {
+            compraId = Long.parseLong(payload.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Evento de boleta ilegible: " + payload, e);
+        }
+        Optional<Compra> compra = compraRepository.findById(compraId);
+        if (compra.isEmpty()) {
+            log.info("Compra {} eliminada antes de generar su boleta", compraId);
+            return;
+        }
+        try {
+            Path destino = archivo(compraId);
+            Files.createDirectories(destino.getParent());
+            Path temporal = Files.createTempFile(destino.getParent(), "boleta-" + compraId, ".tmp");
+            Files.writeString(temporal, texto(compra.get()), StandardCharsets.UTF_8);
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir la boleta de la compra " + compraId, e);
+        }
+    }
+
+    // Boleta ya generada; vacío mientras el evento sigue pendiente
+    public Optional<byte[]> leer(Long compraId) {
+        Path archivo = archivo(compraId);
+        if (!Files.exists(archivo)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.readAllBytes(archivo));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer la boleta de la compra " + compraId, e);
+        }
+    }
+
+    private Path archivo(long compraId) {
+        return Paths.get(directorio, "boleta-" + compraId + ".txt");
+    }
+
+    String texto(Compra compra) {
+        StringBuilder texto = new StringBuilder();
+        texto.append("BOLETA N° ").append(compra.getId()).append('\n');
+        texto.append("Fecha: ").append(compra.getFechaCompra()).append('\n');
+        texto.append("Estado: ").append(compra.getEstado()).append("\n\n");
+        texto.append(String.format("%-32s %6s %10s %12s%n", "Producto", "Cant.", "Precio", "Total"));
+
+        // Formato del detalle: [{"id":1,"nombre":"Laptop","precio":500000,"cantidad":1}, ...]
+        try {
+            JsonNode lineas = objectMapper.readTree(compra.getDetalleProductos() != null ? compra.getDetalleProductos() : "[]");
+            for (JsonNode linea : lineas) {
+                int precio = linea.path("precio").asInt(0);
+                int cantidad = linea.path("cantidad").asInt(0);
+                texto.append(String.format("%-32.32s %6d %10d %12d%n",
+                    linea.path("nombre").asText(""), cantidad, precio, (long) precio * cantidad));
+            }
+        } catch (JsonProcessingException e) {
+            texto.append("(detalle no disponible)\n");
+        }
+
+        texto.append('\n');
+        texto.append(String.format("%-20s %12d%n", "Subtotal:", valor(compra.getSubtotal())));
+        texto.append(String.format("%-20s %12d%n", "IVA:", valor(compra.getIva())));
+        texto.append(String.format("%-20s %12d%n", "Total:", valor(compra.getTotal())));
+        return texto.toString();
+    }
+
+    private static int valor(Integer monto) {
+        return monto != null ? monto : 0;
+    }
+}
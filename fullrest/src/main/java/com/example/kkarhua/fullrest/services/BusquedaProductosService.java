@@ -0,0 +1,164 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.kkarhua.fullrest.busqueda.IndiceInvertido;
+import com.example.kkarhua.fullrest.dto.ProductoDTO;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+
+// Búsqueda de texto completo sobre nombre, descripción y categoría de los productos.
+// El índice se construye al iniciar y se mantiene con los eventos de ProductoServiceImpl.
+// Una reconstrucción (al iniciar o tras una importación) arma un índice nuevo aparte mientras las
+// búsquedas siguen usando el anterior, y lo publica de una vez; los productos que cambiaron durante
+// el recorrido se vuelven a indexar en el nuevo. Los cambios solo de stock no tocan el índice.
+@Service
+public class BusquedaProductosService {
+
+    private static final Logger log = LoggerFactory.getLogger(BusquedaProductosService.class);
+
+    private static final int LOTE_CARGA = 1000;
+    private static final int FRANJAS_LOCK = 64;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    private volatile IndiceInvertido indice = new IndiceInvertido();
+
+    // Productos cambiados durante una reconstrucción en curso (null si no hay); protegido por el monitor
+    private Set<Long> cambiadosEnReconstruccion;
+
+    private final Object[] locksProducto = Stream.generate(Object::new).limit(FRANJAS_LOCK).toArray();
+
+    // Dos reconstrucciones (importaciones seguidas) no se solapan
+    private final Object lockReconstruccion = new Object();
+
+    @EventListener({ApplicationReadyEvent.class, CatalogoImportadoEvent.class})
+    public void reconstruir() {
+        synchronized (lockReconstruccion) {
+            synchronized (this) {
+                cambiadosEnReconstruccion = new HashSet<>();
+            }
+            IndiceInvertido nuevo = new IndiceInvertido();
+            // Carga por páginas keyset para no traer todo el catálogo de una vez
+            Long ultimoId = 0L;
+            List<ProductoDTO> lote;
+            do {
+                lote = productoRepository.findPaginaPorIdAsc(ultimoId, Limit.of(LOTE_CARGA));
+                for (ProductoDTO producto : lote) {
+                    indexar(nuevo, producto);
+                    ultimoId = producto.id();
+                }
+            } while (lote.size() == LOTE_CARGA);
+
+            Set<Long> cambiados;
+            synchronized (this) {
+                indice = nuevo;
+                cambiados = cambiadosEnReconstruccion;
+                cambiadosEnReconstruccion = null;
+            }
+            // El recorrido pudo leer estos productos antes de su último cambio
+            cambiados.forEach(this::refrescar);
+            log.info("Índice de búsqueda construido con {} productos", nuevo.size());
+        }
+    }
+
+    public List<ProductoDTO> buscar(String consulta, int limite) {
+        List<IndiceInvertido.Resultado> resultados = indice.buscar(consulta, limite);
+        if (resultados.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> ids = new ArrayList<>(resultados.size());
+        for (IndiceInvertido.Resultado resultado : resultados) {
+            ids.add(resultado.id());
+        }
+        Map<Long, ProductoDTO> porId = new HashMap<>();
+        for (ProductoDTO producto : productoRepository.findDtoByIdIn(ids)) {
+            porId.put(producto.id(), producto);
+        }
+
+        // Mantener el orden del ranking
+        List<ProductoDTO> productos = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductoDTO producto = porId.get(id);
+            if (producto != null) {
+                productos.add(producto);
+            }
+        }
+        return productos;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        // El stock no forma parte del texto indexado: cada descuento y cada volcado del inventario
+        // caliente publican este evento y no hace falta releer el producto
+        if (evento.soloStock()) {
+            return;
+        }
+        anotarCambio(evento.productoId());
+        if (evento.eliminado()) {
+            synchronized (lockDe(evento.productoId())) {
+                indice.eliminar(evento.productoId());
+            }
+            return;
+        }
+        refrescar(evento.productoId());
+    }
+
+    // Un cambio de nombre de categoría afecta a todos sus productos; se recorren por páginas
+    // keyset como en reconstruir()
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoriaCambiada(CategoriaCambiadaEvent evento) {
+        Long ultimoId = 0L;
+        List<ProductoDTO> lote;
+        do {
+            lote = productoRepository.findPaginaPorCategoria(evento.categoriaId(), ultimoId, Limit.of(LOTE_CARGA));
+            for (ProductoDTO producto : lote) {
+                anotarCambio(producto.id());
+                synchronized (lockDe(producto.id())) {
+                    indexar(indice, producto);
+                }
+                ultimoId = producto.id();
+            }
+        } while (lote.size() == LOTE_CARGA);
+    }
+
+    // Lee el producto y lo indexa sin soltar el lock de su franja: la lectura que se aplica
+    // última es también la última que se hizo
+    private void refrescar(Long productoId) {
+        synchronized (lockDe(productoId)) {
+            productoRepository.findDtoById(productoId)
+                .ifPresentOrElse(producto -> indexar(indice, producto), () -> indice.eliminar(productoId));
+        }
+    }
+
+    private synchronized void anotarCambio(Long productoId) {
+        if (cambiadosEnReconstruccion != null) {
+            cambiadosEnReconstruccion.add(productoId);
+        }
+    }
+
+    private Object lockDe(Long productoId) {
+        return locksProducto[(int) (productoId & (FRANJAS_LOCK - 1))];
+    }
+
+    private static void indexar(IndiceInvertido destino, ProductoDTO producto) {
+        destino.actualizar(producto.id(), producto.nombre(), producto.descripcion(),
+                           producto.categoria() != null ? producto.categoria().nombre() : null);
+    }
+}
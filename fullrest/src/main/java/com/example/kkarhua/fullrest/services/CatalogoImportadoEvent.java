@@ -0,0 +1,6 @@
+package com.example.kkarhua.fullrest.services;
+
+// Se publica al terminar una importación masiva, que escribe directo por JDBC:
+// las vistas en memoria del catálogo deben reconstruirse completas
+public record CatalogoImportadoEvent(String importacionId) {
+}
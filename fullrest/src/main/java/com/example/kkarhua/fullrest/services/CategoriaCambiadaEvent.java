@@ -0,0 +1,5 @@
+package com.example.kkarhua.fullrest.services;
+
+// Se publica cuando una categoría se crea, renombra o elimina
+public record CategoriaCambiadaEvent(Long categoriaId) {
+}
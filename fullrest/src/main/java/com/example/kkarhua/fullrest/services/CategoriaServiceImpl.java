@@ -4,9 +4,12 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.kkarhua.fullrest.dto.CategoriaDTO;
+import com.example.kkarhua.fullrest.dto.VersionCatalogoDTO;
 import com.example.kkarhua.fullrest.entities.Categoria;
 import com.example.kkarhua.fullrest.repositories.CategoriaRepository;
 import com.example.kkarhua.fullrest.repositories.ProductoRepository;
@@ -20,6 +23,9 @@ public class CategoriaServiceImpl implements CategoriaServices {
     @Autowired
     private ProductoRepository productoRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     @Transactional(readOnly = true)
     public List<Categoria> findByAll() {
@@ -32,10 +38,30 @@ public class CategoriaServiceImpl implements CategoriaServices {
         return categoriaRepository.findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<CategoriaDTO> findAllDto() {
+        return categoriaRepository.findAllDto();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<CategoriaDTO> findDtoById(Long id) {
+        return categoriaRepository.findDtoById(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public VersionCatalogoDTO versionCatalogo() {
+        return categoriaRepository.findVersionCatalogo();
+    }
+
     @Override
     @Transactional
     public Categoria save(Categoria unaCategoria) {
-        return categoriaRepository.save(unaCategoria);
+        Categoria categoriaGuardada = categoriaRepository.save(unaCategoria);
+        eventPublisher.publishEvent(new CategoriaCambiadaEvent(categoriaGuardada.getId()));
+        return categoriaGuardada;
     }
 
     @Override
@@ -44,6 +70,7 @@ public class CategoriaServiceImpl implements CategoriaServices {
         Optional<Categoria> categoriaOptional = categoriaRepository.findById(unaCategoria.getId());
         categoriaOptional.ifPresent(categoriaDb -> {
             categoriaRepository.delete(unaCategoria);
+            eventPublisher.publishEvent(new CategoriaCambiadaEvent(unaCategoria.getId()));
         });
         return categoriaOptional;
     }
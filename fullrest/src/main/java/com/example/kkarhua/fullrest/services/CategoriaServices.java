@@ -3,6 +3,8 @@ package com.example.kkarhua.fullrest.services;
 import java.util.List;
 import java.util.Optional;
 
+import com.example.kkarhua.fullrest.dto.CategoriaDTO;
+import com.example.kkarhua.fullrest.dto.VersionCatalogoDTO;
 import com.example.kkarhua.fullrest.entities.Categoria;
 
 public interface CategoriaServices {
@@ -11,6 +13,12 @@ public interface CategoriaServices {
 
     Optional<Categoria> findById(Long id);
 
+    List<CategoriaDTO> findAllDto();
+
+    Optional<CategoriaDTO> findDtoById(Long id);
+
+    VersionCatalogoDTO versionCatalogo();
+
     Categoria save(Categoria unaCategoria);
 
     Optional<Categoria> delete(Categoria unaCategoria);
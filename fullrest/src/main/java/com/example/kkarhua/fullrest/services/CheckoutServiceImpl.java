@@ -0,0 +1,172 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.BoletaDTO;
+import com.example.kkarhua.fullrest.dto.CheckoutDTO;
+import com.example.kkarhua.fullrest.dto.PrecioProductoDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoLoteStock;
+import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.entities.Envio;
+import com.example.kkarhua.fullrest.entities.Usuario;
+import com.example.kkarhua.fullrest.repositories.EnvioRepository;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+// Checkout del lado del servidor: el cliente manda solo productos y cantidades.
+// Todo ocurre en una transacción con un número fijo de sentencias, sin importar el tamaño del
+// carrito: un exists del envío, un select IN de precios, un lote JDBC de descuentos condicionales
+// (más el select IN de verificación de aplicarLote) y el insert de la compra. Usuario y envío se
+// asocian por referencia, sin cargarlos.
+@Service
+public class CheckoutServiceImpl implements CheckoutServices {
+
+    // Los precios de catálogo incluyen IVA; la boleta lo desglosa
+    static final int TASA_IVA = 19;
+
+    // Línea del detalleProductos, con la misma forma que generaba el frontend
+    private record DetalleProducto(Long id, String nombre, int precio, int cantidad) {
+    }
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private EnvioRepository envioRepository;
+
+    @Autowired
+    private StockServices stockServices;
+
+    @Autowired
+    private ReservaStockService reservaStockService;
+
+    @Autowired
+    private CompraServices compraServices;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${compras.checkout.max-lineas:100}")
+    private int maxLineas = 100;
+
+    @Value("${compras.checkout.max-cantidad:10000}")
+    private int maxCantidad = 10000;
+
+    @Override
+    @Transactional(timeoutString = "${transacciones.escritura.timeout-segundos:30}")
+    public BoletaDTO checkout(Long usuarioId, CheckoutDTO pedido) {
+        List<CheckoutDTO.Item> items = pedido.items() != null ? pedido.items() : List.of();
+        List<Long> reservas = pedido.reservas() != null ? pedido.reservas() : List.of();
+        if (pedido.envioId() == null) {
+            throw new IllegalArgumentException("El envío es obligatorio");
+        }
+        if (items.isEmpty() && reservas.isEmpty()) {
+            throw new IllegalArgumentException("El carrito está vacío");
+        }
+        if (items.size() + reservas.size() > maxLineas) {
+            throw new IllegalArgumentException("El carrito no puede tener más de " + maxLineas + " líneas");
+        }
+        if (!envioRepository.existsByIdAndUsuarioId(pedido.envioId(), usuarioId)) {
+            throw new IllegalArgumentException("El envío " + pedido.envioId() + " no pertenece al usuario");
+        }
+
+        // Cantidades por producto, ordenadas por id (mismo orden de bloqueo que aplicarLote)
+        Map<Long, Integer> cantidades = new TreeMap<>();
+        for (CheckoutDTO.Item item : items) {
+            if (item == null || item.productoId() == null || item.cantidad() == null || item.cantidad() <= 0) {
+                throw new IllegalArgumentException("Cada línea requiere productoId y una cantidad mayor a 0");
+            }
+            cantidades.merge(item.productoId(), item.cantidad(), this::sumarCantidad);
+        }
+        if (!reservas.isEmpty()) {
+            for (AjusteStockDTO reservada : reservaStockService.reclamar(reservas, usuarioId)) {
+                cantidades.merge(reservada.productoId(), -reservada.delta(), this::sumarCantidad);
+            }
+        }
+        for (Map.Entry<Long, Integer> entrada : cantidades.entrySet()) {
+            if (entrada.getValue() > maxCantidad) {
+                throw new IllegalArgumentException("No se pueden comprar más de " + maxCantidad
+                    + " unidades del producto " + entrada.getKey());
+            }
+        }
+
+        Map<Long, PrecioProductoDTO> precios = productoRepository.findPrecioByIdIn(cantidades.keySet()).stream()
+            .collect(Collectors.toMap(PrecioProductoDTO::id, Function.identity()));
+
+        long total = 0;
+        List<BoletaDTO.Linea> lineas = new ArrayList<>(cantidades.size());
+        List<AjusteStockDTO> ajustes = new ArrayList<>(cantidades.size());
+        for (Map.Entry<Long, Integer> entrada : cantidades.entrySet()) {
+            PrecioProductoDTO precio = precios.get(entrada.getKey());
+            if (precio == null) {
+                throw new IllegalArgumentException("Producto no encontrado: " + entrada.getKey());
+            }
+            int cantidad = entrada.getValue();
+            total += (long) precio.precio() * cantidad;
+            lineas.add(new BoletaDTO.Linea(precio.id(), precio.nombre(), precio.precio(), cantidad));
+            ajustes.add(new AjusteStockDTO(precio.id(), -cantidad));
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("El total de la compra excede el máximo permitido");
+        }
+        int totalCompra = (int) total;
+        int subtotal = subtotalSinIva(totalCompra);
+
+        // Sin eventos por producto en la petición: la compra deja en el outbox el aviso de reindexación
+        ResultadoLoteStock resultado = stockServices.aplicarLote(ajustes, false);
+        if (!resultado.aplicado()) {
+            throw new StockInsuficienteException(resultado);
+        }
+
+        Compra compra = new Compra(
+            entityManager.getReference(Usuario.class, usuarioId),
+            entityManager.getReference(Envio.class, pedido.envioId()),
+            subtotal, totalCompra - subtotal, totalCompra, detalle(lineas));
+        Compra guardada = compraServices.save(compra);
+
+        return new BoletaDTO(guardada.getId(), guardada.getFechaCompra(), guardada.getEstado(),
+            subtotal, totalCompra - subtotal, totalCompra, lineas);
+    }
+
+    // Suma de cantidades de un mismo producto saturada en Integer.MAX_VALUE: el tope por producto
+    // se valida después y un carrito absurdo termina en 400, no en un desborde
+    private int sumarCantidad(int actual, int extra) {
+        return (int) Math.min((long) actual + extra, Integer.MAX_VALUE);
+    }
+
+    // Neto de un total con IVA incluido, redondeado al peso más cercano sin pasar por double:
+    // round(total * 100 / 119) == (2 * total * 100 + 119) / (2 * 119)
+    static int subtotalSinIva(int total) {
+        long divisor = 100L + TASA_IVA;
+        return (int) ((200L * total + divisor) / (2 * divisor));
+    }
+
+    private String detalle(List<BoletaDTO.Linea> lineas) {
+        List<DetalleProducto> detalle = lineas.stream()
+            .map(l -> new DetalleProducto(l.productoId(), l.nombre(), l.precio(), l.cantidad()))
+            .toList();
+        try {
+            return objectMapper.writeValueAsString(detalle);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo generar el detalle de la compra", e);
+        }
+    }
+}
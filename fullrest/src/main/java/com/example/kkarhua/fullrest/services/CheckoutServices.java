@@ -0,0 +1,8 @@
+package com.example.kkarhua.fullrest.services;
+
+import com.example.kkarhua.fullrest.dto.BoletaDTO;
+import com.example.kkarhua.fullrest.dto.CheckoutDTO;
+
+public interface CheckoutServices {
+    BoletaDTO checkout(Long usuarioId, CheckoutDTO pedido);   //valoriza, descuenta stock y guarda la compra en una transacción
+}
@@ -0,0 +1,275 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.archivo.SegmentoArchivo;
+import com.example.kkarhua.fullrest.dto.EstadoImportacion;
+import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.entities.CompraArchivada;
+import com.example.kkarhua.fullrest.entities.Envio;
+import com.example.kkarhua.fullrest.entities.Usuario;
+import com.example.kkarhua.fullrest.repositories.CompraArchivadaRepository;
+import com.example.kkarhua.fullrest.repositories.EnvioRepository;
+import com.example.kkarhua.fullrest.repositories.UsuarioRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Archivo de compras antiguas en segmentos mensuales comprimidos (compras-AAAA-MM.seg/.idx).
+// Un hilo recorre por id las compras con más de edad-dias y, por lote: anexa las filas completas
+// al segmento de su mes (forzado a disco) y después, en una transacción, copia la cabecera a
+// compra_archivada y borra la fila de compras. Si el proceso cae entre los dos pasos, el lote se
+// vuelve a anexar en la siguiente pasada y el bloque más nuevo reemplaza al anterior.
+// Las líneas (compra_item) y los acumulados de ventas no se tocan.
+@Service
+public class CompraArchivoService {
+
+    private static final Logger log = LoggerFactory.getLogger(CompraArchivoService.class);
+
+    private static final String SQL_LOTE_COMPRAS =
+        "select id, usuario_id, envio_id, subtotal, iva, total, detalle_productos, fecha_compra, estado " +
+        "from compras where fecha_compra < ? order by id limit ?";
+
+    private static final String SQL_LOCALIZAR =
+        "insert ignore into compra_archivada (id, usuario_id, envio_id, subtotal, iva, total, fecha_compra, estado, segmento) " +
+        "values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_BORRAR =
+        "delete from compras where id = ?";
+
+    // Una línea del segmento: la fila de compras tal como estaba
+    record FilaArchivo(long id, long usuarioId, long envioId, int subtotal, int iva, int total,
+                       String detalleProductos, LocalDateTime fechaCompra, String estado) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CompraArchivadaRepository compraArchivadaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private EnvioRepository envioRepository;
+
+    @Value("${compras.archivo.directorio:archivo}")
+    private String directorio = "archivo";
+
+    @Value("${compras.archivo.edad-dias:365}")
+    private long edadDias = 365;
+
+    @Value("${compras.archivo.lote:500}")
+    private int tamanoLote = 500;
+
+    @Value("${compras.archivo.intervalo-horas:24}")
+    private long intervaloHoras = 24;
+
+    // Cada segmento guarda su propio índice disperso en memoria y lo extiende al anexarle un bloque
+    private final Map<String, SegmentoArchivo> segmentos = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService programador;
+    private volatile EstadoImportacion archivo;
+
+    @PostConstruct
+    void iniciar() {
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "compras-archivo");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(this::iniciarArchivo, intervaloHoras, intervaloHoras, TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    void detener() {
+        programador.shutdownNow();
+    }
+
+    // Lanza una pasada en el hilo de archivo; si ya hay una en curso devuelve su estado
+    public synchronized EstadoImportacion iniciarArchivo() {
+        if (archivo != null && !archivo.isTerminada()) {
+            return archivo;
+        }
+        EstadoImportacion estado = new EstadoImportacion(UUID.randomUUID().toString(), "compras");
+        archivo = estado;
+        programador.execute(() -> procesarArchivo(estado));
+        return estado;
+    }
+
+    public Optional<EstadoImportacion> estadoArchivo() {
+        return Optional.ofNullable(archivo);
+    }
+
+    // procesadas y guardadas cuentan compras archivadas; se detiene en el primer error
+    void procesarArchivo(EstadoImportacion estado) {
+        estado.iniciar();
+        try {
+            Timestamp corte = Timestamp.valueOf(LocalDateTime.now().minusDays(edadDias));
+            while (true) {
+                List<FilaArchivo> lote = jdbcTemplate.query(SQL_LOTE_COMPRAS,
+                    (rs, n) -> new FilaArchivo(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getInt(4), rs.getInt(5),
+                        rs.getInt(6), rs.getString(7), rs.getTimestamp(8).toLocalDateTime(), rs.getString(9)),
+                    corte, tamanoLote);
+                if (lote.isEmpty()) {
+                    break;
+                }
+                archivarLote(lote);
+                estado.sumarProcesadas(lote.size());
+                estado.sumarGuardadas(lote.size());
+            }
+            estado.terminar("completada", null);
+            log.info("Archivo de compras {} completado: {} compras archivadas", estado.getId(), estado.getGuardadas());
+        } catch (Exception e) {
+            log.error("Archivo de compras {} fallido", estado.getId(), e);
+            estado.terminar("fallida", e.getMessage());
+        }
+    }
+
+    void archivarLote(List<FilaArchivo> lote) throws IOException {
+        // El lote viene ordenado por id, así que cada bloque cubre un rango creciente de ids
+        Map<String, List<FilaArchivo>> porMes = new TreeMap<>();
+        for (FilaArchivo fila : lote) {
+            porMes.computeIfAbsent(YearMonth.from(fila.fechaCompra()).toString(), mes -> new ArrayList<>()).add(fila);
+        }
+
+        List<Object[]> localizadores = new ArrayList<>(lote.size());
+        for (Map.Entry<String, List<FilaArchivo>> mes : porMes.entrySet()) {
+            List<FilaArchivo> filas = mes.getValue();
+            List<String> lineas = new ArrayList<>(filas.size());
+            for (FilaArchivo fila : filas) {
+                lineas.add(objectMapper.writeValueAsString(fila));
+                localizadores.add(new Object[] {fila.id(), fila.usuarioId(), fila.envioId(), fila.subtotal(), fila.iva(),
+                    fila.total(), Timestamp.valueOf(fila.fechaCompra()), fila.estado(), mes.getKey()});
+            }
+            segmento(mes.getKey()).agregar(filas.get(0).id(), filas.get(filas.size() - 1).id(), lineas);
+        }
+
+        List<Object[]> ids = lote.stream().map(fila -> new Object[] {fila.id()}).toList();
+        transactionTemplate.executeWithoutResult(tx -> {
+            jdbcTemplate.batchUpdate(SQL_LOCALIZAR, localizadores);
+            jdbcTemplate.batchUpdate(SQL_BORRAR, ids);
+        });
+    }
+
+    public Optional<Compra> buscar(Long id) {
+        return compraArchivadaRepository.findById(id)
+            .flatMap(archivada -> leer(archivada.getSegmento(), Set.of(id)).stream().findFirst());
+    }
+
+    // Compras completas archivadas de un usuario; cada bloque necesario se descomprime una vez
+    public List<Compra> buscarPorUsuario(Long usuarioId) {
+        Map<String, Set<Long>> idsPorSegmento = compraArchivadaRepository.findByUsuarioId(usuarioId).stream()
+            .collect(Collectors.groupingBy(CompraArchivada::getSegmento,
+                Collectors.mapping(CompraArchivada::getId, Collectors.toSet())));
+        List<Compra> compras = new ArrayList<>();
+        idsPorSegmento.forEach((mes, ids) -> compras.addAll(leer(mes, ids)));
+        compras.sort(Comparator.comparing(Compra::getFechaCompra).thenComparing(Compra::getId).reversed());
+        return compras;
+    }
+
+    // Recorre el índice disperso del más nuevo al más antiguo y abre solo los bloques cuyo rango contiene algún id pendiente
+    private List<Compra> leer(String mes, Collection<Long> ids) {
+        Set<Long> pendientes = new HashSet<>(ids);
+        Map<Long, FilaArchivo> encontradas = new HashMap<>();
+        try {
+            SegmentoArchivo segmento = segmento(mes);
+            List<SegmentoArchivo.Bloque> bloques = segmento.bloques();
+            for (int i = bloques.size() - 1; i >= 0 && !pendientes.isEmpty(); i--) {
+                SegmentoArchivo.Bloque bloque = bloques.get(i);
+                if (pendientes.stream().noneMatch(bloque::contiene)) {
+                    continue;
+                }
+                for (String linea : segmento.leer(bloque)) {
+                    FilaArchivo fila = objectMapper.readValue(linea, FilaArchivo.class);
+                    if (pendientes.remove(fila.id())) {
+                        encontradas.put(fila.id(), fila);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el segmento de compras " + mes, e);
+        }
+        if (!pendientes.isEmpty()) {
+            log.warn("Compras {} indicadas en compra_archivada pero ausentes del segmento {}", pendientes, mes);
+        }
+
+        // Usuario y envío se cargan una vez por id; pueden faltar si se eliminaron después de archivar
+        Map<Long, Optional<Usuario>> usuarios = new HashMap<>();
+        Map<Long, Optional<Envio>> envios = new HashMap<>();
+        List<Compra> compras = new ArrayList<>(encontradas.size());
+        for (FilaArchivo fila : encontradas.values()) {
+            Compra compra = compra(fila);
+            compra.setUsuario(usuarios.computeIfAbsent(fila.usuarioId(), usuarioRepository::findById).orElse(null));
+            compra.setEnvio(envios.computeIfAbsent(fila.envioId(), envioRepository::findById).orElse(null));
+            compras.add(compra);
+        }
+        return compras;
+    }
+
+    private static Compra compra(FilaArchivo fila) {
+        Compra compra = new Compra();
+        compra.setId(fila.id());
+        compra.setSubtotal(fila.subtotal());
+        compra.setIva(fila.iva());
+        compra.setTotal(fila.total());
+        compra.setDetalleProductos(fila.detalleProductos());
+        compra.setFechaCompra(fila.fechaCompra());
+        compra.setEstado(fila.estado());
+        return compra;
+    }
+
+    // Una sola instancia por mes aunque la pidan dos hilos a la vez: agregar() se serializa en su
+    // monitor y cada instancia guarda su propia copia del índice, así que dos instancias del mismo
+    // segmento podrían escribir bloques entrelazados o leer un índice sin el último bloque
+    private SegmentoArchivo segmento(String mes) throws IOException {
+        try {
+            return segmentos.computeIfAbsent(mes, m -> {
+                try {
+                    return new SegmentoArchivo(Paths.get(directorio), "compras-" + m);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.dto.EstadoImportacion;
+import com.example.kkarhua.fullrest.entities.Compra;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Líneas de compra normalizadas (tabla compra_item) a partir de Compra.detalleProductos.
+// Las compras nuevas escriben sus líneas en la misma transacción que la cabecera; las antiguas
+// se cargan con un backfill que recorre compras por id en lotes y salta las que ya tienen líneas,
+// así que puede relanzarse sin duplicar y convive con las compras que entran mientras corre.
+@Service
+public class CompraItemsService {
+
+    private static final Logger log = LoggerFactory.getLogger(CompraItemsService.class);
+
+    private static final String SQL_INSERTAR =
+        "insert into compra_item (compra_id, producto_id, cantidad, precio_unitario, fecha_compra) values (?, ?, ?, ?, ?)";
+
+    private static final String SQL_LOTE_COMPRAS =
+        "select id, fecha_compra, detalle_productos from compras where id > ? order by id limit ?";
+
+    private static final String SQL_CON_ITEMS =
+        "select distinct compra_id from compra_item where compra_id between ? and ?";
+
+    record Item(long productoId, int cantidad, int precioUnitario) {
+    }
+
+    private record FilaCompra(long id, Timestamp fecha, String detalle) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${compras.items.backfill.lote:500}")
+    private int tamanoLote = 500;
+
+    private ExecutorService executor;
+    private volatile EstadoImportacion backfill;
+
+    @PostConstruct
+    void iniciarExecutor() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread hilo = new Thread(r, "compra-items-backfill");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    void detenerExecutor() {
+        executor.shutdownNow();
+    }
+
+    // Escribe las líneas de una compra recién guardada, dentro de la transacción de la compra, y las devuelve.
+    // Un detalle que no se puede leer no impide la compra: queda sin líneas y se registra el aviso.
+    public List<Item> registrar(Compra compra) {
+        List<Item> items;
+        try {
+            items = leerDetalle(compra.getDetalleProductos());
+        } catch (IllegalArgumentException e) {
+            log.warn("Compra {} sin líneas normalizadas: {}", compra.getId(), e.getMessage());
+            return List.of();
+        }
+        if (!items.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_INSERTAR, filas(compra.getId(), Timestamp.valueOf(compra.getFechaCompra()), items));
+        }
+        return items;
+    }
+
+    // Lanza el backfill en segundo plano; si ya hay uno en curso devuelve su estado
+    public synchronized EstadoImportacion iniciarBackfill() {
+        if (backfill != null && !backfill.isTerminada()) {
+            return backfill;
+        }
+        EstadoImportacion estado = new EstadoImportacion(UUID.randomUUID().toString(), "compras.detalle_productos");
+        backfill = estado;
+        executor.submit(() -> procesarBackfill(estado));
+        return estado;
+    }
+
+    public Optional<EstadoImportacion> estadoBackfill() {
+        return Optional.ofNullable(backfill);
+    }
+
+    // Recorre las compras por id en lotes: en memoria hay a lo sumo un lote de blobs a la vez.
+    // Cada lote se inserta en su propia transacción; procesadas cuenta compras leídas y
+    // guardadas las que recibieron líneas. Los errores se informan por id de compra.
+    void procesarBackfill(EstadoImportacion estado) {
+        estado.iniciar();
+        try {
+            long ultimoId = 0;
+            while (true) {
+                List<FilaCompra> lote = jdbcTemplate.query(SQL_LOTE_COMPRAS,
+                    (rs, n) -> new FilaCompra(rs.getLong(1), rs.getTimestamp(2), rs.getString(3)),
+                    ultimoId, tamanoLote);
+                if (lote.isEmpty()) {
+                    break;
+                }
+                long primerId = lote.get(0).id();
+                ultimoId = lote.get(lote.size() - 1).id();
+                Set<Long> conItems = new HashSet<>(jdbcTemplate.queryForList(SQL_CON_ITEMS, Long.class, primerId, ultimoId));
+
+                List<Object[]> filas = new ArrayList<>();
+                for (FilaCompra compra : lote) {
+                    estado.sumarProcesadas(1);
+                    if (conItems.contains(compra.id())) {
+                        continue;
+                    }
+                    try {
+                        List<Item> items = leerDetalle(compra.detalle());
+                        filas.addAll(filas(compra.id(), compra.fecha(), items));
+                        estado.sumarGuardadas(1);
+                    } catch (IllegalArgumentException e) {
+                        estado.agregarError(compra.id(), e.getMessage());
+                    }
+                }
+                if (!filas.isEmpty()) {
+                    transactionTemplate.executeWithoutResult(tx -> jdbcTemplate.batchUpdate(SQL_INSERTAR, filas));
+                }
+            }
+            estado.terminar("completada", null);
+            log.info("Backfill de líneas de compra {} completado: {} compras leídas, {} con líneas nuevas, {} con error",
+                     estado.getId(), estado.getProcesadas(), estado.getGuardadas(), estado.getConError());
+        } catch (Exception e) {
+            log.error("Backfill de líneas de compra {} fallido", estado.getId(), e);
+            estado.terminar("fallida", e.getMessage());
+        }
+    }
+
+    // Formato del blob: [{"id":1,"nombre":"Laptop","precio":500000,"cantidad":1}, ...]
+    List<Item> leerDetalle(String detalle) {
+        if (detalle == null || detalle.isBlank()) {
+            return List.of();
+        }
+        JsonNode raiz;
+        try {
+            raiz = objectMapper.readTree(detalle);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("detalleProductos no es JSON válido");
+        }
+        if (!raiz.isArray()) {
+            throw new IllegalArgumentException("detalleProductos no es una lista");
+        }
+
+        List<Item> items = new ArrayList<>(raiz.size());
+        for (JsonNode linea : raiz) {
+            JsonNode id = linea.hasNonNull("id") ? linea.get("id") : linea.get("productoId");
+            int cantidad = linea.path("cantidad").asInt(0);
+            if (id == null || !id.canConvertToLong() || cantidad <= 0) {
+                throw new IllegalArgumentException("Línea sin id de producto o cantidad: " + linea);
+            }
+            items.add(new Item(id.asLong(), cantidad, linea.path("precio").asInt(0)));
+        }
+        return items;
+    }
+
+    private static List<Object[]> filas(long compraId, Timestamp fecha, List<Item> items) {
+        List<Object[]> filas = new ArrayList<>(items.size());
+        for (Item item : items) {
+            filas.add(new Object[] {compraId, item.productoId(), item.cantidad(), item.precioUnitario(), fecha});
+        }
+        return filas;
+    }
+}
@@ -1,41 +1,142 @@
 package com.example.kkarhua.fullrest.services;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import com.example.kkarhua.fullrest.dto.CompraResumenDTO;
+import com.example.kkarhua.fullrest.dto.PaginaCursor;
+import com.example.kkarhua.fullrest.dto.VentasProductoDTO;
 import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.repositories.CompraArchivadaRepository;
+import com.example.kkarhua.fullrest.repositories.CompraItemRepository;
 import com.example.kkarhua.fullrest.repositories.CompraRepository;
 
 @Service
 public class CompraServiceImpl implements CompraServices {
 
+    // Límites abiertos del rango de fechas cuando no se indica (dentro del rango de DATETIME de MySQL)
+    private static final LocalDateTime FECHA_MINIMA = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime FECHA_MAXIMA = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    private static final Comparator<CompraResumenDTO> ORDEN_RECIENTES =
+        Comparator.comparing(CompraResumenDTO::fechaCompra).thenComparing(CompraResumenDTO::id).reversed();
+
     @Autowired
     private CompraRepository compraRepository;
 
+    @Autowired
+    private CompraItemRepository compraItemRepository;
+
+    @Autowired
+    private ReservaStockService reservaStockService;
+
+    @Autowired
+    private CompraItemsService compraItemsService;
+
+    @Autowired
+    private ResumenVentasService resumenVentasService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private CompraArchivadaRepository compraArchivadaRepository;
+
+    @Autowired
+    private CompraArchivoService compraArchivoService;
+
+    @Value("${compras.paginacion.max-size:100}")
+    private int maxSize = 100;
+
     @Override
     @Transactional(readOnly = true)
     public List<Compra> findByAll() {
         return (List<Compra>) compraRepository.findAll();
     }
 
+    // Una compra que ya no está en compras se busca en los segmentos de archivo
     @Override
     @Transactional(readOnly = true)
     public Optional<Compra> findById(Long id) {
-        return compraRepository.findById(id);
+        return compraRepository.findById(id).or(() -> compraArchivoService.buscar(id));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<Compra> findByUsuarioId(Long usuarioId) {
-        return compraRepository.findByUsuarioId(usuarioId);
+        List<Compra> compras = new ArrayList<>(compraRepository.findByUsuarioId(usuarioId));
+        compras.addAll(compraArchivoService.buscarPorUsuario(usuarioId));
+        return compras;
     }
 
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
+    public PaginaCursor<CompraResumenDTO> findPaginaResumenes(Long usuarioId, LocalDateTime desde, LocalDateTime hasta,
+                                                              String estado, int size, String cursor) {
+        if (size < 1 || size > maxSize) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + maxSize);
+        }
+        LocalDateTime inicio = desde != null ? desde : FECHA_MINIMA;
+        LocalDateTime fin = hasta != null ? hasta : FECHA_MAXIMA;
+
+        // Sin cursor se empieza en el extremo superior del rango
+        LocalDateTime fechaCursor = fin;
+        Long idCursor = 0L;
+        if (cursor != null) {
+            int separador = cursor.lastIndexOf('_');
+            if (separador <= 0) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+            try {
+                fechaCursor = LocalDateTime.parse(cursor.substring(0, separador));
+                idCursor = Long.parseLong(cursor.substring(separador + 1));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+        }
+
+        // Se pide un elemento extra solo para saber si existe una página siguiente. Compras activas y
+        // archivadas comparten el orden (fechaCompra, id), así que la página es la mezcla de ambas
+        Limit limit = Limit.of(size + 1);
+        List<CompraResumenDTO> compras = usuarioId == null
+            ? mezclar(compraRepository.findPaginaResumen(inicio, fin, estado, fechaCursor, idCursor, limit),
+                      compraArchivadaRepository.findPaginaResumen(inicio, fin, estado, fechaCursor, idCursor, limit),
+                      size + 1)
+            : mezclar(compraRepository.findPaginaResumenByUsuarioId(usuarioId, inicio, fin, estado, fechaCursor, idCursor, limit),
+                      compraArchivadaRepository.findPaginaResumenByUsuarioId(usuarioId, inicio, fin, estado, fechaCursor, idCursor, limit),
+                      size + 1);
+
+        String siguienteCursor = null;
+        if (compras.size() > size) {
+            compras = compras.subList(0, size);
+            CompraResumenDTO ultima = compras.get(size - 1);
+            siguienteCursor = ultima.fechaCompra() + "_" + ultima.id();
+        }
+        return new PaginaCursor<>(compras, siguienteCursor, compras.size());
+    }
+
+    @Override
+    @Transactional(timeoutString = "${transacciones.escritura.timeout-segundos:30}")
     public Compra save(Compra unaCompra) {
-        return compraRepository.save(unaCompra);
+        return guardar(unaCompra);
+    }
+
+    @Override
+    @Transactional(timeoutString = "${transacciones.escritura.timeout-segundos:30}")
+    public Compra save(Compra unaCompra, List<Long> reservas) {
+        if (reservas != null && !reservas.isEmpty()) {
+            Long usuarioId = unaCompra.getUsuario() != null ? unaCompra.getUsuario().getId() : null;
+            reservaStockService.confirmar(reservas, usuarioId);
+        }
+        return guardar(unaCompra);
     }
 
     @Override
@@ -43,6 +144,8 @@ public class CompraServiceImpl implements CompraServices {
     public Optional<Compra> delete(Compra unaCompra) {
         Optional<Compra> compraOptional = compraRepository.findById(unaCompra.getId());
         compraOptional.ifPresent(compraDb -> {
+            compraItemRepository.deleteByCompraId(compraDb.getId());
+            outboxService.publicar(ResumenVentasService.EVENTO, ResumenVentasService.Venta.de(compraDb, -1));
             compraRepository.delete(unaCompra);
         });
         return compraOptional;
@@ -51,6 +154,41 @@ public class CompraServiceImpl implements CompraServices {
     @Override
     @Transactional(readOnly = true)
     public long countCompletadas() {
-        return compraRepository.countByEstado("completada");
+        return resumenVentasService.contarCompras("completada");
+    }
+
+    // Al crear la compra se escriben sus líneas normalizadas y, en la misma transacción, los eventos del
+    // outbox para lo que puede ocurrir después: acumulados de ventas, boleta y aviso de los productos vendidos
+    private Compra guardar(Compra unaCompra) {
+        boolean nueva = unaCompra.getId() == null;
+        Compra compraGuardada = compraRepository.save(unaCompra);
+        if (nueva) {
+            List<CompraItemsService.Item> items = compraItemsService.registrar(compraGuardada);
+            outboxService.publicar(ResumenVentasService.EVENTO, ResumenVentasService.Venta.de(compraGuardada, 1));
+            outboxService.publicar(BoletaService.EVENTO, compraGuardada.getId());
+            if (!items.isEmpty()) {
+                outboxService.publicar(ProductosVendidosService.EVENTO,
+                    items.stream().map(CompraItemsService.Item::productoId).distinct().toList());
+            }
+        }
+        return compraGuardada;
+    }
+
+    // Mezcla dos listas ya ordenadas de la más reciente a la más antigua; casi siempre las archivadas van todas al final
+    private static List<CompraResumenDTO> mezclar(List<CompraResumenDTO> activas, List<CompraResumenDTO> archivadas, int maximo) {
+        if (archivadas.isEmpty()) {
+            return activas;
+        }
+        List<CompraResumenDTO> todas = new ArrayList<>(activas.size() + archivadas.size());
+        todas.addAll(activas);
+        todas.addAll(archivadas);
+        todas.sort(ORDEN_RECIENTES);
+        return todas.size() > maximo ? todas.subList(0, maximo) : todas;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public VentasProductoDTO ventasPorProducto(Long productoId, LocalDateTime desde, LocalDateTime hasta) {
+        return compraItemRepository.findVentas(productoId, desde, hasta);
     }
 }
\ No newline at end of file
@@ -1,14 +1,22 @@
 package com.example.kkarhua.fullrest.services;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import com.example.kkarhua.fullrest.dto.CompraResumenDTO;
+import com.example.kkarhua.fullrest.dto.PaginaCursor;
+import com.example.kkarhua.fullrest.dto.VentasProductoDTO;
 import com.example.kkarhua.fullrest.entities.Compra;
 
 public interface CompraServices {
     List<Compra> findByAll();
     Optional<Compra> findById(Long id);
     List<Compra> findByUsuarioId(Long usuarioId);
+    PaginaCursor<CompraResumenDTO> findPaginaResumenes(Long usuarioId, LocalDateTime desde, LocalDateTime hasta,
+                                                       String estado, int size, String cursor);   //solo cabeceras; usuarioId null = todas
     Compra save(Compra unaCompra);
+    Compra save(Compra unaCompra, List<Long> reservas);   //confirma las reservas de stock en la misma transacción
     Optional<Compra> delete(Compra unaCompra);
     long countCompletadas();
+    VentasProductoDTO ventasPorProducto(Long productoId, LocalDateTime desde, LocalDateTime hasta);
 }
\ No newline at end of file
@@ -0,0 +1,281 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.kkarhua.fullrest.dto.CatalogoFacetadoDTO;
+import com.example.kkarhua.fullrest.dto.CategoriaDTO;
+import com.example.kkarhua.fullrest.dto.FacetaConteo;
+import com.example.kkarhua.fullrest.dto.FacetasDTO;
+import com.example.kkarhua.fullrest.dto.PaginaCursor;
+import com.example.kkarhua.fullrest.dto.ProductoDTO;
+import com.example.kkarhua.fullrest.dto.ProductoFacetaDTO;
+import com.example.kkarhua.fullrest.repositories.CategoriaRepository;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+
+import jakarta.annotation.PostConstruct;
+
+// Navegación facetada del catálogo por categoría, rango de precio y estado.
+// Los conteos salen de un cubo en memoria (categoría x rango x estado) que se mantiene
+// de forma incremental con los eventos de producto, sin GROUP BY por cada petición.
+// Cada evento relee el producto bajo un lock por franja de id: dos eventos del mismo producto se
+// aplican en el orden de sus lecturas y el último refleja la fila confirmada más reciente.
+// La reconstrucción arma un cubo nuevo sin tomar el monitor y lo publica al terminar; los
+// productos que cambiaron mientras tanto se vuelven a leer después de publicarlo.
+@Service
+public class FacetasProductosService {
+
+    private static final Logger log = LoggerFactory.getLogger(FacetasProductosService.class);
+
+    private static final int LOTE_CARGA = 1000;
+    private static final int FRANJAS_LOCK = 64;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    // Límites inferiores de cada rango de precio (el primero parte en 0)
+    @Value("${productos.facetas.rangos-precio:10000,25000,50000,100000}")
+    private int[] limitesPrecio = {10000, 25000, 50000, 100000};
+
+    @Value("${productos.paginacion.max-size:100}")
+    private int maxSize = 100;
+
+    private record Celda(Long categoriaId, int rango, String estado) {
+    }
+
+    // Conteo por celda del cubo y celda actual de cada producto (para descontar al cambiar)
+    private static final class Cubo {
+        final Map<Celda, Long> conteos = new HashMap<>();
+        final Map<Long, Celda> celdaPorProducto = new HashMap<>();
+
+        // Descuenta la celda anterior del producto y suma la nueva (null = eliminado)
+        void mover(Long productoId, Celda nueva) {
+            Celda anterior = nueva == null ? celdaPorProducto.remove(productoId) : celdaPorProducto.put(productoId, nueva);
+            if (anterior != null) {
+                conteos.computeIfPresent(anterior, (celda, cantidad) -> cantidad > 1 ? cantidad - 1 : null);
+            }
+            if (nueva != null) {
+                conteos.merge(nueva, 1L, Long::sum);
+            }
+        }
+    }
+
+    // cubo y cambiadosEnReconstruccion se protegen con el monitor del servicio
+    private Cubo cubo = new Cubo();
+    private Set<Long> cambiadosEnReconstruccion;
+    private volatile Map<Long, String> nombresCategoria = Map.of();
+
+    private final Object[] locksProducto = Stream.generate(Object::new).limit(FRANJAS_LOCK).toArray();
+
+    // Dos reconstrucciones (importaciones seguidas) no se solapan
+    private final Object lockReconstruccion = new Object();
+
+    @PostConstruct
+    void validarRangos() {
+        for (int i = 1; i < limitesPrecio.length; i++) {
+            if (limitesPrecio[i] <= limitesPrecio[i - 1]) {
+                throw new IllegalStateException("productos.facetas.rangos-precio debe ser creciente");
+            }
+        }
+    }
+
+    @EventListener({ApplicationReadyEvent.class, CatalogoImportadoEvent.class})
+    public void reconstruir() {
+        cargarCategorias();
+        synchronized (lockReconstruccion) {
+            synchronized (this) {
+                cambiadosEnReconstruccion = new HashSet<>();
+            }
+            Cubo nuevo = new Cubo();
+            Long ultimoId = 0L;
+            List<ProductoFacetaDTO> lote;
+            do {
+                lote = productoRepository.findFacetasPagina(ultimoId, Limit.of(LOTE_CARGA));
+                for (ProductoFacetaDTO producto : lote) {
+                    nuevo.mover(producto.id(), celdaDe(producto));
+                    ultimoId = producto.id();
+                }
+            } while (lote.size() == LOTE_CARGA);
+            int productos = nuevo.celdaPorProducto.size();
+
+            Set<Long> cambiados;
+            synchronized (this) {
+                cubo = nuevo;
+                cambiados = cambiadosEnReconstruccion;
+                cambiadosEnReconstruccion = null;
+            }
+            // El recorrido pudo leer estos productos antes de su último cambio
+            cambiados.forEach(this::refrescar);
+            log.info("Facetas de catálogo construidas con {} productos", productos);
+        }
+    }
+
+    public CatalogoFacetadoDTO buscar(Long categoriaId, Integer rango, String estado, int size, String cursor) {
+        if (size < 1 || size > maxSize) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + maxSize);
+        }
+        if (rango != null && (rango < 0 || rango > limitesPrecio.length)) {
+            throw new IllegalArgumentException("Rango de precio inválido: " + rango);
+        }
+        Long desdeId;
+        try {
+            desdeId = cursor == null ? 0L : Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+
+        int precioMin = rango == null ? Integer.MIN_VALUE : inicioRango(rango);
+        int precioMax = rango == null ? Integer.MAX_VALUE : finRango(rango);
+        List<ProductoDTO> productos = productoRepository.findPaginaFiltrada(
+            categoriaId, precioMin, precioMax, estado, desdeId, Limit.of(size + 1));
+
+        String siguienteCursor = null;
+        if (productos.size() > size) {
+            productos = productos.subList(0, size);
+            siguienteCursor = String.valueOf(productos.get(size - 1).id());
+        }
+
+        return new CatalogoFacetadoDTO(
+            new PaginaCursor<>(productos, siguienteCursor, productos.size()),
+            contar(categoriaId, rango, estado));
+    }
+
+    // Cada faceta ignora su propio filtro y aplica los otros dos
+    private synchronized FacetasDTO contar(Long categoriaId, Integer rango, String estado) {
+        Map<Long, Long> porCategoria = new HashMap<>();
+        Map<Integer, Long> porRango = new TreeMap<>();
+        Map<String, Long> porEstado = new TreeMap<>();
+        long total = 0;
+
+        for (Map.Entry<Celda, Long> entrada : cubo.conteos.entrySet()) {
+            Celda celda = entrada.getKey();
+            long cantidad = entrada.getValue();
+            boolean cumpleCategoria = categoriaId == null || categoriaId.equals(celda.categoriaId());
+            boolean cumpleRango = rango == null || rango == celda.rango();
+            boolean cumpleEstado = estado == null || estado.equals(celda.estado());
+
+            if (cumpleRango && cumpleEstado) {
+                porCategoria.merge(celda.categoriaId(), cantidad, Long::sum);
+            }
+            if (cumpleCategoria && cumpleEstado) {
+                porRango.merge(celda.rango(), cantidad, Long::sum);
+            }
+            if (cumpleCategoria && cumpleRango) {
+                porEstado.merge(celda.estado(), cantidad, Long::sum);
+            }
+            if (cumpleCategoria && cumpleRango && cumpleEstado) {
+                total += cantidad;
+            }
+        }
+
+        Map<Long, String> nombres = nombresCategoria;
+        List<FacetaConteo> categorias = new ArrayList<>();
+        porCategoria.forEach((id, cantidad) -> categorias.add(new FacetaConteo(
+            id == null ? null : String.valueOf(id),
+            id == null ? "Sin categoría" : nombres.getOrDefault(id, "Categoría " + id),
+            cantidad)));
+        categorias.sort((a, b) -> Long.compare(b.cantidad(), a.cantidad()));
+
+        List<FacetaConteo> rangos = new ArrayList<>();
+        for (int i = 0; i <= limitesPrecio.length; i++) {
+            rangos.add(new FacetaConteo(String.valueOf(i), etiquetaRango(i), porRango.getOrDefault(i, 0L)));
+        }
+
+        List<FacetaConteo> estados = new ArrayList<>();
+        porEstado.forEach((valor, cantidad) -> estados.add(new FacetaConteo(valor, valor, cantidad)));
+
+        return new FacetasDTO(categorias, rangos, estados, total);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        if (evento.eliminado()) {
+            synchronized (lockDe(evento.productoId())) {
+                aplicar(evento.productoId(), null);
+            }
+            return;
+        }
+        refrescar(evento.productoId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoriaCambiada(CategoriaCambiadaEvent evento) {
+        cargarCategorias();
+    }
+
+    private void cargarCategorias() {
+        Map<Long, String> nombres = new HashMap<>();
+        for (CategoriaDTO categoria : categoriaRepository.findAllDto()) {
+            nombres.put(categoria.id(), categoria.nombre());
+        }
+        nombresCategoria = nombres;
+    }
+
+    // Lee el producto y aplica su celda sin soltar el lock de su franja: la lectura que se aplica
+    // última es también la última que se hizo. La consulta no toma el monitor, así que contar() no la espera
+    private void refrescar(Long productoId) {
+        synchronized (lockDe(productoId)) {
+            aplicar(productoId, productoRepository.findFacetaById(productoId).map(this::celdaDe).orElse(null));
+        }
+    }
+
+    private synchronized void aplicar(Long productoId, Celda nueva) {
+        cubo.mover(productoId, nueva);
+        if (cambiadosEnReconstruccion != null) {
+            cambiadosEnReconstruccion.add(productoId);
+        }
+    }
+
+    private Object lockDe(Long productoId) {
+        return locksProducto[(int) (productoId & (FRANJAS_LOCK - 1))];
+    }
+
+    private Celda celdaDe(ProductoFacetaDTO producto) {
+        return new Celda(producto.categoriaId(), rangoDe(producto.precio()), producto.estado());
+    }
+
+    private int rangoDe(int precio) {
+        int rango = 0;
+        while (rango < limitesPrecio.length && precio >= limitesPrecio[rango]) {
+            rango++;
+        }
+        return rango;
+    }
+
+    private int inicioRango(int rango) {
+        return rango == 0 ? Integer.MIN_VALUE : limitesPrecio[rango - 1];
+    }
+
+    private int finRango(int rango) {
+        return rango == limitesPrecio.length ? Integer.MAX_VALUE : limitesPrecio[rango] - 1;
+    }
+
+    private String etiquetaRango(int rango) {
+        if (rango == 0) {
+            return "Menos de " + limitesPrecio[0];
+        }
+        if (rango == limitesPrecio.length) {
+            return limitesPrecio[rango - 1] + " o más";
+        }
+        return limitesPrecio[rango - 1] + " - " + (limitesPrecio[rango] - 1);
+    }
+}
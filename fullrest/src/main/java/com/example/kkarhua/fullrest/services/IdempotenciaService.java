@@ -0,0 +1,186 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.kkarhua.fullrest.cache.CacheLocal;
+
+// Registro de peticiones con Idempotency-Key (tabla idempotencia) con una caché local delante.
+// Una petición nueva reclama su clave con un INSERT IGNORE antes de ejecutarse y guarda la
+// respuesta al terminar; un reintento con la misma clave recibe esa respuesta sin volver a
+// ejecutar la escritura. Las filas vencen a las ttl-horas y un hilo las barre en tandas.
+// Una reclamación en curso solo se retoma pasados abandono-segundos, que debe superar con holgura
+// transacciones.escritura.timeout-segundos (el tiempo máximo de las escrituras que protege): antes
+// de eso la petición original pudo seguir en curso y se responde EN_CURSO. Ventana restante: si el
+// proceso muere después del commit de la escritura y antes de completar(), un reintento posterior
+// al abandono la vuelve a ejecutar.
+@Service
+public class IdempotenciaService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+
+    private static final String SQL_RECLAMAR =
+        "insert ignore into idempotencia (clave, huella, estado, creada, expira) values (?, ?, 0, ?, ?)";
+
+    private static final String SQL_BUSCAR =
+        "select huella, estado, tipo_contenido, cuerpo from idempotencia where clave = ?";
+
+    // Una reclamación que quedó en curso más de abandono-segundos (el proceso murió antes de terminar
+    // la escritura, que ya venció por timeout) se puede retomar
+    private static final String SQL_RETOMAR =
+        "update idempotencia set huella = ?, creada = ?, expira = ? where clave = ? and estado = 0 and creada < ?";
+
+    private static final String SQL_COMPLETAR =
+        "update idempotencia set estado = ?, tipo_contenido = ?, cuerpo = ? where clave = ?";
+
+    private static final String SQL_LIBERAR =
+        "delete from idempotencia where clave = ? and estado = 0";
+
+    private static final String SQL_BARRER =
+        "delete from idempotencia where expira < ? limit ?";
+
+    private static final int TANDA_BARRIDO = 1000;
+
+    // Respuesta guardada; huella identifica la petición que la produjo
+    public record Respuesta(byte[] huella, int estado, String tipoContenido, byte[] cuerpo) {
+    }
+
+    public enum Reclamo {
+        NUEVA,          // la petición debe ejecutarse y luego completar() o liberar()
+        REPETIDA,       // ya hay respuesta: se devuelve la guardada
+        EN_CURSO,       // la petición original todavía no termina
+        CONFLICTO       // misma clave con otra petición (otro cuerpo o ruta)
+    }
+
+    public record ResultadoReclamo(Reclamo tipo, Respuesta respuesta) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${idempotencia.ttl-horas:24}")
+    private long ttlHoras = 24;
+
+    @Value("${idempotencia.abandono-segundos:600}")
+    private long abandonoSegundos = 600;
+
+    @Value("${idempotencia.cache.max-entradas:10000}")
+    private int cacheMaxEntradas = 10000;
+
+    @Value("${idempotencia.cache.ttl-minutos:10}")
+    private long cacheTtlMinutos = 10;
+
+    @Value("${idempotencia.barrido-minutos:10}")
+    private long barridoMinutos = 10;
+
+    private LongSupplier reloj = System::currentTimeMillis;
+
+    // Solo respuestas completas; una clave en curso siempre se consulta en la tabla
+    private CacheLocal<String, Respuesta> cache;
+    private ScheduledExecutorService programador;
+
+    @PostConstruct
+    void iniciar() {
+        cache = new CacheLocal<>(cacheMaxEntradas, TimeUnit.MINUTES.toMillis(cacheTtlMinutos), reloj);
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "idempotencia-barrido");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                barrer();
+            } catch (Exception e) {
+                log.warn("No se pudieron barrer las claves de idempotencia vencidas", e);
+            }
+        }, barridoMinutos, barridoMinutos, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void detener() {
+        programador.shutdownNow();
+    }
+
+    public ResultadoReclamo reclamar(byte[] clave, byte[] huella) {
+        Respuesta enCache = cache.get(HexFormat.of().formatHex(clave));
+        if (enCache != null) {
+            return comparar(enCache, huella);
+        }
+
+        long ahora = reloj.getAsLong();
+        Timestamp expira = new Timestamp(ahora + TimeUnit.HOURS.toMillis(ttlHoras));
+        if (jdbcTemplate.update(SQL_RECLAMAR, clave, huella, new Timestamp(ahora), expira) == 1) {
+            return new ResultadoReclamo(Reclamo.NUEVA, null);
+        }
+
+        List<Respuesta> filas = jdbcTemplate.query(SQL_BUSCAR,
+            (rs, n) -> new Respuesta(rs.getBytes(1), rs.getInt(2), rs.getString(3), rs.getBytes(4)), clave);
+        if (filas.isEmpty()) {
+            // Se barrió entre el INSERT y la lectura: se intenta reclamar una vez más
+            boolean reclamada = jdbcTemplate.update(SQL_RECLAMAR, clave, huella, new Timestamp(ahora), expira) == 1;
+            return new ResultadoReclamo(reclamada ? Reclamo.NUEVA : Reclamo.EN_CURSO, null);
+        }
+
+        Respuesta guardada = filas.get(0);
+        if (guardada.estado() == 0) {
+            if (!Arrays.equals(guardada.huella(), huella)) {
+                return new ResultadoReclamo(Reclamo.CONFLICTO, null);
+            }
+            Timestamp limite = new Timestamp(ahora - TimeUnit.SECONDS.toMillis(abandonoSegundos));
+            boolean retomada = jdbcTemplate.update(SQL_RETOMAR, huella, new Timestamp(ahora), expira, clave, limite) == 1;
+            return new ResultadoReclamo(retomada ? Reclamo.NUEVA : Reclamo.EN_CURSO, null);
+        }
+        cache.put(HexFormat.of().formatHex(clave), guardada);
+        return comparar(guardada, huella);
+    }
+
+    // Guarda la respuesta de una petición reclamada
+    public void completar(byte[] clave, Respuesta respuesta) {
+        jdbcTemplate.update(SQL_COMPLETAR, respuesta.estado(), respuesta.tipoContenido(), respuesta.cuerpo(), clave);
+        cache.put(HexFormat.of().formatHex(clave), respuesta);
+    }
+
+    // Suelta una reclamación cuya petición falló sin respuesta definitiva (5xx): el reintento se ejecuta de nuevo
+    public void liberar(byte[] clave) {
+        jdbcTemplate.update(SQL_LIBERAR, clave);
+    }
+
+    // Borra las claves vencidas en tandas cortas para no retener bloqueos
+    public int barrer() {
+        Timestamp ahora = new Timestamp(reloj.getAsLong());
+        int total = 0;
+        int borradas;
+        do {
+            borradas = jdbcTemplate.update(SQL_BARRER, ahora, TANDA_BARRIDO);
+            total += borradas;
+        } while (borradas == TANDA_BARRIDO);
+        return total;
+    }
+
+    void setReloj(LongSupplier reloj) {
+        this.reloj = reloj;
+    }
+
+    private static ResultadoReclamo comparar(Respuesta guardada, byte[] huella) {
+        if (!Arrays.equals(guardada.huella(), huella)) {
+            return new ResultadoReclamo(Reclamo.CONFLICTO, null);
+        }
+        return new ResultadoReclamo(Reclamo.REPETIDA, guardada);
+    }
+}
@@ -0,0 +1,487 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.kkarhua.fullrest.dto.CategoriaDTO;
+import com.example.kkarhua.fullrest.dto.EstadoImportacion;
+import com.example.kkarhua.fullrest.entities.MovimientoStock;
+import com.example.kkarhua.fullrest.repositories.CategoriaRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Importación masiva de productos desde CSV o JSONL.
+// El archivo se lee línea a línea y las filas válidas se escriben por JDBC en lotes
+// (con rewriteBatchedStatements el driver las envía como un solo INSERT multi-fila).
+// Las filas con id se insertan o actualizan (upsert); las sin id se insertan con id autoincremental.
+// Cada fila anota su movimiento en el libro de stock dentro de la transacción del lote: APERTURA
+// si el producto es nuevo y ESTABLECIDO con el stock importado si vino con id (sin leer el anterior).
+// El stock de los productos en modo caliente vive en memoria: su fila no se toca y el stock importado
+// se fija en el contador, que lo vuelca a la tabla como cualquier otro movimiento caliente.
+@Service
+public class ImportacionProductosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionProductosService.class);
+
+    private static final String SQL_INSERTAR =
+        "insert into producto (nombre, descripcion, precio, stock, categoria_id, imagen, estado, " +
+        "fecha_creacion, fecha_actualizacion, version) values (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String SQL_UPSERT =
+        "insert into producto (id, nombre, descripcion, precio, stock, categoria_id, imagen, estado, " +
+        "fecha_creacion, fecha_actualizacion, version) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0) as nuevo " +
+        "on duplicate key update nombre = nuevo.nombre, descripcion = nuevo.descripcion, " +
+        "precio = nuevo.precio, stock = nuevo.stock, categoria_id = nuevo.categoria_id, " +
+        "imagen = nuevo.imagen, estado = nuevo.estado, fecha_actualizacion = nuevo.fecha_actualizacion, " +
+        "version = version + 1";
+
+    // Igual que SQL_UPSERT pero sin stock ni estado, que para los productos calientes los maneja el volcado
+    private static final String SQL_UPSERT_CALIENTE =
+        "insert into producto (id, nombre, descripcion, precio, stock, categoria_id, imagen, estado, " +
+        "fecha_creacion, fecha_actualizacion, version) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0) as nuevo " +
+        "on duplicate key update nombre = nuevo.nombre, descripcion = nuevo.descripcion, " +
+        "precio = nuevo.precio, categoria_id = nuevo.categoria_id, imagen = nuevo.imagen, " +
+        "fecha_actualizacion = nuevo.fecha_actualizacion, version = version + 1";
+
+    // Las importaciones terminadas se olvidan después de una hora
+    private static final long RETENCION_HORAS = 1;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MovimientosStockService movimientos;
+
+    @Autowired
+    private InventarioCalienteService inventarioCaliente;
+
+    @Value("${productos.importacion.lote:500}")
+    private int tamanoLote = 500;
+
+    @Value("${productos.importacion.hilos:2}")
+    private int hilos = 2;
+
+    private ExecutorService executor;
+    private final Map<String, EstadoImportacion> importaciones = new ConcurrentHashMap<>();
+
+    private record FilaProducto(long linea, Long id, String nombre, String descripcion, int precio, int stock,
+                                Long categoriaId, String imagen, String estado) {
+    }
+
+    @PostConstruct
+    void iniciarExecutor() {
+        executor = Executors.newFixedThreadPool(hilos);
+    }
+
+    @PreDestroy
+    void detenerExecutor() {
+        executor.shutdown();
+    }
+
+    // Copia el archivo a disco y lo procesa en segundo plano; el progreso se consulta con estado(id)
+    public EstadoImportacion iniciar(MultipartFile archivo, String formato) throws IOException {
+        String formatoResuelto = resolverFormato(formato, archivo.getOriginalFilename());
+        Path temporal = Files.createTempFile("importacion-productos-", "." + formatoResuelto);
+        archivo.transferTo(temporal);
+
+        olvidarTerminadas();
+        EstadoImportacion estado = new EstadoImportacion(UUID.randomUUID().toString(), archivo.getOriginalFilename());
+        importaciones.put(estado.getId(), estado);
+        executor.submit(() -> procesar(temporal, formatoResuelto, estado));
+        return estado;
+    }
+
+    public Optional<EstadoImportacion> estado(String id) {
+        return Optional.ofNullable(importaciones.get(id));
+    }
+
+    private void procesar(Path archivo, String formato, EstadoImportacion estado) {
+        estado.iniciar();
+        boolean csv = "csv".equals(formato);
+        try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            // Búsqueda de categorías por nombre cargada una vez por importación
+            Map<String, Long> categorias = new HashMap<>();
+            for (CategoriaDTO categoria : categoriaRepository.findAllDto()) {
+                categorias.put(normalizar(categoria.nombre()), categoria.id());
+            }
+
+            List<FilaProducto> lote = new ArrayList<>(tamanoLote);
+            List<String> cabecera = null;
+            char separador = ',';
+            String linea;
+            long numero = 0;
+
+            while ((linea = lector.readLine()) != null) {
+                numero++;
+                long inicio = numero;
+                if (numero == 1 && linea.startsWith("\uFEFF")) {
+                    linea = linea.substring(1);
+                }
+                if (linea.isBlank()) {
+                    continue;
+                }
+                if (csv && comillasImpares(linea)) {
+                    // Un campo entre comillas puede traer saltos de línea: el registro sigue en las
+                    // líneas siguientes hasta cerrar las comillas. Si el archivo termina antes,
+                    // separarCsv() lo rechaza como error de la fila donde empezó
+                    StringBuilder registro = new StringBuilder(linea);
+                    boolean abiertas = true;
+                    String siguiente;
+                    while (abiertas && (siguiente = lector.readLine()) != null) {
+                        numero++;
+                        registro.append('\n').append(siguiente);
+                        abiertas = !comillasImpares(siguiente);
+                    }
+                    linea = registro.toString();
+                }
+                if (csv && cabecera == null) {
+                    // Excel en español suele exportar con ';'
+                    separador = linea.indexOf(';') >= 0 && linea.indexOf(',') < 0 ? ';' : ',';
+                    cabecera = new ArrayList<>();
+                    for (String columna : separarCsv(linea, separador)) {
+                        cabecera.add(normalizar(columna));
+                    }
+                    continue;
+                }
+
+                estado.sumarProcesadas(1);
+                try {
+                    Map<String, String> campos = csv ? camposCsv(cabecera, separarCsv(linea, separador)) : camposJson(linea);
+                    lote.add(convertir(inicio, campos, categorias));
+                } catch (Exception e) {
+                    estado.agregarError(inicio, e.getMessage());
+                    continue;
+                }
+
+                if (lote.size() >= tamanoLote) {
+                    guardarLote(lote, estado);
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) {
+                guardarLote(lote, estado);
+            }
+            estado.terminar("completada", null);
+            log.info("Importación {} completada: {} procesadas, {} guardadas, {} con error",
+                     estado.getId(), estado.getProcesadas(), estado.getGuardadas(), estado.getConError());
+        } catch (Exception e) {
+            log.error("Importación {} fallida", estado.getId(), e);
+            estado.terminar("fallida", e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(archivo);
+            } catch (IOException e) {
+                log.warn("No se pudo eliminar el archivo temporal {}", archivo);
+            }
+            eventPublisher.publishEvent(new CatalogoImportadoEvent(estado.getId()));
+        }
+    }
+
+    // Cada lote va en su propia transacción; si falla se reintenta fila por fila para ubicar los errores
+    private void guardarLote(List<FilaProducto> lote, EstadoImportacion estado) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> escribir(lote));
+            estado.sumarGuardadas(lote.size());
+        } catch (DataAccessException e) {
+            for (FilaProducto fila : lote) {
+                try {
+                    transactionTemplate.executeWithoutResult(tx -> escribir(List.of(fila)));
+                    estado.sumarGuardadas(1);
+                } catch (DataAccessException ex) {
+                    estado.agregarError(fila.linea(), ex.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private void escribir(List<FilaProducto> filas) {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<FilaProducto> nuevas = new ArrayList<>();
+        List<FilaProducto> conId = new ArrayList<>();
+        for (FilaProducto fila : filas) {
+            (fila.id() == null ? nuevas : conId).add(fila);
+        }
+        if (!nuevas.isEmpty()) {
+            insertar(nuevas, ahora);
+        }
+        if (!conId.isEmpty()) {
+            upsert(conId, ahora);
+        }
+    }
+
+    private void insertar(List<FilaProducto> nuevas, Timestamp ahora) {
+        List<Object[]> inserciones = new ArrayList<>(nuevas.size());
+        for (FilaProducto fila : nuevas) {
+            inserciones.add(new Object[] {fila.nombre(), fila.descripcion(), fila.precio(), fila.stock(),
+                fila.categoriaId(), fila.imagen(), fila.estado(), ahora, ahora});
+        }
+        // Las claves generadas dan el id de cada fila nueva para su movimiento de APERTURA
+        KeyHolder claves = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Object[] valores = inserciones.get(i);
+                    for (int j = 0; j < valores.length; j++) {
+                        ps.setObject(j + 1, valores[j]);
+                    }
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return inserciones.size();
+                }
+            }, claves);
+
+        List<Map<String, Object>> generadas = claves.getKeyList();
+        if (generadas.size() != nuevas.size()) {
+            throw new DataRetrievalFailureException("El driver devolvió " + generadas.size() + " claves para " + nuevas.size() + " filas");
+        }
+        for (int i = 0; i < nuevas.size(); i++) {
+            long id = ((Number) generadas.get(i).values().iterator().next()).longValue();
+            movimientos.registrar(id, MovimientoStock.Tipo.APERTURA, nuevas.get(i).stock());
+        }
+    }
+
+    private void upsert(List<FilaProducto> conId, Timestamp ahora) {
+        List<FilaProducto> frias = new ArrayList<>(conId.size());
+        List<FilaProducto> calientes = new ArrayList<>();
+        for (FilaProducto fila : conId) {
+            (inventarioCaliente.esCaliente(fila.id()) ? calientes : frias).add(fila);
+        }
+
+        if (!frias.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_UPSERT, parametrosUpsert(frias, ahora));
+            // El upsert fija el stock sea el producto nuevo o no: el libro anota el valor absoluto
+            for (FilaProducto fila : frias) {
+                movimientos.registrar(fila.id(), MovimientoStock.Tipo.ESTABLECIDO, fila.stock());
+            }
+        }
+
+        if (!calientes.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_UPSERT_CALIENTE, parametrosUpsert(calientes, ahora));
+            // Se aplica al contador cuando el lote confirma
+            for (FilaProducto fila : calientes) {
+                inventarioCaliente.actualizar(fila.id(), fila.stock());
+            }
+        }
+    }
+
+    private static List<Object[]> parametrosUpsert(List<FilaProducto> filas, Timestamp ahora) {
+        List<Object[]> upserts = new ArrayList<>(filas.size());
+        for (FilaProducto fila : filas) {
+            upserts.add(new Object[] {fila.id(), fila.nombre(), fila.descripcion(), fila.precio(), fila.stock(),
+                fila.categoriaId(), fila.imagen(), fila.estado(), ahora, ahora});
+        }
+        return upserts;
+    }
+
+    private FilaProducto convertir(long linea, Map<String, String> campos, Map<String, Long> categorias) {
+        String nombre = campos.get("nombre");
+        if (nombre == null || nombre.isBlank()) {
+            throw new IllegalArgumentException("El nombre es obligatorio");
+        }
+
+        int precio = entero(campos, "precio", null);
+        int stock = entero(campos, "stock", 0);
+        if (precio < 0 || stock < 0) {
+            throw new IllegalArgumentException("Precio y stock deben ser mayores o iguales a 0");
+        }
+
+        Long categoriaId = null;
+        String categoria = campos.get("categoria");
+        if (categoria != null && !categoria.isBlank()) {
+            categoriaId = categorias.get(normalizar(categoria));
+            if (categoriaId == null) {
+                throw new IllegalArgumentException("Categoría no encontrada: " + categoria);
+            }
+        } else if (campos.get("categoriaid") != null && !campos.get("categoriaid").isBlank()) {
+            categoriaId = Long.parseLong(campos.get("categoriaid").trim());
+            if (!categorias.containsValue(categoriaId)) {
+                throw new IllegalArgumentException("Categoría no encontrada con ID: " + categoriaId);
+            }
+        }
+
+        Long id = null;
+        if (campos.get("id") != null && !campos.get("id").isBlank()) {
+            id = Long.parseLong(campos.get("id").trim());
+        }
+
+        String estado = campos.get("estado");
+        if (estado == null || estado.isBlank()) {
+            estado = stock == 0 ? "agotado" : "activo";
+        }
+
+        return new FilaProducto(linea, id, nombre.trim(), vacioANull(campos.get("descripcion")), precio, stock,
+                                categoriaId, vacioANull(campos.get("imagen")), estado.trim());
+    }
+
+    private int entero(Map<String, String> campos, String campo, Integer porDefecto) {
+        String valor = campos.get(campo);
+        if (valor == null || valor.isBlank()) {
+            if (porDefecto == null) {
+                throw new IllegalArgumentException("El campo '" + campo + "' es obligatorio");
+            }
+            return porDefecto;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El campo '" + campo + "' debe ser un número entero: " + valor);
+        }
+    }
+
+    private Map<String, String> camposCsv(List<String> cabecera, List<String> valores) {
+        if (valores.size() > cabecera.size()) {
+            throw new IllegalArgumentException("La fila tiene más columnas que la cabecera");
+        }
+        Map<String, String> campos = new HashMap<>();
+        for (int i = 0; i < valores.size(); i++) {
+            campos.put(cabecera.get(i), valores.get(i));
+        }
+        return campos;
+    }
+
+    private Map<String, String> camposJson(String linea) throws IOException {
+        JsonNode nodo = objectMapper.readTree(linea);
+        if (nodo == null || !nodo.isObject()) {
+            throw new IllegalArgumentException("Cada línea debe ser un objeto JSON");
+        }
+        Map<String, String> campos = new HashMap<>();
+        for (Map.Entry<String, JsonNode> campo : nodo.properties()) {
+            JsonNode valor = campo.getValue();
+            // La categoría puede venir como objeto {"id": ..} o {"nombre": ..}
+            if (valor.isObject() && "categoria".equals(normalizar(campo.getKey()))) {
+                if (valor.hasNonNull("nombre")) {
+                    campos.put("categoria", valor.get("nombre").asText());
+                } else if (valor.hasNonNull("id")) {
+                    campos.put("categoriaid", valor.get("id").asText());
+                }
+            } else if (!valor.isNull()) {
+                campos.put(normalizar(campo.getKey()), valor.asText());
+            }
+        }
+        return campos;
+    }
+
+    // Separa un registro CSV respetando comillas dobles ("" representa una comilla literal);
+    // entre comillas el registro puede tener saltos de línea
+    static List<String> separarCsv(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                        actual.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    // Con un número impar de comillas la línea deja abierto (o cierra) un campo entre comillas;
+    // "" cuenta como dos y no cambia la paridad
+    private static boolean comillasImpares(String linea) {
+        int comillas = 0;
+        for (int i = 0; i < linea.length(); i++) {
+            if (linea.charAt(i) == '"') {
+                comillas++;
+            }
+        }
+        return comillas % 2 == 1;
+    }
+
+    private String resolverFormato(String formato, String nombreArchivo) {
+        String resuelto = formato;
+        if (resuelto == null || resuelto.isBlank()) {
+            String nombre = nombreArchivo == null ? "" : nombreArchivo.toLowerCase(Locale.ROOT);
+            resuelto = nombre.endsWith(".jsonl") || nombre.endsWith(".ndjson") ? "jsonl" : "csv";
+        }
+        resuelto = resuelto.toLowerCase(Locale.ROOT);
+        if (!"csv".equals(resuelto) && !"jsonl".equals(resuelto)) {
+            throw new IllegalArgumentException("Formato inválido: " + formato + ". Valores permitidos: csv, jsonl");
+        }
+        return resuelto;
+    }
+
+    private void olvidarTerminadas() {
+        LocalDateTime limite = LocalDateTime.now().minusHours(RETENCION_HORAS);
+        importaciones.values().removeIf(estado -> estado.isTerminada() && estado.getFin().isBefore(limite));
+    }
+
+    private static String normalizar(String texto) {
+        return texto == null ? null : texto.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String vacioANull(String texto) {
+        return texto == null || texto.isBlank() ? null : texto.trim();
+    }
+}
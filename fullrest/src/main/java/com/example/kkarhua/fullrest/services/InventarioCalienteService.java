@@ -0,0 +1,490 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.dto.StockDTO;
+import com.example.kkarhua.fullrest.entities.MovimientoStock;
+import com.example.kkarhua.fullrest.inventario.ContadorRayado;
+import com.example.kkarhua.fullrest.inventario.RegistroInventario;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+
+// Modo de inventario caliente para ventas flash (opcional, inventario.caliente.enabled).
+// El stock de los productos designados vive en contadores por franjas en memoria: descontar no
+// toma el lock de la fila en MySQL. Un hilo vuelca periódicamente los deltas netos a producto.stock
+// en un lote JDBC, junto con el checkpoint de la última secuencia aplicada y una fila del libro de
+// movimientos por cada movimiento del registro, con la fecha en que ocurrió.
+// Dentro de una transacción, un descuento se aparta del contador de inmediato (nadie más puede
+// venderlo) y los aumentos esperan al commit. Todos los movimientos se anotan en el registro de
+// solo anexado en beforeCommit, antes del commit de MySQL; si la escritura falla, la excepción
+// revierte la transacción. Con inventario.caliente.forzar-commit (por defecto) el registro además
+// se fuerza a disco en ese momento, en grupo con los commits concurrentes.
+// Si la transacción se revierte, los descuentos vuelven al contador y los movimientos ya anotados
+// se anulan con un registro compensatorio. Una vez confirmada, nunca se devuelven unidades.
+// Garantía: al arrancar se reaplican los movimientos registrados posteriores al checkpoint, sin
+// duplicar los ya volcados, y todo descuento confirmado en MySQL está en el registro. Una caída
+// entre beforeCommit y el commit (o antes del registro compensatorio de un rollback) reaplica
+// movimientos no confirmados: un descuento así deja unidades sin vender, nunca sobreventa.
+// Sin forzar-commit, una caída del equipo puede perder lo anotado desde el último volcado.
+@Service
+public class InventarioCalienteService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventarioCalienteService.class);
+
+    // Condicional: si la tabla no tiene las unidades que el volcado descuenta no se aplica,
+    // y aplicar() lo trata como deriva en lugar de recortarlo en silencio
+    private static final String SQL_VOLCAR =
+        "update producto set " +
+        "estado = case when stock + ? = 0 then 'agotado' when stock = 0 then 'activo' else estado end, " +
+        "stock = stock + ?, fecha_actualizacion = ?, version = version + 1 " +
+        "where id = ? and stock + ? >= 0";
+
+    private static final String SQL_STOCK_TABLA =
+        "select stock from producto where id = ?";
+
+    private static final String SQL_AGOTAR =
+        "update producto set estado = 'agotado', stock = 0, fecha_actualizacion = ?, version = version + 1 where id = ?";
+
+    private static final String SQL_LEER_CHECKPOINT =
+        "select secuencia from inventario_checkpoint where id = 1";
+
+    private static final String SQL_GUARDAR_CHECKPOINT =
+        "insert into inventario_checkpoint (id, secuencia) values (1, ?) as nuevo " +
+        "on duplicate key update secuencia = nuevo.secuencia";
+
+    private record ProductoCaliente(ContadorRayado contador, String nombre, String estadoBase) {
+    }
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MovimientosStockService movimientos;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventario.caliente.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${inventario.caliente.productos:}")
+    private List<Long> productosDesignados = List.of();
+
+    @Value("${inventario.caliente.flush-millis:500}")
+    private long flushMillis = 500;
+
+    @Value("${inventario.caliente.franjas:16}")
+    private int franjas = 16;
+
+    @Value("${inventario.caliente.directorio:inventario-log}")
+    private String directorio = "inventario-log";
+
+    @Value("${inventario.caliente.forzar-commit:true}")
+    private boolean forzarCommit = true;
+
+    private final Map<Long, ProductoCaliente> calientes = new ConcurrentHashMap<>();
+
+    // Segmentos cerrados que aún no se pudieron volcar; solo los toca el hilo de volcado
+    private final Deque<RegistroInventario.Segmento> porVolcar = new ArrayDeque<>();
+
+    private RegistroInventario registro;
+    private ScheduledExecutorService programador;
+
+    // Unidades que un volcado quiso descontar y la tabla no tenía (alguien cambió producto.stock por fuera)
+    private final AtomicLong deriva = new AtomicLong();
+
+    @PostConstruct
+    void iniciar() throws IOException {
+        if (!habilitado) {
+            return;
+        }
+        long siguienteSecuencia = recuperar() + 1;
+        registro = new RegistroInventario(Path.of(directorio), siguienteSecuencia);
+
+        for (Long productoId : productosDesignados) {
+            productoRepository.findStockById(productoId).ifPresentOrElse(
+                stock -> calientes.put(productoId, new ProductoCaliente(
+                    new ContadorRayado(franjas, stock.stock()), stock.nombre(), stock.estado())),
+                () -> log.warn("Producto {} designado como caliente no existe", productoId));
+        }
+
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "inventario-caliente-volcado");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(this::volcar, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        if (meterRegistry != null) {
+            Gauge.builder("inventario.caliente.deriva", deriva, AtomicLong::get).register(meterRegistry);
+        }
+        log.info("Inventario caliente activo para {} productos", calientes.size());
+    }
+
+    @PreDestroy
+    void detener() throws IOException {
+        if (programador == null) {
+            return;
+        }
+        programador.shutdown();
+        try {
+            programador.awaitTermination(flushMillis * 4, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        volcar();
+        registro.close();
+    }
+
+    public boolean esCaliente(Long productoId) {
+        return calientes.containsKey(productoId);
+    }
+
+    // reservado: unidades que el contador no puede entregar porque están apartadas por reservas
+    public ResultadoStock reducir(Long productoId, int cantidad, int reservado) {
+        ProductoCaliente producto = calientes.get(productoId);
+        if (!producto.contador().intentarRestar(cantidad, reservado)) {
+            return ResultadoStock.stockInsuficiente(stock(productoId, producto));
+        }
+        StockDTO actual = stock(productoId, producto);
+        anotar(List.of(new AjusteStockDTO(productoId, -cantidad)), false);
+        return ResultadoStock.ok(actual.stock() + cantidad, actual);
+    }
+
+    // El aumento llega al contador al confirmar; el resultado informa el stock que quedará
+    public ResultadoStock agregar(Long productoId, int cantidad) {
+        ProductoCaliente producto = calientes.get(productoId);
+        int anterior = producto.contador().total();
+        anotar(List.of(new AjusteStockDTO(productoId, cantidad)), false);
+        return ResultadoStock.ok(anterior, stock(productoId, producto, anterior + cantidad));
+    }
+
+    // El ajuste absoluto se resuelve al llamarlo: si baja el stock, el exceso se aparta como un
+    // descuento; si lo sube, la diferencia se aplica al confirmar como un aumento. Las ventas
+    // concurrentes entre la llamada y el commit se siguen descontando.
+    public ResultadoStock actualizar(Long productoId, int nuevoStock) {
+        ProductoCaliente producto = calientes.get(productoId);
+        int anterior = producto.contador().total();
+        int quitado = producto.contador().reducirA(nuevoStock);
+        int delta = quitado > 0 ? -quitado : nuevoStock - producto.contador().total();
+        if (delta != 0) {
+            anotar(List.of(new AjusteStockDTO(productoId, delta)), true);
+        }
+        return ResultadoStock.ok(anterior, stock(productoId, producto, nuevoStock));
+    }
+
+    // Aparta en orden los descuentos de las líneas de productos calientes de un lote. Si uno no
+    // alcanza se devuelven los anteriores y se devuelve su posición; -1 si alcanzaron todos.
+    // Todas las líneas se anotan antes del commit de la transacción en curso y los aumentos se
+    // aplican al confirmar; si se revierte, los descuentos vuelven al contador.
+    // Los descuentos no bajan el contador de lo reservado para cada producto.
+    public int ajustar(List<AjusteStockDTO> lineas, ToIntFunction<Long> reservado) {
+        for (int i = 0; i < lineas.size(); i++) {
+            AjusteStockDTO linea = lineas.get(i);
+            if (linea.delta() < 0 && !calientes.get(linea.productoId()).contador()
+                    .intentarRestar(-linea.delta(), reservado.applyAsInt(linea.productoId()))) {
+                devolver(lineas, i);
+                return i;
+            }
+        }
+        anotar(lineas, false);
+        return -1;
+    }
+
+    // Stock del contador: ya descuenta lo apartado por transacciones en curso, pero no suma sus aumentos
+    public StockDTO stock(Long productoId) {
+        return stock(productoId, calientes.get(productoId));
+    }
+
+    // Stock que quedará cuando se confirmen aumentos todavía pendientes de la transacción en curso
+    public StockDTO stock(Long productoId, int aumentoPendiente) {
+        ProductoCaliente producto = calientes.get(productoId);
+        return stock(productoId, producto, producto.contador().total() + aumentoPendiente);
+    }
+
+    // Vuelca a producto.stock los segmentos cerrados, en orden; si uno falla se reintenta en la próxima pasada
+    synchronized void volcar() {
+        try {
+            RegistroInventario.Segmento segmento = registro.rotar();
+            if (segmento != null) {
+                porVolcar.addLast(segmento);
+            }
+            while (!porVolcar.isEmpty()) {
+                RegistroInventario.Segmento siguiente = porVolcar.peekFirst();
+                aplicar(siguiente.movimientos(), siguiente.ultimaSecuencia());
+                registro.descartar(siguiente);
+                porVolcar.removeFirst();
+                siguiente.deltas().keySet().forEach(id -> eventPublisher.publishEvent(ProductoCambiadoEvent.stock(id)));
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo volcar el inventario caliente; se reintentará", e);
+        }
+    }
+
+    // Reaplica los movimientos posteriores al checkpoint y borra los segmentos leídos.
+    // Devuelve la última secuencia conocida, desde la que continúa la numeración.
+    private long recuperar() throws IOException {
+        Path carpeta = Path.of(directorio);
+        List<Long> guardado = jdbcTemplate.queryForList(SQL_LEER_CHECKPOINT, Long.class);
+        long checkpoint = guardado.isEmpty() ? 0 : guardado.get(0);
+
+        List<RegistroInventario.Movimiento> pendientes = new ArrayList<>();
+        long ultima = checkpoint;
+        for (RegistroInventario.Movimiento movimiento : RegistroInventario.leer(carpeta)) {
+            if (movimiento.secuencia() > checkpoint) {
+                pendientes.add(movimiento);
+            }
+            ultima = Math.max(ultima, movimiento.secuencia());
+        }
+        if (ultima > checkpoint) {
+            aplicar(pendientes, ultima);
+            log.info("Inventario caliente recuperado: {} movimientos hasta la secuencia {}", pendientes.size(), ultima);
+        }
+        for (Path segmento : RegistroInventario.segmentos(carpeta)) {
+            Files.deleteIfExists(segmento);
+        }
+        return ultima;
+    }
+
+    private void aplicar(List<RegistroInventario.Movimiento> lote, long ultimaSecuencia) {
+        Map<Long, Long> deltas = new HashMap<>();
+        lote.forEach(m -> deltas.merge(m.productoId(), (long) m.delta(), Long::sum));
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> parametros = new ArrayList<>(deltas.size());
+        // Orden por id, igual que los lotes de StockServiceImpl, para tomar los locks en el mismo orden
+        deltas.entrySet().stream()
+            .filter(e -> e.getValue() != 0)
+            .sorted(Map.Entry.comparingByKey())
+            .forEach(e -> parametros.add(new Object[] { e.getValue(), e.getValue(), ahora, e.getKey(), e.getValue() }));
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Long> aplicados = new HashMap<>(deltas);
+            if (!parametros.isEmpty()) {
+                int[] filas = jdbcTemplate.batchUpdate(SQL_VOLCAR, parametros);
+                for (int i = 0; i < filas.length; i++) {
+                    if (filas[i] == 0) {
+                        Long productoId = (Long) parametros.get(i)[3];
+                        agotarPorDeriva(productoId, (Long) parametros.get(i)[0], ahora, aplicados);
+                    }
+                }
+            }
+            // El libro se escribe en la misma transacción que el volcado
+            registrarMovimientos(lote, deltas, aplicados);
+            jdbcTemplate.update(SQL_GUARDAR_CHECKPOINT, ultimaSecuencia);
+        });
+    }
+
+    // Una fila del libro por movimiento, con la fecha en que se anotó. Un movimiento y su
+    // compensatorio del mismo lote se anulan sin dejar filas; un compensatorio cuyo original se volcó
+    // en un lote anterior queda como VOLCADO. Si la deriva obligó a aplicar otra cantidad que la
+    // anotada, la diferencia se agrega como VOLCADO. Los productos borrados no dejan filas.
+    private void registrarMovimientos(List<RegistroInventario.Movimiento> lote, Map<Long, Long> deltas, Map<Long, Long> aplicados) {
+        Set<Long> secuencias = new HashSet<>();
+        Set<Long> anulados = new HashSet<>();
+        for (RegistroInventario.Movimiento movimiento : lote) {
+            secuencias.add(movimiento.secuencia());
+            if (movimiento.anula() != 0) {
+                anulados.add(movimiento.anula());
+            }
+        }
+        for (RegistroInventario.Movimiento movimiento : lote) {
+            if (!aplicados.containsKey(movimiento.productoId()) || anulados.contains(movimiento.secuencia())) {
+                continue;
+            }
+            MovimientoStock.Tipo tipo;
+            if (movimiento.anula() != 0) {
+                if (secuencias.contains(movimiento.anula())) {
+                    continue;
+                }
+                tipo = MovimientoStock.Tipo.VOLCADO;
+            } else if (movimiento.ajuste()) {
+                tipo = MovimientoStock.Tipo.AJUSTE;
+            } else {
+                tipo = movimiento.delta() < 0 ? MovimientoStock.Tipo.DESCUENTO : MovimientoStock.Tipo.AUMENTO;
+            }
+            LocalDateTime fecha = LocalDateTime.ofInstant(Instant.ofEpochMilli(movimiento.fecha()), ZoneId.systemDefault());
+            movimientos.registrar(movimiento.productoId(), tipo, movimiento.delta(), fecha);
+        }
+        aplicados.forEach((productoId, aplicado) -> {
+            long correccion = aplicado - deltas.get(productoId);
+            if (correccion != 0) {
+                movimientos.registrar(productoId, MovimientoStock.Tipo.VOLCADO, Math.toIntExact(correccion));
+            }
+        });
+    }
+
+    // La tabla no tenía las unidades que el volcado descuenta: producto.stock se cambió por fuera
+    // del inventario caliente. Se deja en 0, se avisa y se acumula lo faltante en la métrica de deriva.
+    private void agotarPorDeriva(Long productoId, long delta, Timestamp ahora, Map<Long, Long> aplicados) {
+        List<Integer> tabla = jdbcTemplate.queryForList(SQL_STOCK_TABLA, Integer.class, productoId);
+        if (tabla.isEmpty()) {
+            log.warn("Volcado del inventario caliente: el producto {} ya no existe; se descartan {} unidades", productoId, delta);
+            aplicados.remove(productoId);
+            return;
+        }
+        int stock = tabla.get(0);
+        long faltante = -(stock + delta);
+        jdbcTemplate.update(SQL_AGOTAR, ahora, productoId);
+        aplicados.put(productoId, (long) -stock);
+        deriva.addAndGet(faltante);
+        log.error("Deriva en el inventario caliente del producto {}: la tabla tenía {} unidades y el volcado descuenta {}; "
+            + "queda en 0 con {} unidades vendidas sin respaldo", productoId, stock, -delta, faltante);
+    }
+
+    // Sin transacción los movimientos se anotan y se aplican de inmediato; con transacción se
+    // anotan en beforeCommit y se aplican o se anulan al terminarla
+    // ajuste: las líneas vienen de fijar el stock a un valor absoluto
+    private void anotar(List<AjusteStockDTO> lineas, boolean ajuste) {
+        Anotacion anotacion = new Anotacion(lineas, ajuste);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                anotacion.registrar();
+            } catch (RuntimeException e) {
+                anotacion.revertir();
+                throw e;
+            }
+            anotacion.confirmar();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(anotacion);
+    }
+
+    private void sincronizar(long secuencia) {
+        if (forzarCommit && secuencia > 0) {
+            registro.sincronizar(secuencia);
+        }
+    }
+
+    // Movimientos calientes de una operación; los descuentos ya están apartados del contador
+    private final class Anotacion implements TransactionSynchronization {
+
+        private final List<AjusteStockDTO> lineas;
+        private final boolean ajuste;
+        private final long[] secuencias;
+        private int registradas;
+
+        Anotacion(List<AjusteStockDTO> lineas, boolean ajuste) {
+            this.lineas = lineas;
+            this.ajuste = ajuste;
+            this.secuencias = new long[lineas.size()];
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            registrar();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+                confirmar();
+            } else if (status == STATUS_ROLLED_BACK) {
+                revertir();
+            } else {
+                // No se sabe si MySQL confirmó: los descuentos quedan apartados (a lo sumo sobran
+                // unidades) y los aumentos no se aplican hasta que el volcado y un reinicio lo aclaren
+                log.error("Transacción en estado desconocido con {} movimientos calientes; se conservan los descuentos", lineas.size());
+            }
+        }
+
+        // Anota las líneas y fuerza el registro a disco una sola vez
+        void registrar() {
+            long ultima = 0;
+            while (registradas < lineas.size()) {
+                AjusteStockDTO linea = lineas.get(registradas);
+                ultima = registro.agregar(linea.productoId(), linea.delta(), ajuste);
+                secuencias[registradas] = ultima;
+                registradas++;
+            }
+            sincronizar(ultima);
+        }
+
+        // Los aumentos llegan al contador; los descuentos ya se habían apartado
+        void confirmar() {
+            for (AjusteStockDTO linea : lineas) {
+                if (linea.delta() > 0) {
+                    calientes.get(linea.productoId()).contador().sumar(linea.delta());
+                }
+            }
+        }
+
+        // Devuelve los descuentos y anula en el registro lo que alcanzó a anotarse
+        void revertir() {
+            devolver(lineas, lineas.size());
+            try {
+                long ultima = 0;
+                for (int i = 0; i < registradas; i++) {
+                    AjusteStockDTO linea = lineas.get(i);
+                    ultima = registro.compensar(secuencias[i], linea.productoId(), linea.delta());
+                }
+                sincronizar(ultima);
+            } catch (RuntimeException e) {
+                log.error("No se pudieron compensar {} movimientos calientes revertidos: {}", registradas, lineas.subList(0, registradas), e);
+            }
+        }
+    }
+
+    // Devuelve al contador los descuentos apartados de las primeras líneas; los aumentos
+    // todavía no se aplicaron, así que no hay nada que deshacer en el contador
+    private void devolver(List<AjusteStockDTO> lineas, int hasta) {
+        for (int i = 0; i < hasta; i++) {
+            AjusteStockDTO linea = lineas.get(i);
+            if (linea.delta() < 0) {
+                calientes.get(linea.productoId()).contador().sumar(-linea.delta());
+            }
+        }
+    }
+
+    private static StockDTO stock(Long productoId, ProductoCaliente producto) {
+        return stock(productoId, producto, producto.contador().total());
+    }
+
+    private static StockDTO stock(Long productoId, ProductoCaliente producto, int stock) {
+        String estado = stock == 0 ? "agotado" : ("agotado".equals(producto.estadoBase()) ? "activo" : producto.estadoBase());
+        return new StockDTO(productoId, producto.nombre(), stock, estado);
+    }
+}
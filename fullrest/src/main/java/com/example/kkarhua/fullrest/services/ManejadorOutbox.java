@@ -0,0 +1,13 @@
+package com.example.kkarhua.fullrest.services;
+
+// Manejador de un tipo de evento del outbox. Corre en la misma transacción que borra el evento y solo
+// si ese borrado afectó la fila, así que lo que escriba en la base de datos queda aplicado exactamente
+// una vez aunque dos hilos tomen el mismo evento; los efectos fuera
+// de la base (archivos, eventos en memoria) deben tolerar repetirse, porque la entrega es al menos una vez.
+// Una excepción revierte la transacción y el evento se reintenta más tarde.
+public interface ManejadorOutbox {
+
+    String tipo();
+
+    void manejar(String payload);
+}
@@ -0,0 +1,269 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.dto.ConciliacionStockDTO;
+import com.example.kkarhua.fullrest.entities.MovimientoStock;
+
+// Libro de movimientos de stock (movimiento_stock) con fotos periódicas (snapshot_stock).
+// Los movimientos de una transacción se juntan en memoria y se insertan en un solo lote JDBC
+// justo antes del commit, dentro de la misma transacción que cambió producto.stock.
+// Un hilo toma fotos periódicas para que el stock en una fecha se calcule desde la última foto
+// y no recorriendo todo el libro, y luego concilia el libro contra producto.stock.
+// Un movimiento ESTABLECIDO guarda el stock absoluto y reinicia la cuenta: el stock es la última
+// foto o el último ESTABLECIDO posterior a ella, más los deltas que vienen después.
+@Service
+public class MovimientosStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(MovimientosStockService.class);
+
+    private static final String SQL_INSERTAR =
+        "insert into movimiento_stock (producto_id, tipo, delta, fecha) values (?, ?, ?, ?)";
+
+    // Productos anteriores al libro (sin movimiento de APERTURA) que aún no tienen foto:
+    // su stock actual es el punto de partida
+    private static final String SQL_FOTO_INICIAL =
+        "insert into snapshot_stock (producto_id, stock, ultimo_movimiento_id, fecha) " +
+        "select p.id, p.stock, (select coalesce(max(m.id), 0) from movimiento_stock m), ? " +
+        "from producto p " +
+        "where not exists (select 1 from snapshot_stock s where s.producto_id = p.id) " +
+        "and not exists (select 1 from movimiento_stock m where m.producto_id = p.id and m.tipo in ('APERTURA', 'ESTABLECIDO'))";
+
+    private static final String SQL_ULTIMO_MOVIMIENTO_ESTABLE =
+        "select coalesce(max(id), 0) from movimiento_stock where fecha <= ?";
+
+    // Nueva foto para cada producto con movimientos entre su última foto y el corte.
+    // r es el último ESTABLECIDO del tramo: si existe, la foto parte de su valor y suma solo lo posterior.
+    private static final String SQL_FOTO =
+        "insert into snapshot_stock (producto_id, stock, ultimo_movimiento_id, fecha) " +
+        "select m.producto_id, " +
+        "case when r.id is null then coalesce(s.stock, 0) else r.delta end " +
+        "+ coalesce(sum(case when m.id > coalesce(r.id, 0) then m.delta end), 0), max(m.id), ? " +
+        "from movimiento_stock m " +
+        "left join snapshot_stock s on s.id = " +
+        "(select max(s2.id) from snapshot_stock s2 where s2.producto_id = m.producto_id) " +
+        "left join movimiento_stock r on r.id = " +
+        "(select max(r2.id) from movimiento_stock r2 where r2.producto_id = m.producto_id and r2.tipo = 'ESTABLECIDO' " +
+        "and r2.id > coalesce(s.ultimo_movimiento_id, 0) and r2.id <= ?) " +
+        "where m.id > coalesce(s.ultimo_movimiento_id, 0) and m.id <= ? " +
+        "group by m.producto_id, s.stock, r.id, r.delta";
+
+    private static final String SQL_FOTO_ANTERIOR =
+        "select stock, ultimo_movimiento_id from snapshot_stock " +
+        "where producto_id = ? and fecha <= ? order by fecha desc, id desc limit 1";
+
+    private static final String SQL_TIENE_APERTURA =
+        "select count(*) from movimiento_stock where producto_id = ? and tipo = 'APERTURA'";
+
+    private static final String SQL_ULTIMO_ESTABLECIDO =
+        "select id, delta from movimiento_stock " +
+        "where producto_id = ? and tipo = 'ESTABLECIDO' and id > ? and fecha <= ? order by id desc limit 1";
+
+    private static final String SQL_SUMA_DESDE =
+        "select coalesce(sum(delta), 0) from movimiento_stock " +
+        "where producto_id = ? and id > ? and fecha <= ?";
+
+    private static final String SQL_CONCILIAR =
+        "select p.id, p.stock, case when r.id is null then coalesce(s.stock, 0) else r.delta end " +
+        "+ coalesce((select sum(m.delta) from movimiento_stock m " +
+        "where m.producto_id = p.id and m.id > coalesce(r.id, s.ultimo_movimiento_id, 0)), 0) as libro " +
+        "from producto p " +
+        "left join snapshot_stock s on s.id = " +
+        "(select max(s2.id) from snapshot_stock s2 where s2.producto_id = p.id) " +
+        "left join movimiento_stock r on r.id = " +
+        "(select max(r2.id) from movimiento_stock r2 where r2.producto_id = p.id and r2.tipo = 'ESTABLECIDO' " +
+        "and r2.id > coalesce(s.ultimo_movimiento_id, 0)) " +
+        "having libro <> p.stock";
+
+    // fecha null: la del insert
+    private record Pendiente(long productoId, MovimientoStock.Tipo tipo, int delta, LocalDateTime fecha) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${stock.movimientos.snapshot-minutos:60}")
+    private long snapshotMinutos = 60;
+
+    // Movimientos más nuevos que este margen quedan fuera de la foto: una transacción
+    // aún abierta puede confirmar después un id menor al máximo visible. La fecha se pone al
+    // insertar (justo antes del commit), así que el margen solo cubre lo que tarda el commit y
+    // no la duración de la transacción. Los movimientos con fecha propia (los del inventario
+    // caliente, que llegan en el volcado) no se fechan antes de la mitad del margen
+    @Value("${stock.movimientos.margen-segundos:60}")
+    private long margenSegundos = 60;
+
+    private ScheduledExecutorService programador;
+    private volatile ConciliacionStockDTO ultimaConciliacion;
+
+    @PostConstruct
+    void iniciar() {
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "movimientos-stock-fotos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        if (meterRegistry != null) {
+            Gauge.builder("stock.conciliacion.diferencias", this,
+                s -> s.ultimaConciliacion != null ? s.ultimaConciliacion.diferencias().size() : 0)
+                .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        programador.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void programarFotos() {
+        transactionTemplate.executeWithoutResult(status ->
+            jdbcTemplate.update(SQL_FOTO_INICIAL, Timestamp.valueOf(LocalDateTime.now())));
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                tomarFotos();
+                conciliar();
+            } catch (Exception e) {
+                log.warn("No se pudo tomar la foto de stock", e);
+            }
+        }, snapshotMinutos, snapshotMinutos, TimeUnit.MINUTES);
+    }
+
+    // Anota un movimiento. Dentro de una transacción se inserta junto con los demás antes del
+    // commit (y se descarta si la transacción se revierte); fuera de ella se inserta de inmediato.
+    public void registrar(long productoId, MovimientoStock.Tipo tipo, int delta) {
+        registrar(productoId, tipo, delta, null);
+    }
+
+    // Igual, con la fecha en que ocurrió el movimiento si es anterior a su registro
+    public void registrar(long productoId, MovimientoStock.Tipo tipo, int delta, LocalDateTime fecha) {
+        if (delta == 0 && tipo != MovimientoStock.Tipo.APERTURA) {
+            return;
+        }
+        Pendiente movimiento = new Pendiente(productoId, tipo, delta, fecha);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insertar(List.of(movimiento));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Pendiente> pendientes = (List<Pendiente>) TransactionSynchronizationManager.getResource(this);
+        if (pendientes == null) {
+            List<Pendiente> nuevos = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, nuevos);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    insertar(nuevos);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MovimientosStockService.this);
+                }
+            });
+            pendientes = nuevos;
+        }
+        pendientes.add(movimiento);
+    }
+
+    // Stock de un producto en una fecha: última foto anterior (o el último ESTABLECIDO posterior a
+    // ella) más los movimientos siguientes. Vacío si la fecha es anterior al inicio del libro para
+    // ese producto.
+    public Optional<Long> stockEn(Long productoId, LocalDateTime fecha) {
+        Timestamp corte = Timestamp.valueOf(fecha);
+        List<long[]> foto = jdbcTemplate.query(SQL_FOTO_ANTERIOR,
+            (rs, i) -> new long[] { rs.getLong(1), rs.getLong(2) }, productoId, corte);
+        long base = 0;
+        long desde = 0;
+        if (!foto.isEmpty()) {
+            base = foto.get(0)[0];
+            desde = foto.get(0)[1];
+        }
+        List<long[]> establecido = jdbcTemplate.query(SQL_ULTIMO_ESTABLECIDO,
+            (rs, i) -> new long[] { rs.getLong(1), rs.getLong(2) }, productoId, desde, corte);
+        if (!establecido.isEmpty()) {
+            desde = establecido.get(0)[0];
+            base = establecido.get(0)[1];
+        } else if (foto.isEmpty() && jdbcTemplate.queryForObject(SQL_TIENE_APERTURA, Long.class, productoId) == 0) {
+            // El producto existía antes de empezar el libro: no hay historia para esa fecha
+            return Optional.empty();
+        }
+        Long suma = jdbcTemplate.queryForObject(SQL_SUMA_DESDE, Long.class, productoId, desde, corte);
+        return Optional.of(base + (suma != null ? suma : 0));
+    }
+
+    public void tomarFotos() {
+        LocalDateTime ahora = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp fecha = Timestamp.valueOf(ahora);
+            jdbcTemplate.update(SQL_FOTO_INICIAL, fecha);
+            Long corte = jdbcTemplate.queryForObject(SQL_ULTIMO_MOVIMIENTO_ESTABLE, Long.class,
+                Timestamp.valueOf(ahora.minusSeconds(margenSegundos)));
+            int fotos = jdbcTemplate.update(SQL_FOTO, fecha, corte, corte);
+            log.debug("Fotos de stock tomadas: {} productos hasta el movimiento {}", fotos, corte);
+        });
+    }
+
+    public ConciliacionStockDTO conciliar() {
+        List<ConciliacionStockDTO.Diferencia> diferencias = jdbcTemplate.query(SQL_CONCILIAR,
+            (rs, i) -> new ConciliacionStockDTO.Diferencia(rs.getLong(1), rs.getInt(2), rs.getLong(3)));
+        ultimaConciliacion = new ConciliacionStockDTO(LocalDateTime.now(), diferencias);
+        if (!diferencias.isEmpty()) {
+            log.warn("Conciliación de stock: {} productos no coinciden con el libro de movimientos", diferencias.size());
+        }
+        return ultimaConciliacion;
+    }
+
+    public Optional<ConciliacionStockDTO> ultimaConciliacion() {
+        return Optional.ofNullable(ultimaConciliacion);
+    }
+
+    private void insertar(List<Pendiente> movimientos) {
+        if (movimientos.isEmpty()) {
+            return;
+        }
+        // Fecha del insert y no de registrar(): el id autoincremental también se asigna ahora, y el
+        // corte de tomarFotos() supone que ids y fechas avanzan juntos. Una fecha propia se acota a
+        // la mitad del margen, así una fila recién insertada nunca queda dentro del corte.
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime minima = ahora.minusSeconds(margenSegundos / 2);
+        List<Object[]> parametros = new ArrayList<>(movimientos.size());
+        for (Pendiente movimiento : movimientos) {
+            LocalDateTime fecha = movimiento.fecha() == null ? ahora
+                : movimiento.fecha().isBefore(minima) ? minima : movimiento.fecha();
+            parametros.add(new Object[] { movimiento.productoId(), movimiento.tipo().name(), movimiento.delta(), Timestamp.valueOf(fecha) });
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERTAR, parametros);
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Outbox transaccional (tabla outbox_evento) para el trabajo posterior a una compra.
+// publicar() inserta el evento en la transacción de la compra: se confirma o se revierte con ella.
+// Un grupo de hilos lo vacía en lotes: cada lote se reclama con FOR UPDATE SKIP LOCKED y se arrienda
+// corriendo disponible_en, de modo que varios hilos (o instancias) no toman el mismo evento; luego cada
+// evento se maneja en su propia transacción junto con su borrado. Si el proceso muere a mitad, el
+// arriendo vence y el evento se vuelve a entregar (al menos una vez). Un fallo reprograma el evento
+// con espera exponencial; al agotar outbox.max-intentos el evento queda marcado como muerto: se
+// registra una vez, ya no se reclama y deja de contar como pendiente.
+@Service
+public class OutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
+    private static final String SQL_PUBLICAR =
+        "insert into outbox_evento (tipo, payload, intentos, disponible_en, creado, muerto) values (?, ?, 0, ?, ?, false)";
+
+    private static final String SQL_RECLAMAR =
+        "select id, tipo, payload, intentos from outbox_evento where muerto = false and disponible_en <= ? " +
+        "order by disponible_en, id limit ? for update skip locked";
+
+    private static final String SQL_ARRENDAR =
+        "update outbox_evento set intentos = intentos + 1, disponible_en = ? where id = ?";
+
+    private static final String SQL_BORRAR =
+        "delete from outbox_evento where id = ?";
+
+    private static final String SQL_REPROGRAMAR =
+        "update outbox_evento set disponible_en = ? where id = ?";
+
+    private static final String SQL_MATAR =
+        "update outbox_evento set muerto = true where id = ?";
+
+    // Intento: número de entrega, contando la actual
+    public record Evento(long id, String tipo, String payload, int intento) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private List<ManejadorOutbox> manejadores;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${outbox.hilos:2}")
+    private int hilos = 2;
+
+    @Value("${outbox.poll-millis:500}")
+    private long pollMillis = 500;
+
+    @Value("${outbox.lote:50}")
+    private int lote = 50;
+
+    @Value("${outbox.arriendo-segundos:60}")
+    private long arriendoSegundos = 60;
+
+    @Value("${outbox.reintento-base-millis:1000}")
+    private long reintentoBaseMillis = 1000;
+
+    @Value("${outbox.reintento-max-millis:600000}")
+    private long reintentoMaxMillis = 600000;
+
+    // Entregas antes de dar el evento por muerto; cuenta también los arriendos que vencieron sin
+    // respuesta, así que un evento que tumba al proceso tampoco se reintenta para siempre
+    @Value("${outbox.max-intentos:10}")
+    private int maxIntentos = 10;
+
+    private LongSupplier reloj = System::currentTimeMillis;
+
+    private final Map<String, ManejadorOutbox> porTipo = new HashMap<>();
+    private final Object senal = new Object();
+    private volatile boolean activo;
+    private ExecutorService workers;
+
+    @PostConstruct
+    void iniciar() {
+        for (ManejadorOutbox manejador : manejadores) {
+            if (porTipo.put(manejador.tipo(), manejador) != null) {
+                throw new IllegalStateException("Hay dos manejadores de outbox para el tipo " + manejador.tipo());
+            }
+        }
+        if (meterRegistry != null) {
+            Gauge.builder("outbox.pendientes", this, OutboxService::pendientes).register(meterRegistry);
+            Gauge.builder("outbox.muertos", this, OutboxService::muertos).register(meterRegistry);
+        }
+    }
+
+    // Los hilos arrancan con la aplicación lista: el esquema y los manejadores ya están inicializados
+    @EventListener(ApplicationReadyEvent.class)
+    public void arrancar() {
+        activo = true;
+        AtomicInteger numero = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(hilos, r -> {
+            Thread hilo = new Thread(r, "outbox-worker-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        for (int i = 0; i < hilos; i++) {
+            workers.submit(this::ciclo);
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        activo = false;
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    // Inserta un evento en la transacción en curso; sin transacción no hay atomicidad con la escritura que lo origina
+    public void publicar(String tipo, Object payload) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Los eventos del outbox se publican dentro de una transacción");
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Payload del evento " + tipo + " no serializable", e);
+        }
+        Timestamp ahora = new Timestamp(reloj.getAsLong());
+        jdbcTemplate.update(SQL_PUBLICAR, tipo, json, ahora, ahora);
+
+        // Al confirmar se despierta a los hilos en vez de esperar al siguiente sondeo
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    despertar();
+                }
+            });
+        }
+    }
+
+    // Reclama un lote y lo procesa; devuelve cuántos eventos tomó
+    int procesarLote() {
+        long ahora = reloj.getAsLong();
+        List<Evento> eventos = transactionTemplate.execute(tx -> {
+            List<Evento> tomados = jdbcTemplate.query(SQL_RECLAMAR,
+                (rs, n) -> new Evento(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4) + 1),
+                new Timestamp(ahora), lote);
+            if (!tomados.isEmpty()) {
+                Timestamp vence = new Timestamp(ahora + arriendoSegundos * 1000);
+                jdbcTemplate.batchUpdate(SQL_ARRENDAR, tomados.stream().map(e -> new Object[] {vence, e.id()}).toList());
+            }
+            return tomados;
+        });
+        for (Evento evento : eventos) {
+            if (evento.intento() > maxIntentos) {
+                // Su último arriendo venció sin que el manejador terminara ni fallara
+                matar(evento, null);
+            } else {
+                procesar(evento);
+            }
+        }
+        return eventos.size();
+    }
+
+    // El borrado va primero y comparte transacción con el manejador: si el manejador falla el evento
+    // sigue en la tabla. El borrado toma el bloqueo de la fila, así que si el arriendo venció y otro
+    // hilo ya manejó el evento (o reconstruir lo descartó) borra 0 filas y el manejador no se ejecuta.
+    void procesar(Evento evento) {
+        try {
+            ManejadorOutbox manejador = porTipo.get(evento.tipo());
+            if (manejador == null) {
+                throw new IllegalStateException("Sin manejador para el tipo " + evento.tipo());
+            }
+            transactionTemplate.executeWithoutResult(tx -> {
+                if (jdbcTemplate.update(SQL_BORRAR, evento.id()) == 0) {
+                    log.debug("Evento de outbox {} ya procesado por otro hilo", evento.id());
+                    return;
+                }
+                manejador.manejar(evento.payload());
+            });
+        } catch (RuntimeException e) {
+            if (evento.intento() >= maxIntentos) {
+                matar(evento, e);
+                return;
+            }
+            long espera = Math.min(reintentoMaxMillis, reintentoBaseMillis << Math.min(evento.intento() - 1, 20));
+            jdbcTemplate.update(SQL_REPROGRAMAR, new Timestamp(reloj.getAsLong() + espera), evento.id());
+            log.warn("Evento de outbox {} ({}) falló en el intento {}; se reintenta en {} ms",
+                     evento.id(), evento.tipo(), evento.intento(), espera, e);
+        }
+    }
+
+    public long pendientes() {
+        Long pendientes = jdbcTemplate.queryForObject("select count(*) from outbox_evento where muerto = false", Long.class);
+        return pendientes != null ? pendientes : 0;
+    }
+
+    public long muertos() {
+        Long muertos = jdbcTemplate.queryForObject("select count(*) from outbox_evento where muerto = true", Long.class);
+        return muertos != null ? muertos : 0;
+    }
+
+    // La fila se conserva para revisarla a mano; se registra una sola vez porque ya no se vuelve a reclamar
+    private void matar(Evento evento, RuntimeException causa) {
+        jdbcTemplate.update(SQL_MATAR, evento.id());
+        log.error("Evento de outbox {} ({}) descartado tras {} intentos; queda marcado como muerto",
+                  evento.id(), evento.tipo(), Math.min(evento.intento(), maxIntentos), causa);
+    }
+
+    void setReloj(LongSupplier reloj) {
+        this.reloj = reloj;
+    }
+
+    // Un lote lleno se sigue de inmediato con el siguiente; uno incompleto espera al sondeo o a un aviso
+    private void ciclo() {
+        while (activo && !Thread.currentThread().isInterrupted()) {
+            int tomados;
+            try {
+                tomados = procesarLote();
+            } catch (Exception e) {
+                log.warn("No se pudo leer el outbox", e);
+                tomados = 0;
+            }
+            if (tomados < lote) {
+                esperar();
+            }
+        }
+    }
+
+    private void esperar() {
+        synchronized (senal) {
+            try {
+                senal.wait(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void despertar() {
+        synchronized (senal) {
+            senal.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.kkarhua.fullrest.services;
+
+// Se publica cuando un producto se crea, modifica o elimina.
+// Los oyentes lo procesan después del commit para refrescar vistas derivadas (caché, índices).
+// soloStock: cambió solo el stock (y con él quizá el estado); el texto del producto sigue igual.
+public record ProductoCambiadoEvent(Long productoId, boolean eliminado, boolean soloStock) {
+
+    public ProductoCambiadoEvent(Long productoId, boolean eliminado) {
+        this(productoId, eliminado, false);
+    }
+
+    public static ProductoCambiadoEvent stock(Long productoId) {
+        return new ProductoCambiadoEvent(productoId, false, true);
+    }
+}
@@ -2,11 +2,31 @@ package com.example.kkarhua.fullrest.services;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.kkarhua.fullrest.cache.CacheLocal;
+import com.example.kkarhua.fullrest.dto.PaginaCursor;
+import com.example.kkarhua.fullrest.dto.ProductoDTO;
+import com.example.kkarhua.fullrest.dto.VersionCatalogoDTO;
+import com.example.kkarhua.fullrest.entities.MovimientoStock;
 import com.example.kkarhua.fullrest.entities.Producto;
 import com.example.kkarhua.fullrest.repositories.ProductoRepository;
 
@@ -16,13 +36,66 @@ public class ProductoServiceImpl implements ProductoServices {
     @Autowired
     private ProductoRepository productorepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MovimientosStockService movimientos;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${productos.paginacion.max-size:100}")
+    private int maxSize = 100;
+
+    @Value("${productos.reintentos.max-intentos:4}")
+    private int maxIntentos = 4;
+
+    @Value("${productos.reintentos.espera-base-millis:20}")
+    private long esperaBaseMillis = 20;
+
+    @Value("${productos.reintentos.espera-maxima-millis:500}")
+    private long esperaMaximaMillis = 500;
+
+    @Value("${productos.cache.max-size:10000}")
+    private int cacheMaxSize = 10000;
+
+    @Value("${productos.cache.ttl-segundos:300}")
+    private long cacheTtlSegundos = 300;
+
+    // Caché del detalle de producto (DTO inmutable), invalidada en cada escritura
+    private CacheLocal<Long, ProductoDTO> cacheDetalle;
+
+    // Versión del catálogo (count + max fechas) que consulta cada GET del listado antes de responder
+    // 304. Una sola entrada, invalidada con los mismos eventos que el detalle: solo se vuelve a
+    // calcular después de un cambio o al vencer el TTL
+    private static final String CLAVE_VERSION = "catalogo";
+    private CacheLocal<String, VersionCatalogoDTO> cacheVersion;
+
+    @PostConstruct
+    void iniciarCache() {
+        cacheDetalle = new CacheLocal<>(cacheMaxSize, cacheTtlSegundos * 1000);
+        cacheVersion = new CacheLocal<>(1, cacheTtlSegundos * 1000);
+        if (meterRegistry != null) {
+            FunctionCounter.builder("productos.cache.hits", cacheDetalle, CacheLocal::getAciertos).register(meterRegistry);
+            FunctionCounter.builder("productos.cache.misses", cacheDetalle, CacheLocal::getFallos).register(meterRegistry);
+            FunctionCounter.builder("productos.cache.evictions", cacheDetalle, CacheLocal::getDesalojos).register(meterRegistry);
+            Gauge.builder("productos.cache.size", cacheDetalle, CacheLocal::size).register(meterRegistry);
+        }
+    }
+
 
     @Override
     @Transactional
     public Optional<Producto> delete(Producto unProducto) {
         Optional<Producto> productoOptional = productorepository.findById(unProducto.getId());
+        // Se borra la entidad cargada: un stub sin versión (@Version) sería tratado como nuevo y no se borraría
         productoOptional.ifPresent(productoDb ->{ 
-            productorepository.delete(unProducto);
+            productorepository.delete(productoDb);
+            notificarCambio(productoDb.getId(), true);
          });
         return productoOptional;
     }
@@ -42,10 +115,183 @@ public class ProductoServiceImpl implements ProductoServices {
     @Override
     @Transactional
     public Producto save(Producto unProducto) {
-        return productorepository.save(unProducto);
+        if (unProducto.getId() != null && unProducto.getVersion() == null) {
+            // Con id y sin versión Spring Data haría persist en vez de merge: se toma la versión actual,
+            // o se crea como producto nuevo si el id no existe
+            productorepository.findById(unProducto.getId()).ifPresentOrElse(
+                actual -> unProducto.setVersion(actual.getVersion()),
+                () -> unProducto.setId(null));
+        }
+        boolean nuevo = unProducto.getId() == null;
+        Producto productoGuardado = productorepository.save(unProducto);
+        if (nuevo) {
+            // El stock inicial abre el libro de movimientos del producto
+            movimientos.registrar(productoGuardado.getId(), MovimientoStock.Tipo.APERTURA, productoGuardado.getStock());
+        }
+        notificarCambio(productoGuardado.getId(), false);
+        return productoGuardado;
+    }
+
+    // Cada intento corre en su propia transacción y vuelve a leer el producto, así los cambios se
+    // aplican sobre la última versión. Si el commit choca con otro escritor (@Version) se espera
+    // un tiempo aleatorio creciente (backoff exponencial con jitter) y se reintenta; al agotar los
+    // intentos se propaga la OptimisticLockingFailureException.
+    @Override
+    public Optional<Producto> modificar(Long id, Consumer<Producto> cambios) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    Optional<Producto> producto = productorepository.findById(id);
+                    producto.ifPresent(productoDb -> {
+                        cambios.accept(productoDb);
+                        productorepository.save(productoDb);
+                        notificarCambio(id, false);
+                    });
+                    return producto;
+                });
+            } catch (OptimisticLockingFailureException e) {
+                if (intento >= maxIntentos) {
+                    throw e;
+                }
+                esperarReintento(intento);
+            }
+        }
+    }
+
+    private void esperarReintento(int intento) {
+        long tope = Math.min(esperaMaximaMillis, esperaBaseMillis << Math.min(intento - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(tope + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reintento interrumpido", e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductoDTO> findAllDto() {
+        return productorepository.findAllDto();
     }
 
+    // Sin @Transactional: un acierto de caché no abre transacción ni toma conexión;
+    // en un fallo la consulta del repositorio ya corre en su propia transacción de lectura
+    @Override
+    public Optional<ProductoDTO> findDtoById(Long id) {
+        return Optional.ofNullable(cacheDetalle.getOrLoad(id, clave -> productorepository.findDtoById(clave).orElse(null)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void recorrerCatalogo(Consumer<ProductoDTO> consumidor) {
+        // Son DTO y no entidades: el contexto de persistencia no crece con cada fila
+        try (Stream<ProductoDTO> productos = productorepository.streamAllDto()) {
+            productos.forEach(consumidor);
+        }
+    }
+
+    // Sin @Transactional: con la versión en caché no hace falta tomar una conexión
+    @Override
+    public VersionCatalogoDTO versionCatalogo() {
+        return cacheVersion.getOrLoad(CLAVE_VERSION, clave -> productorepository.findVersionCatalogo());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PaginaCursor<ProductoDTO> findPagina(int size, String orden, String cursor) {
+        if (size < 1 || size > maxSize) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + maxSize);
+        }
+
+        // Se pide un elemento extra solo para saber si existe una página siguiente
+        Limit limit = Limit.of(size + 1);
+        List<ProductoDTO> productos;
+        boolean porPrecio;
+
+        switch (orden == null ? "id_asc" : orden) {
+            case "id_asc" -> {
+                porPrecio = false;
+                Long id = cursor == null ? 0L : parseId(cursor);
+                productos = productorepository.findPaginaPorIdAsc(id, limit);
+            }
+            case "id_desc" -> {
+                porPrecio = false;
+                Long id = cursor == null ? Long.MAX_VALUE : parseId(cursor);
+                productos = productorepository.findPaginaPorIdDesc(id, limit);
+            }
+            case "precio_asc" -> {
+                porPrecio = true;
+                long[] posicion = cursor == null ? new long[] {Integer.MIN_VALUE, 0L} : parsePrecioId(cursor);
+                productos = productorepository.findPaginaPorPrecioAsc((int) posicion[0], posicion[1], limit);
+            }
+            case "precio_desc" -> {
+                porPrecio = true;
+                long[] posicion = cursor == null ? new long[] {Integer.MAX_VALUE, Long.MAX_VALUE} : parsePrecioId(cursor);
+                productos = productorepository.findPaginaPorPrecioDesc((int) posicion[0], posicion[1], limit);
+            }
+            default -> throw new IllegalArgumentException(
+                "Orden inválido: " + orden + ". Valores permitidos: id_asc, id_desc, precio_asc, precio_desc");
+        }
 
-    
+        String siguienteCursor = null;
+        if (productos.size() > size) {
+            productos = productos.subList(0, size);
+            ProductoDTO ultimo = productos.get(size - 1);
+            siguienteCursor = porPrecio ? ultimo.precio() + "_" + ultimo.id() : String.valueOf(ultimo.id());
+        }
+        return new PaginaCursor<>(productos, siguienteCursor, productos.size());
+    }
+
+    // Se invalida de inmediato y otra vez tras el commit: una lectura concurrente
+    // pudo recargar el valor anterior mientras la transacción seguía abierta
+    private void notificarCambio(Long productoId, boolean eliminado) {
+        cacheDetalle.invalidate(productoId);
+        cacheVersion.clear();
+        eventPublisher.publishEvent(new ProductoCambiadoEvent(productoId, eliminado));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        cacheDetalle.invalidate(evento.productoId());
+        cacheVersion.clear();
+    }
+
+    // El DTO incluye el nombre de la categoría, así que un cambio de categoría vacía la caché
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoriaCambiada(CategoriaCambiadaEvent evento) {
+        cacheDetalle.clear();
+        cacheVersion.clear();
+    }
+
+    @EventListener
+    public void onCatalogoImportado(CatalogoImportadoEvent evento) {
+        cacheDetalle.clear();
+        cacheVersion.clear();
+    }
+
+    // Cursor para orden por id: "<id>"
+    private Long parseId(String cursor) {
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+
+    // Cursor para orden por precio: "<precio>_<id>"
+    private long[] parsePrecioId(String cursor) {
+        int separador = cursor.indexOf('_');
+        if (separador <= 0) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+        try {
+            return new long[] {
+                Integer.parseInt(cursor.substring(0, separador)),
+                Long.parseLong(cursor.substring(separador + 1))
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
 
-}
\ No newline at end of file
+}
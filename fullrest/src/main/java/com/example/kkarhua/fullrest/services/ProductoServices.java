@@ -1,7 +1,11 @@
 package com.example.kkarhua.fullrest.services;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import com.example.kkarhua.fullrest.dto.PaginaCursor;
+import com.example.kkarhua.fullrest.dto.ProductoDTO;
+import com.example.kkarhua.fullrest.dto.VersionCatalogoDTO;
 import com.example.kkarhua.fullrest.entities.Producto;
 
 public interface ProductoServices {
@@ -12,8 +16,18 @@ public interface ProductoServices {
 
     Producto save(Producto unProducto);
 
+    Optional<Producto> modificar(Long id, Consumer<Producto> cambios);   //lee, aplica y guarda; reintenta si otro escritor ganó la carrera
+
     Optional<Producto> delete(Producto unProducto);
 
+    List<ProductoDTO> findAllDto();                 //listado de solo lectura en una sola consulta
+
+    Optional<ProductoDTO> findDtoById(Long id);     //detalle de solo lectura en una sola consulta
+
+    void recorrerCatalogo(Consumer<ProductoDTO> consumidor);    //entrega cada producto sin cargar el catálogo completo en memoria
+
+    VersionCatalogoDTO versionCatalogo();           //cantidad y última modificación, para ETag/Last-Modified
 
+    PaginaCursor<ProductoDTO> findPagina(int size, String orden, String cursor);   //página keyset: orden id_asc, id_desc, precio_asc o precio_desc
 
 }
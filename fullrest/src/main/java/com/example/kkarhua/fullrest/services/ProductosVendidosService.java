@@ -0,0 +1,43 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Avisa el cambio de stock de los productos de una compra desde el outbox. El checkout descuenta
+// el stock sin publicar eventos; aquí se publica un ProductoCambiadoEvent de solo stock por producto,
+// que refresca la caché de detalle y las facetas fuera de la petición.
+@Service
+public class ProductosVendidosService implements ManejadorOutbox {
+
+    public static final String EVENTO = "PRODUCTOS_VENDIDOS";
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public String tipo() {
+        return EVENTO;
+    }
+
+    // Payload: lista de ids de producto. Repetir el aviso solo vuelve a refrescar
+    @Override
+    public void manejar(String payload) {
+        List<Long> productoIds;
+        try {
+            productoIds = objectMapper.readValue(payload, new TypeReference<List<Long>>() { });
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Evento de productos ilegible: " + payload, e);
+        }
+        productoIds.forEach(id -> eventPublisher.publishEvent(ProductoCambiadoEvent.stock(id)));
+    }
+}
@@ -0,0 +1,435 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.ReservaDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoLoteStock;
+import com.example.kkarhua.fullrest.dto.ResultadoReserva;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.dto.StockDTO;
+import com.example.kkarhua.fullrest.inventario.MapaLong;
+import com.example.kkarhua.fullrest.inventario.RuedaExpiracion;
+
+// Reservas temporales de stock para el checkout.
+// Una reserva aparta (productoId, cantidad) por un tiempo limitado: el stock libre de un producto
+// es su stock menos lo reservado. Las reservas viven solo en memoria (mapas de claves long y una
+// rueda de expiración), así que reservar, liberar y expirar son O(1) y no tocan la base de datos;
+// el stock se descuenta recién cuando la reserva se confirma al crear la compra. Mientras tanto todo
+// descuento de StockServices deja en la tabla al menos lo reservado por otros (reservadoAjeno).
+// Reservar valida contra una vista del stock en memoria: se carga al arrancar (y tras una
+// importación) y cada ProductoCambiadoEvent relee la fila de ese producto después del commit; los
+// productos calientes se leen directamente de su contador. La vista puede ir unos milisegundos por
+// detrás de una venta recién confirmada: el resguardo contra la sobreventa sigue siendo el UPDATE
+// condicional que descuenta la reserva al confirmarla, que falla con stock insuficiente y nunca
+// deja stock negativo.
+// Cada usuario tiene un tope de reservas activas y de unidades apartadas en total, y no puede
+// apartar más que max-porcentaje-producto del stock de un producto: una sola cuenta no puede
+// bloquear el catálogo.
+@Service
+public class ReservaStockService {
+
+    private static final class Reserva {
+        final long id;
+        final long productoId;
+        final Long usuarioId;
+        final int cantidad;
+        final long expiraEn;
+        final RuedaExpiracion.Entrada entrada;
+        boolean confirmando;
+
+        Reserva(long id, long productoId, Long usuarioId, int cantidad, long expiraEn, RuedaExpiracion.Entrada entrada) {
+            this.id = id;
+            this.productoId = productoId;
+            this.usuarioId = usuarioId;
+            this.cantidad = cantidad;
+            this.expiraEn = expiraEn;
+            this.entrada = entrada;
+        }
+
+        ReservaDTO toDto() {
+            return new ReservaDTO(id, productoId, cantidad, Instant.ofEpochMilli(expiraEn));
+        }
+    }
+
+    private static final class Reservado {
+        int cantidad;
+    }
+
+    private static final class ReservasUsuario {
+        int reservas;
+        int unidades;
+        final Map<Long, Integer> unidadesPorProducto = new HashMap<>();
+    }
+
+    // Recurso de la transacción en curso: cantidades que ella misma reclamó, por producto
+    private static final Object RECLAMADAS = new Object();
+
+    private static final String SQL_STOCK = "select id, stock from producto";
+
+    private static final int FRANJAS_LOCK = 64;
+
+    @Autowired
+    private StockServices stockServices;
+
+    @Autowired
+    private InventarioCalienteService inventarioCaliente;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${stock.reservas.ttl-segundos:600}")
+    private long ttlSegundos = 600;
+
+    @Value("${stock.reservas.tick-millis:1000}")
+    private long tickMillis = 1000;
+
+    @Value("${stock.reservas.max-por-usuario:10}")
+    private int maxReservasPorUsuario = 10;
+
+    @Value("${stock.reservas.max-unidades-usuario:50}")
+    private int maxUnidadesPorUsuario = 50;
+
+    @Value("${stock.reservas.max-porcentaje-producto:20}")
+    private int maxPorcentajeProducto = 20;
+
+    private LongSupplier reloj = System::currentTimeMillis;
+
+    // Todo el estado se protege con el monitor del servicio; cada operación es O(1)
+    private final MapaLong<Reserva> reservas = new MapaLong<>();
+    private final MapaLong<Reservado> reservadoPorProducto = new MapaLong<>();
+    private final MapaLong<ReservasUsuario> reservasPorUsuario = new MapaLong<>();
+    private RuedaExpiracion rueda;
+    private long siguienteId = 1;
+
+    // Vista del stock confirmado por producto. Mientras se recarga, los eventos se anotan también en
+    // cambiosDuranteCarga (null = producto eliminado) para aplicarlos sobre la vista nueva
+    private MapaLong<Integer> stockVista = new MapaLong<>();
+    private Map<Long, Integer> cambiosDuranteCarga;
+
+    // Cada evento relee su producto bajo el lock de su franja: dos eventos del mismo producto se
+    // aplican en el orden en que leyeron y la lectura más nueva es la que queda
+    private final Object[] locksProducto = Stream.generate(Object::new).limit(FRANJAS_LOCK).toArray();
+    private final Object lockCarga = new Object();
+
+    private ScheduledExecutorService programador;
+
+    @PostConstruct
+    void iniciar() {
+        rueda = new RuedaExpiracion(512, tickMillis, reloj.getAsLong());
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "reservas-stock-expiracion");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleAtFixedRate(this::expirar, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+
+        if (meterRegistry != null) {
+            Gauge.builder("stock.reservas.activas", this, ReservaStockService::activas).register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        programador.shutdownNow();
+    }
+
+    public synchronized ResultadoReserva reservar(Long productoId, int cantidad, Long usuarioId) {
+        ReservasUsuario delUsuario = usuarioId != null ? reservasPorUsuario.get(usuarioId) : null;
+        if (cantidad > maxUnidadesPorUsuario || delUsuario != null
+                && (delUsuario.reservas >= maxReservasPorUsuario || delUsuario.unidades + cantidad > maxUnidadesPorUsuario)) {
+            return new ResultadoReserva(ResultadoStock.Tipo.LIMITE_EXCEDIDO, null, null);
+        }
+        Integer actual = stockActual(productoId);
+        if (actual == null) {
+            return new ResultadoReserva(ResultadoStock.Tipo.NO_ENCONTRADO, null, null);
+        }
+        int libre = actual - reservado(productoId);
+        if (libre < cantidad) {
+            return new ResultadoReserva(ResultadoStock.Tipo.STOCK_INSUFICIENTE, null, Math.max(libre, 0));
+        }
+        if (usuarioId != null && unidadesDelUsuario(usuarioId, productoId) + cantidad > cuotaPorUsuario(actual)) {
+            return new ResultadoReserva(ResultadoStock.Tipo.LIMITE_EXCEDIDO, null, null);
+        }
+
+        long id = siguienteId++;
+        long expiraEn = reloj.getAsLong() + ttlSegundos * 1000;
+        Reserva reserva = new Reserva(id, productoId, usuarioId, cantidad, expiraEn, rueda.programar(id, expiraEn));
+        agregar(reserva);
+        return new ResultadoReserva(ResultadoStock.Tipo.OK, reserva.toDto(), libre - cantidad);
+    }
+
+    public synchronized Optional<ReservaDTO> obtener(Long id, Long usuarioId) {
+        Reserva reserva = reservas.get(id);
+        if (reserva == null || !esDuenio(reserva, usuarioId)) {
+            return Optional.empty();
+        }
+        return Optional.of(reserva.toDto());
+    }
+
+    public synchronized boolean liberar(Long id, Long usuarioId) {
+        Reserva reserva = reservas.get(id);
+        if (reserva == null || reserva.confirmando || !esDuenio(reserva, usuarioId)) {
+            return false;
+        }
+        rueda.cancelar(reserva.entrada);
+        quitar(reserva);
+        return true;
+    }
+
+    public synchronized int disponible(Long productoId, int stock) {
+        return Math.max(stock - reservado(productoId), 0);
+    }
+
+    // Unidades que un descuento de stock debe respetar: lo reservado menos lo que la transacción
+    // en curso ya reclamó para descontarlo ella misma (sus líneas vienen en el mismo lote)
+    public synchronized int reservadoAjeno(Long productoId) {
+        Map<Long, Integer> reclamadas = reclamadasEnTransaccion();
+        int propias = reclamadas != null ? reclamadas.getOrDefault(productoId, 0) : 0;
+        return Math.max(reservado(productoId) - propias, 0);
+    }
+
+    // Descuenta del stock las reservas indicadas dentro de la transacción en curso (la de la compra).
+    // Lanza IllegalStateException si alguna no existe, venció, es de otro usuario o ya se está
+    // confirmando; en ese caso la transacción debe revertirse. Las reservas se borran al confirmar
+    // el commit y vuelven a quedar disponibles si la transacción se revierte.
+    public void confirmar(Collection<Long> ids, Long usuarioId) {
+        ResultadoLoteStock resultado = stockServices.aplicarLote(reclamar(ids, usuarioId));
+        if (!resultado.aplicado()) {
+            throw new IllegalStateException("Stock insuficiente para confirmar las reservas");
+        }
+    }
+
+    // Marca las reservas como en confirmación y devuelve sus líneas como ajustes negativos, sin
+    // tocar el stock: quien llama las descuenta en la misma transacción (el checkout las junta con
+    // el resto del carrito en un solo lote). El destino de las reservas lo decide el commit.
+    public List<AjusteStockDTO> reclamar(Collection<Long> ids, Long usuarioId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Las reservas solo se confirman dentro de una transacción");
+        }
+
+        List<Reserva> confirmadas = new ArrayList<>(ids.size());
+        synchronized (this) {
+            for (Long id : ids) {
+                Reserva reserva = reservas.get(id);
+                if (reserva == null || reserva.confirmando || !esDuenio(reserva, usuarioId)) {
+                    confirmadas.forEach(r -> r.confirmando = false);
+                    throw new IllegalStateException("La reserva " + id + " no existe o ya expiró");
+                }
+                reserva.confirmando = true;
+                confirmadas.add(reserva);
+            }
+        }
+
+        Map<Long, Integer> reclamadas = reclamadasEnTransaccion();
+        if (reclamadas == null) {
+            reclamadas = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(RECLAMADAS, reclamadas);
+        }
+        for (Reserva reserva : confirmadas) {
+            reclamadas.merge(reserva.productoId, reserva.cantidad, Integer::sum);
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(RECLAMADAS);
+                terminarConfirmacion(confirmadas, status == STATUS_COMMITTED);
+            }
+        });
+        return confirmadas.stream()
+            .map(r -> new AjusteStockDTO(r.productoId, -r.cantidad))
+            .toList();
+    }
+
+    // Carga la vista completa sin detener las reservas: se arma aparte y se reemplaza al final,
+    // aplicando encima los cambios que llegaron mientras se leía
+    @EventListener({ApplicationReadyEvent.class, CatalogoImportadoEvent.class})
+    public void cargarStock() {
+        synchronized (lockCarga) {
+            synchronized (this) {
+                cambiosDuranteCarga = new HashMap<>();
+            }
+            try {
+                MapaLong<Integer> nueva = new MapaLong<>();
+                jdbcTemplate.query(SQL_STOCK, (RowCallbackHandler) rs -> nueva.put(rs.getLong(1), rs.getInt(2)));
+                synchronized (this) {
+                    cambiosDuranteCarga.forEach((id, stock) -> {
+                        if (stock == null) {
+                            nueva.remove(id);
+                        } else {
+                            nueva.put(id, stock);
+                        }
+                    });
+                    stockVista = nueva;
+                }
+            } finally {
+                synchronized (this) {
+                    cambiosDuranteCarga = null;
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoCambiado(ProductoCambiadoEvent evento) {
+        Long productoId = evento.productoId();
+        synchronized (locksProducto[(int) (productoId & (FRANJAS_LOCK - 1))]) {
+            Integer stock = null;
+            if (!evento.eliminado()) {
+                List<StockDTO> actual = stockServices.consultar(List.of(productoId));
+                stock = actual.isEmpty() ? null : actual.get(0).stock();
+            }
+            actualizarVista(productoId, stock);
+        }
+    }
+
+    synchronized int activas() {
+        return reservas.size();
+    }
+
+    void setReloj(LongSupplier reloj) {
+        this.reloj = reloj;
+    }
+
+    synchronized void expirar() {
+        rueda.avanzar(reloj.getAsLong(), id -> {
+            Reserva reserva = reservas.get(id);
+            // Una reserva en confirmación no se suelta: la decide el resultado de la transacción
+            if (reserva != null && !reserva.confirmando) {
+                quitar(reserva);
+            }
+        });
+    }
+
+    private synchronized void terminarConfirmacion(List<Reserva> confirmadas, boolean confirmado) {
+        long ahora = reloj.getAsLong();
+        for (Reserva reserva : confirmadas) {
+            reserva.confirmando = false;
+            if (reservas.get(reserva.id) != reserva) {
+                continue;
+            }
+            if (confirmado || !reserva.entrada.isProgramada() || reserva.expiraEn <= ahora) {
+                rueda.cancelar(reserva.entrada);
+                quitar(reserva);
+            }
+        }
+    }
+
+    private void agregar(Reserva reserva) {
+        reservas.put(reserva.id, reserva);
+        Reservado reservado = reservadoPorProducto.get(reserva.productoId);
+        if (reservado == null) {
+            reservado = new Reservado();
+            reservadoPorProducto.put(reserva.productoId, reservado);
+        }
+        reservado.cantidad += reserva.cantidad;
+        if (reserva.usuarioId != null) {
+            ReservasUsuario delUsuario = reservasPorUsuario.get(reserva.usuarioId);
+            if (delUsuario == null) {
+                delUsuario = new ReservasUsuario();
+                reservasPorUsuario.put(reserva.usuarioId, delUsuario);
+            }
+            delUsuario.reservas++;
+            delUsuario.unidades += reserva.cantidad;
+            delUsuario.unidadesPorProducto.merge(reserva.productoId, reserva.cantidad, Integer::sum);
+        }
+    }
+
+    private void quitar(Reserva reserva) {
+        reservas.remove(reserva.id);
+        Reservado reservado = reservadoPorProducto.get(reserva.productoId);
+        if (reservado != null) {
+            reservado.cantidad -= reserva.cantidad;
+            if (reservado.cantidad <= 0) {
+                reservadoPorProducto.remove(reserva.productoId);
+            }
+        }
+        ReservasUsuario delUsuario = reserva.usuarioId != null ? reservasPorUsuario.get(reserva.usuarioId) : null;
+        if (delUsuario != null) {
+            delUsuario.reservas--;
+            delUsuario.unidades -= reserva.cantidad;
+            delUsuario.unidadesPorProducto.computeIfPresent(reserva.productoId,
+                (id, unidades) -> unidades > reserva.cantidad ? unidades - reserva.cantidad : null);
+            if (delUsuario.reservas <= 0) {
+                reservasPorUsuario.remove(reserva.usuarioId);
+            }
+        }
+    }
+
+    private synchronized void actualizarVista(long productoId, Integer stock) {
+        if (stock == null) {
+            stockVista.remove(productoId);
+        } else {
+            stockVista.put(productoId, stock);
+        }
+        if (cambiosDuranteCarga != null) {
+            cambiosDuranteCarga.put(productoId, stock);
+        }
+    }
+
+    // Stock confirmado sin ir a la base: el contador en memoria si el producto es caliente, si no la
+    // vista. null si el producto no existe
+    private Integer stockActual(long productoId) {
+        if (inventarioCaliente.esCaliente(productoId)) {
+            return inventarioCaliente.stock(productoId).stock();
+        }
+        return stockVista.get(productoId);
+    }
+
+    private int unidadesDelUsuario(long usuarioId, long productoId) {
+        ReservasUsuario delUsuario = reservasPorUsuario.get(usuarioId);
+        return delUsuario != null ? delUsuario.unidadesPorProducto.getOrDefault(productoId, 0) : 0;
+    }
+
+    // Unidades de un producto que un usuario puede tener apartadas: un porcentaje del stock, al menos una
+    private int cuotaPorUsuario(int stock) {
+        return Math.max((int) ((long) stock * maxPorcentajeProducto / 100), 1);
+    }
+
+    private int reservado(long productoId) {
+        Reservado reservado = reservadoPorProducto.get(productoId);
+        return reservado != null ? reservado.cantidad : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Integer> reclamadasEnTransaccion() {
+        return (Map<Long, Integer>) TransactionSynchronizationManager.getResource(RECLAMADAS);
+    }
+
+    // Estricto: una reserva sin dueño no es de nadie, ni siquiera de otro llamador sin usuario
+    private static boolean esDuenio(Reserva reserva, Long usuarioId) {
+        return usuarioId != null && Objects.equals(reserva.usuarioId, usuarioId);
+    }
+}
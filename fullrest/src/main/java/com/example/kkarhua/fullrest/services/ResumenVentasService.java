@@ -0,0 +1,161 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.dto.VentasPeriodoDTO;
+import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.repositories.VentaDiariaRepository;
+import com.example.kkarhua.fullrest.repositories.VentaHorariaRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Acumulados de ventas por día y por hora (venta_diaria, venta_horaria), por estado.
+// Cada compra suma (o resta, al eliminarla) su fila con un upsert desde el outbox: la compra deja un
+// evento con su cabecera y el worker lo aplica en la transacción que borra el evento, exactamente una vez.
+// Las estadísticas se leen de tablas con una fila por período en vez de recorrer compras.
+// Si las tablas están vacías al arrancar y ya hay compras, se reconstruyen desde compras.
+@Service
+public class ResumenVentasService implements ManejadorOutbox {
+
+    public static final String EVENTO = "RESUMEN_VENTAS";
+
+    private static final Logger log = LoggerFactory.getLogger(ResumenVentasService.class);
+
+    private static final String SQL_SUMAR_DIA =
+        "insert into venta_diaria (fecha, estado, franja, compras, subtotal, iva, total) values (?, ?, ?, ?, ?, ?, ?) as nuevo " +
+        "on duplicate key update compras = compras + nuevo.compras, subtotal = subtotal + nuevo.subtotal, " +
+        "iva = iva + nuevo.iva, total = total + nuevo.total";
+
+    private static final String SQL_SUMAR_HORA =
+        "insert into venta_horaria (fecha, hora, estado, franja, compras, subtotal, iva, total) values (?, ?, ?, ?, ?, ?, ?, ?) as nuevo " +
+        "on duplicate key update compras = compras + nuevo.compras, subtotal = subtotal + nuevo.subtotal, " +
+        "iva = iva + nuevo.iva, total = total + nuevo.total";
+
+    // Las compras archivadas conservan su cabecera en compra_archivada y siguen contando
+    private static final String COMPRAS_Y_ARCHIVADAS =
+        "(select fecha_compra, estado, subtotal, iva, total from compras " +
+        "union all select fecha_compra, estado, subtotal, iva, total from compra_archivada)";
+
+    // Reconstrucción completa: las compras existentes quedan en la franja 0
+    private static final String SQL_RECONSTRUIR_DIAS =
+        "insert into venta_diaria (fecha, estado, franja, compras, subtotal, iva, total) " +
+        "select date(fecha_compra), estado, 0, count(*), sum(subtotal), sum(iva), sum(total) " +
+        "from " + COMPRAS_Y_ARCHIVADAS + " c group by date(fecha_compra), estado";
+
+    private static final String SQL_RECONSTRUIR_HORAS =
+        "insert into venta_horaria (fecha, hora, estado, franja, compras, subtotal, iva, total) " +
+        "select date(fecha_compra), hour(fecha_compra), estado, 0, count(*), sum(subtotal), sum(iva), sum(total) " +
+        "from " + COMPRAS_Y_ARCHIVADAS + " c group by date(fecha_compra), hour(fecha_compra), estado";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private VentaDiariaRepository ventaDiariaRepository;
+
+    @Autowired
+    private VentaHorariaRepository ventaHorariaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${compras.resumen.franjas:8}")
+    private int franjas = 8;
+
+    // Payload del evento: la cabecera de la compra y el signo (1 al crearla, -1 al eliminarla)
+    public record Venta(Long compraId, LocalDateTime fechaCompra, String estado, int subtotal, int iva, int total, int signo) {
+
+        public static Venta de(Compra compra, int signo) {
+            return new Venta(compra.getId(), compra.getFechaCompra(), compra.getEstado(),
+                valor(compra.getSubtotal()), valor(compra.getIva()), valor(compra.getTotal()), signo);
+        }
+    }
+
+    @Override
+    public String tipo() {
+        return EVENTO;
+    }
+
+    @Override
+    public void manejar(String payload) {
+        Venta venta;
+        try {
+            venta = objectMapper.readValue(payload, Venta.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Evento de ventas ilegible: " + payload, e);
+        }
+        aplicar(venta);
+    }
+
+    private void aplicar(Venta venta) {
+        LocalDateTime fecha = venta.fechaCompra();
+        Date dia = Date.valueOf(fecha.toLocalDate());
+        int franja = (int) Math.floorMod(venta.compraId(), (long) franjas);
+        int signo = venta.signo();
+        long subtotal = signo * (long) venta.subtotal();
+        long iva = signo * (long) venta.iva();
+        long total = signo * (long) venta.total();
+
+        jdbcTemplate.update(SQL_SUMAR_DIA, dia, venta.estado(), franja, signo, subtotal, iva, total);
+        jdbcTemplate.update(SQL_SUMAR_HORA, dia, fecha.getHour(), venta.estado(), franja, signo, subtotal, iva, total);
+    }
+
+    @Transactional(readOnly = true)
+    public List<VentasPeriodoDTO> porDia(LocalDate desde, LocalDate hasta, String estado) {
+        return ventaDiariaRepository.findVentas(desde, hasta, estado);
+    }
+
+    @Transactional(readOnly = true)
+    public List<VentasPeriodoDTO> porHora(LocalDate desde, LocalDate hasta, String estado) {
+        return ventaHorariaRepository.findVentas(desde, hasta, estado);
+    }
+
+    @Transactional(readOnly = true)
+    public long contarCompras(String estado) {
+        return ventaDiariaRepository.sumComprasByEstado(estado);
+    }
+
+    // Vacía y vuelve a llenar los acumulados desde compras y compra_archivada, en una sola transacción. Los eventos de
+    // ventas pendientes se descartan porque sus compras ya entran en el recálculo; una compra que se
+    // confirme durante la reconstrucción puede quedar contada dos veces, así que conviene correrla sin tráfico.
+    public void reconstruir() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("delete from outbox_evento where tipo = ?", EVENTO);
+            jdbcTemplate.update("delete from venta_horaria");
+            jdbcTemplate.update("delete from venta_diaria");
+            jdbcTemplate.update(SQL_RECONSTRUIR_DIAS);
+            jdbcTemplate.update(SQL_RECONSTRUIR_HORAS);
+        });
+        log.info("Acumulados de ventas reconstruidos desde compras");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        Boolean vacios = jdbcTemplate.queryForObject(
+            "select not exists(select 1 from venta_diaria) and exists(select 1 from compras)", Boolean.class);
+        if (Boolean.TRUE.equals(vacios)) {
+            reconstruir();
+        }
+    }
+
+    private static int valor(Integer monto) {
+        return monto != null ? monto : 0;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.kkarhua.fullrest.services;
+
+import com.example.kkarhua.fullrest.dto.ResultadoLoteStock;
+
+// El lote de stock de una compra no pudo aplicarse; lleva el detalle por línea
+public class StockInsuficienteException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ResultadoLoteStock resultado;
+
+    public StockInsuficienteException(ResultadoLoteStock resultado) {
+        super("Stock insuficiente para completar la compra");
+        this.resultado = resultado;
+    }
+
+    public ResultadoLoteStock getResultado() {
+        return resultado;
+    }
+}
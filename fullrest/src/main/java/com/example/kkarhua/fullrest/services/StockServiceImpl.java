@@ -0,0 +1,238 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoLoteStock;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.dto.StockDTO;
+import com.example.kkarhua.fullrest.entities.MovimientoStock;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+
+@Service
+public class StockServiceImpl implements StockServices {
+
+    // Mismo ajuste condicional que reducirStock/agregarStock, para un delta con signo.
+    // El último parámetro es el mínimo que debe quedar: lo reservado si el delta descuenta, 0 si suma
+    private static final String SQL_AJUSTAR =
+        "update producto set " +
+        "estado = case when stock + ? = 0 then 'agotado' when stock = 0 then 'activo' else estado end, " +
+        "stock = stock + ?, fecha_actualizacion = ?, version = version + 1 " +
+        "where id = ? and stock + ? >= ?";
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InventarioCalienteService inventarioCaliente;
+
+    // Perezoso: las reservas confirman a través de este servicio
+    @Lazy
+    @Autowired
+    private ReservaStockService reservas;
+
+    @Autowired
+    private MovimientosStockService movimientos;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Override
+    @Transactional(timeoutString = "${transacciones.escritura.timeout-segundos:30}")
+    public ResultadoStock reducir(Long productoId, int cantidad) {
+        // Las unidades apartadas por reservas de otros no se pueden vender
+        int reservado = reservas.reservadoAjeno(productoId);
+        if (inventarioCaliente.esCaliente(productoId)) {
+            return inventarioCaliente.reducir(productoId, cantidad, reservado);
+        }
+        // UPDATE ... WHERE stock - cantidad >= reservado: dos compras concurrentes no pueden vender la misma unidad
+        if (productoRepository.reducirStock(productoId, cantidad, reservado, LocalDateTime.now()) == 0) {
+            Optional<StockDTO> actual = productoRepository.findStockById(productoId);
+            return actual.map(ResultadoStock::stockInsuficiente).orElseGet(ResultadoStock::noEncontrado);
+        }
+        // La lectura ve el valor recién escrito por esta transacción, que mantiene el bloqueo de la fila
+        StockDTO actual = productoRepository.findStockById(productoId).orElseThrow();
+        movimientos.registrar(productoId, MovimientoStock.Tipo.DESCUENTO, -cantidad);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.stock(productoId));
+        return ResultadoStock.ok(actual.stock() + cantidad, actual);
+    }
+
+    @Override
+    @Transactional(timeoutString = "${transacciones.escritura.timeout-segundos:30}")
+    public ResultadoStock agregar(Long productoId, int cantidad) {
+        if (inventarioCaliente.esCaliente(productoId)) {
+            return inventarioCaliente.agregar(productoId, cantidad);
+        }
+        if (productoRepository.agregarStock(productoId, cantidad, LocalDateTime.now()) == 0) {
+            return ResultadoStock.noEncontrado();
+        }
+        StockDTO actual = productoRepository.findStockById(productoId).orElseThrow();
+        movimientos.registrar(productoId, MovimientoStock.Tipo.AUMENTO, cantidad);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.stock(productoId));
+        return ResultadoStock.ok(actual.stock() - cantidad, actual);
+    }
+
+    @Override
+    @Transactional(timeoutString = "${transacciones.escritura.timeout-segundos:30}")
+    public ResultadoStock actualizar(Long productoId, int nuevoStock) {
+        if (inventarioCaliente.esCaliente(productoId)) {
+            return inventarioCaliente.actualizar(productoId, nuevoStock);
+        }
+        // El valor anterior es solo informativo: el nuevo stock y el cambio de estado se aplican en
+        // la misma sentencia sin depender de esta lectura, y el libro guarda el valor absoluto
+        Optional<StockDTO> anterior = productoRepository.findStockById(productoId);
+        if (anterior.isEmpty() || productoRepository.actualizarStock(productoId, nuevoStock, LocalDateTime.now()) == 0) {
+            return ResultadoStock.noEncontrado();
+        }
+        StockDTO actual = productoRepository.findStockById(productoId).orElseThrow();
+        movimientos.registrar(productoId, MovimientoStock.Tipo.ESTABLECIDO, nuevoStock);
+        eventPublisher.publishEvent(ProductoCambiadoEvent.stock(productoId));
+        return ResultadoStock.ok(anterior.get().stock(), actual);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StockDTO> consultar(Collection<Long> productoIds) {
+        List<StockDTO> stocks = new ArrayList<>(productoRepository.findStockByIdIn(productoIds));
+        // Los productos en modo caliente informan el contador en memoria, que va por delante de la tabla
+        stocks.replaceAll(stock -> inventarioCaliente.esCaliente(stock.productoId())
+            ? inventarioCaliente.stock(stock.productoId()) : stock);
+        stocks.sort(Comparator.comparing(StockDTO::productoId));
+        return stocks;
+    }
+
+    @Override
+    @Transactional(timeoutString = "${transacciones.escritura.timeout-segundos:30}")
+    public ResultadoLoteStock aplicarLote(List<AjusteStockDTO> ajustes) {
+        return aplicarLote(ajustes, true);
+    }
+
+    @Override
+    @Transactional(timeoutString = "${transacciones.escritura.timeout-segundos:30}")
+    public ResultadoLoteStock aplicarLote(List<AjusteStockDTO> ajustes, boolean notificar) {
+        // Orden ascendente por id: dos lotes que comparten productos toman los bloqueos
+        // de fila en el mismo orden y no pueden quedar esperándose mutuamente
+        List<AjusteStockDTO> ordenados = new ArrayList<>(ajustes);
+        ordenados.sort(Comparator.comparing(AjusteStockDTO::productoId));
+
+        // Las líneas de productos en modo caliente se aplican en memoria; el resto con UPDATE condicional
+        List<AjusteStockDTO> calientes = new ArrayList<>();
+        List<AjusteStockDTO> frias = new ArrayList<>();
+        for (AjusteStockDTO ajuste : ordenados) {
+            (inventarioCaliente.esCaliente(ajuste.productoId()) ? calientes : frias).add(ajuste);
+        }
+
+        Map<AjusteStockDTO, Boolean> aplicadas = new IdentityHashMap<>();
+        Map<Long, Integer> deltasAplicados = new HashMap<>();
+        boolean todas = true;
+
+        if (!calientes.isEmpty()) {
+            int fallida = inventarioCaliente.ajustar(calientes, reservas::reservadoAjeno);
+            for (int i = 0; i < calientes.size(); i++) {
+                aplicadas.put(calientes.get(i), i != fallida);
+            }
+            todas = fallida < 0;
+            if (todas) {
+                calientes.forEach(ajuste -> deltasAplicados.merge(ajuste.productoId(), ajuste.delta(), Integer::sum));
+            }
+        }
+
+        if (todas && !frias.isEmpty()) {
+            Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> parametros = new ArrayList<>(frias.size());
+            for (AjusteStockDTO ajuste : frias) {
+                int delta = ajuste.delta();
+                int minimo = delta < 0 ? reservas.reservadoAjeno(ajuste.productoId()) : 0;
+                parametros.add(new Object[] { delta, delta, ahora, ajuste.productoId(), delta, minimo });
+            }
+            int[] filas = jdbcTemplate.batchUpdate(SQL_AJUSTAR, parametros);
+            for (int i = 0; i < frias.size(); i++) {
+                AjusteStockDTO ajuste = frias.get(i);
+                boolean aplicada = filas[i] != 0;
+                aplicadas.put(ajuste, aplicada);
+                if (aplicada) {
+                    deltasAplicados.merge(ajuste.productoId(), ajuste.delta(), Integer::sum);
+                }
+                todas &= aplicada;
+            }
+        } else {
+            // No se ejecutaron: se informan como revertidas
+            frias.forEach(ajuste -> aplicadas.put(ajuste, true));
+        }
+
+        Map<Long, StockDTO> actuales = new HashMap<>();
+        if (!frias.isEmpty()) {
+            for (StockDTO stock : productoRepository.findStockByIdIn(
+                    frias.stream().map(AjusteStockDTO::productoId).distinct().toList())) {
+                actuales.put(stock.productoId(), stock);
+            }
+        }
+        // Los aumentos calientes llegan al contador recién al confirmar: se informan como pendientes
+        Map<Long, Integer> aumentosCalientes = new HashMap<>();
+        if (todas) {
+            calientes.stream().filter(ajuste -> ajuste.delta() > 0)
+                .forEach(ajuste -> aumentosCalientes.merge(ajuste.productoId(), ajuste.delta(), Integer::sum));
+        }
+        for (AjusteStockDTO ajuste : calientes) {
+            actuales.put(ajuste.productoId(),
+                inventarioCaliente.stock(ajuste.productoId(), aumentosCalientes.getOrDefault(ajuste.productoId(), 0)));
+        }
+
+        if (!todas) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+
+        // Las líneas se informan en el orden en que llegaron
+        List<ResultadoLoteStock.Linea> lineas = new ArrayList<>(ajustes.size());
+        for (AjusteStockDTO ajuste : ajustes) {
+            StockDTO actual = actuales.get(ajuste.productoId());
+            ResultadoStock.Tipo tipo;
+            if (actual == null) {
+                tipo = ResultadoStock.Tipo.NO_ENCONTRADO;
+            } else if (!aplicadas.get(ajuste)) {
+                tipo = ResultadoStock.Tipo.STOCK_INSUFICIENTE;
+            } else {
+                tipo = todas ? ResultadoStock.Tipo.OK : ResultadoStock.Tipo.REVERTIDO;
+            }
+            Integer stock = null;
+            String estado = null;
+            if (actual != null) {
+                // Si el lote se revierte, el stock vigente es el de antes de aplicar las líneas
+                stock = todas ? actual.stock() : actual.stock() - deltasAplicados.getOrDefault(ajuste.productoId(), 0);
+                estado = todas ? actual.estado() : null;
+            }
+            lineas.add(new ResultadoLoteStock.Linea(ajuste.productoId(), ajuste.delta(), tipo, stock, estado));
+        }
+
+        if (todas) {
+            for (AjusteStockDTO ajuste : frias) {
+                movimientos.registrar(ajuste.productoId(),
+                    ajuste.delta() > 0 ? MovimientoStock.Tipo.AUMENTO : MovimientoStock.Tipo.DESCUENTO, ajuste.delta());
+            }
+            if (notificar) {
+                actuales.keySet().forEach(id -> eventPublisher.publishEvent(ProductoCambiadoEvent.stock(id)));
+            }
+        }
+        return new ResultadoLoteStock(todas, lineas);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.kkarhua.fullrest.services;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoLoteStock;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.dto.StockDTO;
+
+public interface StockServices {
+
+    ResultadoStock reducir(Long productoId, int cantidad);      //falla con STOCK_INSUFICIENTE si no alcanza
+
+    ResultadoStock agregar(Long productoId, int cantidad);
+
+    ResultadoStock actualizar(Long productoId, int nuevoStock);  //establece una cantidad absoluta
+
+    ResultadoLoteStock aplicarLote(List<AjusteStockDTO> ajustes); //todo o nada, en una transacción
+
+    ResultadoLoteStock aplicarLote(List<AjusteStockDTO> ajustes, boolean notificar); //sin notificar, el llamador avisa los cambios (outbox)
+
+    List<StockDTO> consultar(Collection<Long> productoIds);        //una sola consulta IN, ordenado por id
+}
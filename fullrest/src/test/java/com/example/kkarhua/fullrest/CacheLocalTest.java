@@ -0,0 +1,116 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.kkarhua.fullrest.cache.CacheLocal;
+
+@DisplayName("Tests para CacheLocal")
+class CacheLocalTest {
+
+    private AtomicLong reloj;
+    private CacheLocal<Long, String> cache;
+
+    @BeforeEach
+    void setUp() {
+        reloj = new AtomicLong(1_000L);
+        cache = new CacheLocal<>(2, 100L, reloj::get);
+    }
+
+    @Test
+    @DisplayName("getOrLoad - Debe cargar una sola vez y luego responder desde caché")
+    void testGetOrLoad_DebeCargarUnaSolaVez() {
+        // Given
+        AtomicInteger cargas = new AtomicInteger();
+
+        // When
+        String primero = cache.getOrLoad(1L, id -> { cargas.incrementAndGet(); return "producto-" + id; });
+        String segundo = cache.getOrLoad(1L, id -> { cargas.incrementAndGet(); return "producto-" + id; });
+
+        // Then
+        assertEquals("producto-1", primero);
+        assertEquals("producto-1", segundo);
+        assertEquals(1, cargas.get());
+        assertEquals(1, cache.getAciertos());
+        assertEquals(1, cache.getFallos());
+    }
+
+    @Test
+    @DisplayName("get - Debe descartar entradas vencidas por TTL")
+    void testGet_DebeDescartarEntradasVencidas() {
+        // Given
+        cache.put(1L, "uno");
+
+        // When
+        reloj.addAndGet(101L);
+
+        // Then
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("put - Debe desalojar la entrada menos usada al superar el tamaño máximo")
+    void testPut_DebeDesalojarLaMenosUsada() {
+        // Given
+        cache.put(1L, "uno");
+        cache.put(2L, "dos");
+        cache.get(1L);
+
+        // When
+        cache.put(3L, "tres");
+
+        // Then
+        assertEquals("uno", cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals("tres", cache.get(3L));
+        assertEquals(1, cache.getDesalojos());
+    }
+
+    @Test
+    @DisplayName("getOrLoad - No debe guardar un valor cargado durante una invalidación")
+    void testGetOrLoad_NoDebeGuardarValorInvalidadoDuranteLaCarga() {
+        // When
+        String valor = cache.getOrLoad(1L, id -> {
+            cache.invalidate(id);
+            return "viejo";
+        });
+
+        // Then
+        assertEquals("viejo", valor);
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    @DisplayName("getOrLoad - Invalidar otra clave no debe descartar una carga en curso")
+    void testGetOrLoad_InvalidarOtraClaveNoDescartaLaCarga() {
+        // When: mientras se carga la clave 1 se invalida la 2
+        String valor = cache.getOrLoad(1L, id -> {
+            cache.invalidate(2L);
+            return "uno";
+        });
+
+        // Then
+        assertEquals("uno", valor);
+        assertEquals("uno", cache.get(1L));
+    }
+
+    @Test
+    @DisplayName("put - Debe respetar el vencimiento absoluto indicado")
+    void testPut_DebeRespetarVencimientoAbsoluto() {
+        // Given
+        cache.put(1L, "uno", reloj.get() + 10L);
+
+        // When
+        reloj.addAndGet(11L);
+
+        // Then
+        assertNull(cache.get(1L));
+    }
+}
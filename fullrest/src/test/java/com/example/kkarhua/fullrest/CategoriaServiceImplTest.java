@@ -15,6 +15,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import com.example.kkarhua.fullrest.entities.Categoria;
 import com.example.kkarhua.fullrest.repositories.CategoriaRepository;
@@ -31,6 +32,9 @@ class CategoriaServiceImplTest {
     @Mock
     private ProductoRepository productoRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private CategoriaServiceImpl categoriaService;
 
@@ -0,0 +1,192 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.BoletaDTO;
+import com.example.kkarhua.fullrest.dto.CheckoutDTO;
+import com.example.kkarhua.fullrest.dto.PrecioProductoDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoLoteStock;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.repositories.EnvioRepository;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+import com.example.kkarhua.fullrest.services.CheckoutServiceImpl;
+import com.example.kkarhua.fullrest.services.CompraServices;
+import com.example.kkarhua.fullrest.services.ReservaStockService;
+import com.example.kkarhua.fullrest.services.StockInsuficienteException;
+import com.example.kkarhua.fullrest.services.StockServices;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para CheckoutServiceImpl")
+class CheckoutServiceImplTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private EnvioRepository envioRepository;
+
+    @Mock
+    private StockServices stockServices;
+
+    @Mock
+    private ReservaStockService reservaStockService;
+
+    @Mock
+    private CompraServices compraServices;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private CheckoutServiceImpl checkoutService;
+
+    @Test
+    @DisplayName("checkout - Debe valorizar en el servidor, desglosar el IVA y descontar el stock en un lote")
+    void testCheckout_Exitoso() {
+        // Given
+        when(envioRepository.existsByIdAndUsuarioId(1L, 7L)).thenReturn(true);
+        when(productoRepository.findPrecioByIdIn(any())).thenReturn(List.of(
+            new PrecioProductoDTO(1L, "Laptop", 450000),
+            new PrecioProductoDTO(2L, "Mouse", 25000)));
+        when(stockServices.aplicarLote(anyList(), eq(false))).thenReturn(new ResultadoLoteStock(true, List.of()));
+        when(compraServices.save(any(Compra.class))).thenAnswer(invocation -> {
+            Compra c = invocation.getArgument(0);
+            c.setId(10L);
+            return c;
+        });
+        CheckoutDTO pedido = new CheckoutDTO(1L, List.of(
+            new CheckoutDTO.Item(2L, 1),
+            new CheckoutDTO.Item(1L, 1),
+            new CheckoutDTO.Item(2L, 1)), null);
+
+        // When
+        BoletaDTO boleta = checkoutService.checkout(7L, pedido);
+
+        // Then
+        assertEquals(10L, boleta.compraId());
+        assertEquals(500000, boleta.total());
+        assertEquals(420168, boleta.subtotal());
+        assertEquals(79832, boleta.iva());
+        assertEquals(2, boleta.lineas().size());
+        assertEquals(2, boleta.lineas().get(1).cantidad());
+        verify(stockServices).aplicarLote(List.of(new AjusteStockDTO(1L, -1), new AjusteStockDTO(2L, -2)), false);
+
+        ArgumentCaptor<Compra> captor = ArgumentCaptor.forClass(Compra.class);
+        verify(compraServices).save(captor.capture());
+        assertEquals(500000, captor.getValue().getTotal());
+        assertEquals("[{\"id\":1,\"nombre\":\"Laptop\",\"precio\":450000,\"cantidad\":1}," +
+                     "{\"id\":2,\"nombre\":\"Mouse\",\"precio\":25000,\"cantidad\":2}]",
+                     captor.getValue().getDetalleProductos());
+    }
+
+    @Test
+    @DisplayName("checkout - Debe sumar las reservas del usuario al mismo lote de stock")
+    void testCheckout_ConReservas() {
+        // Given
+        when(envioRepository.existsByIdAndUsuarioId(1L, 7L)).thenReturn(true);
+        when(reservaStockService.reclamar(List.of(5L), 7L)).thenReturn(List.of(new AjusteStockDTO(1L, -2)));
+        when(productoRepository.findPrecioByIdIn(any())).thenReturn(List.of(new PrecioProductoDTO(1L, "Laptop", 119)));
+        when(stockServices.aplicarLote(anyList(), eq(false))).thenReturn(new ResultadoLoteStock(true, List.of()));
+        when(compraServices.save(any(Compra.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        BoletaDTO boleta = checkoutService.checkout(7L, new CheckoutDTO(1L, List.of(new CheckoutDTO.Item(1L, 1)), List.of(5L)));
+
+        // Then
+        assertEquals(357, boleta.total());
+        assertEquals(300, boleta.subtotal());
+        assertEquals(57, boleta.iva());
+        verify(stockServices, times(1)).aplicarLote(List.of(new AjusteStockDTO(1L, -3)), false);
+    }
+
+    @Test
+    @DisplayName("checkout - Cantidades que desbordan int deben rechazarse con IllegalArgumentException")
+    void testCheckout_CantidadExcesiva() {
+        // Given
+        when(envioRepository.existsByIdAndUsuarioId(1L, 7L)).thenReturn(true);
+        CheckoutDTO pedido = new CheckoutDTO(1L, List.of(
+            new CheckoutDTO.Item(1L, Integer.MAX_VALUE),
+            new CheckoutDTO.Item(1L, 1)), null);
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> checkoutService.checkout(7L, pedido));
+        verify(stockServices, never()).aplicarLote(anyList(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("checkout - Un total que no cabe en int debe rechazarse con IllegalArgumentException")
+    void testCheckout_TotalExcesivo() {
+        // Given: 9000 x 450000 supera Integer.MAX_VALUE
+        when(envioRepository.existsByIdAndUsuarioId(1L, 7L)).thenReturn(true);
+        when(productoRepository.findPrecioByIdIn(any())).thenReturn(List.of(new PrecioProductoDTO(1L, "Laptop", 450000)));
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class,
+            () -> checkoutService.checkout(7L, new CheckoutDTO(1L, List.of(new CheckoutDTO.Item(1L, 9000)), null)));
+        verify(stockServices, never()).aplicarLote(anyList(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("checkout - Debe lanzar StockInsuficienteException y no guardar la compra")
+    void testCheckout_StockInsuficiente() {
+        // Given
+        when(envioRepository.existsByIdAndUsuarioId(1L, 7L)).thenReturn(true);
+        when(productoRepository.findPrecioByIdIn(any())).thenReturn(List.of(new PrecioProductoDTO(1L, "Laptop", 450000)));
+        ResultadoLoteStock fallido = new ResultadoLoteStock(false, List.of(
+            new ResultadoLoteStock.Linea(1L, -3, ResultadoStock.Tipo.STOCK_INSUFICIENTE, 1, "activo")));
+        when(stockServices.aplicarLote(anyList(), eq(false))).thenReturn(fallido);
+
+        // When / Then
+        StockInsuficienteException e = assertThrows(StockInsuficienteException.class,
+            () -> checkoutService.checkout(7L, new CheckoutDTO(1L, List.of(new CheckoutDTO.Item(1L, 3)), null)));
+        assertSame(fallido, e.getResultado());
+        verify(compraServices, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("checkout - Debe rechazar un envío de otro usuario sin tocar el stock")
+    void testCheckout_EnvioAjeno() {
+        // Given
+        when(envioRepository.existsByIdAndUsuarioId(1L, 7L)).thenReturn(false);
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class,
+            () -> checkoutService.checkout(7L, new CheckoutDTO(1L, List.of(new CheckoutDTO.Item(1L, 1)), null)));
+        verifyNoInteractions(productoRepository, stockServices, compraServices);
+    }
+
+    @Test
+    @DisplayName("checkout - Debe rechazar productos inexistentes")
+    void testCheckout_ProductoInexistente() {
+        // Given
+        when(envioRepository.existsByIdAndUsuarioId(1L, 7L)).thenReturn(true);
+        when(productoRepository.findPrecioByIdIn(any())).thenReturn(List.of());
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class,
+            () -> checkoutService.checkout(7L, new CheckoutDTO(1L, List.of(new CheckoutDTO.Item(99L, 1)), null)));
+        verifyNoInteractions(stockServices, compraServices);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.dto.EstadoImportacion;
+import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.entities.CompraArchivada;
+import com.example.kkarhua.fullrest.repositories.CompraArchivadaRepository;
+import com.example.kkarhua.fullrest.repositories.EnvioRepository;
+import com.example.kkarhua.fullrest.repositories.UsuarioRepository;
+import com.example.kkarhua.fullrest.services.CompraArchivoService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para CompraArchivoService")
+class CompraArchivoServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Mock
+    private CompraArchivadaRepository compraArchivadaRepository;
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @Mock
+    private EnvioRepository envioRepository;
+
+    @InjectMocks
+    private CompraArchivoService compraArchivoService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(compraArchivoService, "directorio", directorio.toString());
+    }
+
+    @Test
+    @DisplayName("buscar - Debe encontrar una compra anexada a un segmento que ya se había leído")
+    void testBuscar_SegmentoLeidoAntesDeAnexar() throws SQLException {
+        // Given: la compra 1 se archivó y se leyó, lo que carga el índice del segmento 2024-03
+        archivar(1L, LocalDateTime.of(2024, 3, 10, 12, 0));
+        when(compraArchivadaRepository.findById(1L)).thenReturn(Optional.of(archivada(1L, "2024-03")));
+        assertTrue(compraArchivoService.buscar(1L).isPresent());
+
+        // When: otra pasada anexa la compra 2 al mismo segmento
+        archivar(2L, LocalDateTime.of(2024, 3, 20, 12, 0));
+        when(compraArchivadaRepository.findById(2L)).thenReturn(Optional.of(archivada(2L, "2024-03")));
+        Optional<Compra> compra = compraArchivoService.buscar(2L);
+
+        // Then
+        assertTrue(compra.isPresent());
+        assertEquals(2L, compra.get().getId());
+        assertEquals(1190, compra.get().getTotal());
+    }
+
+    // Ejecuta una pasada de archivo cuyo único lote es la compra indicada
+    @SuppressWarnings("unchecked")
+    private void archivar(long id, LocalDateTime fecha) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(id);
+        when(rs.getLong(2)).thenReturn(7L);
+        when(rs.getLong(3)).thenReturn(3L);
+        when(rs.getInt(4)).thenReturn(1000);
+        when(rs.getInt(5)).thenReturn(190);
+        when(rs.getInt(6)).thenReturn(1190);
+        when(rs.getString(7)).thenReturn("[]");
+        when(rs.getTimestamp(8)).thenReturn(Timestamp.valueOf(fecha));
+        when(rs.getString(9)).thenReturn("completada");
+        doAnswer(invocacion -> List.of(((RowMapper<Object>) invocacion.getArgument(1)).mapRow(rs, 0)))
+            .doReturn(List.of())
+            .when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(), any());
+
+        EstadoImportacion estado = new EstadoImportacion("archivo-" + id, "compras");
+        ReflectionTestUtils.invokeMethod(compraArchivoService, "procesarArchivo", estado);
+        assertEquals("completada", estado.getEstado(), estado.getMensaje());
+    }
+
+    private static CompraArchivada archivada(long id, String segmento) {
+        CompraArchivada archivada = new CompraArchivada();
+        ReflectionTestUtils.setField(archivada, "id", id);
+        ReflectionTestUtils.setField(archivada, "segmento", segmento);
+        return archivada;
+    }
+}
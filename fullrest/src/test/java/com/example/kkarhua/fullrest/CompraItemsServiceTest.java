@@ -0,0 +1,98 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.services.CompraItemsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para CompraItemsService")
+class CompraItemsServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private CompraItemsService compraItemsService;
+
+    @Test
+    @DisplayName("registrar - Debe insertar una fila por línea del detalle en un solo lote")
+    void testRegistrar_InsertaLineas() {
+        // Given
+        LocalDateTime fecha = LocalDateTime.of(2025, 3, 1, 12, 0);
+        Compra compra = new Compra();
+        compra.setId(5L);
+        compra.setFechaCompra(fecha);
+        compra.setDetalleProductos("[{\"id\":1,\"nombre\":\"Laptop\",\"precio\":500000,\"cantidad\":1}," +
+                                   "{\"id\":2,\"nombre\":\"Mouse\",\"precio\":25000,\"cantidad\":3}]");
+
+        // When
+        compraItemsService.registrar(compra);
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        List<Object[]> filas = captor.getValue();
+        assertEquals(2, filas.size());
+        assertArrayEquals(new Object[] {5L, 1L, 1, 500000, Timestamp.valueOf(fecha)}, filas.get(0));
+        assertArrayEquals(new Object[] {5L, 2L, 3, 25000, Timestamp.valueOf(fecha)}, filas.get(1));
+    }
+
+    @Test
+    @DisplayName("registrar - No debe impedir la compra si el detalle no es JSON válido")
+    void testRegistrar_DetalleInvalido() {
+        // Given
+        Compra compra = new Compra();
+        compra.setId(6L);
+        compra.setFechaCompra(LocalDateTime.now());
+        compra.setDetalleProductos("no es json");
+
+        // When
+        compraItemsService.registrar(compra);
+
+        // Then
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("registrar - No debe escribir nada cuando el detalle está vacío")
+    void testRegistrar_DetalleVacio() {
+        // Given
+        Compra compra = new Compra();
+        compra.setId(7L);
+        compra.setFechaCompra(LocalDateTime.now());
+        compra.setDetalleProductos("[]");
+
+        // When
+        compraItemsService.registrar(compra);
+
+        // Then
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
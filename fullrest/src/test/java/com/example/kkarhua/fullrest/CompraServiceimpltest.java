@@ -2,6 +2,8 @@ package com.example.kkarhua.fullrest;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 import java.time.LocalDateTime;
@@ -17,11 +19,21 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.example.kkarhua.fullrest.dto.CompraResumenDTO;
+import com.example.kkarhua.fullrest.dto.PaginaCursor;
 import com.example.kkarhua.fullrest.entities.Compra;
 import com.example.kkarhua.fullrest.entities.Usuario;
 import com.example.kkarhua.fullrest.entities.Envio;
+import com.example.kkarhua.fullrest.repositories.CompraArchivadaRepository;
+import com.example.kkarhua.fullrest.repositories.CompraItemRepository;
 import com.example.kkarhua.fullrest.repositories.CompraRepository;
+import com.example.kkarhua.fullrest.services.BoletaService;
+import com.example.kkarhua.fullrest.services.CompraArchivoService;
+import com.example.kkarhua.fullrest.services.CompraItemsService;
 import com.example.kkarhua.fullrest.services.CompraServiceImpl;
+import com.example.kkarhua.fullrest.services.OutboxService;
+import com.example.kkarhua.fullrest.services.ReservaStockService;
+import com.example.kkarhua.fullrest.services.ResumenVentasService;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("Tests para CompraServiceImpl")
@@ -30,6 +42,27 @@ class CompraServiceImplTest {
     @Mock
     private CompraRepository compraRepository;
 
+    @Mock
+    private CompraItemRepository compraItemRepository;
+
+    @Mock
+    private ReservaStockService reservaStockService;
+
+    @Mock
+    private CompraItemsService compraItemsService;
+
+    @Mock
+    private ResumenVentasService resumenVentasService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private CompraArchivadaRepository compraArchivadaRepository;
+
+    @Mock
+    private CompraArchivoService compraArchivoService;
+
     @InjectMocks
     private CompraServiceImpl compraService;
 
@@ -140,6 +173,22 @@ class CompraServiceImplTest {
         // Then
         assertFalse(resultado.isPresent());
         verify(compraRepository, times(1)).findById(99L);
+        verify(compraArchivoService, times(1)).buscar(99L);
+    }
+
+    @Test
+    @DisplayName("findById - Debe buscar en el archivo una compra que ya no está en compras")
+    void testFindById_DebeBuscarEnArchivo() {
+        // Given
+        when(compraRepository.findById(1L)).thenReturn(Optional.empty());
+        when(compraArchivoService.buscar(1L)).thenReturn(Optional.of(compra1));
+
+        // When
+        Optional<Compra> resultado = compraService.findById(1L);
+
+        // Then
+        assertTrue(resultado.isPresent());
+        assertEquals(500000, resultado.get().getTotal());
     }
 
     @Test
@@ -204,6 +253,9 @@ class CompraServiceImplTest {
         assertEquals(80000, resultado.getTotal());
         assertNotNull(resultado.getFechaCompra());
         verify(compraRepository, times(1)).save(nuevaCompra);
+        verify(compraItemsService, times(1)).registrar(nuevaCompra);
+        verify(outboxService, times(1)).publicar(ResumenVentasService.EVENTO, ResumenVentasService.Venta.de(nuevaCompra, 1));
+        verify(outboxService, times(1)).publicar(BoletaService.EVENTO, 3L);
     }
 
     @Test
@@ -222,6 +274,8 @@ class CompraServiceImplTest {
         assertEquals(500000, resultado.getTotal());
         assertEquals(resultado.getSubtotal() + resultado.getIva(), resultado.getTotal());
         verify(compraRepository, times(1)).save(compra1);
+        verify(compraItemsService, never()).registrar(any());
+        verifyNoInteractions(outboxService);
     }
 
     @Test
@@ -238,6 +292,8 @@ class CompraServiceImplTest {
         assertTrue(resultado.isPresent());
         assertEquals(500000, resultado.get().getTotal());
         verify(compraRepository, times(1)).findById(1L);
+        verify(compraItemRepository, times(1)).deleteByCompraId(1L);
+        verify(outboxService, times(1)).publicar(ResumenVentasService.EVENTO, ResumenVentasService.Venta.de(compra1, -1));
         verify(compraRepository, times(1)).delete(compra1);
     }
 
@@ -259,31 +315,32 @@ class CompraServiceImplTest {
     }
 
     @Test
-    @DisplayName("countCompletadas - Debe contar compras completadas")
+    @DisplayName("countCompletadas - Debe contar compras completadas desde los acumulados")
     void testCountCompletadas_DebeContarComprasCompletadas() {
         // Given
-        when(compraRepository.countByEstado("completada")).thenReturn(10L);
+        when(resumenVentasService.contarCompras("completada")).thenReturn(10L);
 
         // When
         long resultado = compraService.countCompletadas();
 
         // Then
         assertEquals(10L, resultado);
-        verify(compraRepository, times(1)).countByEstado("completada");
+        verify(resumenVentasService, times(1)).contarCompras("completada");
+        verify(compraRepository, never()).countByEstado(any());
     }
 
     @Test
     @DisplayName("countCompletadas - Debe retornar 0 cuando no hay compras completadas")
     void testCountCompletadas_DebeRetornarCeroCuandoNoHayCompletadas() {
         // Given
-        when(compraRepository.countByEstado("completada")).thenReturn(0L);
+        when(resumenVentasService.contarCompras("completada")).thenReturn(0L);
 
         // When
         long resultado = compraService.countCompletadas();
 
         // Then
         assertEquals(0L, resultado);
-        verify(compraRepository, times(1)).countByEstado("completada");
+        verify(resumenVentasService, times(1)).contarCompras("completada");
     }
 
     @Test
@@ -371,4 +428,91 @@ class CompraServiceImplTest {
         });
         verify(compraRepository, times(1)).findByUsuarioId(1L);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("findPaginaResumenes - Sin usuario la primera página debe incluir las compras archivadas")
+    void testFindPaginaResumenes_TodasIncluyeArchivadas() {
+        // Given
+        LocalDateTime hoy = LocalDateTime.of(2025, 3, 1, 12, 0);
+        CompraResumenDTO activa = new CompraResumenDTO(20L, 1L, 1L, 840, 160, 1000, hoy, "completada");
+        CompraResumenDTO archivada = new CompraResumenDTO(3L, 2L, 1L, 840, 160, 1000, hoy.minusYears(2), "completada");
+        when(compraRepository.findPaginaResumen(any(), any(), isNull(), any(), eq(0L), any())).thenReturn(List.of(activa));
+        when(compraArchivadaRepository.findPaginaResumen(any(), any(), isNull(), any(), eq(0L), any())).thenReturn(List.of(archivada));
+
+        // When
+        PaginaCursor<CompraResumenDTO> pagina = compraService.findPaginaResumenes(null, null, null, null, 20, null);
+
+        // Then
+        assertEquals(List.of(activa, archivada), pagina.items());
+        assertNull(pagina.siguienteCursor());
+        verify(compraRepository, never()).findAll();
+    }
+
+    @Test
+    @DisplayName("findPaginaResumenes - Debe mezclar compras activas y archivadas del usuario de la más reciente a la más antigua")
+    void testFindPaginaResumenes_UsuarioMezclaArchivadas() {
+        // Given
+        LocalDateTime hoy = LocalDateTime.of(2025, 3, 1, 12, 0);
+        CompraResumenDTO activa = new CompraResumenDTO(20L, 1L, 1L, 840, 160, 1000, hoy, "completada");
+        CompraResumenDTO archivada = new CompraResumenDTO(3L, 1L, 1L, 840, 160, 1000, hoy.minusYears(2), "completada");
+        when(compraRepository.findPaginaResumenByUsuarioId(eq(1L), any(), any(), isNull(), any(), eq(0L), any())).thenReturn(List.of(activa));
+        when(compraArchivadaRepository.findPaginaResumenByUsuarioId(eq(1L), any(), any(), isNull(), any(), eq(0L), any())).thenReturn(List.of(archivada));
+
+        // When
+        PaginaCursor<CompraResumenDTO> pagina = compraService.findPaginaResumenes(1L, null, null, null, 20, null);
+
+        // Then
+        assertEquals(List.of(activa, archivada), pagina.items());
+        verify(compraRepository, never()).findByUsuarioId(any());
+    }
+
+    @Test
+    @DisplayName("findPaginaResumenes - Debe devolver siguienteCursor con la fecha e id de la última compra")
+    void testFindPaginaResumenes_DevuelveCursor() {
+        // Given
+        LocalDateTime f1 = LocalDateTime.of(2025, 3, 2, 10, 0, 5);
+        LocalDateTime f2 = LocalDateTime.of(2025, 3, 1, 9, 30, 0);
+        LocalDateTime f3 = LocalDateTime.of(2025, 2, 28, 8, 0, 0);
+        when(compraRepository.findPaginaResumenByUsuarioId(eq(1L), any(), any(), eq("completada"), any(), eq(0L), any()))
+            .thenReturn(List.of(
+                new CompraResumenDTO(9L, 1L, 1L, 840, 160, 1000, f1, "completada"),
+                new CompraResumenDTO(7L, 1L, 1L, 840, 160, 1000, f2, "completada"),
+                new CompraResumenDTO(4L, 1L, 1L, 840, 160, 1000, f3, "completada")));
+
+        // When
+        PaginaCursor<CompraResumenDTO> pagina = compraService.findPaginaResumenes(1L, null, null, "completada", 2, null);
+
+        // Then
+        assertEquals(2, pagina.size());
+        assertEquals(9L, pagina.items().get(0).id());
+        assertEquals(f2 + "_7", pagina.siguienteCursor());
+    }
+
+    @Test
+    @DisplayName("findPaginaResumenes - Debe continuar después del cursor sin filtrar por usuario")
+    void testFindPaginaResumenes_ContinuaDesdeCursor() {
+        // Given
+        LocalDateTime desde = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime hasta = LocalDateTime.of(2025, 4, 1, 0, 0);
+        LocalDateTime fechaCursor = LocalDateTime.of(2025, 3, 1, 9, 30);
+        when(compraRepository.findPaginaResumen(eq(desde), eq(hasta), isNull(), eq(fechaCursor), eq(7L), any()))
+            .thenReturn(List.of());
+
+        // When
+        PaginaCursor<CompraResumenDTO> pagina = compraService.findPaginaResumenes(null, desde, hasta, null, 20, fechaCursor + "_7");
+
+        // Then
+        assertTrue(pagina.items().isEmpty());
+        assertNull(pagina.siguienteCursor());
+        verify(compraRepository, never()).findPaginaResumenByUsuarioId(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("findPaginaResumenes - Debe rechazar cursores y tamaños inválidos")
+    void testFindPaginaResumenes_ParametrosInvalidos() {
+        assertThrows(IllegalArgumentException.class,
+            () -> compraService.findPaginaResumenes(null, null, null, null, 20, "no-es-cursor"));
+        assertThrows(IllegalArgumentException.class,
+            () -> compraService.findPaginaResumenes(null, null, null, null, 0, null));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.kkarhua.fullrest.inventario.ContadorRayado;
+
+@DisplayName("Tests para ContadorRayado")
+class ContadorRayadoTest {
+
+    @Test
+    @DisplayName("intentarRestar - Debe juntar unidades de otras franjas y nunca bajar de cero")
+    void testIntentarRestar_NoBajaDeCero() {
+        // Given
+        ContadorRayado contador = new ContadorRayado(4, 5);
+
+        // When / Then
+        assertTrue(contador.intentarRestar(3));
+        assertFalse(contador.intentarRestar(3));
+        assertEquals(2, contador.total());
+        assertTrue(contador.intentarRestar(2));
+        assertEquals(0, contador.total());
+    }
+
+    @Test
+    @DisplayName("intentarRestar - Debe descontar de la franja propia sin pasar por el camino lento")
+    void testIntentarRestar_FranjaPropia() {
+        // Given: 8 unidades en 4 franjas, 2 en cada una
+        ContadorRayado contador = new ContadorRayado(4, 8);
+
+        // When: el hilo descuenta de su franja, sea cual sea
+        boolean restado = contador.intentarRestar(2);
+
+        // Then
+        assertTrue(restado);
+        assertEquals(0, contador.restasLentas());
+        assertEquals(6, contador.total());
+    }
+
+    @Test
+    @DisplayName("intentarRestar - Con hilos concurrentes no debe vender más que el stock")
+    void testIntentarRestar_Concurrente() throws InterruptedException {
+        // Given
+        ContadorRayado contador = new ContadorRayado(8, 1_000);
+        AtomicInteger vendidas = new AtomicInteger();
+        List<Thread> hilos = new ArrayList<>();
+
+        // When
+        for (int h = 0; h < 8; h++) {
+            Thread hilo = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    if (contador.intentarRestar(1)) {
+                        vendidas.incrementAndGet();
+                    }
+                }
+            });
+            hilos.add(hilo);
+            hilo.start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        // Then
+        assertEquals(1_000, vendidas.get());
+        assertEquals(0, contador.total());
+    }
+
+    @Test
+    @DisplayName("intentarRestar - Con un mínimo no debe tocar las unidades reservadas")
+    void testIntentarRestar_RespetaMinimo() {
+        // Given
+        ContadorRayado contador = new ContadorRayado(4, 10);
+
+        // When / Then
+        assertTrue(contador.intentarRestar(4, 6));
+        assertFalse(contador.intentarRestar(1, 6));
+        assertEquals(6, contador.total());
+    }
+
+    @Test
+    @DisplayName("establecer - Debe devolver la diferencia con el valor anterior")
+    void testEstablecer_DevuelveDelta() {
+        // Given
+        ContadorRayado contador = new ContadorRayado(4, 10);
+        contador.sumar(5);
+
+        // When
+        int delta = contador.establecer(3);
+
+        // Then
+        assertEquals(-12, delta);
+        assertEquals(3, contador.total());
+    }
+
+    @Test
+    @DisplayName("establecer - Debe repartir el nuevo valor entre las franjas")
+    void testEstablecer_RepartePorFranjas() {
+        // Given
+        ContadorRayado contador = new ContadorRayado(4, 0);
+
+        // When
+        contador.establecer(4);
+
+        // Then: cualquier hilo encuentra una unidad en su franja
+        assertTrue(contador.intentarRestar(1));
+        assertEquals(0, contador.restasLentas());
+        assertEquals(3, contador.total());
+    }
+
+    @Test
+    @DisplayName("reducirA - Debe restar solo el exceso y nunca sumar")
+    void testReducirA() {
+        // Given
+        ContadorRayado contador = new ContadorRayado(4, 10);
+
+        // When / Then
+        assertEquals(6, contador.reducirA(4));
+        assertEquals(4, contador.total());
+        assertEquals(0, contador.reducirA(8));
+        assertEquals(4, contador.total());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.kkarhua.fullrest.dto.CategoriaDTO;
+import com.example.kkarhua.fullrest.dto.FacetaConteo;
+import com.example.kkarhua.fullrest.dto.FacetasDTO;
+import com.example.kkarhua.fullrest.dto.ProductoFacetaDTO;
+import com.example.kkarhua.fullrest.repositories.CategoriaRepository;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+import com.example.kkarhua.fullrest.services.FacetasProductosService;
+import com.example.kkarhua.fullrest.services.ProductoCambiadoEvent;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para FacetasProductosService")
+class FacetasProductosServiceTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private CategoriaRepository categoriaRepository;
+
+    @InjectMocks
+    private FacetasProductosService facetasService;
+
+    @BeforeEach
+    void setUp() {
+        // Cubo inicial: un producto de Ropa en el primer rango de precio
+        when(categoriaRepository.findAllDto()).thenReturn(List.of(new CategoriaDTO(3L, "Ropa"), new CategoriaDTO(4L, "Hogar")));
+        when(productoRepository.findFacetasPagina(eq(0L), any()))
+            .thenReturn(List.of(new ProductoFacetaDTO(2L, 3L, 9000, "activo")));
+        facetasService.reconstruir();
+    }
+
+    @Test
+    @DisplayName("onProductoCambiado - Un producto nuevo debe sumarse a su categoría, rango y estado")
+    void testOnProductoCambiado_Agrega() {
+        // Given
+        when(productoRepository.findFacetaById(1L)).thenReturn(Optional.of(new ProductoFacetaDTO(1L, 3L, 15000, "activo")));
+
+        // When
+        facetasService.onProductoCambiado(new ProductoCambiadoEvent(1L, false));
+
+        // Then
+        FacetasDTO facetas = facetas();
+        assertEquals(2, facetas.total());
+        assertEquals(Map.of("3", 2L), conteos(facetas.categorias()));
+        assertEquals("Ropa", facetas.categorias().get(0).etiqueta());
+        assertEquals(1L, conteos(facetas.rangosPrecio()).get("0"));
+        assertEquals(1L, conteos(facetas.rangosPrecio()).get("1"));
+        assertEquals(Map.of("activo", 2L), conteos(facetas.estados()));
+    }
+
+    @Test
+    @DisplayName("onProductoCambiado - Un producto modificado debe salir de su celda anterior y entrar en la nueva")
+    void testOnProductoCambiado_Mueve() {
+        // Given: el producto 2 pasa a Hogar, sube de precio y se agota
+        when(productoRepository.findFacetaById(2L)).thenReturn(Optional.of(new ProductoFacetaDTO(2L, 4L, 60000, "agotado")));
+
+        // When
+        facetasService.onProductoCambiado(new ProductoCambiadoEvent(2L, false));
+
+        // Then
+        FacetasDTO facetas = facetas();
+        assertEquals(1, facetas.total());
+        assertEquals(Map.of("4", 1L), conteos(facetas.categorias()));
+        assertEquals(0L, conteos(facetas.rangosPrecio()).get("0"));
+        assertEquals(1L, conteos(facetas.rangosPrecio()).get("3"));
+        assertEquals(Map.of("agotado", 1L), conteos(facetas.estados()));
+    }
+
+    @Test
+    @DisplayName("onProductoCambiado - Un producto eliminado debe descontarse sin consultar la base de datos")
+    void testOnProductoCambiado_Elimina() {
+        // When
+        facetasService.onProductoCambiado(new ProductoCambiadoEvent(2L, true));
+
+        // Then
+        FacetasDTO facetas = facetas();
+        assertEquals(0, facetas.total());
+        assertTrue(facetas.categorias().isEmpty());
+        assertTrue(facetas.estados().isEmpty());
+        assertTrue(facetas.rangosPrecio().stream().allMatch(rango -> rango.cantidad() == 0));
+        verify(productoRepository, never()).findFacetaById(any());
+    }
+
+    @Test
+    @DisplayName("reconstruir - Un cambio durante el recorrido debe releerse al publicar el cubo nuevo")
+    void testReconstruir_CambioDuranteElRecorrido() {
+        // Given: el recorrido lee el producto 2 antes de que pase a Hogar
+        when(productoRepository.findFacetaById(2L)).thenReturn(Optional.of(new ProductoFacetaDTO(2L, 4L, 9000, "activo")));
+        when(productoRepository.findFacetasPagina(eq(0L), any())).thenAnswer(invocacion -> {
+            facetasService.onProductoCambiado(new ProductoCambiadoEvent(2L, false));
+            return List.of(new ProductoFacetaDTO(2L, 3L, 9000, "activo"));
+        });
+
+        // When
+        facetasService.reconstruir();
+
+        // Then
+        assertEquals(Map.of("4", 1L), conteos(facetas().categorias()));
+        verify(productoRepository, times(2)).findFacetaById(2L);
+    }
+
+    private FacetasDTO facetas() {
+        return facetasService.buscar(null, null, null, 10, null).facetas();
+    }
+
+    private static Map<String, Long> conteos(List<FacetaConteo> faceta) {
+        return faceta.stream().collect(Collectors.toMap(FacetaConteo::valor, FacetaConteo::cantidad));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.kkarhua.fullrest.services.IdempotenciaService;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para IdempotenciaService")
+class IdempotenciaServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private IdempotenciaService idempotenciaService;
+
+    private final byte[] clave = "clave-de-32-bytes-para-la-prueba".getBytes(StandardCharsets.UTF_8);
+    private final byte[] huella = "huella-de-32-bytes-para-prueba!!".getBytes(StandardCharsets.UTF_8);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.invokeMethod(idempotenciaService, "iniciar");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(idempotenciaService, "detener");
+    }
+
+    @Test
+    @DisplayName("reclamar - Debe reclamar una clave nueva con un solo INSERT")
+    void testReclamar_ClaveNueva() {
+        // Given
+        when(jdbcTemplate.update(startsWith("insert ignore"), any(), any(), any(), any())).thenReturn(1);
+
+        // When
+        IdempotenciaService.ResultadoReclamo resultado = idempotenciaService.reclamar(clave, huella);
+
+        // Then
+        assertEquals(IdempotenciaService.Reclamo.NUEVA, resultado.tipo());
+        assertNull(resultado.respuesta());
+    }
+
+    @Test
+    @DisplayName("reclamar - Debe devolver la respuesta guardada desde la caché sin consultar la tabla")
+    void testReclamar_RepetidaDesdeCache() {
+        // Given
+        byte[] cuerpo = "{\"compraId\":10}".getBytes(StandardCharsets.UTF_8);
+        idempotenciaService.completar(clave, new IdempotenciaService.Respuesta(huella, 201, "application/json", cuerpo));
+        clearInvocations(jdbcTemplate);
+
+        // When
+        IdempotenciaService.ResultadoReclamo resultado = idempotenciaService.reclamar(clave, huella);
+
+        // Then
+        assertEquals(IdempotenciaService.Reclamo.REPETIDA, resultado.tipo());
+        assertEquals(201, resultado.respuesta().estado());
+        assertArrayEquals(cuerpo, resultado.respuesta().cuerpo());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("reclamar - Debe informar conflicto si la clave se reutiliza con otra petición")
+    void testReclamar_ConflictoConOtraHuella() {
+        // Given
+        idempotenciaService.completar(clave, new IdempotenciaService.Respuesta(huella, 201, null, new byte[0]));
+        byte[] otraHuella = "otra-huella-de-32-bytes-prueba!!".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        IdempotenciaService.ResultadoReclamo resultado = idempotenciaService.reclamar(clave, otraHuella);
+
+        // Then
+        assertEquals(IdempotenciaService.Reclamo.CONFLICTO, resultado.tipo());
+        assertNull(resultado.respuesta());
+    }
+
+    @Test
+    @DisplayName("barrer - Debe borrar en tandas hasta que una tanda no se llene")
+    void testBarrer_EnTandas() {
+        // Given
+        when(jdbcTemplate.update(anyString(), any(), eq(1000))).thenReturn(1000, 1000, 7);
+
+        // When
+        int borradas = idempotenciaService.barrer();
+
+        // Then
+        assertEquals(2007, borradas);
+        verify(jdbcTemplate, times(3)).update(anyString(), any(), eq(1000));
+    }
+}
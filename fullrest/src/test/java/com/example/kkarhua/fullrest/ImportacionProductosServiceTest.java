@@ -0,0 +1,292 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.dto.CategoriaDTO;
+import com.example.kkarhua.fullrest.dto.EstadoImportacion;
+import com.example.kkarhua.fullrest.entities.MovimientoStock;
+import com.example.kkarhua.fullrest.repositories.CategoriaRepository;
+import com.example.kkarhua.fullrest.services.CatalogoImportadoEvent;
+import com.example.kkarhua.fullrest.services.ImportacionProductosService;
+import com.example.kkarhua.fullrest.services.InventarioCalienteService;
+import com.example.kkarhua.fullrest.services.MovimientosStockService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para ImportacionProductosService")
+class ImportacionProductosServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private CategoriaRepository categoriaRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private MovimientosStockService movimientos;
+
+    @Mock
+    private InventarioCalienteService inventarioCaliente;
+
+    @InjectMocks
+    private ImportacionProductosService importacionService;
+
+    private final List<BatchPreparedStatementSetter> lotesInsertados = new ArrayList<>();
+    private long siguienteId = 100;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(categoriaRepository.findAllDto()).thenReturn(List.of(new CategoriaDTO(3L, "Ropa")));
+        lenient().doAnswer(invocacion -> {
+            ((Consumer<TransactionStatus>) invocacion.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().doAnswer(this::insertarConClaves).when(jdbcTemplate)
+            .batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+    }
+
+    @Test
+    @DisplayName("procesar - CSV con ';' debe separar inserciones y upserts e informar la línea de cada error")
+    @SuppressWarnings("unchecked")
+    void testProcesar_CsvSeparaInsercionesYUpserts() throws IOException, SQLException {
+        // Given
+        Path archivo = escribir("productos.csv",
+            "\uFEFFId;Nombre;Precio;Stock;Categoria",
+            ";\"Poncho; tejido\";25000;4;ropa",
+            "7;Mate;9000;0;",
+            ";Sin precio;;2;",
+            ";Gorro;5000;1;Calzado");
+
+        // When
+        EstadoImportacion estado = procesar(archivo, "csv");
+
+        // Then
+        assertEquals("completada", estado.getEstado());
+        assertEquals(4, estado.getProcesadas());
+        assertEquals(2, estado.getGuardadas());
+        assertEquals(List.of(4L, 5L), estado.getErrores().stream().map(EstadoImportacion.ErrorFila::linea).toList());
+        assertTrue(estado.getErrores().get(1).error().contains("Calzado"));
+
+        assertEquals(1, lotesInsertados.size());
+        Object[] poncho = valores(lotesInsertados.get(0), 0);
+        assertEquals("Poncho; tejido", poncho[0]);
+        assertEquals(25000, poncho[2]);
+        assertEquals(3L, poncho[4]);
+        assertEquals("activo", poncho[6]);
+
+        ArgumentCaptor<List<Object[]>> upserts = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("on duplicate key update"), upserts.capture());
+        Object[] mate = upserts.getValue().get(0);
+        assertEquals(7L, mate[0]);
+        assertNull(mate[5]);
+        assertEquals("agotado", mate[7]);
+        verify(eventPublisher).publishEvent(any(CatalogoImportadoEvent.class));
+
+        // El libro recibe la apertura del producto nuevo y el valor absoluto del upsert
+        verify(movimientos).registrar(100L, MovimientoStock.Tipo.APERTURA, 4);
+        verify(movimientos).registrar(7L, MovimientoStock.Tipo.ESTABLECIDO, 0);
+    }
+
+    @Test
+    @DisplayName("procesar - JSONL debe aceptar la categoría como objeto e ignorar los valores null")
+    void testProcesar_JsonlCategoriaObjeto() throws IOException, SQLException {
+        // Given
+        Path archivo = escribir("productos.jsonl",
+            "{\"nombre\":\"Chaleco\",\"precio\":15000,\"stock\":2,\"categoria\":{\"id\":3},\"imagen\":null}",
+            "[1, 2]",
+            "{\"nombre\":\"Bufanda\",\"precio\":\"barato\"}");
+
+        // When
+        EstadoImportacion estado = procesar(archivo, "jsonl");
+
+        // Then
+        assertEquals(3, estado.getProcesadas());
+        assertEquals(1, estado.getGuardadas());
+        assertEquals(List.of(2L, 3L), estado.getErrores().stream().map(EstadoImportacion.ErrorFila::linea).toList());
+
+        Object[] chaleco = valores(lotesInsertados.get(0), 0);
+        assertEquals("Chaleco", chaleco[0]);
+        assertEquals(3L, chaleco[4]);
+        assertNull(chaleco[5]);
+        verify(jdbcTemplate, never()).batchUpdate(contains("on duplicate key update"), anyList());
+        verify(movimientos).registrar(100L, MovimientoStock.Tipo.APERTURA, 2);
+    }
+
+    @Test
+    @DisplayName("procesar - Si el lote falla debe reintentar fila por fila y marcar solo la fila rechazada")
+    void testProcesar_LoteFallidoReintentaPorFila() throws IOException {
+        // Given
+        Path archivo = escribir("productos.csv",
+            "nombre,precio,stock",
+            "Poncho,25000,4",
+            "Mate,9000,1");
+        doThrow(new DataIntegrityViolationException("lote"))
+            .doAnswer(this::insertarConClaves)
+            .doThrow(new DataIntegrityViolationException("Duplicate entry 'Mate'"))
+            .when(jdbcTemplate)
+            .batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+
+        // When
+        EstadoImportacion estado = procesar(archivo, "csv");
+
+        // Then
+        assertEquals(1, estado.getGuardadas());
+        assertEquals(1, estado.getConError());
+        assertEquals(3L, estado.getErrores().get(0).linea());
+        verify(jdbcTemplate, times(3))
+            .batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+        // Solo la fila guardada queda en el libro
+        verify(movimientos).registrar(100L, MovimientoStock.Tipo.APERTURA, 4);
+        verify(movimientos, times(1)).registrar(anyLong(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("procesar - Un producto caliente no debe pisar su stock en la tabla sino fijarlo en el contador")
+    @SuppressWarnings("unchecked")
+    void testProcesar_ProductoCaliente() throws IOException {
+        // Given
+        Path archivo = escribir("productos.csv",
+            "id,nombre,precio,stock",
+            "7,Mate,9000,5",
+            "8,Poncho,25000,2");
+        when(inventarioCaliente.esCaliente(7L)).thenReturn(true);
+        String sqlCaliente = (String) ReflectionTestUtils.getField(ImportacionProductosService.class, "SQL_UPSERT_CALIENTE");
+
+        // When
+        EstadoImportacion estado = procesar(archivo, "csv");
+
+        // Then: la fila caliente va por el upsert sin stock y el contador recibe el valor importado
+        assertEquals(2, estado.getGuardadas());
+        ArgumentCaptor<List<Object[]>> calientes = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(sqlCaliente), calientes.capture());
+        assertEquals(List.of(7L), calientes.getValue().stream().map(fila -> fila[0]).toList());
+        assertFalse(sqlCaliente.contains("stock = nuevo.stock"));
+        verify(inventarioCaliente).actualizar(7L, 5);
+        verify(movimientos, never()).registrar(eq(7L), any(), anyInt());
+        verify(movimientos).registrar(8L, MovimientoStock.Tipo.ESTABLECIDO, 2);
+    }
+
+    @Test
+    @DisplayName("procesar - CSV con un salto de línea entre comillas debe leerlo como parte del campo")
+    void testProcesar_CsvCampoMultilinea() throws IOException, SQLException {
+        // Given
+        Path archivo = escribir("productos.csv",
+            "nombre,descripcion,precio,stock",
+            "Poncho,\"Lana de oveja,",
+            "tejido a mano\",25000,4",
+            "Mate,,9000,x");
+
+        // When
+        EstadoImportacion estado = procesar(archivo, "csv");
+
+        // Then: el error de la fila siguiente informa su propia línea
+        assertEquals(2, estado.getProcesadas());
+        assertEquals(1, estado.getGuardadas());
+        assertEquals(List.of(4L), estado.getErrores().stream().map(EstadoImportacion.ErrorFila::linea).toList());
+        Object[] poncho = valores(lotesInsertados.get(0), 0);
+        assertEquals("Poncho", poncho[0]);
+        assertEquals("Lana de oveja,\ntejido a mano", poncho[1]);
+        assertEquals(4, poncho[3]);
+    }
+
+    @Test
+    @DisplayName("procesar - CSV con comillas sin cerrar debe informar el error en la fila donde empiezan")
+    void testProcesar_CsvComillasSinCerrar() throws IOException {
+        // Given
+        Path archivo = escribir("productos.csv",
+            "nombre,descripcion,precio,stock",
+            "Mate,,9000,1",
+            "Poncho,\"Lana de oveja,25000,4",
+            "Gorro,,5000,2");
+
+        // When
+        EstadoImportacion estado = procesar(archivo, "csv");
+
+        // Then
+        assertEquals("completada", estado.getEstado());
+        assertEquals(1, estado.getGuardadas());
+        assertEquals(1, estado.getConError());
+        assertEquals(3L, estado.getErrores().get(0).linea());
+        assertEquals("Comillas sin cerrar", estado.getErrores().get(0).error());
+    }
+
+    // Simula el driver: devuelve un id generado por fila y guarda el lote para revisar sus valores
+    private int[] insertarConClaves(InvocationOnMock invocacion) {
+        BatchPreparedStatementSetter setter = invocacion.getArgument(1);
+        KeyHolder claves = invocacion.getArgument(2);
+        for (int i = 0; i < setter.getBatchSize(); i++) {
+            claves.getKeyList().add(Map.of("GENERATED_KEY", siguienteId++));
+        }
+        lotesInsertados.add(setter);
+        return new int[setter.getBatchSize()];
+    }
+
+    private static Object[] valores(BatchPreparedStatementSetter setter, int fila) throws SQLException {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        setter.setValues(ps, fila);
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(ps, atLeastOnce()).setObject(anyInt(), captor.capture());
+        return captor.getAllValues().toArray();
+    }
+
+    private Path escribir(String nombre, String... lineas) throws IOException {
+        return Files.write(directorio.resolve(nombre), List.of(lineas), StandardCharsets.UTF_8);
+    }
+
+    private EstadoImportacion procesar(Path archivo, String formato) {
+        EstadoImportacion estado = new EstadoImportacion("importacion-test", archivo.getFileName().toString());
+        ReflectionTestUtils.invokeMethod(importacionService, "procesar", archivo, formato, estado);
+        return estado;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.kkarhua.fullrest.busqueda.IndiceInvertido;
+
+@DisplayName("Tests para IndiceInvertido")
+class IndiceInvertidoTest {
+
+    private IndiceInvertido indice;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceInvertido();
+        indice.actualizar(1L, "Cámara réflex", "Cámara digital de 24 megapíxeles", "Fotografía");
+        indice.actualizar(2L, "Trípode", "Soporte para cámara", "Fotografía");
+        indice.actualizar(3L, "Polera de algodón", "Polera manga corta", "Vestuario");
+    }
+
+    @Test
+    @DisplayName("tokenizar - Debe quitar acentos, mayúsculas y palabras vacías")
+    void testTokenizar_DebeNormalizarTexto() {
+        // When
+        List<String> tokens = IndiceInvertido.tokenizar("Cámara de FOTOGRAFÍA, año 2024");
+
+        // Then
+        assertEquals(List.of("camara", "fotografia", "ano", "2024"), tokens);
+    }
+
+    @Test
+    @DisplayName("buscar - Debe encontrar sin importar acentos y ordenar por relevancia")
+    void testBuscar_DebeEncontrarSinAcentosYOrdenar() {
+        // When
+        List<IndiceInvertido.Resultado> resultados = indice.buscar("camara", 10);
+
+        // Then
+        assertEquals(2, resultados.size());
+        assertEquals(1L, resultados.get(0).id());
+        assertEquals(2L, resultados.get(1).id());
+        assertTrue(resultados.get(0).puntaje() > resultados.get(1).puntaje());
+    }
+
+    @Test
+    @DisplayName("buscar - Debe buscar también por nombre de categoría")
+    void testBuscar_DebeBuscarPorCategoria() {
+        // When
+        List<IndiceInvertido.Resultado> resultados = indice.buscar("vestuario", 10);
+
+        // Then
+        assertEquals(1, resultados.size());
+        assertEquals(3L, resultados.get(0).id());
+    }
+
+    @Test
+    @DisplayName("actualizar - Debe reemplazar los términos anteriores del documento")
+    void testActualizar_DebeReemplazarTerminos() {
+        // When
+        indice.actualizar(2L, "Mochila", "Mochila para equipo", "Accesorios");
+
+        // Then
+        assertEquals(1, indice.buscar("camara", 10).size());
+        assertEquals(2L, indice.buscar("mochila", 10).get(0).id());
+        assertEquals(3, indice.size());
+    }
+
+    @Test
+    @DisplayName("eliminar - Debe quitar el documento de los resultados")
+    void testEliminar_DebeQuitarDocumento() {
+        // When
+        indice.eliminar(1L);
+
+        // Then
+        List<IndiceInvertido.Resultado> resultados = indice.buscar("camara", 10);
+        assertEquals(1, resultados.size());
+        assertEquals(2L, resultados.get(0).id());
+    }
+
+    @Test
+    @DisplayName("buscar - Debe respetar el límite y devolver vacío si no hay coincidencias")
+    void testBuscar_DebeRespetarLimite() {
+        // Then
+        assertEquals(1, indice.buscar("camara", 1).size());
+        assertTrue(indice.buscar("inexistente", 10).isEmpty());
+        assertTrue(indice.buscar("de la", 10).isEmpty());
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.dto.StockDTO;
+import com.example.kkarhua.fullrest.entities.MovimientoStock;
+import com.example.kkarhua.fullrest.inventario.RegistroInventario;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+import com.example.kkarhua.fullrest.services.InventarioCalienteService;
+import com.example.kkarhua.fullrest.services.MovimientosStockService;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para InventarioCalienteService")
+class InventarioCalienteServiceTest {
+
+    private static final String SQL_LEER_CHECKPOINT = sql("SQL_LEER_CHECKPOINT");
+    private static final String SQL_VOLCAR = sql("SQL_VOLCAR");
+    private static final String SQL_STOCK_TABLA = sql("SQL_STOCK_TABLA");
+    private static final String SQL_AGOTAR = sql("SQL_AGOTAR");
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private MovimientosStockService movimientos;
+
+    @InjectMocks
+    private InventarioCalienteService inventario;
+
+    @TempDir
+    Path directorio;
+
+    @BeforeEach
+    void setUp() {
+        // Producto 1 caliente con 10 unidades y sin checkpoint previo
+        when(jdbcTemplate.queryForList(SQL_LEER_CHECKPOINT, Long.class)).thenReturn(List.of());
+        when(productoRepository.findStockById(1L)).thenReturn(Optional.of(new StockDTO(1L, "Poncho", 10, "activo")));
+        ReflectionTestUtils.setField(inventario, "habilitado", true);
+        ReflectionTestUtils.setField(inventario, "productosDesignados", List.of(1L));
+        ReflectionTestUtils.setField(inventario, "flushMillis", 60_000L);
+        ReflectionTestUtils.setField(inventario, "directorio", directorio.toString());
+        ReflectionTestUtils.invokeMethod(inventario, "iniciar");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        ReflectionTestUtils.invokeMethod(inventario, "detener");
+    }
+
+    @Test
+    @DisplayName("ajustar - Con rollback antes del commit los descuentos deben volver al contador sin llegar al registro")
+    void testAjustar_Rollback() throws IOException {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        int fallida = inventario.ajustar(List.of(new AjusteStockDTO(1L, -3), new AjusteStockDTO(1L, 5)), id -> 0);
+
+        // Then: el descuento se aparta de inmediato, el aumento espera al commit
+        assertEquals(-1, fallida);
+        assertEquals(7, inventario.stock(1L).stock());
+        completar(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(10, inventario.stock(1L).stock());
+        assertTrue(RegistroInventario.leer(directorio).isEmpty());
+    }
+
+    @Test
+    @DisplayName("ajustar - Las líneas deben anotarse antes del commit y los aumentos aplicarse al confirmar")
+    void testAjustar_Commit() throws IOException {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        inventario.ajustar(List.of(new AjusteStockDTO(1L, -3), new AjusteStockDTO(1L, 5)), id -> 0);
+        assertTrue(RegistroInventario.leer(directorio).isEmpty());
+
+        // When
+        antesDelCommit();
+
+        // Then: el registro ya tiene ambas líneas antes de que MySQL confirme
+        List<RegistroInventario.Movimiento> leidos = RegistroInventario.leer(directorio);
+        assertEquals(List.of(
+            new RegistroInventario.Movimiento(1, 1, -3, leidos.get(0).fecha(), false, 0),
+            new RegistroInventario.Movimiento(2, 1, 5, leidos.get(1).fecha(), false, 0)), leidos);
+        assertEquals(7, inventario.stock(1L).stock());
+        completar(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(12, inventario.stock(1L).stock());
+    }
+
+    @Test
+    @DisplayName("ajustar - Con rollback tras anotar debe compensarse el registro y devolverse los descuentos")
+    void testAjustar_RollbackTrasAnotar() throws IOException {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        inventario.ajustar(List.of(new AjusteStockDTO(1L, -3), new AjusteStockDTO(1L, 5)), id -> 0);
+        antesDelCommit();
+
+        // When
+        completar(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Then: la recuperación reaplicaría un neto de cero y cada compensatorio apunta a su original
+        assertEquals(10, inventario.stock(1L).stock());
+        List<RegistroInventario.Movimiento> leidos = RegistroInventario.leer(directorio);
+        assertEquals(0, leidos.stream().mapToInt(RegistroInventario.Movimiento::delta).sum());
+        assertEquals(List.of(0L, 0L, 1L, 2L), leidos.stream().map(RegistroInventario.Movimiento::anula).toList());
+    }
+
+    @Test
+    @DisplayName("reducir - Si el registro falla antes del commit debe propagarse y revertirse sin devolver de más")
+    void testReducir_RegistroFalla() {
+        // Given
+        RegistroInventario registro = mock(RegistroInventario.class);
+        when(registro.agregar(1L, -3, false)).thenThrow(new UncheckedIOException(new IOException("disco lleno")));
+        ReflectionTestUtils.setField(inventario, "registro", registro);
+        TransactionSynchronizationManager.initSynchronization();
+        inventario.reducir(1L, 3, 0);
+
+        // When / Then: la excepción en beforeCommit revierte la transacción antes del commit de MySQL
+        assertThrows(UncheckedIOException.class, this::antesDelCommit);
+        completar(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(10, inventario.stock(1L).stock());
+        verify(registro, never()).compensar(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("actualizar - Bajar el stock debe apartar el exceso de inmediato y devolverlo con rollback")
+    void testActualizar_Baja() throws IOException {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        ResultadoStock resultado = inventario.actualizar(1L, 4);
+
+        // Then
+        assertEquals(10, resultado.stockAnterior());
+        assertEquals(4, inventario.stock(1L).stock());
+        antesDelCommit();
+        List<RegistroInventario.Movimiento> leidos = RegistroInventario.leer(directorio);
+        assertEquals(List.of(new RegistroInventario.Movimiento(1, 1, -6, leidos.get(0).fecha(), true, 0)), leidos);
+        completar(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(10, inventario.stock(1L).stock());
+    }
+
+    @Test
+    @DisplayName("ajustar - Si un descuento no alcanza deben devolverse los anteriores")
+    void testAjustar_StockInsuficiente() throws IOException {
+        // When
+        int fallida = inventario.ajustar(List.of(new AjusteStockDTO(1L, -3), new AjusteStockDTO(1L, -8)), id -> 0);
+
+        // Then
+        assertEquals(1, fallida);
+        assertEquals(10, inventario.stock(1L).stock());
+        assertTrue(RegistroInventario.leer(directorio).isEmpty());
+    }
+
+    @Test
+    @DisplayName("agregar - En una transacción debe informar el stock que quedará y aplicarlo al confirmar")
+    void testAgregar_AlConfirmar() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        ResultadoStock resultado = inventario.agregar(1L, 4);
+
+        // Then
+        assertEquals(10, resultado.stockAnterior());
+        assertEquals(14, resultado.stock().stock());
+        assertEquals(10, inventario.stock(1L).stock());
+        antesDelCommit();
+        completar(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(14, inventario.stock(1L).stock());
+    }
+
+    @Test
+    @DisplayName("volcar - Si la tabla no tiene las unidades debe dejarla en 0 y acumular la deriva")
+    @SuppressWarnings("unchecked")
+    void testVolcar_Deriva() {
+        // Given: se vendieron 3 unidades calientes pero la tabla quedó con 1 por un cambio externo
+        inventario.reducir(1L, 3, 0);
+        doAnswer(invocacion -> {
+            ((Consumer<TransactionStatus>) invocacion.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(jdbcTemplate.batchUpdate(eq(SQL_VOLCAR), anyList())).thenReturn(new int[] { 0 });
+        when(jdbcTemplate.queryForList(SQL_STOCK_TABLA, Integer.class, 1L)).thenReturn(List.of(1));
+
+        // When
+        ReflectionTestUtils.invokeMethod(inventario, "volcar");
+
+        // Then: el libro recibe la venta y la corrección hasta lo realmente descontado; la métrica, lo que faltó
+        verify(jdbcTemplate).update(eq(SQL_AGOTAR), any(), eq(1L));
+        verify(movimientos).registrar(eq(1L), eq(MovimientoStock.Tipo.DESCUENTO), eq(-3), any(LocalDateTime.class));
+        verify(movimientos).registrar(1L, MovimientoStock.Tipo.VOLCADO, 2);
+        assertEquals(2, ((AtomicLong) ReflectionTestUtils.getField(inventario, "deriva")).get());
+    }
+
+    @Test
+    @DisplayName("volcar - Debe escribir una fila del libro por movimiento confirmado, con la fecha en que se anotó")
+    @SuppressWarnings("unchecked")
+    void testVolcar_UnaFilaPorMovimiento() throws IOException {
+        // Given: un lote confirmado y un ajuste absoluto revertido después de anotarse
+        TransactionSynchronizationManager.initSynchronization();
+        inventario.ajustar(List.of(new AjusteStockDTO(1L, -3), new AjusteStockDTO(1L, 5)), id -> 0);
+        antesDelCommit();
+        completar(TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationManager.initSynchronization();
+        inventario.actualizar(1L, 4);
+        antesDelCommit();
+        completar(TransactionSynchronization.STATUS_ROLLED_BACK);
+        long anotado = RegistroInventario.leer(directorio).get(0).fecha();
+        doAnswer(invocacion -> {
+            ((Consumer<TransactionStatus>) invocacion.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(jdbcTemplate.batchUpdate(eq(SQL_VOLCAR), anyList())).thenReturn(new int[] { 1 });
+
+        // When
+        ReflectionTestUtils.invokeMethod(inventario, "volcar");
+
+        // Then: el ajuste y su compensatorio se anulan; no hay correcciones
+        LocalDateTime fecha = LocalDateTime.ofInstant(Instant.ofEpochMilli(anotado), ZoneId.systemDefault());
+        verify(movimientos).registrar(1L, MovimientoStock.Tipo.DESCUENTO, -3, fecha);
+        verify(movimientos).registrar(eq(1L), eq(MovimientoStock.Tipo.AUMENTO), eq(5), any(LocalDateTime.class));
+        verify(movimientos, never()).registrar(anyLong(), eq(MovimientoStock.Tipo.AJUSTE), anyInt(), any());
+        verify(movimientos, never()).registrar(anyLong(), any(), anyInt());
+    }
+
+    private void antesDelCommit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(sincronizacion -> sincronizacion.beforeCommit(false));
+    }
+
+    // Simula el fin de la transacción: el administrador limpia las sincronizaciones y luego las avisa
+    private static void completar(int estado) {
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.afterCompletion(estado));
+    }
+
+    private static String sql(String nombre) {
+        return (String) ReflectionTestUtils.getField(InventarioCalienteService.class, nombre);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.kkarhua.fullrest.security.JwtAuthenticationFilter;
+import com.example.kkarhua.fullrest.security.JwtUtil;
+import com.example.kkarhua.fullrest.security.TokenVerificado;
+
+import io.jsonwebtoken.ExpiredJwtException;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para JwtAuthenticationFilter")
+class JwtAuthenticationFilterTest {
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    @InjectMocks
+    private JwtAuthenticationFilter filtro;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.invokeMethod(filtro, "iniciarCache");
+    }
+
+    @AfterEach
+    void limpiarContexto() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletRequest peticion(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/compras");
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+
+    @Test
+    @DisplayName("doFilter - Debe verificar el token una sola vez y servir las siguientes peticiones desde la caché")
+    void testDoFilter_VerificaUnaVezPorToken() throws Exception {
+        // Given
+        TokenVerificado principal = new TokenVerificado("test@email.com", "cliente", 5L, System.currentTimeMillis() + 60_000);
+        when(jwtUtil.verificar("abc")).thenReturn(principal);
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            SecurityContextHolder.clearContext();
+            MockHttpServletRequest request = peticion("abc");
+            filtro.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+            // Then
+            assertEquals(5L, request.getAttribute("userId"));
+            assertEquals("test@email.com", SecurityContextHolder.getContext().getAuthentication().getName());
+        }
+        verify(jwtUtil, times(1)).verificar("abc");
+    }
+
+    @Test
+    @DisplayName("doFilter - Debe volver a verificar un token cuyo exp ya pasó")
+    void testDoFilter_NoUsaEntradaVencida() throws Exception {
+        // Given
+        TokenVerificado vencido = new TokenVerificado("test@email.com", "cliente", 5L, System.currentTimeMillis() - 1);
+        when(jwtUtil.verificar("abc"))
+            .thenReturn(vencido)
+            .thenThrow(new ExpiredJwtException(null, null, "Token JWT expirado"));
+        filtro.doFilter(peticion("abc"), new MockHttpServletResponse(), new MockFilterChain());
+        SecurityContextHolder.clearContext();
+
+        // When
+        MockHttpServletRequest request = peticion("abc");
+        filtro.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertNull(request.getAttribute("userId"));
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(jwtUtil, times(2)).verificar("abc");
+    }
+
+    @Test
+    @DisplayName("doFilter - Al llenarse la caché debe desalojar la entrada que vence antes")
+    void testDoFilter_DesalojaAlLlenarse() throws Exception {
+        // Given: caché de dos entradas; "a" vence antes que "b"
+        ReflectionTestUtils.setField(filtro, "cacheMaxEntradas", 2);
+        long ahora = System.currentTimeMillis();
+        when(jwtUtil.verificar("a")).thenReturn(new TokenVerificado("a@email.com", "cliente", 1L, ahora + 60_000));
+        when(jwtUtil.verificar("b")).thenReturn(new TokenVerificado("b@email.com", "cliente", 2L, ahora + 120_000));
+        when(jwtUtil.verificar("c")).thenReturn(new TokenVerificado("c@email.com", "cliente", 3L, ahora + 180_000));
+
+        // When
+        for (String token : new String[] {"a", "b", "c", "b", "c"}) {
+            SecurityContextHolder.clearContext();
+            filtro.doFilter(peticion(token), new MockHttpServletResponse(), new MockFilterChain());
+        }
+
+        // Then: "b" y "c" siguen en caché
+        Map<?, ?> verificados = (Map<?, ?>) ReflectionTestUtils.getField(filtro, "verificados");
+        assertEquals(2, verificados.size());
+        verify(jwtUtil, times(1)).verificar("b");
+        verify(jwtUtil, times(1)).verificar("c");
+    }
+}
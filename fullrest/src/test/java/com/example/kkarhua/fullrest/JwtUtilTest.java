@@ -10,6 +10,10 @@ import org.junit.jupiter.api.DisplayName;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import com.example.kkarhua.fullrest.security.JwtUtil;
+import com.example.kkarhua.fullrest.security.TokenVerificado;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.security.WeakKeyException;
 
 @DisplayName("Tests para JwtUtil")
 class JwtUtilTest {
@@ -25,6 +29,18 @@ class JwtUtilTest {
         ReflectionTestUtils.setField(jwtUtil, "secret", secret);
         ReflectionTestUtils.setField(jwtUtil, "expiration", expiration);
         ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", refreshExpiration);
+        jwtUtil.init();
+    }
+
+    @Test
+    @DisplayName("init - Debe fallar al arrancar si el secret es demasiado corto para HS256")
+    void testInit_SecretDebilFallaAlArrancar() {
+        // Given
+        JwtUtil debil = new JwtUtil();
+        ReflectionTestUtils.setField(debil, "secret", "corto");
+
+        // When & Then
+        assertThrows(WeakKeyException.class, debil::init);
     }
 
     @Test
@@ -300,4 +316,41 @@ class JwtUtilTest {
         assertTrue(expirationTimestamp > timestampAntes);
         assertTrue(expirationTimestamp < timestampDespues + this.expiration);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("verificar - Debe devolver email, rol, userId y expiración con un solo parseo")
+    void testVerificar_DevuelvePrincipal() {
+        // Given
+        String token = jwtUtil.generateToken("test@email.com", "vendedor", 7L);
+
+        // When
+        TokenVerificado principal = jwtUtil.verificar(token);
+
+        // Then
+        assertEquals("test@email.com", principal.email());
+        assertEquals("vendedor", principal.rol());
+        assertEquals(7L, principal.userId());
+        assertEquals(jwtUtil.extractExpiration(token).getTime(), principal.expiraEn());
+    }
+
+    @Test
+    @DisplayName("verificar - Debe rechazar un refresh token")
+    void testVerificar_RechazaRefreshToken() {
+        // Given
+        String refreshToken = jwtUtil.generateRefreshToken("test@email.com");
+
+        // When & Then
+        assertThrows(JwtException.class, () -> jwtUtil.verificar(refreshToken));
+    }
+
+    @Test
+    @DisplayName("verificar - Debe rechazar un token con la firma alterada")
+    void testVerificar_RechazaFirmaAlterada() {
+        // Given
+        String token = jwtUtil.generateToken("test@email.com", "cliente", 1L);
+        String alterado = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        // When & Then
+        assertThrows(JwtException.class, () -> jwtUtil.verificar(alterado));
+    }
+}
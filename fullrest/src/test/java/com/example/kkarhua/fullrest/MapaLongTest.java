@@ -0,0 +1,124 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.kkarhua.fullrest.inventario.MapaLong;
+
+@DisplayName("Tests para MapaLong")
+class MapaLongTest {
+
+    // new MapaLong<>(4) tiene 16 ranuras (máscara 15) y crece al pasar de 8 entradas
+    private static final int MASCARA = 15;
+
+    @Test
+    @DisplayName("put/get - Claves que chocan en la misma ranura deben encontrarse por sondeo")
+    void testPut_Colisiones() {
+        // Given
+        List<Long> claves = colisionesEn(ranura(1L), 4);
+        MapaLong<String> mapa = new MapaLong<>(4);
+
+        // When
+        claves.forEach(clave -> mapa.put(clave, "v" + clave));
+
+        // Then
+        assertEquals(4, mapa.size());
+        claves.forEach(clave -> assertEquals("v" + clave, mapa.get(clave)));
+        assertEquals("v" + claves.get(2), mapa.put(claves.get(2), "nuevo"));
+        assertEquals("nuevo", mapa.get(claves.get(2)));
+        assertEquals(4, mapa.size());
+    }
+
+    @Test
+    @DisplayName("remove - Borrar al inicio de una cadena debe adelantar las siguientes sin perderlas")
+    void testRemove_DesplazamientoHaciaAtras() {
+        // Given: tres claves en la misma ranura y una cuarta cuya ranura ideal es la siguiente,
+        // que termina desplazada detrás de la cadena
+        int ranura = ranura(1L);
+        List<Long> cadena = colisionesEn(ranura, 3);
+        long vecina = colisionesEn((ranura + 1) & MASCARA, 1).get(0);
+        MapaLong<String> mapa = new MapaLong<>(4);
+        cadena.forEach(clave -> mapa.put(clave, "v" + clave));
+        mapa.put(vecina, "vecina");
+
+        // When
+        assertEquals("v" + cadena.get(0), mapa.remove(cadena.get(0)));
+
+        // Then: sin lápidas, el resto de la cadena y la vecina siguen alcanzables
+        assertNull(mapa.get(cadena.get(0)));
+        assertEquals("v" + cadena.get(1), mapa.get(cadena.get(1)));
+        assertEquals("v" + cadena.get(2), mapa.get(cadena.get(2)));
+        assertEquals("vecina", mapa.get(vecina));
+        assertEquals(3, mapa.size());
+
+        // Y una clave borrada puede volver a insertarse y encontrarse
+        assertNull(mapa.put(cadena.get(0), "otra vez"));
+        assertEquals("otra vez", mapa.get(cadena.get(0)));
+        assertEquals(4, mapa.size());
+    }
+
+    @Test
+    @DisplayName("remove - Borrar en el medio de una cadena que da la vuelta a la tabla")
+    void testRemove_CadenaQueDaLaVuelta() {
+        // Given: la cadena empieza en la última ranura y continúa en la 0 y la 1
+        List<Long> cadena = colisionesEn(MASCARA, 3);
+        MapaLong<String> mapa = new MapaLong<>(4);
+        cadena.forEach(clave -> mapa.put(clave, "v" + clave));
+
+        // When
+        mapa.remove(cadena.get(1));
+
+        // Then
+        assertEquals("v" + cadena.get(0), mapa.get(cadena.get(0)));
+        assertNull(mapa.get(cadena.get(1)));
+        assertEquals("v" + cadena.get(2), mapa.get(cadena.get(2)));
+    }
+
+    @Test
+    @DisplayName("put/remove - Una secuencia aleatoria debe coincidir con HashMap, incluso al crecer")
+    void testOperacionesAleatorias_ComoHashMap() {
+        // Given
+        Random aleatorio = new Random(42);
+        MapaLong<Long> mapa = new MapaLong<>();
+        Map<Long, Long> esperado = new HashMap<>();
+
+        // When / Then: claves en un rango chico para forzar choques, re-inserciones y borrados
+        for (int i = 0; i < 20_000; i++) {
+            long clave = aleatorio.nextInt(300);
+            if (aleatorio.nextInt(3) == 0) {
+                assertEquals(esperado.remove(clave), mapa.remove(clave));
+            } else {
+                assertEquals(esperado.put(clave, (long) i), mapa.put(clave, (long) i));
+            }
+            assertEquals(esperado.size(), mapa.size());
+        }
+        for (long clave = 0; clave < 300; clave++) {
+            assertEquals(esperado.get(clave), mapa.get(clave));
+        }
+    }
+
+    // Ranura ideal de una clave, con la misma función que usa el mapa
+    private static int ranura(long clave) {
+        Integer indice = ReflectionTestUtils.invokeMethod(MapaLong.class, "indice", clave, MASCARA);
+        return indice;
+    }
+
+    private static List<Long> colisionesEn(int ranura, int cantidad) {
+        List<Long> claves = new ArrayList<>(cantidad);
+        for (long clave = 1; claves.size() < cantidad; clave++) {
+            if (ranura(clave) == ranura) {
+                claves.add(clave);
+            }
+        }
+        return claves;
+    }
+}
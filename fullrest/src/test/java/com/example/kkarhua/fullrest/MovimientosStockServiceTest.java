@@ -0,0 +1,240 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.entities.MovimientoStock;
+import com.example.kkarhua.fullrest.services.MovimientosStockService;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para MovimientosStockService")
+class MovimientosStockServiceTest {
+
+    private static final String SQL_INSERTAR = sql("SQL_INSERTAR");
+    private static final String SQL_FOTO_ANTERIOR = sql("SQL_FOTO_ANTERIOR");
+    private static final String SQL_ULTIMO_ESTABLECIDO = sql("SQL_ULTIMO_ESTABLECIDO");
+    private static final String SQL_TIENE_APERTURA = sql("SQL_TIENE_APERTURA");
+    private static final String SQL_SUMA_DESDE = sql("SQL_SUMA_DESDE");
+    private static final String SQL_ULTIMO_MOVIMIENTO_ESTABLE = sql("SQL_ULTIMO_MOVIMIENTO_ESTABLE");
+    private static final String SQL_FOTO = sql("SQL_FOTO");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private MovimientosStockService movimientosService;
+
+    private final LocalDateTime fecha = LocalDateTime.of(2026, 3, 1, 12, 0);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("registrar - Fuera de una transacción debe insertar de inmediato y omitir deltas en cero")
+    @SuppressWarnings("unchecked")
+    void testRegistrar_SinTransaccion() {
+        // When
+        movimientosService.registrar(1L, MovimientoStock.Tipo.DESCUENTO, 0);
+        movimientosService.registrar(1L, MovimientoStock.Tipo.APERTURA, 0);
+
+        // Then: solo la apertura, que marca el inicio del libro aunque sea cero
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(SQL_INSERTAR), captor.capture());
+        assertEquals("APERTURA", captor.getValue().get(0)[1]);
+    }
+
+    @Test
+    @DisplayName("registrar - En una transacción debe juntar los movimientos e insertarlos en beforeCommit")
+    @SuppressWarnings("unchecked")
+    void testRegistrar_InsertaAntesDelCommit() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        movimientosService.registrar(1L, MovimientoStock.Tipo.DESCUENTO, -2);
+        movimientosService.registrar(2L, MovimientoStock.Tipo.ESTABLECIDO, 9);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.beforeCommit(false));
+        completar(sincronizaciones, TransactionSynchronization.STATUS_COMMITTED);
+
+        // Then: una sola sincronización y un solo lote con las dos filas
+        assertEquals(1, sincronizaciones.size());
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(SQL_INSERTAR), captor.capture());
+        List<Object[]> filas = captor.getValue();
+        assertEquals(2, filas.size());
+        assertArrayEquals(new Object[] { 1L, "DESCUENTO", -2 }, Arrays.copyOf(filas.get(0), 3));
+        assertArrayEquals(new Object[] { 2L, "ESTABLECIDO", 9 }, Arrays.copyOf(filas.get(1), 3));
+        assertNull(TransactionSynchronizationManager.getResource(movimientosService));
+    }
+
+    @Test
+    @DisplayName("registrar - La fecha del movimiento debe ser la del insert y no la de registrar")
+    @SuppressWarnings("unchecked")
+    void testRegistrar_FechaAlInsertar() throws InterruptedException {
+        // Given: una transacción larga que registra un movimiento mucho antes de confirmar
+        TransactionSynchronizationManager.initSynchronization();
+        movimientosService.registrar(1L, MovimientoStock.Tipo.DESCUENTO, -2);
+        Thread.sleep(5);
+        Timestamp antesDelCommit = Timestamp.valueOf(LocalDateTime.now());
+
+        // When
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.beforeCommit(false));
+        completar(sincronizaciones, TransactionSynchronization.STATUS_COMMITTED);
+
+        // Then
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(SQL_INSERTAR), captor.capture());
+        Timestamp fechaMovimiento = (Timestamp) captor.getValue().get(0)[3];
+        assertFalse(fechaMovimiento.before(antesDelCommit));
+    }
+
+    @Test
+    @DisplayName("registrar - Si la transacción se revierte los movimientos deben descartarse")
+    void testRegistrar_DescartaEnRollback() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        movimientosService.registrar(1L, MovimientoStock.Tipo.DESCUENTO, -2);
+
+        // When
+        completar(TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Then
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        assertNull(TransactionSynchronizationManager.getResource(movimientosService));
+    }
+
+    @Test
+    @DisplayName("stockEn - Debe partir de la última foto y sumar los movimientos posteriores")
+    void testStockEn_ConFoto() {
+        // Given: foto de 50 unidades hasta el movimiento 10
+        conFoto(new long[] { 50, 10 });
+        sinEstablecido(10L);
+        when(jdbcTemplate.queryForObject(eq(SQL_SUMA_DESDE), eq(Long.class), eq(1L), eq(10L), any())).thenReturn(-5L);
+
+        // When
+        Optional<Long> stock = movimientosService.stockEn(1L, fecha);
+
+        // Then
+        assertEquals(Optional.of(45L), stock);
+        verify(jdbcTemplate, never()).queryForObject(eq(SQL_TIENE_APERTURA), eq(Long.class), any());
+    }
+
+    @Test
+    @DisplayName("stockEn - Un ESTABLECIDO posterior a la foto debe reiniciar la cuenta")
+    void testStockEn_EstablecidoReinicia() {
+        // Given: después de la foto el stock se fijó en 30 con el movimiento 15
+        conFoto(new long[] { 50, 10 });
+        when(jdbcTemplate.query(eq(SQL_ULTIMO_ESTABLECIDO), any(RowMapper.class), eq(1L), eq(10L), any()))
+            .thenReturn(List.of(new long[] { 15, 30 }));
+        when(jdbcTemplate.queryForObject(eq(SQL_SUMA_DESDE), eq(Long.class), eq(1L), eq(15L), any())).thenReturn(-1L);
+
+        // When / Then
+        assertEquals(Optional.of(29L), movimientosService.stockEn(1L, fecha));
+    }
+
+    @Test
+    @DisplayName("stockEn - Sin foto ni APERTURA el producto es anterior al libro y no hay historia")
+    void testStockEn_SinFotoNiApertura() {
+        // Given
+        conFoto();
+        sinEstablecido(0L);
+        when(jdbcTemplate.queryForObject(SQL_TIENE_APERTURA, Long.class, 1L)).thenReturn(0L);
+
+        // When / Then
+        assertEquals(Optional.empty(), movimientosService.stockEn(1L, fecha));
+        verify(jdbcTemplate, never()).queryForObject(eq(SQL_SUMA_DESDE), eq(Long.class), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("stockEn - Sin foto pero con APERTURA debe sumar el libro desde el inicio")
+    void testStockEn_SinFotoConApertura() {
+        // Given
+        conFoto();
+        sinEstablecido(0L);
+        when(jdbcTemplate.queryForObject(SQL_TIENE_APERTURA, Long.class, 1L)).thenReturn(1L);
+        when(jdbcTemplate.queryForObject(eq(SQL_SUMA_DESDE), eq(Long.class), eq(1L), eq(0L), any())).thenReturn(12L);
+
+        // When / Then
+        assertEquals(Optional.of(12L), movimientosService.stockEn(1L, fecha));
+    }
+
+    @Test
+    @DisplayName("tomarFotos - Debe dejar fuera los movimientos más nuevos que el margen de corte")
+    @SuppressWarnings("unchecked")
+    void testTomarFotos_MargenDeCorte() {
+        // Given
+        doAnswer(invocacion -> {
+            ((Consumer<TransactionStatus>) invocacion.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(jdbcTemplate.queryForObject(eq(SQL_ULTIMO_MOVIMIENTO_ESTABLE), eq(Long.class), any())).thenReturn(40L);
+        LocalDateTime antes = LocalDateTime.now();
+
+        // When
+        movimientosService.tomarFotos();
+
+        // Then: el corte es el último movimiento con fecha anterior a ahora menos 60 segundos
+        ArgumentCaptor<Object> corte = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).queryForObject(eq(SQL_ULTIMO_MOVIMIENTO_ESTABLE), eq(Long.class), corte.capture());
+        LocalDateTime limite = ((Timestamp) corte.getValue()).toLocalDateTime();
+        Duration margen = Duration.between(limite, antes);
+        assertTrue(margen.compareTo(Duration.ofSeconds(59)) > 0 && margen.compareTo(Duration.ofSeconds(61)) < 0);
+        verify(jdbcTemplate).update(eq(SQL_FOTO), any(Timestamp.class), eq(40L), eq(40L));
+    }
+
+    private void conFoto(long[]... foto) {
+        when(jdbcTemplate.query(eq(SQL_FOTO_ANTERIOR), any(RowMapper.class), eq(1L), any())).thenReturn(List.of(foto));
+    }
+
+    private void sinEstablecido(long desde) {
+        when(jdbcTemplate.query(eq(SQL_ULTIMO_ESTABLECIDO), any(RowMapper.class), eq(1L), eq(desde), any())).thenReturn(List.of());
+    }
+
+    // Simula el fin de la transacción: el administrador limpia las sincronizaciones y luego las avisa
+    private static void completar(List<TransactionSynchronization> sincronizaciones, int estado) {
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.afterCompletion(estado));
+    }
+
+    private static String sql(String nombre) {
+        return (String) ReflectionTestUtils.getField(MovimientosStockService.class, nombre);
+    }
+}
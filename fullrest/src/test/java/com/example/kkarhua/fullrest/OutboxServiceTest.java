@@ -0,0 +1,159 @@
+package com.example.kkarhua.fullrest;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.services.ManejadorOutbox;
+import com.example.kkarhua.fullrest.services.OutboxService;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para OutboxService")
+class OutboxServiceTest {
+
+    private static final long AHORA = 1_000_000L;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ManejadorOutbox manejador;
+
+    private OutboxService outboxService;
+
+    @BeforeEach
+    void setUp() {
+        when(manejador.tipo()).thenReturn("BOLETA");
+        outboxService = new OutboxService();
+        ReflectionTestUtils.setField(outboxService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(outboxService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(outboxService, "manejadores", List.of(manejador));
+        ReflectionTestUtils.invokeMethod(outboxService, "setReloj", (LongSupplier) () -> AHORA);
+        ReflectionTestUtils.invokeMethod(outboxService, "iniciar");
+    }
+
+    private void ejecutarTransacciones() {
+        doAnswer(invocation -> {
+            Consumer<TransactionStatus> accion = invocation.getArgument(0);
+            accion.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("procesar - Debe manejar el evento y borrarlo en la misma transacción")
+    void testProcesar_ManejaYBorra() {
+        // Given
+        ejecutarTransacciones();
+        when(jdbcTemplate.update(startsWith("delete from outbox_evento"), eq(7L))).thenReturn(1);
+        OutboxService.Evento evento = new OutboxService.Evento(7L, "BOLETA", "42", 1);
+
+        // When
+        ReflectionTestUtils.invokeMethod(outboxService, "procesar", evento);
+
+        // Then
+        verify(manejador).manejar("42");
+        verify(jdbcTemplate, never()).update(startsWith("update outbox_evento"), any(), any());
+    }
+
+    @Test
+    @DisplayName("procesar - No debe ejecutar el manejador si otro hilo ya borró el evento")
+    void testProcesar_EventoYaProcesado() {
+        // Given: el arriendo venció y otro hilo ya manejó y borró el evento
+        ejecutarTransacciones();
+        when(jdbcTemplate.update(startsWith("delete from outbox_evento"), eq(7L))).thenReturn(0);
+        OutboxService.Evento evento = new OutboxService.Evento(7L, "BOLETA", "42", 2);
+
+        // When
+        ReflectionTestUtils.invokeMethod(outboxService, "procesar", evento);
+
+        // Then
+        verify(manejador, never()).manejar(anyString());
+        verify(jdbcTemplate, never()).update(startsWith("update outbox_evento"), any(), any());
+    }
+
+    @Test
+    @DisplayName("procesar - Debe reprogramar con espera exponencial cuando el manejador falla")
+    void testProcesar_FalloReprograma() {
+        // Given
+        ejecutarTransacciones();
+        when(jdbcTemplate.update(startsWith("delete from outbox_evento"), eq(7L))).thenReturn(1);
+        doThrow(new IllegalStateException("disco lleno")).when(manejador).manejar(anyString());
+        OutboxService.Evento evento = new OutboxService.Evento(7L, "BOLETA", "42", 3);
+
+        // When
+        ReflectionTestUtils.invokeMethod(outboxService, "procesar", evento);
+
+        // Then: el borrado se revierte con la transacción; tercer intento, espera de 4 veces la base
+        verify(jdbcTemplate).update(startsWith("update outbox_evento set disponible_en"), eq(new Timestamp(AHORA + 4000)), eq(7L));
+    }
+
+    @Test
+    @DisplayName("procesar - Debe reprogramar los eventos de un tipo sin manejador")
+    void testProcesar_TipoDesconocido() {
+        // Given
+        OutboxService.Evento evento = new OutboxService.Evento(9L, "OTRO", "{}", 1);
+
+        // When
+        ReflectionTestUtils.invokeMethod(outboxService, "procesar", evento);
+
+        // Then
+        verify(manejador, never()).manejar(anyString());
+        verifyNoInteractions(transactionTemplate);
+        verify(jdbcTemplate).update(startsWith("update outbox_evento set disponible_en"), eq(new Timestamp(AHORA + 1000)), eq(9L));
+    }
+
+    @Test
+    @DisplayName("procesar - Debe marcar el evento como muerto al fallar en el último intento")
+    void testProcesar_UltimoIntentoMarcaMuerto() {
+        // Given
+        ejecutarTransacciones();
+        ReflectionTestUtils.setField(outboxService, "maxIntentos", 3);
+        when(jdbcTemplate.update(startsWith("delete from outbox_evento"), eq(7L))).thenReturn(1);
+        doThrow(new IllegalStateException("payload corrupto")).when(manejador).manejar(anyString());
+        OutboxService.Evento evento = new OutboxService.Evento(7L, "BOLETA", "42", 3);
+
+        // When
+        ReflectionTestUtils.invokeMethod(outboxService, "procesar", evento);
+
+        // Then: no se reprograma, queda fuera de los pendientes
+        verify(jdbcTemplate).update(startsWith("update outbox_evento set muerto = true"), eq(7L));
+        verify(jdbcTemplate, never()).update(startsWith("update outbox_evento set disponible_en"), any(), any());
+    }
+
+    @Test
+    @DisplayName("procesarLote - Debe marcar como muerto sin manejarlo un evento cuyo último arriendo venció")
+    void testProcesarLote_ArriendosAgotados() {
+        // Given: el evento ya se entregó maxIntentos veces sin terminar (por ejemplo, tumbó al proceso)
+        ReflectionTestUtils.setField(outboxService, "maxIntentos", 3);
+        when(transactionTemplate.execute(any())).thenReturn(List.of(new OutboxService.Evento(7L, "BOLETA", "42", 4)));
+
+        // When
+        ReflectionTestUtils.invokeMethod(outboxService, "procesarLote");
+
+        // Then
+        verify(manejador, never()).manejar(anyString());
+        verify(jdbcTemplate).update(startsWith("update outbox_evento set muerto = true"), eq(7L));
+    }
+}
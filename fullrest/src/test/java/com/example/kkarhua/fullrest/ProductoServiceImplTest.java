@@ -0,0 +1,169 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.dto.VersionCatalogoDTO;
+import com.example.kkarhua.fullrest.entities.Producto;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+import com.example.kkarhua.fullrest.services.MovimientosStockService;
+import com.example.kkarhua.fullrest.services.ProductoCambiadoEvent;
+import com.example.kkarhua.fullrest.services.ProductoServiceImpl;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para ProductoServiceImpl")
+class ProductoServiceImplTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private MovimientosStockService movimientos;
+
+    @InjectMocks
+    private ProductoServiceImpl productoService;
+
+    private Producto producto;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.invokeMethod(productoService, "iniciarCache");
+        ReflectionTestUtils.setField(productoService, "esperaBaseMillis", 1L);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(
+            invocacion -> invocacion.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        producto = new Producto();
+        producto.setId(1L);
+        producto.setNombre("Mate de calabaza");
+        producto.setPrecio(15000);
+    }
+
+    @Test
+    @DisplayName("modificar - Debe releer y reintentar cuando otro escritor cambió la versión")
+    void testModificar_ReintentaTrasConflicto() {
+        // Given
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(producto));
+        when(productoRepository.save(any(Producto.class)))
+            .thenThrow(new ObjectOptimisticLockingFailureException(Producto.class, 1L))
+            .thenAnswer(invocacion -> invocacion.getArgument(0));
+
+        // When
+        Optional<Producto> resultado = productoService.modificar(1L, p -> p.setPrecio(17000));
+
+        // Then
+        assertTrue(resultado.isPresent());
+        assertEquals(17000, resultado.get().getPrecio());
+        verify(productoRepository, times(2)).findById(1L);
+        verify(productoRepository, times(2)).save(producto);
+    }
+
+    @Test
+    @DisplayName("modificar - Debe propagar el conflicto al agotar los intentos")
+    void testModificar_AgotaIntentos() {
+        // Given
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(producto));
+        when(productoRepository.save(any(Producto.class)))
+            .thenThrow(new ObjectOptimisticLockingFailureException(Producto.class, 1L));
+
+        // When / Then
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+            () -> productoService.modificar(1L, p -> p.setPrecio(17000)));
+        verify(productoRepository, times(4)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("modificar - Debe retornar vacío si el producto no existe")
+    void testModificar_NoEncontrado() {
+        // Given
+        when(productoRepository.findById(99L)).thenReturn(Optional.empty());
+
+        // When
+        Optional<Producto> resultado = productoService.modificar(99L, p -> p.setPrecio(1));
+
+        // Then
+        assertFalse(resultado.isPresent());
+        verify(productoRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("delete - Debe eliminar la entidad cargada y no el stub recibido")
+    void testDelete_EliminaEntidadCargada() {
+        // Given
+        Producto stub = new Producto();
+        stub.setId(1L);
+        producto.setVersion(3L);
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(producto));
+
+        // When
+        Optional<Producto> resultado = productoService.delete(stub);
+
+        // Then
+        assertTrue(resultado.isPresent());
+        verify(productoRepository).delete(same(producto));
+        verify(productoRepository, never()).delete(same(stub));
+        verify(eventPublisher).publishEvent(new ProductoCambiadoEvent(1L, true));
+    }
+
+    @Test
+    @DisplayName("save - Debe conservar el merge cuando se envía un id sin versión")
+    void testSave_IdSinVersionTomaVersionActual() {
+        // Given
+        Producto actual = new Producto();
+        actual.setId(1L);
+        actual.setVersion(5L);
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(actual));
+        when(productoRepository.save(producto)).thenReturn(producto);
+
+        // When
+        productoService.save(producto);
+
+        // Then
+        assertEquals(5L, producto.getVersion());
+        assertEquals(1L, producto.getId());
+        verify(movimientos, never()).registrar(anyLong(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("versionCatalogo - Debe consultar la base una sola vez hasta que cambie un producto")
+    void testVersionCatalogo_CacheInvalidadaPorCambio() {
+        // Given
+        VersionCatalogoDTO inicial = new VersionCatalogoDTO(10, LocalDateTime.of(2025, 3, 1, 12, 0));
+        VersionCatalogoDTO posterior = new VersionCatalogoDTO(10, LocalDateTime.of(2025, 3, 2, 12, 0));
+        when(productoRepository.findVersionCatalogo()).thenReturn(inicial, posterior);
+
+        // When
+        VersionCatalogoDTO primera = productoService.versionCatalogo();
+        VersionCatalogoDTO segunda = productoService.versionCatalogo();
+        productoService.onProductoCambiado(ProductoCambiadoEvent.stock(1L));
+        VersionCatalogoDTO tercera = productoService.versionCatalogo();
+
+        // Then
+        assertSame(inicial, primera);
+        assertSame(inicial, segunda);
+        assertSame(posterior, tercera);
+        verify(productoRepository, times(2)).findVersionCatalogo();
+    }
+}
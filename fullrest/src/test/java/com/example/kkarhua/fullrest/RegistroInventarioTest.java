@@ -0,0 +1,83 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.kkarhua.fullrest.inventario.RegistroInventario;
+
+@DisplayName("Tests para RegistroInventario")
+class RegistroInventarioTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("rotar - Debe acumular los deltas netos por producto del segmento")
+    void testRotar_AcumulaDeltas() throws IOException {
+        // Given
+        RegistroInventario registro = new RegistroInventario(directorio, 1);
+        registro.agregar(1, -2);
+        registro.agregar(2, 5);
+        registro.agregar(1, -3);
+
+        // When
+        RegistroInventario.Segmento segmento = registro.rotar();
+
+        // Then
+        assertEquals(3, segmento.ultimaSecuencia());
+        assertEquals(-5L, segmento.deltas().get(1L));
+        assertEquals(5L, segmento.deltas().get(2L));
+        assertEquals(3, segmento.movimientos().size());
+        assertNull(registro.rotar());
+        registro.close();
+    }
+
+    @Test
+    @DisplayName("sincronizar - Debe forzar una sola vez hasta la última secuencia escrita")
+    void testSincronizar_ForzadoEnGrupo() throws IOException {
+        // Given
+        RegistroInventario registro = new RegistroInventario(directorio, 1);
+        long primera = registro.agregar(1, -1);
+        long segunda = registro.agregar(1, -1);
+
+        // When: el primer commit fuerza también la segunda escritura
+        registro.sincronizar(primera);
+
+        // Then
+        assertEquals(2L, ReflectionTestUtils.getField(registro, "forzadaHasta"));
+        registro.sincronizar(segunda);
+        assertEquals(2L, ReflectionTestUtils.getField(registro, "forzadaHasta"));
+        registro.close();
+    }
+
+    @Test
+    @DisplayName("leer - Debe recuperar los movimientos e ignorar un registro final cortado")
+    void testLeer_IgnoraRegistroCortado() throws IOException {
+        // Given
+        RegistroInventario registro = new RegistroInventario(directorio, 10);
+        registro.agregar(7, -1, true);
+        registro.compensar(10, 7, -1);
+        registro.close();
+        Path segmento = RegistroInventario.segmentos(directorio).get(0);
+        Files.write(segmento, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        // When
+        List<RegistroInventario.Movimiento> movimientos = RegistroInventario.leer(directorio);
+
+        // Then
+        assertEquals(List.of(
+            new RegistroInventario.Movimiento(10, 7, -1, movimientos.get(0).fecha(), true, 0),
+            new RegistroInventario.Movimiento(11, 7, 1, movimientos.get(1).fecha(), false, 10)), movimientos);
+        assertTrue(movimientos.get(0).fecha() > 0);
+    }
+}
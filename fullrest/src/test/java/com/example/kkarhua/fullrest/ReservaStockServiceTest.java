@@ -0,0 +1,324 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoReserva;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.dto.StockDTO;
+import com.example.kkarhua.fullrest.services.InventarioCalienteService;
+import com.example.kkarhua.fullrest.services.ProductoCambiadoEvent;
+import com.example.kkarhua.fullrest.services.ReservaStockService;
+import com.example.kkarhua.fullrest.services.StockServices;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para ReservaStockService")
+class ReservaStockServiceTest {
+
+    @Mock
+    private StockServices stockServices;
+
+    @Mock
+    private InventarioCalienteService inventarioCaliente;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private ReservaStockService reservaService;
+
+    private final AtomicLong ahora = new AtomicLong(1_000_000);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.invokeMethod(reservaService, "setReloj", (LongSupplier) ahora::get);
+        // Sin tope por producto salvo en los tests de límites: los stocks de prueba son chicos
+        ReflectionTestUtils.setField(reservaService, "maxPorcentajeProducto", 100);
+        ReflectionTestUtils.invokeMethod(reservaService, "iniciar");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(reservaService, "detener");
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("reservar - Debe rechazar una cantidad mayor al stock libre e informar lo disponible")
+    void testReservar_SobreElDisponible() {
+        // Given
+        conStock(5);
+        ResultadoReserva primera = reservaService.reservar(1L, 3, 7L);
+
+        // When
+        ResultadoReserva segunda = reservaService.reservar(1L, 3, 8L);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.OK, primera.tipo());
+        assertEquals(2, primera.disponible());
+        assertEquals(ResultadoStock.Tipo.STOCK_INSUFICIENTE, segunda.tipo());
+        assertNull(segunda.reserva());
+        assertEquals(2, segunda.disponible());
+        assertEquals(3, reservaService.reservadoAjeno(1L));
+    }
+
+    @Test
+    @DisplayName("reservar - Debe validar contra la vista en memoria sin leer la base")
+    void testReservar_StockNoAlcanza() {
+        // Given: la vista se cargó con el evento del último cambio
+        conStock(1);
+        clearInvocations(stockServices);
+
+        // When
+        ResultadoReserva resultado = reservaService.reservar(1L, 3, 7L);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.STOCK_INSUFICIENTE, resultado.tipo());
+        assertEquals(1, resultado.disponible());
+        assertEquals(0, reservaService.reservadoAjeno(1L));
+        assertEquals(0, (int) ReflectionTestUtils.invokeMethod(reservaService, "activas"));
+        verifyNoInteractions(stockServices, jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("reservar - Un producto sin stock en la vista no debe reservarse y un producto eliminado desaparece")
+    void testReservar_ProductoEliminado() {
+        // Given
+        conStock(5);
+
+        // When
+        reservaService.onProductoCambiado(new ProductoCambiadoEvent(1L, true));
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.NO_ENCONTRADO, reservaService.reservar(1L, 1, 7L).tipo());
+        assertEquals(ResultadoStock.Tipo.NO_ENCONTRADO, reservaService.reservar(2L, 1, 7L).tipo());
+    }
+
+    @Test
+    @DisplayName("reservar - Un producto caliente debe validarse contra su contador en memoria")
+    void testReservar_ProductoCaliente() {
+        // Given
+        when(inventarioCaliente.esCaliente(3L)).thenReturn(true);
+        when(inventarioCaliente.stock(3L)).thenReturn(new StockDTO(3L, "Chaleco", 4, "activo"));
+
+        // When
+        ResultadoReserva resultado = reservaService.reservar(3L, 3, 7L);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.OK, resultado.tipo());
+        assertEquals(1, resultado.disponible());
+        verifyNoInteractions(stockServices, jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("cargarStock - Un cambio que llega durante la carga debe prevalecer sobre la fila leída")
+    void testCargarStock_CambioDuranteLaCarga() {
+        // Given: mientras se lee la tabla (stock 5) se confirma una venta que deja 2
+        when(stockServices.consultar(List.of(1L))).thenReturn(List.of(new StockDTO(1L, "Poncho", 2, "activo")));
+        doAnswer(invocacion -> {
+            reservaService.onProductoCambiado(ProductoCambiadoEvent.stock(1L));
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong(1)).thenReturn(1L);
+            when(rs.getInt(2)).thenReturn(5);
+            invocacion.<RowCallbackHandler>getArgument(1).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        // When
+        reservaService.cargarStock();
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.STOCK_INSUFICIENTE, reservaService.reservar(1L, 3, 7L).tipo());
+        assertEquals(ResultadoStock.Tipo.OK, reservaService.reservar(1L, 2, 7L).tipo());
+    }
+
+    @Test
+    @DisplayName("reservar - Debe rechazar más reservas o unidades que los topes del usuario")
+    void testReservar_TopesPorUsuario() {
+        // Given
+        ReflectionTestUtils.setField(reservaService, "maxReservasPorUsuario", 2);
+        ReflectionTestUtils.setField(reservaService, "maxUnidadesPorUsuario", 5);
+        conStock(100);
+        reservaService.reservar(1L, 2, 7L);
+
+        // When / Then
+        assertEquals(ResultadoStock.Tipo.LIMITE_EXCEDIDO, reservaService.reservar(1L, 4, 7L).tipo());
+        assertEquals(ResultadoStock.Tipo.OK, reservaService.reservar(1L, 3, 7L).tipo());
+        assertEquals(ResultadoStock.Tipo.LIMITE_EXCEDIDO, reservaService.reservar(1L, 1, 7L).tipo());
+        assertEquals(ResultadoStock.Tipo.OK, reservaService.reservar(1L, 1, 8L).tipo());
+        assertEquals(6, reservaService.reservadoAjeno(1L));
+    }
+
+    @Test
+    @DisplayName("reservar - Un usuario no debe apartar más que su parte del stock de un producto")
+    void testReservar_CuotaPorProducto() {
+        // Given: con 20 unidades y un 20% cada usuario puede apartar 4
+        ReflectionTestUtils.setField(reservaService, "maxPorcentajeProducto", 20);
+        conStock(20);
+        Long id = reservaService.reservar(1L, 3, 7L).reserva().id();
+
+        // When
+        ResultadoReserva excedida = reservaService.reservar(1L, 2, 7L);
+
+        // Then: la reserva rechazada se suelta y las del usuario se liberan con normalidad
+        assertEquals(ResultadoStock.Tipo.LIMITE_EXCEDIDO, excedida.tipo());
+        assertEquals(3, reservaService.reservadoAjeno(1L));
+        assertTrue(reservaService.liberar(id, 7L));
+        assertEquals(ResultadoStock.Tipo.OK, reservaService.reservar(1L, 4, 7L).tipo());
+    }
+
+    @Test
+    @DisplayName("liberar - Solo el dueño debe poder liberar su reserva")
+    void testLiberar_NoDuenio() {
+        // Given
+        conStock(5);
+        Long id = reservaService.reservar(1L, 3, 7L).reserva().id();
+
+        // When / Then
+        assertFalse(reservaService.liberar(id, 8L));
+        assertTrue(reservaService.obtener(id, 8L).isEmpty());
+        assertEquals(2, reservaService.disponible(1L, 5));
+        assertTrue(reservaService.liberar(id, 7L));
+        assertEquals(5, reservaService.disponible(1L, 5));
+    }
+
+    @Test
+    @DisplayName("obtener - Una reserva sin dueño no debe ser de ningún llamador")
+    void testObtener_ReservaSinDuenio() {
+        // Given
+        conStock(5);
+        Long id = reservaService.reservar(1L, 1, null).reserva().id();
+
+        // When / Then
+        assertTrue(reservaService.obtener(id, null).isEmpty());
+        assertTrue(reservaService.obtener(id, 7L).isEmpty());
+        assertFalse(reservaService.liberar(id, 7L));
+    }
+
+    @Test
+    @DisplayName("expirar - Una reserva vencida debe liberar su stock")
+    void testExpirar_LiberaVencidas() {
+        // Given
+        conStock(5);
+        Long id = reservaService.reservar(1L, 3, 7L).reserva().id();
+
+        // When
+        ahora.addAndGet(599_000);
+        ReflectionTestUtils.invokeMethod(reservaService, "expirar");
+        boolean vigenteAntesDelTtl = reservaService.obtener(id, 7L).isPresent();
+        ahora.addAndGet(3_000);
+        ReflectionTestUtils.invokeMethod(reservaService, "expirar");
+
+        // Then
+        assertTrue(vigenteAntesDelTtl);
+        assertTrue(reservaService.obtener(id, 7L).isEmpty());
+        assertEquals(0, reservaService.reservadoAjeno(1L));
+    }
+
+    @Test
+    @DisplayName("reclamar - Dentro de la transacción solo deben respetarse las reservas ajenas")
+    void testReclamar_ReservadoAjenoEnTransaccion() {
+        // Given
+        conStock(10);
+        Long propia = reservaService.reservar(1L, 3, 7L).reserva().id();
+        reservaService.reservar(1L, 2, 8L);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        List<AjusteStockDTO> ajustes = reservaService.reclamar(List.of(propia), 7L);
+
+        // Then
+        assertEquals(List.of(new AjusteStockDTO(1L, -3)), ajustes);
+        assertEquals(2, reservaService.reservadoAjeno(1L));
+        assertFalse(reservaService.liberar(propia, 7L));
+        completar(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(2, reservaService.reservadoAjeno(1L));
+    }
+
+    @Test
+    @DisplayName("reclamar - Con commit la reserva debe borrarse")
+    void testReclamar_Commit() {
+        // Given
+        conStock(5);
+        Long id = reservaService.reservar(1L, 3, 7L).reserva().id();
+        TransactionSynchronizationManager.initSynchronization();
+        reservaService.reclamar(List.of(id), 7L);
+
+        // When
+        completar(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Then
+        assertTrue(reservaService.obtener(id, 7L).isEmpty());
+        assertEquals(0, reservaService.reservadoAjeno(1L));
+        assertNull(TransactionSynchronizationManager.getResource(ReflectionTestUtils.getField(ReservaStockService.class, "RECLAMADAS")));
+    }
+
+    @Test
+    @DisplayName("reclamar - Con rollback la reserva debe seguir apartando su stock")
+    void testReclamar_Rollback() {
+        // Given
+        conStock(5);
+        Long id = reservaService.reservar(1L, 3, 7L).reserva().id();
+        TransactionSynchronizationManager.initSynchronization();
+        reservaService.reclamar(List.of(id), 7L);
+
+        // When
+        completar(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Then
+        assertTrue(reservaService.obtener(id, 7L).isPresent());
+        assertEquals(3, reservaService.reservadoAjeno(1L));
+        assertTrue(reservaService.liberar(id, 7L));
+    }
+
+    @Test
+    @DisplayName("reclamar - Una reserva ajena debe rechazarse sin dejar otras marcadas")
+    void testReclamar_ReservaAjena() {
+        // Given
+        conStock(5);
+        Long propia = reservaService.reservar(1L, 1, 7L).reserva().id();
+        Long ajena = reservaService.reservar(1L, 1, 8L).reserva().id();
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> reservaService.reclamar(List.of(propia, ajena), 7L));
+        assertTrue(reservaService.liberar(propia, 7L));
+    }
+
+    // Carga la vista como lo haría el evento posterior al commit del último cambio de stock
+    private void conStock(int stock) {
+        when(stockServices.consultar(List.of(1L))).thenReturn(List.of(new StockDTO(1L, "Poncho", stock, "activo")));
+        reservaService.onProductoCambiado(ProductoCambiadoEvent.stock(1L));
+    }
+
+    // Simula el fin de la transacción: el administrador limpia las sincronizaciones y luego las avisa
+    private static void completar(int estado) {
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.afterCompletion(estado));
+    }
+}
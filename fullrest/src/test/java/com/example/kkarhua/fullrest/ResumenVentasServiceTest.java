@@ -0,0 +1,93 @@
+package com.example.kkarhua.fullrest;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.kkarhua.fullrest.entities.Compra;
+import com.example.kkarhua.fullrest.repositories.VentaDiariaRepository;
+import com.example.kkarhua.fullrest.repositories.VentaHorariaRepository;
+import com.example.kkarhua.fullrest.services.ResumenVentasService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para ResumenVentasService")
+class ResumenVentasServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private VentaDiariaRepository ventaDiariaRepository;
+
+    @Mock
+    private VentaHorariaRepository ventaHorariaRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @InjectMocks
+    private ResumenVentasService resumenVentasService;
+
+    private Compra compra(long id) {
+        Compra compra = new Compra();
+        compra.setId(id);
+        compra.setFechaCompra(LocalDateTime.of(2025, 3, 1, 14, 25));
+        compra.setEstado("completada");
+        compra.setSubtotal(420168);
+        compra.setIva(79832);
+        compra.setTotal(500000);
+        return compra;
+    }
+
+    @Test
+    @DisplayName("manejar - Debe sumar la compra a su día y a su hora en la franja de su id")
+    void testManejar_SumaDiaYHora() throws Exception {
+        // Given
+        String payload = objectMapper.writeValueAsString(ResumenVentasService.Venta.de(compra(11L), 1));
+
+        // When
+        resumenVentasService.manejar(payload);
+
+        // Then
+        Date dia = Date.valueOf(LocalDate.of(2025, 3, 1));
+        verify(jdbcTemplate).update(startsWith("insert into venta_diaria"),
+            eq(dia), eq("completada"), eq(3), eq(1), eq(420168L), eq(79832L), eq(500000L));
+        verify(jdbcTemplate).update(startsWith("insert into venta_horaria"),
+            eq(dia), eq(14), eq("completada"), eq(3), eq(1), eq(420168L), eq(79832L), eq(500000L));
+    }
+
+    @Test
+    @DisplayName("manejar - Debe restar los montos de una compra eliminada")
+    void testManejar_RestaMontos() throws Exception {
+        // Given
+        String payload = objectMapper.writeValueAsString(ResumenVentasService.Venta.de(compra(8L), -1));
+
+        // When
+        resumenVentasService.manejar(payload);
+
+        // Then
+        Date dia = Date.valueOf(LocalDate.of(2025, 3, 1));
+        verify(jdbcTemplate).update(startsWith("insert into venta_diaria"),
+            eq(dia), eq("completada"), eq(0), eq(-1), eq(-420168L), eq(-79832L), eq(-500000L));
+        verify(jdbcTemplate).update(startsWith("insert into venta_horaria"),
+            eq(dia), eq(14), eq("completada"), eq(0), eq(-1), eq(-420168L), eq(-79832L), eq(-500000L));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.kkarhua.fullrest.inventario.MapaLong;
+import com.example.kkarhua.fullrest.inventario.RuedaExpiracion;
+
+@DisplayName("Tests para RuedaExpiracion y MapaLong")
+class RuedaExpiracionTest {
+
+    @Test
+    @DisplayName("avanzar - Debe expirar solo las entradas vencidas, incluso más allá de una vuelta")
+    void testAvanzar_ExpiraEntradasVencidas() {
+        // Given: 4 ranuras de 10 ms, una vuelta completa son 40 ms
+        RuedaExpiracion rueda = new RuedaExpiracion(4, 10, 0);
+        rueda.programar(1, 15);
+        rueda.programar(2, 95);
+        List<Long> expiradas = new ArrayList<>();
+
+        // When / Then
+        rueda.avanzar(19, expiradas::add);
+        assertEquals(List.of(), expiradas);
+        rueda.avanzar(20, expiradas::add);
+        assertEquals(List.of(1L), expiradas);
+        rueda.avanzar(90, expiradas::add);
+        assertEquals(List.of(1L), expiradas);
+        rueda.avanzar(100, expiradas::add);
+        assertEquals(List.of(1L, 2L), expiradas);
+        assertEquals(0, rueda.size());
+    }
+
+    @Test
+    @DisplayName("cancelar - Una entrada cancelada no debe expirar")
+    void testCancelar_NoExpira() {
+        // Given
+        RuedaExpiracion rueda = new RuedaExpiracion(8, 10, 0);
+        RuedaExpiracion.Entrada entrada = rueda.programar(7, 30);
+        List<Long> expiradas = new ArrayList<>();
+
+        // When
+        assertTrue(rueda.cancelar(entrada));
+        rueda.avanzar(1_000, expiradas::add);
+
+        // Then
+        assertTrue(expiradas.isEmpty());
+        assertFalse(rueda.cancelar(entrada));
+    }
+
+    @Test
+    @DisplayName("MapaLong - Debe mantener las claves al crecer y al borrar dentro de una cadena")
+    void testMapaLong_PutGetRemove() {
+        // Given
+        MapaLong<String> mapa = new MapaLong<>();
+        for (long i = 1; i <= 1_000; i++) {
+            mapa.put(i, "v" + i);
+        }
+
+        // When
+        for (long i = 1; i <= 1_000; i += 2) {
+            assertEquals("v" + i, mapa.remove(i));
+        }
+
+        // Then
+        assertEquals(500, mapa.size());
+        for (long i = 1; i <= 1_000; i++) {
+            assertEquals(i % 2 == 0 ? "v" + i : null, mapa.get(i));
+        }
+        assertEquals("v2", mapa.put(2, "nuevo"));
+        assertEquals("nuevo", mapa.get(2));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.kkarhua.fullrest.archivo.SegmentoArchivo;
+
+@DisplayName("Tests para SegmentoArchivo")
+class SegmentoArchivoTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("agregar - Debe escribir una entrada de índice por bloque y recuperar sus líneas")
+    void testAgregar_IndiceDispersoPorBloque() throws IOException {
+        // Given
+        SegmentoArchivo segmento = new SegmentoArchivo(directorio, "compras-2024-03");
+        segmento.agregar(1, 3, List.of("{\"id\":1}", "{\"id\":2}", "{\"id\":3}"));
+        segmento.agregar(10, 11, List.of("{\"id\":10}", "{\"id\":11}"));
+
+        // When
+        List<SegmentoArchivo.Bloque> bloques = segmento.bloques();
+
+        // Then
+        assertEquals(2, bloques.size());
+        assertTrue(bloques.get(0).contiene(2));
+        assertFalse(bloques.get(0).contiene(10));
+        assertEquals(0, bloques.get(0).offset());
+        assertEquals(bloques.get(0).largo(), bloques.get(1).offset());
+        assertEquals(List.of("{\"id\":10}", "{\"id\":11}"), segmento.leer(bloques.get(1)));
+    }
+
+    @Test
+    @DisplayName("bloques - Debe ignorar una línea de índice cortada y seguir anexando después de ella")
+    void testBloques_IgnoraIndiceCortado() throws IOException {
+        // Given: una caída dejó media línea al final del índice
+        SegmentoArchivo segmento = new SegmentoArchivo(directorio, "compras-2024-04");
+        segmento.agregar(1, 1, List.of("uno"));
+        Files.writeString(directorio.resolve("compras-2024-04.idx"), "5 9 12", StandardOpenOption.APPEND);
+
+        // When
+        segmento.agregar(2, 2, List.of("dos"));
+        List<SegmentoArchivo.Bloque> bloques = segmento.bloques();
+
+        // Then: la entrada cortada se descarta
+        assertEquals(2, bloques.size());
+        assertEquals(List.of("uno"), segmento.leer(bloques.get(0)));
+        assertEquals(List.of("dos"), segmento.leer(bloques.get(1)));
+    }
+
+    @Test
+    @DisplayName("bloques - Un índice ya leído debe incluir los bloques anexados después")
+    void testBloques_IndiceLeidoIncluyeNuevosBloques() throws IOException {
+        // Given: el índice se leyó (y quedó en memoria) antes de anexar
+        SegmentoArchivo segmento = new SegmentoArchivo(directorio, "compras-2024-05");
+        segmento.agregar(1, 2, List.of("uno", "dos"));
+        assertEquals(1, segmento.bloques().size());
+
+        // When
+        segmento.agregar(3, 3, List.of("tres"));
+        List<SegmentoArchivo.Bloque> bloques = segmento.bloques();
+
+        // Then
+        assertEquals(2, bloques.size());
+        assertTrue(bloques.get(1).contiene(3));
+        assertEquals(List.of("tres"), segmento.leer(bloques.get(1)));
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.kkarhua.fullrest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.kkarhua.fullrest.dto.AjusteStockDTO;
+import com.example.kkarhua.fullrest.dto.ResultadoLoteStock;
+import com.example.kkarhua.fullrest.dto.ResultadoStock;
+import com.example.kkarhua.fullrest.dto.StockDTO;
+import com.example.kkarhua.fullrest.entities.MovimientoStock;
+import com.example.kkarhua.fullrest.repositories.ProductoRepository;
+import com.example.kkarhua.fullrest.services.InventarioCalienteService;
+import com.example.kkarhua.fullrest.services.MovimientosStockService;
+import com.example.kkarhua.fullrest.services.ProductoCambiadoEvent;
+import com.example.kkarhua.fullrest.services.ReservaStockService;
+import com.example.kkarhua.fullrest.services.StockServiceImpl;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests para StockServiceImpl")
+class StockServiceImplTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private InventarioCalienteService inventarioCaliente;
+
+    @Mock
+    private MovimientosStockService movimientos;
+
+    @Mock
+    private ReservaStockService reservas;
+
+    @InjectMocks
+    private StockServiceImpl stockService;
+
+    @Test
+    @DisplayName("reducir - Debe aplicar el descuento condicional y devolver el stock resultante")
+    void testReducir_Exitoso() {
+        // Given
+        when(productoRepository.reducirStock(eq(1L), eq(3), eq(0), any())).thenReturn(1);
+        when(productoRepository.findStockById(1L)).thenReturn(Optional.of(new StockDTO(1L, "Mate", 0, "agotado")));
+
+        // When
+        ResultadoStock resultado = stockService.reducir(1L, 3);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.OK, resultado.tipo());
+        assertEquals(3, resultado.stockAnterior());
+        assertEquals(0, resultado.stock().stock());
+        assertEquals("agotado", resultado.stock().estado());
+        verify(movimientos).registrar(1L, MovimientoStock.Tipo.DESCUENTO, -3);
+        verify(eventPublisher).publishEvent(ProductoCambiadoEvent.stock(1L));
+    }
+
+    @Test
+    @DisplayName("reducir - Debe informar stock insuficiente cuando el UPDATE no afecta filas")
+    void testReducir_StockInsuficiente() {
+        // Given
+        when(productoRepository.reducirStock(eq(1L), eq(5), eq(0), any())).thenReturn(0);
+        when(productoRepository.findStockById(1L)).thenReturn(Optional.of(new StockDTO(1L, "Mate", 2, "activo")));
+
+        // When
+        ResultadoStock resultado = stockService.reducir(1L, 5);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.STOCK_INSUFICIENTE, resultado.tipo());
+        assertEquals(2, resultado.stockAnterior());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("reducir - No debe descontar las unidades apartadas por reservas de otros")
+    void testReducir_RespetaReservas() {
+        // Given
+        when(reservas.reservadoAjeno(1L)).thenReturn(4);
+        when(productoRepository.reducirStock(eq(1L), eq(3), eq(4), any())).thenReturn(0);
+        when(productoRepository.findStockById(1L)).thenReturn(Optional.of(new StockDTO(1L, "Mate", 6, "activo")));
+
+        // When
+        ResultadoStock resultado = stockService.reducir(1L, 3);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.STOCK_INSUFICIENTE, resultado.tipo());
+        verify(movimientos, never()).registrar(anyLong(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("reducir - Debe informar producto no encontrado")
+    void testReducir_NoEncontrado() {
+        // Given
+        when(productoRepository.reducirStock(eq(99L), anyInt(), anyInt(), any())).thenReturn(0);
+        when(productoRepository.findStockById(99L)).thenReturn(Optional.empty());
+
+        // When
+        ResultadoStock resultado = stockService.reducir(99L, 1);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.NO_ENCONTRADO, resultado.tipo());
+        assertNull(resultado.stock());
+    }
+
+    @Test
+    @DisplayName("agregar - Debe sumar stock y calcular el stock anterior")
+    void testAgregar_Exitoso() {
+        // Given
+        when(productoRepository.agregarStock(eq(1L), eq(4), any())).thenReturn(1);
+        when(productoRepository.findStockById(1L)).thenReturn(Optional.of(new StockDTO(1L, "Mate", 4, "activo")));
+
+        // When
+        ResultadoStock resultado = stockService.agregar(1L, 4);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.OK, resultado.tipo());
+        assertEquals(0, resultado.stockAnterior());
+        assertEquals(4, resultado.stock().stock());
+    }
+
+    @Test
+    @DisplayName("actualizar - Debe retornar no encontrado sin ejecutar el UPDATE")
+    void testActualizar_NoEncontrado() {
+        // Given
+        when(productoRepository.findStockById(99L)).thenReturn(Optional.empty());
+
+        // When
+        ResultadoStock resultado = stockService.actualizar(99L, 10);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.NO_ENCONTRADO, resultado.tipo());
+        verify(productoRepository, never()).actualizarStock(anyLong(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("aplicarLote - Debe ejecutar las líneas ordenadas por id y responder en el orden recibido")
+    @SuppressWarnings("unchecked")
+    void testAplicarLote_Exitoso() {
+        // Given
+        List<AjusteStockDTO> ajustes = List.of(new AjusteStockDTO(5L, -2), new AjusteStockDTO(2L, 3));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] { 1, 1 });
+        when(productoRepository.findStockByIdIn(any())).thenReturn(List.of(
+            new StockDTO(2L, "Poncho", 3, "activo"),
+            new StockDTO(5L, "Mate", 8, "activo")));
+
+        // When
+        ResultadoLoteStock resultado = stockService.aplicarLote(ajustes);
+
+        // Then
+        assertTrue(resultado.aplicado());
+        assertEquals(5L, resultado.lineas().get(0).productoId());
+        assertEquals(8, resultado.lineas().get(0).stockActual());
+        assertEquals(ResultadoStock.Tipo.OK, resultado.lineas().get(1).resultado());
+
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        assertEquals(2L, captor.getValue().get(0)[3]);
+        assertEquals(5L, captor.getValue().get(1)[3]);
+        verify(eventPublisher, times(2)).publishEvent(any(ProductoCambiadoEvent.class));
+    }
+
+    @Test
+    @DisplayName("aplicarLote - Los descuentos deben exigir dejar lo reservado y las sumas no")
+    @SuppressWarnings("unchecked")
+    void testAplicarLote_RespetaReservas() {
+        // Given
+        List<AjusteStockDTO> ajustes = List.of(new AjusteStockDTO(5L, -2), new AjusteStockDTO(2L, 3));
+        when(reservas.reservadoAjeno(5L)).thenReturn(6);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] { 1, 1 });
+        when(productoRepository.findStockByIdIn(any())).thenReturn(List.of(
+            new StockDTO(2L, "Poncho", 3, "activo"),
+            new StockDTO(5L, "Mate", 7, "activo")));
+
+        // When
+        ResultadoLoteStock resultado = stockService.aplicarLote(ajustes);
+
+        // Then
+        assertTrue(resultado.aplicado());
+
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        assertEquals(0, captor.getValue().get(0)[5]);
+        assertEquals(6, captor.getValue().get(1)[5]);
+        verify(reservas, never()).reservadoAjeno(2L);
+    }
+
+    @Test
+    @DisplayName("actualizar - Debe registrar en el libro el valor absoluto sin bloquear la fila")
+    void testActualizar_RegistraEstablecido() {
+        // Given
+        when(productoRepository.findStockById(1L)).thenReturn(
+            Optional.of(new StockDTO(1L, "Mate", 7, "activo")),
+            Optional.of(new StockDTO(1L, "Mate", 10, "activo")));
+        when(productoRepository.actualizarStock(eq(1L), eq(10), any())).thenReturn(1);
+
+        // When
+        ResultadoStock resultado = stockService.actualizar(1L, 10);
+
+        // Then
+        assertEquals(ResultadoStock.Tipo.OK, resultado.tipo());
+        assertEquals(7, resultado.stockAnterior());
+        verify(movimientos).registrar(1L, MovimientoStock.Tipo.ESTABLECIDO, 10);
+    }
+
+    @Test
+    @DisplayName("consultar - Debe resolver varios productos en una consulta y ordenarlos por id")
+    void testConsultar_OrdenaPorId() {
+        // Given
+        when(productoRepository.findStockByIdIn(List.of(3L, 1L))).thenReturn(List.of(
+            new StockDTO(3L, "Poncho", 2, "activo"),
+            new StockDTO(1L, "Mate", 0, "agotado")));
+
+        // When
+        List<StockDTO> resultado = stockService.consultar(List.of(3L, 1L));
+
+        // Then
+        assertEquals(List.of(1L, 3L), resultado.stream().map(StockDTO::productoId).toList());
+        verify(productoRepository, times(1)).findStockByIdIn(any());
+    }
+}